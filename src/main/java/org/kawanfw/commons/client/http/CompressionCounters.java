@@ -0,0 +1,126 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.client.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.kawanfw.commons.util.ClientLogger;
+import org.kawanfw.commons.util.FrameworkDebug;
+
+/**
+ * The counters of the compressed transfers of the JVM. Each transfer is also
+ * reported in the debug log with its compression ratio.
+ * 
+ * @author Nicolas de Pomereu
+ */
+
+public class CompressionCounters {
+
+    /** The debug flag */
+    private static boolean DEBUG = FrameworkDebug
+	    .isSet(CompressionCounters.class);
+
+    private static final AtomicLong uploads = new AtomicLong();
+    private static final AtomicLong uploadBytes = new AtomicLong();
+    private static final AtomicLong uploadWireBytes = new AtomicLong();
+    private static final AtomicLong uploadsSkipped = new AtomicLong();
+    private static final AtomicLong downloads = new AtomicLong();
+    private static final AtomicLong downloadBytes = new AtomicLong();
+    private static final AtomicLong downloadWireBytes = new AtomicLong();
+
+    /**
+     * Do not instantiate
+     */
+    private CompressionCounters() {
+    }
+
+    /**
+     * Records a compressed upload
+     * 
+     * @param name
+     *            the name of the uploaded content
+     * @param codecName
+     *            the name of the codec
+     * @param bytes
+     *            the uncompressed bytes
+     * @param wireBytes
+     *            the bytes sent on the network
+     */
+    static void recordUpload(String name, String codecName, long bytes,
+	    long wireBytes) {
+	uploads.incrementAndGet();
+	uploadBytes.addAndGet(bytes);
+	uploadWireBytes.addAndGet(wireBytes);
+	debug("upload " + name, codecName, bytes, wireBytes);
+    }
+
+    /**
+     * Records an upload sent uncompressed because not compressible
+     */
+    static void recordUploadSkipped() {
+	uploadsSkipped.incrementAndGet();
+    }
+
+    /**
+     * Records a compressed download
+     * 
+     * @param codecName
+     *            the name of the codec
+     * @param bytes
+     *            the uncompressed bytes
+     * @param wireBytes
+     *            the bytes received from the network
+     */
+    static void recordDownload(String codecName, long bytes, long wireBytes) {
+	downloads.incrementAndGet();
+	downloadBytes.addAndGet(bytes);
+	downloadWireBytes.addAndGet(wireBytes);
+	debug("download", codecName, bytes, wireBytes);
+    }
+
+    /**
+     * Returns a snapshot of the counters
+     * 
+     * @return a snapshot of the counters
+     */
+    public static CompressionStats getStats() {
+	return new CompressionStats(uploads.get(), uploadBytes.get(),
+		uploadWireBytes.get(), uploadsSkipped.get(), downloads.get(),
+		downloadBytes.get(), downloadWireBytes.get());
+    }
+
+    private static void debug(String transfer, String codecName, long bytes,
+	    long wireBytes) {
+	if (DEBUG) {
+	    ClientLogger.getLogger().log(
+		    Level.WARNING,
+		    transfer + " " + codecName + ": " + bytes + " -> "
+			    + wireBytes + " bytes, ratio "
+			    + String.format("%.2f",
+				    CompressionStats.ratio(bytes, wireBytes)));
+	}
+    }
+}
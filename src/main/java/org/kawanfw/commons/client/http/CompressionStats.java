@@ -0,0 +1,167 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.client.http;
+
+/**
+ * Snapshot of the compression statistics of the HTTP transfers of the JVM:
+ * bytes before and after compression for the compressed uploads and
+ * downloads, and the number of uploads sent uncompressed because their
+ * content was not compressible.
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+
+public class CompressionStats {
+
+    private final long uploads;
+    private final long uploadBytes;
+    private final long uploadWireBytes;
+    private final long uploadsSkipped;
+    private final long downloads;
+    private final long downloadBytes;
+    private final long downloadWireBytes;
+
+    /**
+     * Constructor.
+     * 
+     * @param uploads
+     *            the number of compressed uploads
+     * @param uploadBytes
+     *            the uncompressed bytes of the compressed uploads
+     * @param uploadWireBytes
+     *            the compressed bytes of the compressed uploads
+     * @param uploadsSkipped
+     *            the number of uploads not compressed because not
+     *            compressible
+     * @param downloads
+     *            the number of compressed downloads
+     * @param downloadBytes
+     *            the uncompressed bytes of the compressed downloads
+     * @param downloadWireBytes
+     *            the compressed bytes of the compressed downloads
+     */
+    CompressionStats(long uploads, long uploadBytes, long uploadWireBytes,
+	    long uploadsSkipped, long downloads, long downloadBytes,
+	    long downloadWireBytes) {
+	this.uploads = uploads;
+	this.uploadBytes = uploadBytes;
+	this.uploadWireBytes = uploadWireBytes;
+	this.uploadsSkipped = uploadsSkipped;
+	this.downloads = downloads;
+	this.downloadBytes = downloadBytes;
+	this.downloadWireBytes = downloadWireBytes;
+    }
+
+    /**
+     * @return the number of compressed uploads
+     */
+    public long getUploads() {
+	return uploads;
+    }
+
+    /**
+     * @return the uncompressed bytes of the compressed uploads
+     */
+    public long getUploadBytes() {
+	return uploadBytes;
+    }
+
+    /**
+     * @return the bytes sent on the network for the compressed uploads
+     */
+    public long getUploadWireBytes() {
+	return uploadWireBytes;
+    }
+
+    /**
+     * @return the number of uploads sent uncompressed because their name or
+     *         content was not compressible
+     */
+    public long getUploadsSkipped() {
+	return uploadsSkipped;
+    }
+
+    /**
+     * @return the number of compressed downloads
+     */
+    public long getDownloads() {
+	return downloads;
+    }
+
+    /**
+     * @return the uncompressed bytes of the compressed downloads
+     */
+    public long getDownloadBytes() {
+	return downloadBytes;
+    }
+
+    /**
+     * @return the bytes received from the network for the compressed
+     *         downloads
+     */
+    public long getDownloadWireBytes() {
+	return downloadWireBytes;
+    }
+
+    /**
+     * @return the compression ratio of the uploads (uncompressed bytes /
+     *         network bytes), 1 if none
+     */
+    public double getUploadRatio() {
+	return ratio(uploadBytes, uploadWireBytes);
+    }
+
+    /**
+     * @return the compression ratio of the downloads (uncompressed bytes /
+     *         network bytes), 1 if none
+     */
+    public double getDownloadRatio() {
+	return ratio(downloadBytes, downloadWireBytes);
+    }
+
+    /**
+     * Returns the compression ratio of a transfer
+     * 
+     * @param bytes
+     *            the uncompressed bytes
+     * @param wireBytes
+     *            the compressed bytes
+     * @return the ratio, 1 if nothing was compressed
+     */
+    static double ratio(long bytes, long wireBytes) {
+	return wireBytes == 0 ? 1 : (double) bytes / wireBytes;
+    }
+
+    @Override
+    public String toString() {
+	return "CompressionStats [uploads=" + uploads + ", uploadBytes="
+		+ uploadBytes + ", uploadWireBytes=" + uploadWireBytes
+		+ ", uploadsSkipped=" + uploadsSkipped + ", downloads="
+		+ downloads + ", downloadBytes=" + downloadBytes
+		+ ", downloadWireBytes=" + downloadWireBytes + "]";
+    }
+
+}
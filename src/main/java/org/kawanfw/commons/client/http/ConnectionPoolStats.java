@@ -0,0 +1,96 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.client.http;
+
+/**
+ * Snapshot of the statistics of the {@link HttpConnectionPool} limiter.
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+
+public class ConnectionPoolStats {
+
+    private final int routes;
+    private final int leased;
+    private final long leases;
+    private final long overflows;
+
+    /**
+     * Constructor.
+     * 
+     * @param routes
+     *            the number of routes known by the limiter
+     * @param leased
+     *            the number of persistent connection slots currently leased
+     * @param leases
+     *            the total number of leases
+     * @param overflows
+     *            the number of leases served with a non persistent connection
+     */
+    ConnectionPoolStats(int routes, int leased, long leases, long overflows) {
+	this.routes = routes;
+	this.leased = leased;
+	this.leases = leases;
+	this.overflows = overflows;
+    }
+
+    /**
+     * @return the number of routes (scheme, host, port, proxy) known by the
+     *         limiter
+     */
+    public int getRoutes() {
+	return routes;
+    }
+
+    /**
+     * @return the number of persistent connection slots currently leased
+     */
+    public int getLeased() {
+	return leased;
+    }
+
+    /**
+     * @return the total number of leases since JVM start
+     */
+    public long getLeases() {
+	return leases;
+    }
+
+    /**
+     * @return the number of leases served with a non persistent connection
+     *         because the route was at its maximum
+     */
+    public long getOverflows() {
+	return overflows;
+    }
+
+    @Override
+    public String toString() {
+	return "ConnectionPoolStats [routes=" + routes + ", leased=" + leased
+		+ ", leases=" + leases + ", overflows=" + overflows + "]";
+    }
+
+}
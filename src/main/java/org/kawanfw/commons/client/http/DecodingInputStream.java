@@ -0,0 +1,166 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.client.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.kawanfw.commons.util.Tag;
+import org.kawanfw.commons.util.codec.ContentCodec;
+import org.kawanfw.commons.util.codec.ContentCodecs;
+
+/**
+ * Input stream that decompresses an HTTP response according to its
+ * "Content-Encoding" and records the compression ratio when closed.
+ * 
+ * @author Nicolas de Pomereu
+ */
+
+class DecodingInputStream extends FilterInputStream {
+
+    /** The codec of the response */
+    private final ContentCodec codec;
+
+    /** The compressed stream, that counts the bytes read on the network */
+    private final CountingInputStream wireIn;
+
+    /** The number of decompressed bytes read */
+    private long length = 0;
+
+    /** Says if the transfer has been recorded */
+    private boolean recorded = false;
+
+    private DecodingInputStream(ContentCodec codec, CountingInputStream wireIn)
+	    throws IOException {
+	super(codec.decompress(wireIn));
+	this.codec = codec;
+	this.wireIn = wireIn;
+    }
+
+    /**
+     * Returns the stream that decompresses the response.
+     * 
+     * @param contentEncoding
+     *            the "Content-Encoding" of the response, may be null
+     * @param in
+     *            the response input stream
+     * @return the decompressing stream, or the response stream itself if it
+     *         is not compressed
+     * @throws IOException
+     *             if the Content-Encoding is not supported
+     */
+    static InputStream create(String contentEncoding, InputStream in)
+	    throws IOException {
+	if (contentEncoding == null || contentEncoding.trim().isEmpty()
+		|| contentEncoding.trim().equalsIgnoreCase("identity")) {
+	    return in;
+	}
+
+	ContentCodec codec = ContentCodecs.get(contentEncoding);
+	if (codec == null) {
+	    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+		    + " Unsupported response Content-Encoding: "
+		    + contentEncoding);
+	}
+
+	return new DecodingInputStream(codec, new CountingInputStream(in));
+    }
+
+    @Override
+    public int read() throws IOException {
+	int b = super.read();
+	if (b != -1) {
+	    length++;
+	}
+	return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+	int n = super.read(b, off, len);
+	if (n > 0) {
+	    length += n;
+	}
+	return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+	long skipped = super.skip(n);
+	length += skipped;
+	return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+	try {
+	    super.close();
+	} finally {
+	    if (!recorded) {
+		recorded = true;
+		CompressionCounters.recordDownload(codec.getName(), length,
+			wireIn.count);
+	    }
+	}
+    }
+
+    /**
+     * Counts the bytes read from the network.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+	private long count = 0;
+
+	CountingInputStream(InputStream in) {
+	    super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+	    int b = super.read();
+	    if (b != -1) {
+		count++;
+	    }
+	    return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+	    int n = super.read(b, off, len);
+	    if (n > 0) {
+		count += n;
+	    }
+	    return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+	    long skipped = super.skip(n);
+	    count += skipped;
+	    return skipped;
+	}
+    }
+}
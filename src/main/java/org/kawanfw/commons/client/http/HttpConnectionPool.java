@@ -0,0 +1,293 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.client.http;
+
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+import org.kawanfw.commons.util.ClientLogger;
+import org.kawanfw.commons.util.FrameworkDebug;
+
+/**
+ * Per-route limiter of the persistent HTTP connections used by
+ * {@link HttpTransferOne}.
+ * <p>
+ * This class does not own any socket: the sockets are opened, reused and
+ * closed by the JDK <code>HttpURLConnection</code> keep-alive cache. A
+ * connection goes back to this cache when its response stream is fully read
+ * and closed and <code>disconnect()</code> is not called, and the cache
+ * closes it after the server keep-alive timeout. <br>
+ * This class only counts the requests in progress per route (scheme, host,
+ * port, proxy). At most <code>maxPerRoute</code> of them use a persistent
+ * connection. The other ones are sent with a <code>Connection: close</code>
+ * header, so that a burst of concurrent requests does not leave more
+ * sockets than the limit to the keep-alive cache.
+ * <p>
+ * The JDK keeps at most <code>http.maxConnections</code> idle sockets per
+ * route (5 by default) and closes the other ones: the limit is capped to
+ * this value.
+ * <p>
+ * The limiter is thread safe and shared by all sessions of the JVM.
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+
+public class HttpConnectionPool {
+
+    /** The debug flag */
+    private static boolean DEBUG = FrameworkDebug.isSet(HttpConnectionPool.class);
+
+    /** The maximum number of idle sockets per route of the JDK */
+    private static final int JDK_MAX_CONNECTIONS = getJdkMaxConnections();
+
+    /** The limiter shared by all sessions */
+    private static final HttpConnectionPool DEFAULT = new HttpConnectionPool();
+
+    /** The routes, per route key */
+    private final ConcurrentHashMap<String, Route> routes = new ConcurrentHashMap<String, Route>();
+
+    /** Total number of leases */
+    private final AtomicLong leases = new AtomicLong();
+
+    /** Number of leases served with a non persistent connection */
+    private final AtomicLong overflows = new AtomicLong();
+
+    /**
+     * Constructor. Use {@link #getDefault()} to get the shared limiter.
+     */
+    HttpConnectionPool() {
+
+    }
+
+    /**
+     * Returns the limiter shared by all sessions of the JVM.
+     * 
+     * @return the limiter shared by all sessions of the JVM
+     */
+    public static HttpConnectionPool getDefault() {
+	return DEFAULT;
+    }
+
+    /**
+     * Leases a persistent connection slot for the route of the passed
+     * connection. If the route has already <code>maxPerRoute</code> leases,
+     * or <code>http.maxConnections</code> if lower, the connection is set to
+     * be closed after the response.
+     * 
+     * @param conn
+     *            the connection, not yet connected
+     * @param proxy
+     *            the proxy in use, may be null
+     * @param maxPerRoute
+     *            the maximum number of persistent connections for the route.
+     *            0 means the JDK limit only
+     * @return the lease to release with {@link #release(Lease)}
+     */
+    public Lease lease(HttpURLConnection conn, Proxy proxy, int maxPerRoute) {
+
+	int max = JDK_MAX_CONNECTIONS;
+	if (maxPerRoute > 0) {
+	    max = Math.min(maxPerRoute, max);
+	}
+
+	String key = getRouteKey(conn.getURL(), proxy);
+
+	Route route = routes.get(key);
+	if (route == null) {
+	    Route newRoute = new Route(key);
+	    route = routes.putIfAbsent(key, newRoute);
+	    if (route == null) {
+		route = newRoute;
+	    }
+	}
+
+	leases.incrementAndGet();
+
+	boolean persistent;
+	route.lock.lock();
+	try {
+	    if (route.leased >= max) {
+		persistent = false;
+	    } else {
+		persistent = true;
+		route.leased++;
+	    }
+	} finally {
+	    route.lock.unlock();
+	}
+
+	if (!persistent) {
+	    overflows.incrementAndGet();
+	    conn.setRequestProperty("Connection", "close");
+	}
+
+	debug("lease " + key + " persistent: " + persistent);
+	return new Lease(route, persistent);
+    }
+
+    /**
+     * Releases a lease. Calling this method more than once for the same lease
+     * has no effect.
+     * 
+     * @param lease
+     *            the lease to release, may be null
+     */
+    public void release(Lease lease) {
+	// Only the first release of a lease frees its slot
+	if (lease == null || !lease.released.compareAndSet(false, true)) {
+	    return;
+	}
+
+	if (!lease.persistent) {
+	    return;
+	}
+
+	Route route = lease.route;
+	route.lock.lock();
+	try {
+	    route.leased--;
+	} finally {
+	    route.lock.unlock();
+	}
+    }
+
+    /**
+     * Returns a snapshot of the limiter statistics.
+     * 
+     * @return a snapshot of the limiter statistics
+     */
+    public ConnectionPoolStats getStats() {
+	int routeCount = 0;
+	int leased = 0;
+
+	for (Route route : routes.values()) {
+	    route.lock.lock();
+	    try {
+		routeCount++;
+		leased += route.leased;
+	    } finally {
+		route.lock.unlock();
+	    }
+	}
+
+	return new ConnectionPoolStats(routeCount, leased, leases.get(),
+		overflows.get());
+    }
+
+    /**
+     * Returns the key of a route: protocol, host, port and proxy.
+     * 
+     * @param url
+     *            the URL
+     * @param proxy
+     *            the proxy in use, may be null
+     * @return the key of a route
+     */
+    static String getRouteKey(URL url, Proxy proxy) {
+	int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+	String key = url.getProtocol() + "://" + url.getHost() + ":" + port;
+
+	if (proxy != null && proxy.type() != Proxy.Type.DIRECT) {
+	    key += " via " + proxy.address();
+	}
+	return key;
+    }
+
+    /**
+     * Returns the maximum number of idle sockets per route kept by the JDK
+     * keep-alive cache: the <code>http.maxConnections</code> property, 5 by
+     * default.
+     * 
+     * @return the maximum number of idle sockets per route of the JDK
+     */
+    static int getJdkMaxConnections() {
+	int max = 5;
+	try {
+	    max = Integer.parseInt(System.getProperty("http.maxConnections",
+		    "5"));
+	} catch (Exception e) {
+	    // Default value of the JDK
+	}
+	return max > 0 ? max : 5;
+    }
+
+    /**
+     * A lease on a route. Returned by
+     * {@link HttpConnectionPool#lease(HttpURLConnection, Proxy, int)}.
+     */
+    public static class Lease {
+	private final Route route;
+	private final boolean persistent;
+	private final AtomicBoolean released = new AtomicBoolean(false);
+
+	Lease(Route route, boolean persistent) {
+	    this.route = route;
+	    this.persistent = persistent;
+	}
+
+	/**
+	 * @return true if the leased connection is kept alive after the
+	 *         response
+	 */
+	public boolean isPersistent() {
+	    return persistent;
+	}
+    }
+
+    /**
+     * The state of a route. Guarded by its own lock, not a monitor, so that
+     * virtual threads do not pin their carrier thread.
+     */
+    static class Route {
+	private final String key;
+	private final ReentrantLock lock = new ReentrantLock();
+	private int leased = 0;
+
+	Route(String key) {
+	    this.key = key;
+	}
+
+	@Override
+	public String toString() {
+	    return key;
+	}
+    }
+
+    /**
+     * debug tool
+     */
+    private static void debug(String s) {
+	if (DEBUG) {
+	    ClientLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+}
@@ -110,6 +110,61 @@ public interface HttpTransfer {
     public void send(List<SimpleNameValuePair> requestParams, File file)
 	    throws UnknownHostException, ConnectException,
 	    RemoteException, IOException;    
+
+    /**
+     * Send a String to the HTTP server and upload the content of a stream as
+     * a file, without an intermediate file on the client side. The length of
+     * the stream is unknown: the request is sent in HTTP chunks.
+     * 
+     * @param requestParams
+     *            the request parameters list with (parameter, value)
+     * @param fileName
+     *            the file name of the uploaded part
+     * @param in
+     *            the stream to upload, not closed by this method
+     * 
+     * @throws UnknownHostException
+     *             Host url (http://www.acme.org) does not exists or no Internet
+     *             Connection.
+     * @throws ConnectException
+     *             The Host is correct but the Servlet
+     *             (http://www.acme.org/Servlet) failed with a status <> OK
+     *             (200).
+     * @throws IOException
+     *             For all other IO / Network / System Error
+     */
+    public void send(List<SimpleNameValuePair> requestParams, String fileName,
+	    InputStream in) throws UnknownHostException, ConnectException,
+	    RemoteException, IOException;
+
+    /**
+     * Send a String to the HTTP server and upload the content of a stream as
+     * a file, without an intermediate file on the client side.
+     * 
+     * @param requestParams
+     *            the request parameters list with (parameter, value)
+     * @param fileName
+     *            the file name of the uploaded part
+     * @param in
+     *            the stream to upload, not closed by this method
+     * @param length
+     *            the number of bytes of the stream, or -1 if unknown. If
+     *            known, the request is sent with a fixed length instead of
+     *            HTTP chunks.
+     * 
+     * @throws UnknownHostException
+     *             Host url (http://www.acme.org) does not exists or no Internet
+     *             Connection.
+     * @throws ConnectException
+     *             The Host is correct but the Servlet
+     *             (http://www.acme.org/Servlet) failed with a status <> OK
+     *             (200).
+     * @throws IOException
+     *             For all other IO / Network / System Error
+     */
+    public void send(List<SimpleNameValuePair> requestParams, String fileName,
+	    InputStream in, long length) throws UnknownHostException,
+	    ConnectException, RemoteException, IOException;
         
         
     /**
@@ -210,6 +265,15 @@ public interface HttpTransfer {
 
     public String recv();
 
+    /**
+     * Returns the typed values of the last response if the server answered
+     * with a binary framed response.
+     * 
+     * @return the values of the binary response (null, String, Long or
+     *         Boolean), or null if the server answered with a text response
+     */
+    public List<Object> recvValues();
+
     /**
      * Defines if the result is to be received into a text file <br>
      * Call getReceiveFile() to get the file name <br>
@@ -24,16 +24,18 @@
  */
 package org.kawanfw.commons.client.http;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringReader;
@@ -49,16 +51,22 @@ import java.net.URLEncoder;
 import java.net.UnknownHostException;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
-import java.util.zip.GZIPInputStream;
 
+import org.kawanfw.commons.util.BinaryResponse;
 import org.kawanfw.commons.util.ClientLogger;
 import org.kawanfw.commons.util.DefaultParms;
 import org.kawanfw.commons.util.FrameworkDebug;
 import org.kawanfw.commons.util.FrameworkFileUtil;
+import org.kawanfw.commons.util.Tag;
+import org.kawanfw.commons.util.codec.ContentCodec;
+import org.kawanfw.commons.util.codec.ContentCodecs;
 import org.kawanfw.commons.util.TransferStatus;
 import org.kawanfw.file.api.client.SessionParameters;
 import org.kawanfw.file.api.client.exception.RemoteException;
+import org.kawanfw.file.util.parms.Parameter;
 
 /**
  * HttpTransferTwo - Http operations done without any library, only using
@@ -68,7 +76,11 @@ import org.kawanfw.file.api.client.exception.RemoteException;
  * sure to release ASAP the server. <br>
  * 
  * Note that HttpUrlConnection.disconect() is never call, see:
- * http://kingori.co/minutae/2013/04/httpurlconnection-disconnect/
+ * http://kingori.co/minutae/2013/04/httpurlconnection-disconnect/ <br>
+ * Response streams, including error streams, are always read to the end and
+ * closed so that the connection goes back to the keep-alive cache. The number
+ * of persistent connections per host is bounded by the
+ * {@link HttpConnectionPool} limiter.
  */
 
 public class HttpTransferOne implements HttpTransfer {
@@ -84,9 +96,21 @@ public class HttpTransferOne implements HttpTransfer {
 
     public final static String HTTP_WWW_GOOGLE_COM = "http://www.google.com";
 
+    /** Longer than SEND_OK and SEND_FAILED: the response is not ours */
+    private static final int MAX_STATUS_LINE_LENGTH = 64;
+
+    /** The codecs announced by each server url, to compress the uploads */
+    private static final Map<String, String> serverCodecs = new ConcurrentHashMap<String, String>();
+
     /** Response from http server container */
     private String m_responseBody = null;
 
+    /** Typed values of a binary framed response from http server container */
+    private List<Object> m_responseValues = null;
+
+    /** The buffer used to copy the text responses, reused between calls */
+    private byte[] copyBuffer = null;
+
     //
     // Server Parameter
     //
@@ -120,6 +144,15 @@ public class HttpTransferOne implements HttpTransfer {
     /** For authenticated proxy */
     private PasswordAuthentication passwordAuthentication = null;
 
+    /** The pool of persistent connections */
+    private HttpConnectionPool connectionPool = HttpConnectionPool.getDefault();
+
+    /** The lease of the current connection */
+    private HttpConnectionPool.Lease lease = null;
+
+    /** The maximum number of persistent connections per route */
+    private int maxConnectionsPerRoute = DefaultParms.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
     /**
      * Default constructor.&nbsp;
      * <p>
@@ -151,6 +184,8 @@ public class HttpTransferOne implements HttpTransfer {
 	if (sessionParameters != null) {
 	    this.connectTimeout = sessionParameters.getConnectTimeout();
 	    this.readTimeout = sessionParameters.getReadTimeout();
+	    this.maxConnectionsPerRoute = sessionParameters
+		    .getMaxConnectionsPerRoute();
 
 	    // if (sessionParameters.isAcceptAllSslCertificates()) {
 	    // acceptSelfSignedSslCert();
@@ -215,6 +250,8 @@ public class HttpTransferOne implements HttpTransfer {
 	if (sessionParameters != null) {
 	    this.connectTimeout = sessionParameters.getConnectTimeout();
 	    this.readTimeout = sessionParameters.getReadTimeout();
+	    this.maxConnectionsPerRoute = sessionParameters
+		    .getMaxConnectionsPerRoute();
 	}
 
     }
@@ -248,7 +285,8 @@ public class HttpTransferOne implements HttpTransfer {
 	if (sessionParameters != null) {
 	    boolean compressionOn = sessionParameters.isCompressionOn();
 	    if (compressionOn) {
-		conn.setRequestProperty("Accept-Encoding", "gzip");
+		conn.setRequestProperty("Accept-Encoding", ContentCodecs
+			.getNames(sessionParameters.getCompressionCodec()));
 	    }
 	}
 
@@ -256,9 +294,49 @@ public class HttpTransferOne implements HttpTransfer {
 	conn.setReadTimeout(readTimeout);
 	conn.setUseCaches(false);
 
+	// Previous lease is released if not already done
+	releaseLease();
+	lease = connectionPool.lease(conn, proxy, maxConnectionsPerRoute);
+
 	return conn;
     }
 
+    /**
+     * Releases the lease of the current connection.
+     */
+    private void releaseLease() {
+	connectionPool.release(lease);
+	lease = null;
+    }
+
+    /**
+     * Reads to the end and closes the error stream of a connection so that it
+     * may go back to the keep-alive cache.
+     * 
+     * @param conn
+     *            the URL connection in use
+     */
+    private static void drainErrorStream(HttpURLConnection conn) {
+	InputStream err = conn.getErrorStream();
+	if (err == null) {
+	    return;
+	}
+
+	try {
+	    byte[] buf = new byte[DefaultParms.DEFAULT_READ_BUFFER_SIZE];
+	    while (err.read(buf) != -1) {
+		// Nothing, we just consume the stream
+	    }
+	} catch (IOException e) {
+	    debug("drainErrorStream: " + e);
+	} finally {
+	    try {
+		err.close();
+	    } catch (Exception e) {
+	    }
+	}
+    }
+
     /**
      * Send a String to the HTTP server.
      * 
@@ -289,6 +367,7 @@ public class HttpTransferOne implements HttpTransfer {
     {
 	statusCode = 0; // Reset it!
 	m_responseBody = null; // Reset it!
+	m_responseValues = null;
 
 	URL theUrl;
 	try {
@@ -321,6 +400,7 @@ public class HttpTransferOne implements HttpTransfer {
 	} finally {
 	    // Reset doReceiveInFile
 	    doReceiveInFile = false;
+	    releaseLease();
 	}
 
     }
@@ -354,8 +434,75 @@ public class HttpTransferOne implements HttpTransfer {
 	    throws UnknownHostException, ConnectException, RemoteException,
 	    IOException {
 
+	try (InputStream in = new BufferedInputStream(
+		new FileInputStream(file))) {
+	    send(requestParams, file.getName(), in, file.length());
+	}
+    }
+
+    /**
+     * Sends a String to the HTTP server and uploads the content of a stream
+     * of unknown length as a file
+     * 
+     * @param requestParams
+     *            the request parameters list with (parameter, value)
+     * @param fileName
+     *            the file name of the uploaded part
+     * @param in
+     *            the stream to upload, not closed by this method
+     * 
+     * @throws UnknownHostException
+     *             Host url (http://www.acme.org) does not exists or no Internet
+     *             Connection.
+     * @throws ConnectException
+     *             The Host is correct but the Servlet
+     *             (http://www.acme.org/Servlet) failed with a status <> OK
+     *             (200).
+     * @throws RemoteException
+     *             an exception has been thrown on the server side
+     * @throws IOException
+     *             For all other IO / Network / System Error
+     */
+    @Override
+    public void send(List<SimpleNameValuePair> requestParams, String fileName,
+	    InputStream in) throws UnknownHostException, ConnectException,
+	    RemoteException, IOException {
+	send(requestParams, fileName, in, -1);
+    }
+
+    /**
+     * Sends a String to the HTTP server and uploads the content of a stream
+     * as a file
+     * 
+     * @param requestParams
+     *            the request parameters list with (parameter, value)
+     * @param fileName
+     *            the file name of the uploaded part
+     * @param in
+     *            the stream to upload, not closed by this method
+     * @param length
+     *            the number of bytes of the stream, or -1 if unknown
+     * 
+     * @throws UnknownHostException
+     *             Host url (http://www.acme.org) does not exists or no Internet
+     *             Connection.
+     * @throws ConnectException
+     *             The Host is correct but the Servlet
+     *             (http://www.acme.org/Servlet) failed with a status <> OK
+     *             (200).
+     * @throws RemoteException
+     *             an exception has been thrown on the server side
+     * @throws IOException
+     *             For all other IO / Network / System Error
+     */
+    @Override
+    public void send(List<SimpleNameValuePair> requestParams, String fileName,
+	    InputStream in, long length) throws UnknownHostException,
+	    ConnectException, RemoteException, IOException {
+
 	statusCode = 0; // Reset it!
 	m_responseBody = null; // Reset it!
+	m_responseValues = null;
 	URL theUrl;
 
 	try {
@@ -365,15 +512,33 @@ public class HttpTransferOne implements HttpTransfer {
 		    requestParams, sessionParameters);
 	    requestParams = simpleNameValuePairConvertor.convert();
 
+	    // The codec of the upload, null if not compressed
+	    ContentCodec codec = null;
+	    if (length != 0 && sessionParameters != null
+		    && sessionParameters.isCompressionOn()) {
+		codec = ContentCodecs.negotiate(serverCodecs.get(url),
+			sessionParameters.getCompressionCodec());
+	    }
+
+	    if (codec != null) {
+		if (!in.markSupported()) {
+		    in = new BufferedInputStream(in,
+			    ContentCodecs.SAMPLE_LENGTH);
+		}
+
+		if (!isUploadCompressible(requestParams, fileName, in)) {
+		    codec = null;
+		    CompressionCounters.recordUploadSkipped();
+		}
+	    }
+
 	    theUrl = new URL(this.url);
 
 	    conn = buildHttpUrlConnection(theUrl);
 	    conn.setRequestMethod(POST);
 	    conn.setDoOutput(true);
 
-	    conn.setChunkedStreamingMode(
-		    DefaultParms.DEFAULT_STREAMING_MODE_CHUNKLEN);
-
+	    // The streaming mode is set by MultipartUtility, from the length
 	    final MultipartUtility http = new MultipartUtility(theUrl, conn,
 		    sessionParameters);
 
@@ -382,15 +547,25 @@ public class HttpTransferOne implements HttpTransfer {
 			basicNameValuePair.getValue());
 	    }
 
-	    http.addFilePart("file", file);
+	    if (codec != null) {
+		http.addFormField(Parameter.COMPRESSION, codec.getName());
+	    }
+
+	    http.addFilePart("file", fileName, in, length, codec);
 	    http.finish();
 
+	    if (codec != null) {
+		CompressionCounters.recordUpload(fileName, codec.getName(),
+			http.getPartLength(), http.getPartWireLength());
+	    }
+
 	    conn = http.getConnection();
 	    getAndAnalyzeResponse(conn);
 
 	} finally {
 	    // Reset doReceiveInFile
 	    doReceiveInFile = false;
+	    releaseLease();
 	}
     }
 
@@ -409,7 +584,7 @@ public class HttpTransferOne implements HttpTransfer {
 	    throws UnknownHostException, ConnectException, RemoteException,
 	    IOException {
 
-	BufferedReader reader = null;
+	InputStream in = null;
 
 	try {
 
@@ -417,32 +592,44 @@ public class HttpTransferOne implements HttpTransfer {
 	    statusCode = conn.getResponseCode();
 
 	    if (statusCode != HttpURLConnection.HTTP_OK) {
+		String responseMessage = conn.getResponseMessage();
+		drainErrorStream(conn);
+
 		// The server is up, but the servlet is not accessible
 		throw new ConnectException(url + ": Servlet failed: "
-			+ conn.getResponseMessage() + " status: " + statusCode);
+			+ responseMessage + " status: " + statusCode);
 	    }
 
+	    recordServerCodecs(conn);
+
 	    // it's ok to use a buffered stream with SSL with HttpUrlConnection
 	    // Check the server sent us back a compressed content
-	    if ("gzip".equals(conn.getContentEncoding())) {
-		reader = new BufferedReader(new InputStreamReader(
-			new GZIPInputStream(conn.getInputStream())));
-	    } else {
-		reader = new BufferedReader(
-			new InputStreamReader(conn.getInputStream()));
+	    in = new BufferedInputStream(DecodingInputStream.create(
+		    conn.getContentEncoding(), conn.getInputStream()));
+
+	    // A binary framed response starts with a byte that can not start
+	    // a text response
+	    in.mark(1);
+	    if (in.read() == BinaryResponse.MAGIC) {
+		int status = in.read();
+		List<Object> values = BinaryResponse.readValues(in);
+
+		analyzeBinaryResponse(status, values);
+		return;
 	    }
+	    in.reset();
 
 	    // line 1: Contains the request status - line 2: Contains the datas
-	    String responseStatus = reader.readLine();
+	    String responseStatus = readStatusLine(in);
 	    // debug("responseStatus : " + responseStatus);
 
 	    if (doReceiveInFile) {
 		// Content is saved back into a file, minus the first line
 		// status
 		receiveFile = HttpTransferUtil.createKawansoftTempFile();
-		copyResponseIntoFile(reader, receiveFile);
+		copyResponseIntoFile(in, receiveFile);
 	    } else {
-		copyResponseIntoString(reader);
+		copyResponseIntoString(in);
 	    }
 
 	    // Analyze applicative response header
@@ -496,17 +683,94 @@ public class HttpTransferOne implements HttpTransfer {
 	    }
 	} finally {
 
-	    // IOUtils.closeQuietly(reader);
-	    if (reader != null) {
+	    // IOUtils.closeQuietly(in);
+	    if (in != null) {
 		try {
-		    reader.close();
+		    in.close();
 		} catch (Exception e) {
+		    // Ignore
 		}
 	    }
+
+	    releaseLease();
 	}
 
     }
 
+    /**
+     * Keeps the codecs announced by the server, for the next uploads.
+     * 
+     * @param conn
+     *            the URL connection with the server response
+     */
+    private void recordServerCodecs(HttpURLConnection conn) {
+	String codecs = conn.getHeaderField(ContentCodecs.CODECS_HEADER);
+	if (codecs != null) {
+	    serverCodecs.put(url, codecs);
+	}
+    }
+
+    /**
+     * Says if an upload is worth compressing: neither the uploaded part nor
+     * the remote file have the extension of a compressed format, and a
+     * sample of the content is compressible.
+     * 
+     * @param requestParams
+     *            the request parameters, that contain the remote file name
+     * @param fileName
+     *            the file name of the uploaded part
+     * @param in
+     *            the content, supporting mark/reset
+     * @return true if the upload is worth compressing
+     * @throws IOException
+     */
+    private static boolean isUploadCompressible(
+	    List<SimpleNameValuePair> requestParams, String fileName,
+	    InputStream in) throws IOException {
+	for (SimpleNameValuePair simpleNameValuePair : requestParams) {
+	    if (Parameter.FILENAME.equals(simpleNameValuePair.getName())
+		    && ContentCodecs.hasIncompressibleExtension(
+			    simpleNameValuePair.getValue())) {
+		return false;
+	    }
+	}
+
+	return ContentCodecs.isCompressible(fileName, in);
+    }
+
+    /**
+     * Analyzes a binary framed response. The values of a successful response
+     * are kept for {@link #recvValues()}, a failed response is rethrown as the
+     * remote exception.
+     * 
+     * @param status
+     *            the status byte of the response
+     * @param values
+     *            the fields of the response
+     * @throws RemoteException
+     * @throws IOException
+     */
+    private void analyzeBinaryResponse(int status, List<Object> values)
+	    throws RemoteException, IOException {
+
+	if (status == BinaryResponse.STATUS_OK) {
+	    m_responseValues = values;
+	} else if (status == BinaryResponse.STATUS_FAILED) {
+	    debug(TransferStatus.SEND_FAILED);
+
+	    if (values.size() != 3) {
+		throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+			+ " Invalid binary failure response: " + values);
+	    }
+
+	    HttpTransferUtil.throwTheRemoteException((String) values.get(0),
+		    (String) values.get(1), (String) values.get(2));
+	} else {
+	    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+		    + " Invalid binary response status: " + status);
+	}
+    }
+
     /**
      * Formats & URL encode the the post data for POST.
      * 
@@ -539,55 +803,89 @@ public class HttpTransferOne implements HttpTransfer {
     }
 
     /**
-     * Copy the response into a string
+     * Reads the status line at the start of the response, byte per byte, so
+     * that the content that follows is left untouched in the stream.
      * 
-     * @param bufferedReader
-     *            the buffered content of the centiy, minus the first line
+     * @param in
+     *            the buffered response stream
+     * @return the status line, without the line separator
      * @throws IOException
      */
-    private void copyResponseIntoString(BufferedReader bufferedReader)
-	    throws IOException {
+    private static String readStatusLine(InputStream in) throws IOException {
+	StringBuilder sb = new StringBuilder(16);
 
-	StringBuffer sb = new StringBuffer();
+	int c;
+	while ((c = in.read()) != -1 && c != '\n') {
+	    if (c != '\r') {
+		sb.append((char) c);
+	    }
 
-	String line = null;
-	while ((line = bufferedReader.readLine()) != null) {
-	    // All subsequent lines contain the result
-	    sb.append(line);
-	    sb.append(CR_LF);
+	    // Not a status line: no need to go further
+	    if (sb.length() > MAX_STATUS_LINE_LENGTH) {
+		break;
+	    }
 	}
-	m_responseBody = sb.toString();
+
+	return sb.toString();
+    }
+
+    /**
+     * Copy the response into a string. Bytes are copied as is: the line
+     * separators are those written by the server.
+     * 
+     * @param in
+     *            the response stream, minus the first line
+     * @throws IOException
+     */
+    private void copyResponseIntoString(InputStream in) throws IOException {
+
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	copy(in, out);
+	m_responseBody = out.toString();
 	// debug("m_responseBody: " + m_responseBody + ":");
     }
 
     /**
-     * Transform the response stream into a file
+     * Transform the response stream into a file. Bytes are copied as is: the
+     * line separators are those written by the server.
      * 
-     * @param bufferedReader
-     *            the input response stream as line reader
+     * @param in
+     *            the response stream, minus the first line
      * @param file
      *            the output file to create
      * 
      * @throws IOException
      *             if any IOException occurs during the process
      */
-    private void copyResponseIntoFile(BufferedReader bufferedReader, File file)
+    private void copyResponseIntoFile(InputStream in, File file)
 	    throws IOException {
-	// BufferedOutputStream out = null;
 
-	try (BufferedOutputStream out = new BufferedOutputStream(
-		new FileOutputStream(file));) {
+	// No BufferedOutputStream: the copy buffer is already large
+	try (OutputStream out = new FileOutputStream(file);) {
+	    copy(in, out);
+	}
 
-	    String line = null;
-	    while ((line = bufferedReader.readLine()) != null) {
-		// All subsequent lines contain the result
-		out.write((line + CR_LF).getBytes());
-	    }
-	    out.flush();
-	} finally {
-	    // IOUtils.closeQuietly(out);
+    }
+
+    /**
+     * Copies the stream up to the end with the buffer of this instance,
+     * allocated once and reused by the next responses.
+     * 
+     * @param in
+     *            the stream to copy
+     * @param out
+     *            the destination stream
+     * @throws IOException
+     */
+    private void copy(InputStream in, OutputStream out) throws IOException {
+	if (copyBuffer == null) {
+	    copyBuffer = new byte[DefaultParms.DEFAULT_READ_BUFFER_SIZE];
 	}
 
+	int len;
+	while ((len = in.read(copyBuffer)) != -1) {
+	    out.write(copyBuffer, 0, len);
+	}
     }
 
     /**
@@ -624,40 +922,53 @@ public class HttpTransferOne implements HttpTransfer {
 
 	statusCode = 0; // Reset it!
 	m_responseBody = null; // Reset it!
+	m_responseValues = null;
 
 	URL theUrl;
 	theUrl = new URL(this.url);
 
 	conn = buildHttpUrlConnection(theUrl);
-	conn.setRequestMethod(POST);
-	conn.setDoOutput(true);
 
-	debug("requestParams: " + requestParams);
+	try {
+	    conn.setRequestMethod(POST);
+	    conn.setDoOutput(true);
 
-	TimeoutConnector timeoutConnector = new TimeoutConnector(conn,
-		connectTimeout);
-	OutputStream os = timeoutConnector.getOutputStream();
+	    debug("requestParams: " + requestParams);
 
-	Writer writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
-	writer.write(getPostDataString(requestParams));
+	    TimeoutConnector timeoutConnector = new TimeoutConnector(conn,
+		    connectTimeout);
+	    OutputStream os = timeoutConnector.getOutputStream();
 
-	// writer.flush();
-	writer.close();
-	os.close();
+	    Writer writer = new BufferedWriter(
+		    new OutputStreamWriter(os, "UTF-8"));
+	    writer.write(getPostDataString(requestParams));
 
-	// Analyze the error after request execution
-	statusCode = conn.getResponseCode();
+	    // writer.flush();
+	    writer.close();
+	    os.close();
 
-	if (statusCode != HttpURLConnection.HTTP_OK) {
-	    // The server is up, but the servlet is not accessible
-	    throw new ConnectException(theUrl + ": Servlet failed: "
-		    + conn.getResponseMessage() + " status: " + statusCode);
-	}
+	    // Analyze the error after request execution
+	    statusCode = conn.getResponseCode();
 
-	if ("gzip".equals(conn.getContentEncoding())) {
-	    in = new GZIPInputStream(conn.getInputStream());
-	} else {
-	    in = conn.getInputStream();
+	    if (statusCode != HttpURLConnection.HTTP_OK) {
+		String responseMessage = conn.getResponseMessage();
+		drainErrorStream(conn);
+
+		// The server is up, but the servlet is not accessible
+		throw new ConnectException(theUrl + ": Servlet failed: "
+			+ responseMessage + " status: " + statusCode);
+	    }
+
+	    recordServerCodecs(conn);
+	    in = DecodingInputStream.create(conn.getContentEncoding(),
+		    conn.getInputStream());
+
+	    // The lease is now owned by the stream and released on its close
+	    in = new LeasedInputStream(in, connectionPool, lease);
+	    lease = null;
+
+	} finally {
+	    releaseLease();
 	}
 
 	return in;
@@ -669,6 +980,8 @@ public class HttpTransferOne implements HttpTransfer {
 
     @Override
     public void close() {
+	releaseLease();
+
 	if (this.conn != null) {
 	    this.conn.disconnect();
 	    this.conn = null;
@@ -715,17 +1028,15 @@ public class HttpTransferOne implements HttpTransfer {
 
 	statusCode = 0; // Reset it!
 	m_responseBody = null; // Reset it!
+	m_responseValues = null;
 
 	try {
 
 	    conn = buildHttpUrlConnection(url);
 	    conn.setRequestMethod(GET);
 
-	    if ("gzip".equals(conn.getContentEncoding())) {
-		in = new GZIPInputStream(conn.getInputStream());
-	    } else {
-		in = conn.getInputStream();
-	    }
+	    in = DecodingInputStream.create(conn.getContentEncoding(),
+		    conn.getInputStream());
 
 	    // Analyze the error after request execution
 	    statusCode = conn.getResponseCode();
@@ -736,6 +1047,9 @@ public class HttpTransferOne implements HttpTransfer {
 			+ conn.getResponseMessage() + " status: " + statusCode);
 	    }
 
+	    in = new LeasedInputStream(in, connectionPool, lease);
+	    lease = null;
+
 	    out = new BufferedOutputStream(new FileOutputStream(file));
 
 	    byte[] buf = new byte[4096];
@@ -777,6 +1091,8 @@ public class HttpTransferOne implements HttpTransfer {
 		} catch (Exception e) {
 		}
 	    }
+
+	    releaseLease();
 	}
 
     }
@@ -936,6 +1252,16 @@ public class HttpTransferOne implements HttpTransfer {
 	return m_responseBody;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.kawanfw.commons.client.http.HttpTransfer#recvValues()
+     */
+    @Override
+    public List<Object> recvValues() {
+	return m_responseValues;
+    }
+
     /**
      * Defines if the result is to be received into a text file <br>
      * Call getReceiveFile() to get the file name <br>
@@ -92,7 +92,7 @@ public class HttpTransferUtil {
      * 
      * @return the tempfile to create
      */
-    public static synchronized File createKawansoftTempFile() {
+    public static File createKawansoftTempFile() {
 	String unique = FrameworkFileUtil.getUniqueId();
 	String tempDir = FrameworkFileUtil.getKawansoftTempDir();
 	String tempFile = tempDir + File.separator + "http-transfer-one-"
@@ -148,6 +148,34 @@ public class HttpTransferUtil {
 	    remoteStackTrace = sb.toString();
 	}
 
+	throwTheRemoteException(exceptionName, message, remoteStackTrace);
+    }
+
+    /**
+     * 
+     * Throws an Exception from the fields of a binary response
+     * 
+     * @param exceptionName
+     *            the class name of the remote thrown exception
+     * @param message
+     *            the message of the remote thrown exception, may be null
+     * @param remoteStackTrace
+     *            the remote stack trace, may be null
+     * 
+     * @throws IOException
+     * @throws RemoteException
+     * @throws SecurityException
+     */
+    public static void throwTheRemoteException(String exceptionName,
+	    String message, String remoteStackTrace) throws RemoteException,
+	    IOException {
+
+	if (exceptionName == null) {
+	    throw new IOException(
+		    Tag.PRODUCT_PRODUCT_FAIL
+			    + "Remote Exception type/name not found in servlet output stream");
+	}
+
 	// System.err.println("exceptionName: " + exceptionName);
 
 	// Ok, build the authorized Exception
@@ -0,0 +1,72 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.client.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream of an HTTP response that releases its
+ * {@link HttpConnectionPool} lease when closed.
+ * 
+ * @author Nicolas de Pomereu
+ */
+
+class LeasedInputStream extends FilterInputStream {
+
+    /** The pool that owns the lease */
+    private final HttpConnectionPool connectionPool;
+
+    /** The lease to release on close */
+    private final HttpConnectionPool.Lease lease;
+
+    /**
+     * Constructor.
+     * 
+     * @param in
+     *            the response input stream
+     * @param connectionPool
+     *            the pool that owns the lease
+     * @param lease
+     *            the lease to release on close
+     */
+    LeasedInputStream(InputStream in, HttpConnectionPool connectionPool,
+	    HttpConnectionPool.Lease lease) {
+	super(in);
+	this.connectionPool = connectionPool;
+	this.lease = lease;
+    }
+
+    @Override
+    public void close() throws IOException {
+	try {
+	    super.close();
+	} finally {
+	    connectionPool.release(lease);
+	}
+    }
+
+}
@@ -34,8 +34,10 @@ import static java.net.URLConnection.guessContentTypeFromName;
 import static java.util.logging.Logger.getLogger;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -47,6 +49,8 @@ import java.net.URL;
 import java.util.logging.Logger;
 
 import org.kawanfw.commons.util.DefaultParms;
+import org.kawanfw.commons.util.Tag;
+import org.kawanfw.commons.util.codec.ContentCodec;
 import org.kawanfw.file.api.client.SessionParameters;
 
 public class MultipartUtility {
@@ -62,10 +66,21 @@ public class MultipartUtility {
 
     private HttpURLConnection connection;
 
-    private final OutputStream outputStream;
+    /** The connection output stream, opened with the first file part */
+    private OutputStream outputStream = null;
+    
+    /** The form fields and part headers not yet written on the connection */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
     private final Writer writer;
     private final String boundary;
 
+    private final int connectTimeout;
+    private final int uploadBufferSize;
+
+    /** The content and network lengths of the last file part */
+    private long partLength = 0;
+    private long partWireLength = 0;
+
     // for log formatting only
     @SuppressWarnings("unused")
     private final URL url;
@@ -93,16 +108,16 @@ public class MultipartUtility {
 	this.connection.setRequestProperty("Content-Type",
 		"multipart/form-data; boundary=" + boundary);
 	
-	int connectTimeout = 0;
 	if (sessionParameters != null) {
 	    connectTimeout = sessionParameters.getConnectTimeout();
+	    uploadBufferSize = sessionParameters.getUploadBufferSize();
+	} else {
+	    connectTimeout = 0;
+	    uploadBufferSize = DefaultParms.DEFAULT_UPLOAD_BUFFER_SIZE;
 	}
 	
-	TimeoutConnector timeoutConnector = new TimeoutConnector(connection,
-		connectTimeout);
-	outputStream = timeoutConnector.getOutputStream();
-	    
-	writer = new PrintWriter(new OutputStreamWriter(outputStream, CHARSET));
+	// The connection is opened only when the body length is known
+	writer = new PrintWriter(new OutputStreamWriter(pending, CHARSET));
     }
 
     public void addFormField(final String name, final String value) throws IOException {
@@ -115,7 +130,77 @@ public class MultipartUtility {
 
     public void addFilePart(final String fieldName, final File uploadFile)
 	    throws IOException {
-	final String fileName = uploadFile.getName();
+	try (InputStream inputStream = new BufferedInputStream(new FileInputStream(uploadFile));){
+	    addFilePart(fieldName, uploadFile.getName(), inputStream);
+	}
+    }
+
+    /**
+     * Adds a file part whose content is read from a stream. The stream is not
+     * closed.
+     * 
+     * @param fieldName
+     *            the name of the part
+     * @param fileName
+     *            the file name of the part
+     * @param inputStream
+     *            the content of the part
+     * @throws IOException
+     */
+    public void addFilePart(final String fieldName, final String fileName,
+	    final InputStream inputStream) throws IOException {
+	addFilePart(fieldName, fileName, inputStream, -1);
+    }
+
+    /**
+     * Adds a file part whose content is read from a stream. The stream is not
+     * closed.
+     * <p>
+     * If the length is known and the connection is not yet opened, the
+     * request is sent with a fixed length: the part must then be the last one
+     * before {@link #finish()}. Otherwise the request is sent in HTTP chunks
+     * of the upload buffer size.
+     * 
+     * @param fieldName
+     *            the name of the part
+     * @param fileName
+     *            the file name of the part
+     * @param inputStream
+     *            the content of the part
+     * @param length
+     *            the number of bytes of the content, or -1 if unknown
+     * @throws IOException
+     */
+    public void addFilePart(final String fieldName, final String fileName,
+	    final InputStream inputStream, long length) throws IOException {
+	addFilePart(fieldName, fileName, inputStream, length, null);
+    }
+
+    /**
+     * Adds a file part whose content is read from a stream and optionally
+     * compressed. The stream is not closed.
+     * <p>
+     * A compressed part is always sent in HTTP chunks: its length on the
+     * network is not known in advance. See
+     * {@link #addFilePart(String, String, InputStream, long)} for the other
+     * cases.
+     * 
+     * @param fieldName
+     *            the name of the part
+     * @param fileName
+     *            the file name of the part
+     * @param inputStream
+     *            the content of the part
+     * @param length
+     *            the number of bytes of the content, or -1 if unknown
+     * @param codec
+     *            the codec that compresses the content, or null to send it
+     *            as is
+     * @throws IOException
+     */
+    public void addFilePart(final String fieldName, final String fileName,
+	    final InputStream inputStream, long length, ContentCodec codec)
+	    throws IOException {
 	writer.append("--").append(boundary).append(CRLF)
 		.append("Content-Disposition: form-data; name=\"")
 		.append(fieldName).append("\"; filename=\"").append(fileName)
@@ -125,26 +210,49 @@ public class MultipartUtility {
 		.append(CRLF);
 
 	writer.flush();
-	//outputStream.flush();
-
-	//InputStream inputStream = null;
 
-	try (InputStream inputStream = new BufferedInputStream(new FileInputStream(uploadFile));){
-	    
-	    int readBufferSize = DefaultParms.DEFAULT_READ_BUFFER_SIZE;	    
-	    
-	    final byte[] buffer = new byte[readBufferSize];
-	    int bytesRead;
-	    while ((bytesRead = inputStream.read(buffer)) != -1) {
-		outputStream.write(buffer, 0, bytesRead);
+	if (outputStream == null) {
+	    long bodyLength = -1;
+	    if (length >= 0 && codec == null) {
+		bodyLength = pending.size() + length + getTrailer().length;
 	    }
-	    //outputStream.flush();
-	    
-	    //writer.append(CRLF); // No! will fail by adding it to the uploaded file
-	} finally {
-	    //IOUtils.closeQuietly(inputStream);
+	    openOutputStream(bodyLength);
+	}
+	writePending();
+
+	CountingOutputStream wireOut = new CountingOutputStream(outputStream);
+	OutputStream partOut = codec == null ? wireOut : codec
+		.compress(wireOut);
+
+	// Buffer sized to the part, up to the upload buffer size
+	int readBufferSize = uploadBufferSize;
+	if (length >= 0 && length < readBufferSize) {
+	    readBufferSize = (int) Math.max(length,
+		    DefaultParms.DEFAULT_READ_BUFFER_SIZE);
+	}
+
+	final byte[] buffer = new byte[readBufferSize];
+	long totalRead = 0;
+	int bytesRead;
+	while ((bytesRead = inputStream.read(buffer)) != -1) {
+	    partOut.write(buffer, 0, bytesRead);
+	    totalRead += bytesRead;
 	}
 
+	// Finishes the compression, the connection stream is left open
+	partOut.close();
+
+	partLength = totalRead;
+	partWireLength = wireOut.count;
+
+	if (length >= 0 && totalRead != length) {
+	    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL + " File part "
+		    + fileName + " has " + totalRead + " bytes instead of "
+		    + length + ".");
+	}
+
+	//writer.append(CRLF); // No! will fail by adding it to the uploaded file
+
     }
 
     public void addHeaderField(String name, String value) throws IOException{
@@ -152,9 +260,16 @@ public class MultipartUtility {
     }
 
     public void finish() throws IOException {
-	writer.append(CRLF).append("--").append(boundary).append("--")
-		.append(CRLF);
-	writer.close();
+	writer.flush();
+	
+	if (outputStream == null) {
+	    // No file part: the whole body is pending
+	    openOutputStream(pending.size() + getTrailer().length);
+	}
+	
+	writePending();
+	outputStream.write(getTrailer());
+	outputStream.close();
 
 	/*
 	final int status = connection.getResponseCode();
@@ -185,6 +300,66 @@ public class MultipartUtility {
 	 
     }
 
+    /**
+     * Opens the connection output stream. The streaming mode is set before:
+     * fixed length if the body length is known, otherwise HTTP chunks of the
+     * upload buffer size.
+     * 
+     * @param bodyLength
+     *            the length of the request body, or -1 if unknown
+     * @throws IOException
+     */
+    private void openOutputStream(long bodyLength) throws IOException {
+	if (bodyLength >= 0) {
+	    connection.setFixedLengthStreamingMode(bodyLength);
+	} else {
+	    connection.setChunkedStreamingMode(uploadBufferSize);
+	}
+
+	TimeoutConnector timeoutConnector = new TimeoutConnector(connection,
+		connectTimeout);
+	outputStream = timeoutConnector.getOutputStream();
+    }
+
+    /**
+     * Writes on the connection the form fields and part headers added since
+     * the last call.
+     * 
+     * @throws IOException
+     */
+    private void writePending() throws IOException {
+	pending.writeTo(outputStream);
+	pending.reset();
+    }
+
+    /**
+     * Returns the bytes that end the multipart body.
+     * 
+     * @return the bytes that end the multipart body
+     */
+    private byte[] getTrailer() throws IOException {
+	return (CRLF + "--" + boundary + "--" + CRLF).getBytes(CHARSET);
+    }
+
+    /**
+     * Returns the number of content bytes of the last file part.
+     * 
+     * @return the number of content bytes of the last file part
+     */
+    public long getPartLength() {
+	return partLength;
+    }
+
+    /**
+     * Returns the number of bytes written on the network for the last file
+     * part: less than its content if compressed.
+     * 
+     * @return the number of bytes written for the last file part
+     */
+    public long getPartWireLength() {
+	return partWireLength;
+    }
+
     /**
      * Returns the current HttpUrlConnection in use.
      * @return the current HttpUrlConnection in use
@@ -192,4 +367,34 @@ public class MultipartUtility {
     public HttpURLConnection getConnection() {
 	return connection;
     }
+
+    /**
+     * Counts the bytes written on the connection stream. Closing it does not
+     * close the connection stream.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+	private long count = 0;
+
+	CountingOutputStream(OutputStream out) {
+	    super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+	    out.write(b);
+	    count++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+	    out.write(b, off, len);
+	    count += len;
+	}
+
+	@Override
+	public void close() throws IOException {
+	    flush();
+	}
+    }
 }
@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Vector;
 import java.util.logging.Level;
 
+import org.kawanfw.commons.util.BinaryResponse;
 import org.kawanfw.commons.util.ClientLogger;
 import org.kawanfw.commons.util.FrameworkDebug;
 import org.kawanfw.commons.util.HtmlConverter;
@@ -83,9 +84,10 @@ public class SimpleNameValuePairConvertor {
 	    requestParamsConverted.add(simpleNameValuePairEnc);
 	}
 
-	// Add the Version
+	// Add the Version, with the suffix that asks for binary responses
 	SimpleNameValuePair basicNameValuePairEnc = new SimpleNameValuePair(
-		Parameter.VERSION, FileVersionValues.VERSION);
+		Parameter.VERSION, FileVersionValues.VERSION
+			+ BinaryResponse.VERSION_SUFFIX);
 	requestParamsConverted.add(basicNameValuePairEnc);
 
 	return requestParamsConverted;
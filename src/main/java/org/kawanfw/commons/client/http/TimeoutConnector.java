@@ -7,10 +7,20 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Allows to get the HttpUrlConnection output stream with a real timeout using a
- * thread and a timer.
+ * Allows to get the HttpUrlConnection output stream with a real timeout.
+ * <p>
+ * The TCP connect is bounded by the native HttpUrlConnection connect timeout.
+ * The whole opening (including TLS handshake or proxy tunnel) is bounded by a
+ * watchdog task scheduled on a single shared daemon thread that closes the
+ * connection if it is not established in time. No thread is created and no
+ * polling is done per request.
  * 
  * @author Nicolas de Pomereu
  *
@@ -19,14 +29,13 @@ public class TimeoutConnector {
 
     private HttpURLConnection conn = null;
 
-    /** The network output stream */
-    private OutputStream os = null;
+    /** Connection states */
+    private static final int CONNECTING = 0;
+    private static final int CONNECTED = 1;
+    private static final int EXPIRED = 2;
 
-    /** boolean that says if we are connected to remote server */
-    private boolean connected = false;
-
-    /** Exception thrown by URL.connect() */
-    private IOException exception = null;
+    /** The shared scheduler of the connect watchdogs */
+    private static final ScheduledThreadPoolExecutor WATCHDOG = createWatchdog();
 
     private int connectTimeout = 0;
 
@@ -53,51 +62,79 @@ public class TimeoutConnector {
      */
     public OutputStream getOutputStream() throws IOException,
 	    SocketTimeoutException {
-	
-	os = null;
-	connected = false;
-	exception = null;
-
-	Thread t = new Thread() {
-	    public void run() {
-		try {
-		    os = conn.getOutputStream();
-		    connected = true;
-		} catch (IOException e) {
-		    exception = e;
-		}
-	    }
-	};
 
-	t.start();
+	conn.setConnectTimeout(connectTimeout);
 
-	long begin = System.currentTimeMillis();
+	if (connectTimeout == 0) {
+	    return conn.getOutputStream();
+	}
 
-	while (true) {
+	final AtomicInteger state = new AtomicInteger(CONNECTING);
 
-	    if (connected) {
-		return os;
+	ScheduledFuture<?> watchdog = WATCHDOG.schedule(new Runnable() {
+	    @Override
+	    public void run() {
+		if (state.compareAndSet(CONNECTING, EXPIRED)) {
+		    conn.disconnect();
+		}
 	    }
-
-	    if (exception != null) {
-		throw exception;
+	}, connectTimeout, TimeUnit.MILLISECONDS);
+
+	OutputStream os = null;
+	try {
+	    os = conn.getOutputStream();
+	} catch (IOException e) {
+	    if (state.get() == EXPIRED) {
+		throw buildTimeoutException(e);
 	    }
+	    throw e;
+	} finally {
+	    watchdog.cancel(false);
+	}
 
-	    if (connectTimeout != 0) {
-		long end = System.currentTimeMillis();
-		if ((end - begin) > connectTimeout) {
-		    throw new SocketTimeoutException(
-			    "Unable to establish connection in less than required "
-				    + connectTimeout + " milliseconds.");
-		}
-	    }
+	if (!state.compareAndSet(CONNECTING, CONNECTED)) {
+	    throw buildTimeoutException(null);
+	}
 
-	    try {
-		Thread.sleep(1); // Very, very short sleep...s
-	    } catch (InterruptedException ie) {
-		ie.printStackTrace();
-	    }
+	return os;
+    }
+
+    /**
+     * Builds the exception thrown when the connection is not established in
+     * time.
+     * 
+     * @param cause
+     *            the exception thrown by the closed connection, may be null
+     * @return the timeout exception
+     */
+    private SocketTimeoutException buildTimeoutException(IOException cause) {
+	SocketTimeoutException exception = new SocketTimeoutException(
+		"Unable to establish connection in less than required "
+			+ connectTimeout + " milliseconds.");
+	if (cause != null) {
+	    exception.initCause(cause);
 	}
+	return exception;
+    }
+
+    /**
+     * Creates the shared scheduler of the connect watchdogs: one daemon
+     * thread, cancelled tasks removed at once.
+     * 
+     * @return the shared scheduler
+     */
+    private static ScheduledThreadPoolExecutor createWatchdog() {
+	ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+		1, new ThreadFactory() {
+		    @Override
+		    public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "kawanfw-connect-watchdog");
+			t.setDaemon(true);
+			return t;
+		    }
+		});
+	executor.setRemoveOnCancelPolicy(true);
+	return executor;
     }
 
 }
@@ -0,0 +1,214 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary framed response format, used instead of the SEND_OK/SEND_FAILED text
+ * lines when both the client and the server support it.
+ * <p>
+ * A binary response starts with the {@link #MAGIC} byte (a text response
+ * always starts with 'S'), followed by a status byte and by a sequence of
+ * typed fields read up to the end of the stream:
+ * <ul>
+ * <li>null: the type tag only.</li>
+ * <li>String: the type tag, the length as an int, then the UTF-8 bytes.</li>
+ * <li>Long: the type tag then the 8 bytes of the value.</li>
+ * <li>Boolean: the type tag then one byte.</li>
+ * </ul>
+ * A failed response contains the exception class name, the exception message
+ * and the remote stack trace as three fields.
+ * <p>
+ * The client asks for the binary format by appending
+ * {@link #VERSION_SUFFIX} to the version request parameter. Older servers
+ * ignore the suffix and answer in text, older clients never send it and are
+ * answered in text.
+ * 
+ * @author Nicolas de Pomereu
+ * 
+ */
+public class BinaryResponse {
+
+    /** The first byte of a binary response */
+    public static final int MAGIC = 0xB7;
+
+    /** The suffix of the version parameter that asks for binary responses */
+    public static final String VERSION_SUFFIX = "/2";
+
+    /** Status of a successful response */
+    public static final int STATUS_OK = 0;
+    /** Status of a response that contains a remote exception */
+    public static final int STATUS_FAILED = 1;
+
+    /** The field type tags */
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_STRING = 1;
+    private static final int TYPE_LONG = 2;
+    private static final int TYPE_BOOLEAN = 3;
+
+    /**
+     * Do not instantiate
+     */
+    protected BinaryResponse() {
+    }
+
+    /**
+     * Says if the client asked for binary responses
+     * 
+     * @param version
+     *            the value of the version request parameter, may be null
+     * @return true if the client asked for binary responses
+     */
+    public static boolean isRequested(String version) {
+	return version != null && version.trim().endsWith(VERSION_SUFFIX);
+    }
+
+    /**
+     * Writes a successful binary response on the servlet output stream.
+     * 
+     * @param out
+     *            the servlet output stream
+     * @param values
+     *            the values to write: null, String, Long, Integer or Boolean
+     * @throws IOException
+     */
+    public static void writeOk(OutputStream out, Object... values)
+	    throws IOException {
+	write(out, STATUS_OK, values);
+    }
+
+    /**
+     * Writes a failed binary response on the servlet output stream.
+     * 
+     * @param out
+     *            the servlet output stream
+     * @param exceptionName
+     *            the class name of the remote exception
+     * @param message
+     *            the message of the remote exception, may be null
+     * @param stackTrace
+     *            the remote stack trace, may be null
+     * @throws IOException
+     */
+    public static void writeFailed(OutputStream out, String exceptionName,
+	    String message, String stackTrace) throws IOException {
+	write(out, STATUS_FAILED, exceptionName, message, stackTrace);
+    }
+
+    /**
+     * Builds the whole response in memory and writes it with one call.
+     */
+    private static void write(OutputStream out, int status, Object... values)
+	    throws IOException {
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+	DataOutputStream dataOut = new DataOutputStream(buffer);
+
+	dataOut.writeByte(MAGIC);
+	dataOut.writeByte(status);
+
+	for (Object value : values) {
+	    if (value == null) {
+		dataOut.writeByte(TYPE_NULL);
+	    } else if (value instanceof Boolean) {
+		dataOut.writeByte(TYPE_BOOLEAN);
+		dataOut.writeBoolean((Boolean) value);
+	    } else if (value instanceof Long || value instanceof Integer) {
+		dataOut.writeByte(TYPE_LONG);
+		dataOut.writeLong(((Number) value).longValue());
+	    } else {
+		byte[] bytes = value.toString().getBytes(
+			StandardCharsets.UTF_8);
+		dataOut.writeByte(TYPE_STRING);
+		dataOut.writeInt(bytes.length);
+		dataOut.write(bytes);
+	    }
+	}
+
+	dataOut.flush();
+	buffer.writeTo(out);
+    }
+
+    /**
+     * Reads the fields of a binary response, the magic and status bytes being
+     * already consumed.
+     * 
+     * @param in
+     *            the response input stream, positioned on the first field
+     * @return the values read: null, String, Long or Boolean
+     * @throws IOException
+     *             if the response is truncated or contains an unknown type
+     */
+    public static List<Object> readValues(InputStream in) throws IOException {
+	DataInputStream dataIn = new DataInputStream(in);
+	List<Object> values = new ArrayList<Object>();
+
+	int type;
+	while ((type = dataIn.read()) != -1) {
+	    switch (type) {
+	    case TYPE_NULL:
+		values.add(null);
+		break;
+	    case TYPE_BOOLEAN:
+		values.add(dataIn.readBoolean());
+		break;
+	    case TYPE_LONG:
+		values.add(dataIn.readLong());
+		break;
+	    case TYPE_STRING:
+		int length = dataIn.readInt();
+		if (length < 0) {
+		    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+			    + " Invalid binary response string length: "
+			    + length);
+		}
+		byte[] bytes = new byte[length];
+		try {
+		    dataIn.readFully(bytes);
+		} catch (EOFException e) {
+		    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+			    + " Truncated binary response.", e);
+		}
+		values.add(new String(bytes, StandardCharsets.UTF_8));
+		break;
+	    default:
+		throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+			+ " Invalid binary response field type: " + type);
+	    }
+	}
+
+	return values;
+    }
+
+}
@@ -48,8 +48,20 @@ public class DefaultParms {
     
     /** The default Buffer size when writing a file */
     public static final int DEFAULT_WRITE_BUFFER_SIZE = 4 * KB;
+
+    /** The buffer size of server file transfers */
+    public static final int DEFAULT_TRANSFER_BUFFER_SIZE = 128 * KB;
+
+    /** The minimum number of bytes requested by a range read */
+    public static final int DEFAULT_RANGE_READ_AHEAD = 1 * MB;
     
-    /** The chunklen to HttpUrlConnection.setChunkedStreamingMode(int chunklen) */
+    /**
+     * The chunklen to HttpUrlConnection.setChunkedStreamingMode(int chunklen)
+     * 
+     * @deprecated uploads use {@link #DEFAULT_UPLOAD_BUFFER_SIZE}, or
+     *             {@link org.kawanfw.file.api.client.SessionParameters#getUploadBufferSize()}
+     */
+    @Deprecated
     public static final int DEFAULT_STREAMING_MODE_CHUNKLEN = 1024;
     // END VALUES NOT MODIFIED BY SESSION PARAMETERS
     
@@ -68,8 +80,54 @@ public class DefaultParms {
     public static final long DEFAULT_DOWNLOAD_CHUNK_LENGTH = 10 * MB;
     public static final long DEFAULT_UPLOAD_CHUNK_LENGTH = 10 * MB;
     
+    /** The default maximum number of persistent connections per route */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
+    
+    /** The default behavior for the client metadata cache */
+    public static final boolean DEFAULT_METADATA_CACHE_ON = false;
+    
+    /** The default time-to-live in milliseconds of a metadata cache entry */
+    public static final int DEFAULT_METADATA_CACHE_TTL = 5 * 1000;
+    
+    /** The default maximum number of entries of the metadata cache */
+    public static final int DEFAULT_METADATA_CACHE_MAX_ENTRIES = 10000;
+
+    /**
+     * The default time-to-live in milliseconds of the chunk state of a file
+     * whose transfer is not used anymore
+     */
+    public static final int DEFAULT_CHUNK_STATE_TTL = 24 * 60 * 60 * 1000;
+
+    /** The default maximum number of files in the chunk state registry */
+    public static final int DEFAULT_CHUNK_STATE_MAX_ENTRIES = 10000;
+
+    /** The default number of files per page of a paginated listing */
+    public static final int DEFAULT_LIST_PAGE_SIZE = 1000;
+
+    /** The default number of chunks downloaded in parallel */
+    public static final int DEFAULT_DOWNLOAD_PARALLELISM = 1;
+
+    /** The default number of chunks uploaded in parallel */
+    public static final int DEFAULT_UPLOAD_PARALLELISM = 1;
+
+    /** The default memory used to spool upload chunks: 0, all on disk */
+    public static final long DEFAULT_UPLOAD_SPOOL_MEMORY_LENGTH = 0;
+
+    /**
+     * The default upload buffer size: the chunklen of
+     * HttpUrlConnection.setChunkedStreamingMode(int chunklen) when the upload
+     * length is unknown
+     */
+    public static final int DEFAULT_UPLOAD_BUFFER_SIZE = 64 * KB;
+
+    /** The number of range requests tried after a download read failure */
+    public static final int DEFAULT_DOWNLOAD_RANGE_RETRIES = 3;
+    
     /** Http content compression */
     public static final boolean DEFAULT_COMPRESSION_ON = true;
+
+    /** The preferred codec of the compressed transfers: the fastest one */
+    public static final String DEFAULT_COMPRESSION_CODEC = "deflate";
     
     /** Color used by servlet display in all KwanSoft Frameworks */
     public static final String KAWANSOFT_COLOR = "E7403E";
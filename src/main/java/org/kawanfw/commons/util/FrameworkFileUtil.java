@@ -67,7 +67,7 @@ public class FrameworkFileUtil {
      * 
      * @return a unique string
      */
-    public static synchronized String getUniqueId() {
+    public static String getUniqueId() {
 	UUID idOne = UUID.randomUUID();
 	return idOne.toString();
     }
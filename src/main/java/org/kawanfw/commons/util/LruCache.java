@@ -0,0 +1,223 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread safe in-memory cache with a maximum number of entries and an
+ * optional expiration date per entry.
+ * <p>
+ * The entries are kept in access order: when the cache is full, the least
+ * recently used entry is evicted, and the expired entries met at the head of
+ * the order are removed on the way. An expired entry is never returned. <br>
+ * The entries are guarded by a {@code ReentrantLock}, so that the virtual
+ * threads calling the cache are not pinned to their carrier.
+ * 
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values
+ * 
+ * @author Nicolas de Pomereu
+ */
+public class LruCache<K, V> {
+
+    /** The expiration date of an entry that never expires */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    /** The entries, in access order. Guarded by lock */
+    private final LinkedHashMap<K, CacheEntry<V>> entries = new LinkedHashMap<K, CacheEntry<V>>(
+	    16, 0.75f, true);
+
+    /** The lock of the entries */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The maximum number of entries */
+    private final int maxEntries;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxEntries
+     *            the maximum number of entries
+     */
+    public LruCache(int maxEntries) {
+	if (maxEntries < 1) {
+	    throw new IllegalArgumentException("maxEntries must be >= 1!");
+	}
+
+	this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the value of a key, and marks the entry as recently used.
+     * 
+     * @param key
+     *            the key
+     * @return the value, or <code>null</code> if there is none or if it has
+     *         expired
+     */
+    public V get(K key) {
+	lock.lock();
+	try {
+	    CacheEntry<V> entry = entries.get(key);
+	    if (entry == null) {
+		return null;
+	    }
+
+	    if (entry.isExpired(System.currentTimeMillis())) {
+		entries.remove(key);
+		return null;
+	    }
+
+	    return entry.value;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Stores a value that never expires. It is removed only when it becomes
+     * the least recently used entry of a full cache.
+     * 
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     */
+    public void put(K key, V value) {
+	put(key, value, NEVER);
+    }
+
+    /**
+     * Stores a value until an expiration date.
+     * 
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @param expiresAt
+     *            the expiration date of the value, in milliseconds since the
+     *            epoch
+     */
+    public void put(K key, V value, long expiresAt) {
+	if (value == null) {
+	    throw new IllegalArgumentException("value is null!");
+	}
+
+	lock.lock();
+	try {
+	    entries.put(key, new CacheEntry<V>(value, expiresAt));
+	    evict(System.currentTimeMillis());
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Removes the entry of a key.
+     * 
+     * @param key
+     *            the key
+     */
+    public void remove(K key) {
+	lock.lock();
+	try {
+	    entries.remove(key);
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+	lock.lock();
+	try {
+	    entries.clear();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Returns the number of entries, including the expired ones not yet
+     * removed.
+     * 
+     * @return the number of entries
+     */
+    public int size() {
+	lock.lock();
+	try {
+	    return entries.size();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Removes the least recently used entries while there are too many, and
+     * the expired ones at the head of the access order. Must be called with
+     * the lock held.
+     */
+    private void evict(long now) {
+	Iterator<Map.Entry<K, CacheEntry<V>>> iterator = entries.entrySet()
+		.iterator();
+	while (iterator.hasNext()) {
+	    Map.Entry<K, CacheEntry<V>> eldest = iterator.next();
+	    if (entries.size() <= maxEntries
+		    && !eldest.getValue().isExpired(now)) {
+		break;
+	    }
+
+	    iterator.remove();
+	}
+    }
+
+    /**
+     * A value with its expiration date.
+     */
+    private static class CacheEntry<V> {
+
+	private final V value;
+
+	/** The expiration date in milliseconds */
+	private final long expiresAt;
+
+	CacheEntry(V value, long expiresAt) {
+	    this.value = value;
+	    this.expiresAt = expiresAt;
+	}
+
+	boolean isExpired(long now) {
+	    return expiresAt <= now;
+	}
+    }
+}
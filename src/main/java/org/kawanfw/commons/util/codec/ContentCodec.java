@@ -0,0 +1,74 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.util.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compression codec of the HTTP content, identified by its
+ * "Content-Encoding" name.
+ * <p>
+ * Implementations are registered with {@link ContentCodecs#register} and must
+ * be available with the same name on the client and on the server side.
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+public interface ContentCodec {
+
+    /**
+     * Returns the name of the codec, as used in the "Content-Encoding" and
+     * "Accept-Encoding" headers.
+     * 
+     * @return the name of the codec
+     */
+    public String getName();
+
+    /**
+     * Returns a stream that compresses the bytes written into the given
+     * stream. Closing the returned stream finishes the compression and closes
+     * the given stream.
+     * 
+     * @param out
+     *            the stream that receives the compressed bytes
+     * @return the compressing stream
+     * @throws IOException
+     */
+    public OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * Returns a stream that decompresses the bytes read from the given
+     * stream.
+     * 
+     * @param in
+     *            the stream of compressed bytes
+     * @return the decompressing stream
+     * @throws IOException
+     */
+    public InputStream decompress(InputStream in) throws IOException;
+
+}
@@ -0,0 +1,305 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.util.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The registry of the content codecs and the rules that decide if a content is
+ * worth compressing.
+ * <p>
+ * gzip and deflate are registered by default. Other codecs (LZ4, Zstandard,
+ * ...) may be plugged with {@link #register(ContentCodec)} on both sides.
+ * <p>
+ * The server lists its codecs in the {@link #CODECS_HEADER} response header,
+ * so that the client compresses its uploads only if the server is able to
+ * decompress them. Responses are compressed with the codecs of the standard
+ * "Accept-Encoding" request header.
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+public class ContentCodecs {
+
+    /** The response header that lists the codecs supported by the server */
+    public static final String CODECS_HEADER = "X-Kawanfw-Codecs";
+
+    /** The number of bytes sampled to estimate if a content is compressible */
+    public static final int SAMPLE_LENGTH = 4 * 1024;
+
+    /**
+     * The entropy, in bits per byte, above which a sample is considered
+     * already compressed or encrypted
+     */
+    private static final double MAX_ENTROPY = 7.5;
+
+    /** The extensions of formats that are already compressed */
+    private static final Set<String> INCOMPRESSIBLE_EXTENSIONS = new HashSet<String>(
+	    Arrays.asList("7z", "aac", "avi", "bz2", "cab", "docx", "flac",
+		    "gif", "gz", "gzip", "jar", "jpeg", "jpg", "lz4", "lzma",
+		    "m4a", "m4v", "mkv", "mov", "mp3", "mp4", "mpeg", "mpg",
+		    "odp", "ods", "odt", "ogg", "png", "pptx", "rar", "tgz",
+		    "war", "webm", "webp", "xlsx", "xz", "z", "zip", "zst"));
+
+    /** The codecs, in order of preference */
+    private static final CopyOnWriteArrayList<ContentCodec> codecs = new CopyOnWriteArrayList<ContentCodec>();
+
+    private static final Map<String, ContentCodec> codecsByName = new ConcurrentHashMap<String, ContentCodec>();
+
+    static {
+	register(new DeflateCodec());
+	register(new GzipCodec());
+    }
+
+    /**
+     * Do not instantiate
+     */
+    protected ContentCodecs() {
+    }
+
+    /**
+     * Registers a codec. A codec with the same name is replaced.
+     * 
+     * @param codec
+     *            the codec to register
+     */
+    public static synchronized void register(ContentCodec codec) {
+	if (codec == null) {
+	    throw new IllegalArgumentException("codec is null!");
+	}
+
+	String name = codec.getName().toLowerCase(Locale.ENGLISH);
+	ContentCodec previous = codecsByName.put(name, codec);
+	if (previous != null) {
+	    codecs.remove(previous);
+	}
+	codecs.add(codec);
+    }
+
+    /**
+     * Returns the codec with the given name.
+     * 
+     * @param name
+     *            the codec name, may be null
+     * @return the codec, or null if none is registered with this name
+     */
+    public static ContentCodec get(String name) {
+	if (name == null) {
+	    return null;
+	}
+	return codecsByName.get(name.trim().toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Returns the names of the registered codecs, in order of preference,
+     * separated by commas: the value of the {@link #CODECS_HEADER} header.
+     * 
+     * @return the names of the registered codecs
+     */
+    public static String getNames() {
+	return getNames(null);
+    }
+
+    /**
+     * Returns the names of the registered codecs separated by commas, the
+     * preferred one first: the value of the "Accept-Encoding" header.
+     * 
+     * @param preferredName
+     *            the name of the preferred codec, may be null
+     * @return the names of the registered codecs
+     */
+    public static String getNames(String preferredName) {
+	ContentCodec preferred = get(preferredName);
+
+	StringBuilder sb = new StringBuilder();
+	if (preferred != null) {
+	    sb.append(preferred.getName());
+	}
+	for (ContentCodec codec : codecs) {
+	    if (codec == preferred) {
+		continue;
+	    }
+	    if (sb.length() > 0) {
+		sb.append(", ");
+	    }
+	    sb.append(codec.getName());
+	}
+	return sb.toString();
+    }
+
+    /**
+     * Chooses a codec among the names of a header such as "Accept-Encoding".
+     * The preferred codec wins if it is accepted, otherwise the first
+     * accepted name, in the order of the header, of a registered codec. Names
+     * with a zero quality value are ignored.
+     * 
+     * @param acceptedNames
+     *            the value of the header, may be null
+     * @param preferredName
+     *            the name of the preferred codec, may be null
+     * @return the chosen codec, or null if no codec is accepted
+     */
+    public static ContentCodec negotiate(String acceptedNames,
+	    String preferredName) {
+	if (acceptedNames == null || acceptedNames.trim().isEmpty()) {
+	    return null;
+	}
+
+	Set<String> accepted = new LinkedHashSet<String>();
+	for (String token : acceptedNames.split(",")) {
+	    String[] parts = token.split(";");
+	    String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+	    if (parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?")) {
+		continue;
+	    }
+	    accepted.add(name);
+	}
+
+	ContentCodec preferred = get(preferredName);
+	if (preferred != null && accepted.contains(preferred.getName().toLowerCase(
+		Locale.ENGLISH))) {
+	    return preferred;
+	}
+
+	for (String name : accepted) {
+	    ContentCodec codec = get(name);
+	    if (codec != null) {
+		return codec;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Says if a file name has the extension of an already compressed format.
+     * The chunk suffixes ".n.kawanfw.chunk" are ignored.
+     * 
+     * @param fileName
+     *            the file name, may be null
+     * @return true if the extension is the one of a compressed format
+     */
+    public static boolean hasIncompressibleExtension(String fileName) {
+	if (fileName == null) {
+	    return false;
+	}
+
+	String name = fileName.toLowerCase(Locale.ENGLISH);
+	if (name.endsWith(".kawanfw.chunk")) {
+	    name = name.substring(0, name.length() - ".kawanfw.chunk".length());
+	    int dot = name.lastIndexOf('.');
+	    if (dot > 0) {
+		name = name.substring(0, dot);
+	    }
+	}
+
+	int dot = name.lastIndexOf('.');
+	if (dot < 0 || dot < name.lastIndexOf('/')
+		|| dot < name.lastIndexOf('\\')) {
+	    return false;
+	}
+	return INCOMPRESSIBLE_EXTENSIONS.contains(name.substring(dot + 1));
+    }
+
+    /**
+     * Estimates if a content is compressible from a sample of its first
+     * bytes: the Shannon entropy of an already compressed or encrypted
+     * content is close to 8 bits per byte.
+     * 
+     * @param sample
+     *            the buffer that contains the sample
+     * @param length
+     *            the number of bytes of the sample
+     * @return true if the sample looks compressible
+     */
+    public static boolean isCompressibleSample(byte[] sample, int length) {
+	if (length <= 0) {
+	    return false;
+	}
+
+	int[] counts = new int[256];
+	for (int i = 0; i < length; i++) {
+	    counts[sample[i] & 0xFF]++;
+	}
+
+	double entropy = 0;
+	for (int count : counts) {
+	    if (count > 0) {
+		double p = (double) count / length;
+		entropy -= p * (Math.log(p) / Math.log(2));
+	    }
+	}
+
+	return entropy < MAX_ENTROPY;
+    }
+
+    /**
+     * Says if a content is worth compressing, from its name and from a
+     * sample of its first bytes read from a stream. The stream must support
+     * mark/reset: it is reset to its position before the sample.
+     * 
+     * @param fileName
+     *            the file name of the content, may be null
+     * @param in
+     *            the content stream, supporting mark/reset
+     * @return true if the content is worth compressing
+     * @throws IOException
+     */
+    public static boolean isCompressible(String fileName, InputStream in)
+	    throws IOException {
+	if (hasIncompressibleExtension(fileName)) {
+	    return false;
+	}
+
+	if (!in.markSupported()) {
+	    throw new IllegalArgumentException(
+		    "stream must support mark/reset!");
+	}
+
+	byte[] sample = new byte[SAMPLE_LENGTH];
+	in.mark(SAMPLE_LENGTH);
+	int length = 0;
+	try {
+	    int n;
+	    while (length < SAMPLE_LENGTH
+		    && (n = in.read(sample, length, SAMPLE_LENGTH - length)) != -1) {
+		length += n;
+	    }
+	} finally {
+	    in.reset();
+	}
+
+	return isCompressibleSample(sample, length);
+    }
+
+}
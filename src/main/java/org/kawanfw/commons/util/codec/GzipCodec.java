@@ -0,0 +1,63 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.commons.util.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The gzip codec: the best ratio of the standard codecs, understood by all
+ * HTTP stacks.
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+public class GzipCodec implements ContentCodec {
+
+    /** The codec name */
+    public static final String NAME = "gzip";
+
+    /** The buffer size of the compression streams */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public String getName() {
+	return NAME;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+	return new GZIPOutputStream(out, BUFFER_SIZE);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+	return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+
+}
@@ -0,0 +1,538 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.client;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.kawanfw.commons.util.ClientLogger;
+import org.kawanfw.commons.util.DefaultParms;
+import org.kawanfw.commons.util.FrameworkDebug;
+import org.kawanfw.file.api.client.exception.InvalidLoginException;
+
+/**
+ * Thread-safe asynchronous facade of a {@link RemoteSession}. <br>
+ * <br>
+ * Each operation returns at once a {@code CompletableFuture} and is run by an
+ * {@code Executor}. A {@code RemoteSession} is not thread-safe: each running
+ * operation uses its own clone of the session, taken from a small set of
+ * idle clones and given back when the operation is done. All the clones
+ * share the HTTP connection pool and the metadata cache of the session, so
+ * one {@code AsyncRemoteSession} may serve many concurrent operations without
+ * a {@code clone()} per thread. <br>
+ * <br>
+ * If an operation fails, its future is completed exceptionally with the
+ * exception thrown by the synchronous API ({@code IOException},
+ * {@code RemoteException}, {@code InvalidLoginException}, ...). <br>
+ * <br>
+ * Example: <blockquote>
+ * 
+ * <pre>
+ * RemoteSession remoteSession = new RemoteSession(url, username, password);
+ * 
+ * // On Java 21+, each operation may run in its own virtual thread:
+ * // new AsyncRemoteSession(remoteSession,
+ * //         Executors.newVirtualThreadPerTaskExecutor());
+ * AsyncRemoteSession asyncSession = new AsyncRemoteSession(remoteSession);
+ * 
+ * CompletableFuture&lt;Long&gt; length = asyncSession.length(&quot;/Koala.jpg&quot;);
+ * CompletableFuture&lt;Void&gt; upload = asyncSession.upload(
+ * 	new File(&quot;c:\\Koala.jpg&quot;), &quot;/mydir/Koala.jpg&quot;);
+ * 
+ * // Any RemoteFile or RemoteSession operation may be run:
+ * CompletableFuture&lt;Boolean&gt; created = asyncSession
+ * 	.submit(new RemoteSessionTask&lt;Boolean&gt;() {
+ * 	    public Boolean call(RemoteSession session) {
+ * 		return new RemoteFile(session, &quot;/mydir/sub&quot;).mkdirs();
+ * 	    }
+ * 	});
+ * </pre>
+ * 
+ * </blockquote>
+ * 
+ * @see org.kawanfw.file.api.client.RemoteSession
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+
+public class AsyncRemoteSession {
+
+    /** For debug info */
+    private static boolean DEBUG = FrameworkDebug.isSet(AsyncRemoteSession.class);
+
+    /** The thread counter for names */
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /** The session cloned for each operation */
+    private RemoteSession remoteSession = null;
+
+    /** The executor of the operations */
+    private Executor executor = null;
+
+    /** The clones of the session not in use */
+    private Queue<RemoteSession> idleSessions = new ConcurrentLinkedQueue<RemoteSession>();
+
+    /** The number of clones in idleSessions */
+    private AtomicInteger idleCount = new AtomicInteger();
+
+    /** The max number of idle clones kept for reuse */
+    private int maxIdleSessions = 0;
+
+    /** Says if logoff() has been called */
+    private volatile boolean closed = false;
+
+    /**
+     * Creates an asynchronous session that runs the operations on a shared
+     * pool of daemon threads.
+     * 
+     * @param remoteSession
+     *            the established session to use
+     * @throws IllegalArgumentException
+     *             if remoteSession is null
+     */
+    public AsyncRemoteSession(RemoteSession remoteSession)
+	    throws IllegalArgumentException {
+	this(remoteSession, getDefaultExecutor());
+    }
+
+    /**
+     * Creates an asynchronous session that runs the operations on the
+     * specified executor, for example a virtual thread per task executor.
+     * 
+     * @param remoteSession
+     *            the established session to use
+     * @param executor
+     *            the executor of the operations
+     * @throws IllegalArgumentException
+     *             if remoteSession or executor is null
+     */
+    public AsyncRemoteSession(RemoteSession remoteSession, Executor executor)
+	    throws IllegalArgumentException {
+
+	if (remoteSession == null) {
+	    throw new IllegalArgumentException("remoteSession can not be null!");
+	}
+
+	if (executor == null) {
+	    throw new IllegalArgumentException("executor can not be null!");
+	}
+
+	this.remoteSession = remoteSession;
+	this.executor = executor;
+
+	SessionParameters sessionParameters = remoteSession
+		.getSessionParameters();
+	this.maxIdleSessions = sessionParameters != null ? sessionParameters
+		.getMaxConnectionsPerRoute()
+		: DefaultParms.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    }
+
+    /**
+     * Returns the session cloned for each operation.
+     * 
+     * @return the session cloned for each operation
+     */
+    public RemoteSession getRemoteSession() {
+	return remoteSession;
+    }
+
+    /**
+     * Returns the executor of the operations.
+     * 
+     * @return the executor of the operations
+     */
+    public Executor getExecutor() {
+	return executor;
+    }
+
+    /**
+     * Runs asynchronously an operation with a session reserved for it.
+     * 
+     * @param task
+     *            the operation to run
+     * @return the future result of the operation
+     * @throws IllegalArgumentException
+     *             if task is null
+     */
+    public <T> CompletableFuture<T> submit(final RemoteSessionTask<T> task)
+	    throws IllegalArgumentException {
+
+	if (task == null) {
+	    throw new IllegalArgumentException("task can not be null!");
+	}
+
+	final CompletableFuture<T> future = new CompletableFuture<T>();
+
+	if (closed) {
+	    future.completeExceptionally(new InvalidLoginException(
+		    RemoteSession.REMOTE_SESSION_IS_CLOSED));
+	    return future;
+	}
+
+	try {
+	    executor.execute(new Runnable() {
+		@Override
+		public void run() {
+		    if (future.isDone()) {
+			return; // Cancelled before start
+		    }
+
+		    RemoteSession session = null;
+		    try {
+			session = borrowSession();
+			future.complete(task.call(session));
+		    } catch (Throwable t) {
+			future.completeExceptionally(t);
+		    } finally {
+			if (session != null) {
+			    giveBackSession(session);
+			}
+		    }
+		}
+	    });
+	} catch (RejectedExecutionException e) {
+	    future.completeExceptionally(e);
+	}
+
+	return future;
+    }
+
+    /**
+     * Calls asynchronously a remote Java method.
+     * 
+     * @param methodName
+     *            the full method name to call in the format
+     *            <code>org.acme.config.package.MyClass.myMethod</code>
+     * @param params
+     *            the parameters passed to the method
+     * @return the future result of the Java call as {@code String}
+     * 
+     * @see RemoteSession#call(String, Object...)
+     */
+    public CompletableFuture<String> call(final String methodName,
+	    final Object... params) {
+	return submit(new RemoteSessionTask<String>() {
+	    @Override
+	    public String call(RemoteSession session) throws Exception {
+		return session.call(methodName, params);
+	    }
+	});
+    }
+
+    /**
+     * Returns asynchronously the Java version of the servlet container on the
+     * remote server.
+     * 
+     * @return the future remote Java version
+     * 
+     * @see RemoteSession#getRemoteJavaVersion()
+     */
+    public CompletableFuture<String> getRemoteJavaVersion() {
+	return submit(new RemoteSessionTask<String>() {
+	    @Override
+	    public String call(RemoteSession session) throws Exception {
+		return session.getRemoteJavaVersion();
+	    }
+	});
+    }
+
+    /**
+     * Tests asynchronously whether the remote file exists.
+     * 
+     * @param pathname
+     *            the pathname on host with "/" as file separator
+     * @return the future result of {@link RemoteFile#exists()}
+     */
+    public CompletableFuture<Boolean> exists(final String pathname) {
+	return submit(new RemoteSessionTask<Boolean>() {
+	    @Override
+	    public Boolean call(RemoteSession session) throws Exception {
+		return new RemoteFile(session, pathname).exists();
+	    }
+	});
+    }
+
+    /**
+     * Returns asynchronously the length of the remote file.
+     * 
+     * @param pathname
+     *            the pathname on host with "/" as file separator
+     * @return the future result of {@link RemoteFile#length()}
+     */
+    public CompletableFuture<Long> length(final String pathname) {
+	return submit(new RemoteSessionTask<Long>() {
+	    @Override
+	    public Long call(RemoteSession session) throws Exception {
+		return new RemoteFile(session, pathname).length();
+	    }
+	});
+    }
+
+    /**
+     * Returns asynchronously the total length of a list of remote files.
+     * 
+     * @param pathnames
+     *            the pathnames on host with "/" as file separator
+     * @return the future result of {@link RemoteSession#length(List)}
+     */
+    public CompletableFuture<Long> length(final List<String> pathnames) {
+	return submit(new RemoteSessionTask<Long>() {
+	    @Override
+	    public Long call(RemoteSession session) throws Exception {
+		return session.length(pathnames);
+	    }
+	});
+    }
+
+    /**
+     * Returns asynchronously the attributes of a list of remote files.
+     * 
+     * @param pathnames
+     *            the pathnames on host with "/" as file separator
+     * @return the future result of {@link RemoteSession#stat(List)}
+     */
+    public CompletableFuture<List<RemoteFileAttributes>> stat(
+	    final List<String> pathnames) {
+	return submit(new RemoteSessionTask<List<RemoteFileAttributes>>() {
+	    @Override
+	    public List<RemoteFileAttributes> call(RemoteSession session)
+		    throws Exception {
+		return session.stat(pathnames);
+	    }
+	});
+    }
+
+    /**
+     * Deletes asynchronously the remote file or directory.
+     * 
+     * @param pathname
+     *            the pathname on host with "/" as file separator
+     * @return the future result of {@link RemoteFile#delete()}
+     */
+    public CompletableFuture<Boolean> delete(final String pathname) {
+	return submit(new RemoteSessionTask<Boolean>() {
+	    @Override
+	    public Boolean call(RemoteSession session) throws Exception {
+		return new RemoteFile(session, pathname).delete();
+	    }
+	});
+    }
+
+    /**
+     * Creates asynchronously the remote directory, including the parent
+     * directories.
+     * 
+     * @param pathname
+     *            the pathname on host with "/" as file separator
+     * @return the future result of {@link RemoteFile#mkdirs()}
+     */
+    public CompletableFuture<Boolean> mkdirs(final String pathname) {
+	return submit(new RemoteSessionTask<Boolean>() {
+	    @Override
+	    public Boolean call(RemoteSession session) throws Exception {
+		return new RemoteFile(session, pathname).mkdirs();
+	    }
+	});
+    }
+
+    /**
+     * Lists asynchronously the files of the remote directory.
+     * 
+     * @param pathname
+     *            the pathname on host with "/" as file separator
+     * @return the future result of {@link RemoteFile#list()}
+     */
+    public CompletableFuture<String[]> list(final String pathname) {
+	return submit(new RemoteSessionTask<String[]>() {
+	    @Override
+	    public String[] call(RemoteSession session) throws Exception {
+		return new RemoteFile(session, pathname).list();
+	    }
+	});
+    }
+
+    /**
+     * Uploads asynchronously a local file to a remote file.
+     * 
+     * @param file
+     *            the local file to upload
+     * @param pathname
+     *            the pathname on host with "/" as file separator
+     * @return the future completed when the upload is done
+     * @throws IllegalArgumentException
+     *             if file is null
+     */
+    public CompletableFuture<Void> upload(final File file,
+	    final String pathname) throws IllegalArgumentException {
+
+	if (file == null) {
+	    throw new IllegalArgumentException("file can not be null!");
+	}
+
+	return submit(new RemoteSessionTask<Void>() {
+	    @Override
+	    public Void call(RemoteSession session) throws Exception {
+		try (OutputStream out = new RemoteOutputStream(session,
+			pathname, file.length())) {
+		    Files.copy(file.toPath(), out);
+		}
+		return null;
+	    }
+	});
+    }
+
+    /**
+     * Downloads asynchronously a remote file to a local file. The local file
+     * is replaced if it exists.
+     * 
+     * @param pathname
+     *            the pathname on host with "/" as file separator
+     * @param file
+     *            the local file to create
+     * @return the future completed when the download is done
+     * @throws IllegalArgumentException
+     *             if file is null
+     */
+    public CompletableFuture<Void> download(final String pathname,
+	    final File file) throws IllegalArgumentException {
+
+	if (file == null) {
+	    throw new IllegalArgumentException("file can not be null!");
+	}
+
+	return submit(new RemoteSessionTask<Void>() {
+	    @Override
+	    public Void call(RemoteSession session) throws Exception {
+		try (InputStream in = new RemoteInputStream(session, pathname)) {
+		    Files.copy(in, file.toPath(),
+			    StandardCopyOption.REPLACE_EXISTING);
+		}
+		return null;
+	    }
+	});
+    }
+
+    /**
+     * Logs off the session. The operations submitted after are completed
+     * exceptionally with an {@code InvalidLoginException}. The executor
+     * passed to the constructor is not shut down.
+     */
+    public void logoff() {
+	closed = true;
+	idleSessions.clear();
+	idleCount.set(0);
+	remoteSession.logoff();
+    }
+
+    /**
+     * Returns a clone of the session for one operation: an idle one if any,
+     * otherwise a new one.
+     * 
+     * @return a clone of the session
+     * @throws InvalidLoginException
+     *             if the session is logged off
+     */
+    private RemoteSession borrowSession() throws InvalidLoginException {
+	if (closed) {
+	    throw new InvalidLoginException(
+		    RemoteSession.REMOTE_SESSION_IS_CLOSED);
+	}
+
+	RemoteSession session = idleSessions.poll();
+	if (session != null) {
+	    idleCount.decrementAndGet();
+	    return session;
+	}
+
+	debug("new session clone");
+	return remoteSession.clone();
+    }
+
+    /**
+     * Keeps the clone of the session for the next operations, unless enough
+     * clones are idle.
+     * 
+     * @param session
+     *            the clone of the session used by an operation
+     */
+    private void giveBackSession(RemoteSession session) {
+	if (closed) {
+	    return;
+	}
+
+	if (idleCount.incrementAndGet() > maxIdleSessions) {
+	    idleCount.decrementAndGet();
+	    return;
+	}
+
+	idleSessions.offer(session);
+    }
+
+    /**
+     * Returns the default executor: a shared cached pool of daemon threads.
+     * 
+     * @return the default executor
+     */
+    private static ExecutorService getDefaultExecutor() {
+	return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Holds the default executor, created on first use without locking.
+     */
+    private static class DefaultExecutorHolder {
+	private static final ExecutorService EXECUTOR = Executors
+		.newCachedThreadPool(new ThreadFactory() {
+		    @Override
+		    public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "kawanfw-async-"
+				+ THREAD_NUMBER.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		    }
+		});
+    }
+
+    private void debug(String s) {
+	if (DEBUG) {
+	    ClientLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+}
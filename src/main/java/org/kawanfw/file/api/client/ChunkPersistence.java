@@ -0,0 +1,58 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.client;
+
+/**
+ * Defines how {@link RemoteInputStream} keeps the downloaded chunks on the
+ * client side for the recovery of interrupted downloads.
+ * 
+ * @see SessionParameters#setDownloadChunkPersistence(ChunkPersistence)
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+public enum ChunkPersistence {
+
+    /**
+     * Each chunk is written to a local chunk file while it is read. A new
+     * stream on the same remote file reuses the complete chunk files. This is
+     * the default.
+     */
+    SYNC,
+
+    /**
+     * As {@link #SYNC}, but the chunk files are written by a background
+     * thread, so that disk latency does not slow down the network read.
+     */
+    ASYNC,
+
+    /**
+     * No local chunk file. If the connection fails during a read, the
+     * remaining bytes are requested again by range from the current position.
+     * Fits streaming consumers that do not need a local copy.
+     */
+    NONE
+
+}
@@ -0,0 +1,352 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.kawanfw.commons.client.http.HttpTransfer;
+import org.kawanfw.commons.client.http.HttpTransferUtil;
+import org.kawanfw.commons.util.ClientLogger;
+import org.kawanfw.commons.util.FrameworkDebug;
+import org.kawanfw.commons.util.Tag;
+import org.kawanfw.commons.util.TransferStatus;
+import org.kawanfw.file.api.client.exception.InvalidLoginException;
+import org.kawanfw.file.api.util.client.ApiInputStreamDownloader;
+import org.kawanfw.file.api.util.client.ExceptionThrower;
+import org.kawanfw.file.api.util.client.FileChunkStore;
+import org.kawanfw.file.util.parms.ReturnCode;
+
+/**
+ * Downloads the chunks of a remote file in parallel, each on its own
+ * connection, for a {@link RemoteInputStream}.
+ * <p>
+ * No more than <code>parallelism</code> chunks are downloaded ahead of the
+ * reader: a chunk is requested when the reader takes the oldest one. Each chunk
+ * is fully written to its chunk file before being delivered, so chunks are
+ * always delivered in order and the {@link FileChunkStore} recovery is kept: a
+ * chunk is stored only once complete, and a chunk already stored is not
+ * downloaded again.
+ * 
+ * @author Nicolas de Pomereu
+ */
+class ParallelChunkDownloader {
+
+    /** For debug info */
+    private static boolean DEBUG = FrameworkDebug
+	    .isSet(ParallelChunkDownloader.class);
+
+    /** The thread counter for names */
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /** The file session in use */
+    private RemoteSession remoteSession = null;
+
+    /** The remote file's pathname */
+    private String pathname = null;
+
+    /** The remote file length */
+    private long remoteFileLength = 0;
+
+    /** The unique file used as container and reference for download */
+    private File fileUnique = null;
+
+    /** The chunk length */
+    private long chunkLength = 0;
+
+    /** The number of chunks of the remote file */
+    private int chunkCount = 0;
+
+    /** The number of chunks downloaded at the same time */
+    private int parallelism = 1;
+
+    /** The download threads */
+    private ExecutorService executor = null;
+
+    /** The chunk downloads in progress, in chunk order */
+    private Deque<Future<File>> window = new ArrayDeque<Future<File>>();
+
+    /** The last chunk submitted for download */
+    private int lastSubmitted = 0;
+
+    /** Set on close: downloads in progress are abandoned */
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor.
+     * 
+     * @param remoteSession
+     *            the file session in use
+     * @param pathname
+     *            the remote file's pathname
+     * @param remoteFileLength
+     *            the remote file length
+     * @param fileUnique
+     *            the unique file used as reference for the chunk files
+     * @param chunkLength
+     *            the chunk length, &gt; 0
+     * @param parallelism
+     *            the number of chunks downloaded at the same time
+     */
+    public ParallelChunkDownloader(RemoteSession remoteSession,
+	    String pathname, long remoteFileLength, File fileUnique,
+	    long chunkLength, int parallelism) {
+	this.remoteSession = remoteSession;
+	this.pathname = pathname;
+	this.remoteFileLength = remoteFileLength;
+	this.fileUnique = fileUnique;
+	this.chunkLength = chunkLength;
+	this.chunkCount = (int) ((remoteFileLength + chunkLength - 1) / chunkLength);
+	this.parallelism = Math.max(1, Math.min(parallelism, chunkCount));
+
+	this.executor = Executors.newFixedThreadPool(this.parallelism,
+		new ThreadFactory() {
+		    @Override
+		    public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "kawanfw-chunk-download-"
+				+ THREAD_NUMBER.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		    }
+		});
+    }
+
+    /**
+     * Returns the input stream on a chunk. Chunks must be asked in order,
+     * starting at 1.
+     * 
+     * @param cpt
+     *            the chunk number, starting at 1
+     * @return the input stream on the chunk file
+     * @throws IOException
+     *             if the chunk download failed
+     */
+    public InputStream nextChunk(int cpt) throws IOException {
+
+	if (closed) {
+	    throw new IOException(Tag.PRODUCT + " chunk download is closed.");
+	}
+
+	// Keep the window full, the chunk asked is the oldest one
+	while (lastSubmitted < chunkCount && window.size() < parallelism) {
+	    lastSubmitted++;
+	    window.addLast(executor.submit(new ChunkTask(lastSubmitted)));
+	}
+
+	Future<File> future = window.pollFirst();
+	if (future == null) {
+	    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+		    + " no chunk to download: " + cpt);
+	}
+
+	File fileChunk = null;
+	try {
+	    fileChunk = future.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IOException(e);
+	} catch (ExecutionException e) {
+	    Throwable cause = e.getCause();
+	    if (cause instanceof IOException) {
+		throw (IOException) cause;
+	    }
+	    if (cause instanceof RuntimeException) {
+		throw (RuntimeException) cause;
+	    }
+	    throw new IOException(cause);
+	}
+
+	// Refill now so that the next download starts while this one is read
+	if (lastSubmitted < chunkCount) {
+	    lastSubmitted++;
+	    window.addLast(executor.submit(new ChunkTask(lastSubmitted)));
+	}
+
+	return new BufferedInputStream(new FileInputStream(fileChunk));
+    }
+
+    /**
+     * Abandons the downloads in progress and stops the download threads. The
+     * chunks already complete are kept for recovery.
+     */
+    public void close() {
+	closed = true;
+	for (Future<File> future : window) {
+	    future.cancel(true);
+	}
+	window.clear();
+	executor.shutdownNow();
+    }
+
+    /**
+     * Returns the expected length of a chunk.
+     * 
+     * @param cpt
+     *            the chunk number, starting at 1
+     * @return the expected length of the chunk
+     */
+    private long expectedLength(int cpt) {
+	return Math.min(chunkLength, remoteFileLength - (cpt - 1) * chunkLength);
+    }
+
+    /**
+     * Throws the exception sent by the server in place of the chunk bytes.
+     * 
+     * @param fileChunk
+     *            the chunk file that contains the server response
+     * @throws IOException
+     *             the exception sent by the server, or an IOException if the
+     *             content is not a server response
+     */
+    private void throwChunkException(File fileChunk) throws IOException {
+	String content = FileUtils.readFileToString(fileChunk,
+		Charset.defaultCharset());
+
+	if (content.startsWith(TransferStatus.SEND_FAILED)) {
+	    BufferedReader reader = new BufferedReader(
+		    new StringReader(content));
+	    reader.readLine(); // Read The status line
+	    HttpTransferUtil.throwTheRemoteException(reader);
+	}
+
+	if (content.startsWith(TransferStatus.SEND_OK)) {
+	    BufferedReader reader = new BufferedReader(
+		    new StringReader(content));
+	    reader.readLine(); // Read The status line
+	    String receive = reader.readLine();
+
+	    if (receive != null) {
+		if (receive.startsWith(ReturnCode.INVALID_LOGIN_OR_PASSWORD)) {
+		    throw new InvalidLoginException(
+			    Tag.PRODUCT + " File Session is closed.");
+		}
+
+		if (receive.startsWith(Tag.FileNotFoundException)) {
+		    throw new FileNotFoundException(
+			    "Remote file does not exists: " + pathname);
+		}
+	    }
+	}
+
+	throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+		+ " Invalid chunk length: " + fileChunk.length());
+    }
+
+    /**
+     * Downloads one chunk into its chunk file.
+     */
+    private class ChunkTask implements Callable<File> {
+
+	/** The chunk number, starting at 1 */
+	private int cpt = 0;
+
+	public ChunkTask(int cpt) {
+	    this.cpt = cpt;
+	}
+
+	@Override
+	public File call() throws Exception {
+
+	    FileChunkStore fileChunkStore = new FileChunkStore(
+		    remoteSession.getChunkStateRegistry(),
+		    remoteSession.getUsername(), fileUnique, pathname);
+
+	    String remoteFileChunk = pathname + "." + cpt + ".kawanfw.chunk";
+	    File fileChunk = fileChunkStore.getChunkFile(cpt);
+
+	    // No re-download if file chunk exists and is complete
+	    if (fileChunkStore.alreadyDownloaded(cpt)) {
+		debug("fileChunk exists, no download: " + fileChunk);
+		return fileChunk;
+	    }
+
+	    ExceptionThrower.throwSocketExceptionIfFlagFileExists();
+
+	    debug("downloadOneChunk " + remoteFileChunk + " " + fileChunk);
+
+	    // Each chunk is downloaded on its own connection
+	    HttpTransfer httpTransfer = remoteSession.createHttpTransfer();
+	    ApiInputStreamDownloader apiInputStreamDownloader = new ApiInputStreamDownloader(
+		    remoteSession.getUsername(),
+		    remoteSession.getAuthenticationToken(), httpTransfer);
+
+	    boolean complete = false;
+	    try {
+		InputStream in = apiInputStreamDownloader.downloadOneChunk(
+			null, remoteFileChunk, chunkLength);
+		try (OutputStream out = new BufferedOutputStream(
+			new FileOutputStream(fileChunk))) {
+		    IOUtils.copy(in, out);
+		} finally {
+		    in.close();
+		}
+
+		if (fileChunk.length() != expectedLength(cpt)) {
+		    throwChunkException(fileChunk);
+		}
+
+		complete = true;
+	    } finally {
+		if (!complete) {
+		    httpTransfer.close();
+		    FileUtils.deleteQuietly(fileChunk);
+		}
+	    }
+
+	    // Stored only once complete, for reuse in case of interruptions
+	    fileChunkStore.add(cpt);
+	    return fileChunk;
+	}
+    }
+
+    private void debug(String s) {
+	if (DEBUG) {
+	    ClientLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+
+}
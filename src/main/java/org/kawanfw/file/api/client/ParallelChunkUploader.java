@@ -0,0 +1,195 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.client;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.kawanfw.commons.util.Tag;
+
+/**
+ * Uploads the chunks of a {@link RemoteOutputStream} in background, each on
+ * its own connection, while the writer fills the next chunk.
+ * <p>
+ * No more than <code>parallelism</code> chunks are uploaded at the same time:
+ * the writer waits for the oldest upload when the limit is reached. The first
+ * chunk is always complete before the next ones are sent, because the server
+ * resets the remote file on the first chunk. The next chunks may arrive in any
+ * order: the server writes each one at its own offset.
+ * <p>
+ * Once a chunk upload has failed, all the next calls fail: the remote file
+ * is never completed with a missing chunk.
+ * 
+ * @author Nicolas de Pomereu
+ */
+public class ParallelChunkUploader {
+
+    /** The thread counter for names */
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /** The number of chunks uploaded at the same time */
+    private int parallelism = 1;
+
+    /** The upload threads */
+    private ExecutorService executor = null;
+
+    /** The chunk uploads in progress, in chunk order */
+    private Deque<Future<Void>> window = new ArrayDeque<Future<Void>>();
+
+    /** The first chunk upload, null once complete */
+    private Future<Void> firstChunk = null;
+
+    /** The first upload failure, thrown again on each call */
+    private IOException failure = null;
+
+    /**
+     * Constructor.
+     * 
+     * @param parallelism
+     *            the number of chunks uploaded at the same time
+     */
+    public ParallelChunkUploader(int parallelism) {
+	this.parallelism = Math.max(1, parallelism);
+
+	this.executor = Executors.newFixedThreadPool(this.parallelism,
+		new ThreadFactory() {
+		    @Override
+		    public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "kawanfw-chunk-upload-"
+				+ THREAD_NUMBER.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		    }
+		});
+    }
+
+    /**
+     * Submits the upload of a chunk. Waits if <code>parallelism</code> uploads
+     * are in progress or if the first chunk is not uploaded yet.
+     * 
+     * @param cpt
+     *            the chunk number, starting at 1
+     * @param upload
+     *            the upload of the chunk
+     * @throws IOException
+     *             if a previous chunk upload failed
+     */
+    public void submit(int cpt, Callable<Void> upload) throws IOException {
+
+	if (failure != null) {
+	    throw failure;
+	}
+
+	// Report the failures as soon as possible
+	while (!window.isEmpty() && window.peekFirst().isDone()) {
+	    await(window.pollFirst());
+	}
+
+	if (firstChunk != null) {
+	    await(firstChunk);
+	    firstChunk = null;
+	}
+
+	while (window.size() >= parallelism) {
+	    await(window.pollFirst());
+	}
+
+	Future<Void> future = executor.submit(upload);
+	window.addLast(future);
+
+	if (cpt == 1) {
+	    firstChunk = future;
+	}
+    }
+
+    /**
+     * Waits for the end of all chunk uploads.
+     * 
+     * @throws IOException
+     *             if a chunk upload failed
+     */
+    public void awaitAll() throws IOException {
+
+	if (failure != null) {
+	    throw failure;
+	}
+
+	while (!window.isEmpty()) {
+	    await(window.pollFirst());
+	}
+	firstChunk = null;
+    }
+
+    /**
+     * Abandons the uploads in progress and stops the upload threads.
+     */
+    public void close() {
+	for (Future<Void> future : window) {
+	    future.cancel(true);
+	}
+	window.clear();
+	executor.shutdownNow();
+    }
+
+    /**
+     * Waits for the end of a chunk upload.
+     * 
+     * @param future
+     *            the chunk upload
+     * @throws IOException
+     *             if the chunk upload failed
+     * @throws RuntimeException
+     *             if the chunk upload failed with a RuntimeException
+     */
+    private void await(Future<Void> future) throws IOException {
+	try {
+	    future.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    failure = new IOException(Tag.PRODUCT
+		    + " chunk upload interrupted.", e);
+	    throw failure;
+	} catch (ExecutionException e) {
+	    Throwable cause = e.getCause();
+	    failure = cause instanceof IOException ? (IOException) cause
+		    : new IOException(cause);
+
+	    // Thrown as is the first time, wrapped in failure next times
+	    if (cause instanceof RuntimeException) {
+		throw (RuntimeException) cause;
+	    }
+	    throw failure;
+	}
+    }
+
+}
@@ -28,10 +28,17 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.logging.Level;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang3.StringUtils;
 import org.kawanfw.commons.util.ClientLogger;
+import org.kawanfw.commons.util.DefaultParms;
 import org.kawanfw.commons.util.FrameworkDebug;
 import org.kawanfw.file.api.client.exception.InvalidLoginException;
 import org.kawanfw.file.api.client.exception.RemoteException;
@@ -66,6 +73,15 @@ import org.kawanfw.file.api.util.client.RemoteFileUtil;
  * not ported.</li>
  * <li>The Java 7+ {@code File.toPath()} method is not ported as this KRemote
  * Files version does not support remote {@code Path} objects.</li>
+ * <li>{@code getName()}, {@code getParent()}, {@code getParentFile()}
+ * and {@code isAbsolute()} are computed locally from the pathname, without
+ * call to the remote host.</li>
+ * <li>File attributes may be cached on client side, see
+ * {@link SessionParameters#setMetadataCacheOn(boolean)}.</li>
+ * <li>{@link #listFilesWithAttributes()} lists a directory and the attributes
+ * of its files in one request.</li>
+ * <li>{@link #listFilesIterator(int)} and {@link #listFilesStream(int)} list
+ * huge directories by pages, without holding the whole listing in memory.</li>
  * </ul>
  * <p>
  * Note that the <i>real</i> pathname used on host for {@code File} method
@@ -190,6 +206,9 @@ public class RemoteFile {
     /** Delegate to execute all methods */
     private RemoteFileListExecutor remoteFileExecutor = null;
 
+    /** The attributes read when listing the parent directory, may be null */
+    private RemoteFileAttributes attributes = null;
+
     /**
      * Constructor
      * 
@@ -235,6 +254,23 @@ public class RemoteFile {
 	this.remoteFileExecutor = new RemoteFileListExecutor(this);
     }
 
+    /**
+     * Constructor of a file returned by {@link #listFilesWithAttributes()}.
+     * 
+     * @param remoteSession
+     *            the remote session
+     * @param attributes
+     *            the attributes of the file read when listing
+     * 
+     * @throws InvalidLoginException
+     *             if sessions is closed
+     */
+    RemoteFile(RemoteSession remoteSession, RemoteFileAttributes attributes)
+	    throws InvalidLoginException {
+	this(remoteSession, attributes.getPathname());
+	this.attributes = attributes;
+    }
+
     /**
      * Returns the {@code RemoteSession} of this {@code RemoteFile}
      * 
@@ -250,6 +286,51 @@ public class RemoteFile {
 	}
     }
 
+    /**
+     * Returns the attributes of this file read when listing its directory, or
+     * else from the metadata cache of the session. The attributes are read
+     * with one remote call on cache miss.
+     * 
+     * @return the attributes, or null if this file was not listed with its
+     *         attributes and the metadata cache is not activated
+     */
+    private RemoteFileAttributes getCachedAttributes() throws IOException {
+	if (attributes != null) {
+	    return attributes;
+	}
+
+	RemoteFileMetadataCache metadataCache = remoteSession.getMetadataCache();
+
+	if (metadataCache == null) {
+	    return null;
+	}
+
+	RemoteFileAttributes attributes = metadataCache.get(pathname);
+	if (attributes == null) {
+	    attributes = remoteSession
+		    .stat(Collections.singletonList(pathname)).get(0);
+	    metadataCache.put(attributes);
+	}
+	return attributes;
+    }
+
+    /**
+     * Invalidates the cached attributes of a modified file, if the metadata
+     * cache is activated. The attributes read when listing are dropped.
+     * 
+     * @param pathname
+     *            the pathname of the modified file
+     */
+    private void invalidateCachedAttributes(String pathname) {
+	attributes = null;
+
+	RemoteFileMetadataCache metadataCache = remoteSession.getMetadataCache();
+
+	if (metadataCache != null) {
+	    metadataCache.invalidate(pathname);
+	}
+    }
+
     /**
      * Tests whether the application can execute the file denoted by this
      * abstract pathname.
@@ -263,6 +344,11 @@ public class RemoteFile {
      */
     public boolean canExecute() {
 	try {
+	    RemoteFileAttributes attributes = getCachedAttributes();
+	    if (attributes != null) {
+		return attributes.canExecute();
+	    }
+
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "canExecute");
 	    return Boolean.parseBoolean(result);
@@ -288,6 +374,11 @@ public class RemoteFile {
      */
     public boolean canRead() {
 	try {
+	    RemoteFileAttributes attributes = getCachedAttributes();
+	    if (attributes != null) {
+		return attributes.canRead();
+	    }
+
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "canRead");
 	    return Boolean.parseBoolean(result);
@@ -314,6 +405,11 @@ public class RemoteFile {
      */
     public boolean canWrite() {
 	try {
+	    RemoteFileAttributes attributes = getCachedAttributes();
+	    if (attributes != null) {
+		return attributes.canWrite();
+	    }
+
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "canWrite");
 	    return Boolean.parseBoolean(result);
@@ -397,6 +493,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "createNewFile");
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 	} catch (RemoteException remoteexception) {
 	    Throwable cause = remoteexception.getCause();
@@ -430,6 +527,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "delete");
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -521,6 +619,11 @@ public class RemoteFile {
      */
     public boolean exists() {
 	try {
+	    RemoteFileAttributes attributes = getCachedAttributes();
+	    if (attributes != null) {
+		return attributes.exists();
+	    }
+
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "exists");
 	    return Boolean.parseBoolean(result);
@@ -728,16 +831,11 @@ public class RemoteFile {
      *         empty
      */
     public String getName() {
-	try {
-	    String result = remoteFileExecutor
-		    .fileMethodOneReturn(this.pathname, "getName");
-	    return result;
-
-	} catch (SecurityException e) {
-	    throw e;
-	} catch (Exception e) {
-	    throw new RuntimeException(e);
+	// Computed locally: the name is the last name of the pathname
+	if (pathname.equals("/")) {
+	    return "";
 	}
+	return pathname.substring(pathname.lastIndexOf('/') + 1);
     }
 
     /**
@@ -755,16 +853,8 @@ public class RemoteFile {
      *         name a parent
      */
     public String getParent() {
-	try {
-	    String result = remoteFileExecutor
-		    .fileMethodOneReturn(this.pathname, "getParent");
-	    return result;
-
-	} catch (SecurityException e) {
-	    throw e;
-	} catch (Exception e) {
-	    throw new RuntimeException(e);
-	}
+	// Computed locally: the remote root has no parent
+	return RemoteFileMetadataCache.getParent(pathname);
     }
 
     /**
@@ -782,19 +872,15 @@ public class RemoteFile {
      *         name a parent
      */
     public RemoteFile getParentFile() {
-	try {
-	    String result = remoteFileExecutor
-		    .fileMethodOneReturn(this.pathname, "getParentFile");
+	String parent = getParent();
 
-	    if (result == null) {
-		return null;
-	    } else {
-		return new RemoteFile(remoteSession, result);
-	    }
+	if (parent == null) {
+	    return null;
+	}
 
-	} catch (SecurityException e) {
-	    throw e;
-	} catch (Exception e) {
+	try {
+	    return new RemoteFile(remoteSession, parent);
+	} catch (InvalidLoginException e) {
 	    throw new RuntimeException(e);
 	}
     }
@@ -891,6 +977,7 @@ public class RemoteFile {
      * @return A hash code for this abstract pathname
      */
     public int hashCode() {
+	// Computed on the remote host, as equals(): case rules depend on its OS
 	try {
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "hashCode");
@@ -914,16 +1001,8 @@ public class RemoteFile {
      *         <code>false</code> otherwise
      */
     public boolean isAbsolute() {
-	try {
-	    String result = remoteFileExecutor
-		    .fileMethodOneReturn(this.pathname, "isAbsolute");
-	    return Boolean.parseBoolean(result);
-
-	} catch (SecurityException e) {
-	    throw e;
-	} catch (Exception e) {
-	    throw new RuntimeException(e);
-	}
+	// Pathnames are always absolute, see constructor
+	return true;
     }
 
     /**
@@ -939,6 +1018,11 @@ public class RemoteFile {
      */
     public boolean isDirectory() {
 	try {
+	    RemoteFileAttributes attributes = getCachedAttributes();
+	    if (attributes != null) {
+		return attributes.isDirectory();
+	    }
+
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "isDirectory");
 	    return Boolean.parseBoolean(result);
@@ -966,6 +1050,11 @@ public class RemoteFile {
      */
     public boolean isFile() {
 	try {
+	    RemoteFileAttributes attributes = getCachedAttributes();
+	    if (attributes != null) {
+		return attributes.isFile();
+	    }
+
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "isFile");
 	    return Boolean.parseBoolean(result);
@@ -995,6 +1084,11 @@ public class RemoteFile {
      */
     public boolean isHidden() {
 	try {
+	    RemoteFileAttributes attributes = getCachedAttributes();
+	    if (attributes != null) {
+		return attributes.isHidden();
+	    }
+
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "isHidden");
 	    return Boolean.parseBoolean(result);
@@ -1021,6 +1115,11 @@ public class RemoteFile {
      */
     public long lastModified() {
 	try {
+	    RemoteFileAttributes attributes = getCachedAttributes();
+	    if (attributes != null) {
+		return attributes.lastModified();
+	    }
+
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "lastModified");
 	    return Long.parseLong(result);
@@ -1047,6 +1146,11 @@ public class RemoteFile {
      */
     public long length() {
 	try {
+	    RemoteFileAttributes attributes = getCachedAttributes();
+	    if (attributes != null) {
+		return attributes.length();
+	    }
+
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "length");
 	    return Long.parseLong(result);
@@ -1285,6 +1389,155 @@ public class RemoteFile {
 	return remoteFiles;
     }
 
+    /**
+     * Returns an array of abstract pathnames denoting the files and directories
+     * in the directory denoted by this abstract pathname, with their
+     * attributes. The behavior of this method is the same as that of the
+     * <code>{@link #listFiles()}</code> method, except that the length, last
+     * modification time, type, hidden flag, access rights and POSIX
+     * permissions of each file are read by the server in the same request.
+     * <p>
+     * The returned files answer {@link #exists()}, {@link #isDirectory()},
+     * {@link #isFile()}, {@link #isHidden()}, {@link #length()},
+     * {@link #lastModified()}, {@link #canRead()}, {@link #canWrite()} and
+     * {@link #canExecute()} with the values read at listing time, without
+     * remote call, until they are modified. The values are also stored in
+     * the metadata cache of the session if it is activated.
+     * 
+     * @return An array of abstract pathnames denoting the files and directories
+     *         in the directory denoted by this abstract pathname. The array
+     *         will be empty if the directory is empty. Returns
+     *         <code>null</code> if this abstract pathname does not denote a
+     *         directory, or if an I/O error occurs.
+     * @see #getAttributes()
+     */
+    public RemoteFile[] listFilesWithAttributes() {
+	try {
+	    return remoteFileExecutor.listFilesWithAttributes(this.pathname);
+	} catch (SecurityException e) {
+	    throw e;
+	} catch (Exception e) {
+
+	    if (e instanceof RemoteException) {
+		Throwable cause = e.getCause();
+		throw new RuntimeException(cause);
+	    }
+	    throw new RuntimeException(e);
+	}
+    }
+
+    /**
+     * Returns the attributes read when listing the directory of this file with
+     * {@link #listFilesWithAttributes()}.
+     * 
+     * @return the attributes read at listing time, or <code>null</code> if
+     *         this file was not listed with its attributes or has been
+     *         modified since
+     */
+    public RemoteFileAttributes getAttributes() {
+	return attributes;
+    }
+
+    /**
+     * Returns an iterator on the files and directories in the directory
+     * denoted by this abstract pathname. The files are fetched by pages of
+     * {@value org.kawanfw.commons.util.DefaultParms#DEFAULT_LIST_PAGE_SIZE}
+     * files, when the iteration needs them.
+     * 
+     * @return an iterator on the files of the directory, or <code>null</code>
+     *         if this abstract pathname does not denote a directory
+     * @see #listFilesIterator(int)
+     */
+    public Iterator<RemoteFile> listFilesIterator() {
+	return listFilesIterator(DefaultParms.DEFAULT_LIST_PAGE_SIZE);
+    }
+
+    /**
+     * Returns an iterator on the files and directories in the directory
+     * denoted by this abstract pathname. The files are fetched by pages when
+     * the iteration needs them: the whole listing is never held in memory,
+     * neither on the server nor on the client.
+     * <p>
+     * The first page is fetched by this call. If the directory is modified
+     * during the iteration, files may be missed or returned twice, as with a
+     * {@code java.nio.file.DirectoryStream}. The server keeps the directory
+     * open between two pages: an iteration idle for more than 5 minutes
+     * fails. <br>
+     * Remote errors during the iteration are thrown as
+     * {@code RuntimeException}.
+     * 
+     * @param pageSize
+     *            the maximum number of files fetched per request
+     * @return an iterator on the files of the directory, or <code>null</code>
+     *         if this abstract pathname does not denote a directory
+     * @throws IllegalArgumentException
+     *             if pageSize is not positive
+     */
+    public Iterator<RemoteFile> listFilesIterator(int pageSize) {
+	try {
+	    RemoteFileIterator.Page firstPage = remoteFileExecutor
+		    .listFilesPage(this.pathname, pageSize, null);
+
+	    if (firstPage == null) {
+		return null;
+	    }
+
+	    return new RemoteFileIterator(remoteFileExecutor, this.pathname,
+		    pageSize, firstPage);
+
+	} catch (SecurityException e) {
+	    throw e;
+	} catch (IllegalArgumentException e) {
+	    throw e;
+	} catch (Exception e) {
+
+	    if (e instanceof RemoteException) {
+		Throwable cause = e.getCause();
+		throw new RuntimeException(cause);
+	    }
+	    throw new RuntimeException(e);
+	}
+    }
+
+    /**
+     * Returns a sequential stream of the files and directories in the
+     * directory denoted by this abstract pathname. The files are fetched by
+     * pages of
+     * {@value org.kawanfw.commons.util.DefaultParms#DEFAULT_LIST_PAGE_SIZE}
+     * files, when the stream needs them.
+     * 
+     * @return a stream of the files of the directory, empty if this abstract
+     *         pathname does not denote a directory
+     * @see #listFilesIterator(int)
+     */
+    public Stream<RemoteFile> listFilesStream() {
+	return listFilesStream(DefaultParms.DEFAULT_LIST_PAGE_SIZE);
+    }
+
+    /**
+     * Returns a sequential stream of the files and directories in the
+     * directory denoted by this abstract pathname. The files are fetched by
+     * pages when the stream needs them.
+     * 
+     * @param pageSize
+     *            the maximum number of files fetched per request
+     * @return a stream of the files of the directory, empty if this abstract
+     *         pathname does not denote a directory
+     * @throws IllegalArgumentException
+     *             if pageSize is not positive
+     * @see #listFilesIterator(int)
+     */
+    public Stream<RemoteFile> listFilesStream(int pageSize) {
+	Iterator<RemoteFile> iterator = listFilesIterator(pageSize);
+
+	if (iterator == null) {
+	    return Stream.empty();
+	}
+
+	return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+		iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     /**
      * Creates the directory named by this abstract pathname.
      * 
@@ -1299,6 +1552,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "mkdir");
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1331,6 +1585,13 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "mkdirs");
+
+	    // Parent directories may have been created too
+	    String parent = this.pathname;
+	    while (parent != null) {
+		invalidateCachedAttributes(parent);
+		parent = RemoteFileMetadataCache.getParent(parent);
+	    }
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1383,6 +1644,8 @@ public class RemoteFile {
 
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "renameTo", dest);
+	    invalidateCachedAttributes(this.pathname);
+	    invalidateCachedAttributes(dest.getPath());
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1431,6 +1694,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor.fileMethodOneReturn(
 		    this.pathname, "setExecutable", executable);
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1469,6 +1733,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor.fileMethodOneReturn(
 		    this.pathname, "setExecutable", executable, ownerOnly);
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1506,6 +1771,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor.fileMethodOneReturn(
 		    this.pathname, "setLastModified", time);
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1533,6 +1799,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor
 		    .fileMethodOneReturn(this.pathname, "setReadOnly");
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1576,6 +1843,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor.fileMethodOneReturn(
 		    this.pathname, "setReadable", readable);
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1613,6 +1881,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor.fileMethodOneReturn(
 		    this.pathname, "setReadable", readable, ownerOnly);
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1654,6 +1923,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor.fileMethodOneReturn(
 		    this.pathname, "setWritable", writable);
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -1689,6 +1959,7 @@ public class RemoteFile {
 	try {
 	    String result = remoteFileExecutor.fileMethodOneReturn(
 		    this.pathname, "setWritable", writable, ownerOnly);
+	    invalidateCachedAttributes(this.pathname);
 	    return Boolean.parseBoolean(result);
 
 	} catch (SecurityException e) {
@@ -0,0 +1,209 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.client;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact record of the attributes of a remote file, as returned by
+ * {@link RemoteSession#stat(List)} and
+ * {@link RemoteFile#listFilesWithAttributes()}. <br>
+ * Values are those read on the remote host when the request was executed.
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+
+public class RemoteFileAttributes implements Serializable {
+
+    private static final long serialVersionUID = -3285413519870427714L;
+
+    /** The File methods called on server, in the order of the results */
+    static final List<String> STAT_METHODS = Collections
+	    .unmodifiableList(Arrays.asList("exists", "isDirectory", "isFile",
+		    "isHidden", "length", "lastModified", "canRead",
+		    "canWrite", "canExecute"));
+
+    private final String pathname;
+    private final boolean exists;
+    private final boolean directory;
+    private final boolean file;
+    private final boolean hidden;
+    private final long length;
+    private final long lastModified;
+    private final boolean canRead;
+    private final boolean canWrite;
+    private final boolean canExecute;
+    private final String permissions;
+
+    /**
+     * Constructor.
+     * 
+     * @param pathname
+     *            the pathname of the remote file
+     * @param results
+     *            the results of the {@link #STAT_METHODS} calls, in the same
+     *            order
+     */
+    RemoteFileAttributes(String pathname, List<String> results) {
+	this(pathname, results, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param pathname
+     *            the pathname of the remote file
+     * @param results
+     *            the results of the {@link #STAT_METHODS} calls, in the same
+     *            order
+     * @param permissions
+     *            the POSIX permissions of the remote file, may be null
+     */
+    RemoteFileAttributes(String pathname, List<String> results,
+	    String permissions) {
+
+	if (results.size() != STAT_METHODS.size()) {
+	    throw new IllegalArgumentException("Invalid number of results: "
+		    + results.size() + " for " + STAT_METHODS.size()
+		    + " methods.");
+	}
+
+	this.pathname = pathname;
+	this.exists = Boolean.parseBoolean(results.get(0));
+	this.directory = Boolean.parseBoolean(results.get(1));
+	this.file = Boolean.parseBoolean(results.get(2));
+	this.hidden = Boolean.parseBoolean(results.get(3));
+	this.length = Long.parseLong(results.get(4));
+	this.lastModified = Long.parseLong(results.get(5));
+	this.canRead = Boolean.parseBoolean(results.get(6));
+	this.canWrite = Boolean.parseBoolean(results.get(7));
+	this.canExecute = Boolean.parseBoolean(results.get(8));
+	this.permissions = permissions;
+    }
+
+    /**
+     * @return the pathname of the remote file
+     */
+    public String getPathname() {
+	return pathname;
+    }
+
+    /**
+     * @return true if the remote file exists
+     * @see RemoteFile#exists()
+     */
+    public boolean exists() {
+	return exists;
+    }
+
+    /**
+     * @return true if the remote file is a directory
+     * @see RemoteFile#isDirectory()
+     */
+    public boolean isDirectory() {
+	return directory;
+    }
+
+    /**
+     * @return true if the remote file is a normal file
+     * @see RemoteFile#isFile()
+     */
+    public boolean isFile() {
+	return file;
+    }
+
+    /**
+     * @return true if the remote file is a hidden file
+     * @see RemoteFile#isHidden()
+     */
+    public boolean isHidden() {
+	return hidden;
+    }
+
+    /**
+     * @return the length in bytes of the remote file, 0 if it does not exist
+     * @see RemoteFile#length()
+     */
+    public long length() {
+	return length;
+    }
+
+    /**
+     * @return the last modification time of the remote file in milliseconds
+     *         since the epoch, 0 if it does not exist
+     * @see RemoteFile#lastModified()
+     */
+    public long lastModified() {
+	return lastModified;
+    }
+
+    /**
+     * @return true if the remote file can be read by the server
+     * @see RemoteFile#canRead()
+     */
+    public boolean canRead() {
+	return canRead;
+    }
+
+    /**
+     * @return true if the remote file can be modified by the server
+     * @see RemoteFile#canWrite()
+     */
+    public boolean canWrite() {
+	return canWrite;
+    }
+
+    /**
+     * @return true if the remote file can be executed by the server
+     * @see RemoteFile#canExecute()
+     */
+    public boolean canExecute() {
+	return canExecute;
+    }
+
+    /**
+     * @return the POSIX permissions of the remote file, like
+     *         <code>"rwxr-x---"</code>, or <code>null</code> if they are not
+     *         available
+     */
+    public String getPermissions() {
+	return permissions;
+    }
+
+    @Override
+    public String toString() {
+	return "RemoteFileAttributes [pathname=" + pathname + ", exists="
+		+ exists + ", directory=" + directory + ", file=" + file
+		+ ", hidden=" + hidden + ", length=" + length
+		+ ", lastModified=" + lastModified + ", canRead=" + canRead
+		+ ", canWrite=" + canWrite + ", canExecute=" + canExecute
+		+ ", permissions=" + permissions + "]";
+    }
+
+}
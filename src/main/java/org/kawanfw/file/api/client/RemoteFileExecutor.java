@@ -222,6 +222,17 @@ class RemoteFileExecutor {
 
 	httpTransfer.send(requestParams);
 
+	// Binary response: the value is typed and not Html encoded
+	List<Object> values = httpTransfer.recvValues();
+	if (values != null) {
+	    Object value = values.isEmpty() ? null : values.get(0);
+	    if (ReturnCode.INVALID_LOGIN_OR_PASSWORD.equals(value)) {
+		throw new InvalidLoginException(FILE_SESSION_IS_CLOSED);
+	    }
+
+	    return value == null ? null : value.toString();
+	}
+
 	// Return the answer
 	String response = httpTransfer.recv();
 
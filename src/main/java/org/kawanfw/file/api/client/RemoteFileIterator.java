@@ -0,0 +1,160 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.client;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.kawanfw.file.api.client.exception.RemoteException;
+
+/**
+ * Iterator on the files of a remote directory that fetches the listing by
+ * pages, on demand. Only one page of pathnames is held in memory.
+ * 
+ * @author Nicolas de Pomereu
+ * 
+ */
+class RemoteFileIterator implements Iterator<RemoteFile> {
+
+    /** The executor of the page requests */
+    private RemoteFileListExecutor remoteFileExecutor = null;
+
+    /** The remote directory */
+    private String pathname = null;
+
+    /** The maximum number of files per page */
+    private int pageSize = 0;
+
+    /** The current page */
+    private Iterator<String> pathnames = null;
+
+    /** The continuation token of the next page, null if last page */
+    private String continuationToken = null;
+
+    /**
+     * Constructor
+     * 
+     * @param remoteFileExecutor
+     *            the executor of the page requests
+     * @param pathname
+     *            the remote directory
+     * @param pageSize
+     *            the maximum number of files per page
+     * @param firstPage
+     *            the first page of the listing
+     */
+    RemoteFileIterator(RemoteFileListExecutor remoteFileExecutor,
+	    String pathname, int pageSize, Page firstPage) {
+	this.remoteFileExecutor = remoteFileExecutor;
+	this.pathname = pathname;
+	this.pageSize = pageSize;
+	this.pathnames = firstPage.getPathnames().iterator();
+	this.continuationToken = firstPage.getContinuationToken();
+    }
+
+    @Override
+    public boolean hasNext() {
+	while (!pathnames.hasNext() && continuationToken != null) {
+	    try {
+		Page page = remoteFileExecutor.listFilesPage(pathname,
+			pageSize, continuationToken);
+		if (page == null) {
+		    // Directory deleted while iterating
+		    continuationToken = null;
+		    break;
+		}
+		pathnames = page.getPathnames().iterator();
+		continuationToken = page.getContinuationToken();
+	    } catch (SecurityException e) {
+		throw e;
+	    } catch (Exception e) {
+		if (e instanceof RemoteException) {
+		    throw new RuntimeException(e.getCause());
+		}
+		throw new RuntimeException(e);
+	    }
+	}
+
+	return pathnames.hasNext();
+    }
+
+    @Override
+    public RemoteFile next() {
+	if (!hasNext()) {
+	    throw new NoSuchElementException();
+	}
+
+	try {
+	    return new RemoteFile(remoteFileExecutor.remoteSession,
+		    pathnames.next());
+	} catch (Exception e) {
+	    throw new RuntimeException(e);
+	}
+    }
+
+    @Override
+    public void remove() {
+	throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * One page of a directory listing.
+     */
+    static class Page {
+
+	private final List<String> pathnames;
+	private final String continuationToken;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param pathnames
+	 *            the pathnames of the page
+	 * @param continuationToken
+	 *            the continuation token of the next page, null if last
+	 *            page
+	 */
+	Page(List<String> pathnames, String continuationToken) {
+	    this.pathnames = pathnames;
+	    this.continuationToken = continuationToken;
+	}
+
+	/**
+	 * @return the pathnames of the page
+	 */
+	List<String> getPathnames() {
+	    return pathnames;
+	}
+
+	/**
+	 * @return the continuation token of the next page, null if last page
+	 */
+	String getContinuationToken() {
+	    return continuationToken;
+	}
+    }
+
+}
@@ -24,10 +24,12 @@
  */
 package org.kawanfw.file.api.client;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.ConnectException;
 import java.net.SocketException;
 import java.net.UnknownHostException;
@@ -39,11 +41,13 @@ import java.util.logging.Level;
 
 import org.apache.commons.io.FileUtils;
 import org.kawanfw.commons.client.http.SimpleNameValuePair;
+import org.kawanfw.commons.json.ListOfStringTransport;
 import org.kawanfw.commons.util.ClientLogger;
 import org.kawanfw.commons.util.FrameworkDebug;
 import org.kawanfw.commons.util.FrameworkFileUtil;
 import org.kawanfw.commons.util.HtmlConverter;
 import org.kawanfw.commons.util.KeepTempFilePolicyParms;
+import org.kawanfw.commons.util.Tag;
 import org.kawanfw.file.api.client.exception.InvalidLoginException;
 import org.kawanfw.file.api.client.exception.RemoteException;
 import org.kawanfw.file.api.util.client.RemoteFileUtil;
@@ -386,6 +390,237 @@ class RemoteFileListExecutor extends RemoteFileExecutor {
 
     }
 
+    /**
+     * Executes a File.listFiles() on remote host that returns the attributes
+     * of each file with its pathname, in one request. <br>
+     * The returned {@code RemoteFile} instances answer the attribute methods
+     * without any remote call, and the attributes are stored in the metadata
+     * cache of the session if it is activated.
+     * 
+     * @param remoteFile
+     *            the file name of the directory on the host
+     * @return the files of the remote directory with their attributes. Will
+     *         be <code>null</code> if the remote directory does not exists.
+     *         Will be empty if the remote directory exists but is empty.
+     * 
+     * @throws IllegalArgumentException
+     *             if remoteFile is null
+     * @throws InvalidLoginException
+     *             if the username is refused by the remote host
+     * @throws UnknownHostException
+     *             if host URL (http://www.acme.org) does not exists or no
+     *             Internet Connection.
+     * @throws ConnectException
+     *             if the Host is correct but the {@code ServerFileManager}
+     *             Servlet is not reachable
+     * @throws SocketException
+     *             if network failure during transmission
+     * @throws RemoteException
+     *             an exception has been thrown on the server side
+     * @throws IOException
+     *             for all other IO / Network / System Error
+     */
+    public RemoteFile[] listFilesWithAttributes(String remoteFile)
+	    throws IllegalArgumentException, InvalidLoginException,
+	    UnknownHostException, ConnectException, SocketException,
+	    RemoteException, IOException {
+
+	if (remoteFile == null) {
+	    throw new IllegalArgumentException("remoteFile can not be null!");
+	}
+
+	if (username == null || authenticationToken == null) {
+	    throw new InvalidLoginException(FILE_SESSION_IS_CLOSED);
+	}
+
+	// Prepare the request parameters
+	List<SimpleNameValuePair> requestParams = new Vector<SimpleNameValuePair>();
+	requestParams.add(new SimpleNameValuePair(Parameter.ACTION,
+		Action.FILE_LIST_FILES_ATTRIBUTES_ACTION));
+	requestParams.add(new SimpleNameValuePair(Parameter.USERNAME, username));
+	requestParams.add(new SimpleNameValuePair(Parameter.TOKEN,
+		authenticationToken));
+	requestParams
+		.add(new SimpleNameValuePair(Parameter.FILENAME, remoteFile));
+
+	httpTransfer.setReceiveInFile(true); // To say we get the result into a
+					     // file
+	httpTransfer.send(requestParams);
+
+	File receiveFile = httpTransfer.getReceiveFile();
+	String receive = FrameworkFileUtil.getFirstLineOfFile(receiveFile);
+
+	debug("receiveFile: " + receiveFile);
+
+	if (receive.startsWith(ReturnCode.INVALID_LOGIN_OR_PASSWORD)) {
+	    if (!DEBUG && !KeepTempFilePolicyParms.KEEP_TEMP_FILE) {
+		receiveFile.delete();
+	    }
+	    throw new InvalidLoginException(FILE_SESSION_IS_CLOSED);
+	}
+
+	try {
+	    if (receive.equals("null")) {
+		return null;
+	    } else if (receive.equals("[]")) {
+		return new RemoteFile[0];
+	    } else {
+		RemoteSession session = this.remoteFile.getRemoteSession();
+		RemoteFileMetadataCache metadataCache = session
+			.getMetadataCache();
+
+		List<String> lines = FileUtils.readLines(receiveFile,
+			Charset.defaultCharset());
+		List<RemoteFile> remoteFiles = new ArrayList<RemoteFile>(
+			lines.size());
+
+		for (String line : lines) {
+		    if (line.isEmpty()) {
+			continue;
+		    }
+
+		    RemoteFileAttributes attributes = toAttributes(line);
+		    remoteFiles.add(new RemoteFile(session, attributes));
+
+		    if (metadataCache != null) {
+			metadataCache.put(attributes);
+		    }
+		}
+
+		return remoteFiles.toArray(new RemoteFile[remoteFiles.size()]);
+	    }
+	} catch (Exception e) {
+	    throw new IOException(e.getMessage(), e);
+	} finally {
+	    if (!DEBUG && !KeepTempFilePolicyParms.KEEP_TEMP_FILE) {
+		receiveFile.delete();
+	    }
+	}
+    }
+
+    /**
+     * Executes a File.listFiles() on remote host that returns one page of
+     * files. The directory is streamed on the server and only the files of the
+     * page are transferred.
+     * 
+     * @param remoteFile
+     *            the file name of the directory on the host
+     * @param pageSize
+     *            the maximum number of files of the page
+     * @param continuationToken
+     *            the continuation token returned with the previous page, null
+     *            for the first page
+     * @return the page of files, or <code>null</code> if the remote directory
+     *         does not exists
+     * 
+     * @throws IllegalArgumentException
+     *             if remoteFile is null or pageSize is not positive
+     * @throws InvalidLoginException
+     *             if the username is refused by the remote host
+     * @throws UnknownHostException
+     *             if host URL (http://www.acme.org) does not exists or no
+     *             Internet Connection.
+     * @throws ConnectException
+     *             if the Host is correct but the {@code ServerFileManager}
+     *             Servlet is not reachable
+     * @throws SocketException
+     *             if network failure during transmission
+     * @throws RemoteException
+     *             an exception has been thrown on the server side
+     * @throws IOException
+     *             for all other IO / Network / System Error
+     */
+    RemoteFileIterator.Page listFilesPage(String remoteFile, int pageSize,
+	    String continuationToken) throws IllegalArgumentException,
+	    InvalidLoginException, UnknownHostException, ConnectException,
+	    SocketException, RemoteException, IOException {
+
+	if (remoteFile == null) {
+	    throw new IllegalArgumentException("remoteFile can not be null!");
+	}
+
+	if (pageSize < 1) {
+	    throw new IllegalArgumentException("pageSize must be > 0!");
+	}
+
+	if (username == null || authenticationToken == null) {
+	    throw new InvalidLoginException(FILE_SESSION_IS_CLOSED);
+	}
+
+	// Prepare the request parameters
+	List<SimpleNameValuePair> requestParams = new Vector<SimpleNameValuePair>();
+	requestParams.add(new SimpleNameValuePair(Parameter.ACTION,
+		Action.FILE_LIST_FILES_PAGE_ACTION));
+	requestParams.add(new SimpleNameValuePair(Parameter.USERNAME, username));
+	requestParams.add(new SimpleNameValuePair(Parameter.TOKEN,
+		authenticationToken));
+	requestParams
+		.add(new SimpleNameValuePair(Parameter.FILENAME, remoteFile));
+	requestParams.add(new SimpleNameValuePair(Parameter.PAGE_SIZE, ""
+		+ pageSize));
+	requestParams.add(new SimpleNameValuePair(
+		Parameter.CONTINUATION_TOKEN, continuationToken));
+
+	// A page is bounded: the response is received in memory
+	httpTransfer.send(requestParams);
+	String response = httpTransfer.recv();
+
+	if (response.startsWith(ReturnCode.INVALID_LOGIN_OR_PASSWORD)) {
+	    throw new InvalidLoginException(FILE_SESSION_IS_CLOSED);
+	}
+
+	BufferedReader reader = new BufferedReader(new StringReader(response));
+	String nextToken = reader.readLine();
+
+	if (nextToken == null || nextToken.equals("null")) {
+	    return null;
+	}
+
+	nextToken = HtmlConverter.fromHtml(nextToken);
+	if (nextToken.equals(ReturnCode.LAST_PAGE)) {
+	    nextToken = null;
+	}
+
+	List<String> pathnames = new ArrayList<String>();
+	String line = null;
+	while ((line = reader.readLine()) != null) {
+	    if (line.isEmpty()) {
+		continue;
+	    }
+	    pathnames.add(HtmlConverter.fromHtml(line));
+	}
+
+	return new RemoteFileIterator.Page(pathnames, nextToken);
+    }
+
+    /**
+     * Builds the attributes of a file from a line sent by the server: a JSON
+     * list with the Html pathname, the {@link RemoteFileAttributes#STAT_METHODS}
+     * results and the POSIX permissions.
+     * 
+     * @param line
+     *            the JSON line
+     * @return the attributes of the file
+     */
+    private RemoteFileAttributes toAttributes(String line) {
+	List<String> values = ListOfStringTransport.fromJson(line);
+
+	int size = RemoteFileAttributes.STAT_METHODS.size();
+	if (values.size() != size + 2) {
+	    throw new IllegalArgumentException(Tag.PRODUCT_PRODUCT_FAIL
+		    + " Invalid number of attributes: " + values.size());
+	}
+
+	String pathname = HtmlConverter.fromHtml(values.get(0));
+	String permissions = values.get(size + 1);
+	if (permissions.isEmpty()) {
+	    permissions = null;
+	}
+
+	return new RemoteFileAttributes(pathname, values.subList(1, size + 1),
+		permissions);
+    }
+
     /**
      * Transforms the content of the file in Html lines into a list.
      * 
@@ -0,0 +1,240 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client side cache of the attributes of remote files, enabled per
+ * {@link RemoteSession} with {@link SessionParameters#setMetadataCacheOn(boolean)}.
+ * <p>
+ * Attributes read by {@link RemoteFile#exists()}, {@link RemoteFile#length()},
+ * {@link RemoteFile#lastModified()}, {@link RemoteFile#isDirectory()}, etc. are
+ * kept for a time-to-live in a size bounded LRU map. Modifications done
+ * through {@link RemoteFile} or {@link RemoteOutputStream} invalidate the
+ * entries of the modified file and of its parent directory. Modifications
+ * done by other clients are seen once the entries have expired.
+ * <p>
+ * The cache is shared by a {@code RemoteSession} and its clones. It is
+ * guarded by a {@code ReentrantLock} rather than a monitor, so that virtual
+ * threads waiting for it do not pin their carrier thread.
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+
+public class RemoteFileMetadataCache {
+
+    /** The time-to-live of an entry in milliseconds */
+    private final long ttl;
+
+    /** The attributes per pathname, in access order. Guarded by lock */
+    private final LinkedHashMap<String, CacheEntry> entries;
+
+    /** The lock of the entries */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor.
+     * 
+     * @param ttl
+     *            the time-to-live of an entry in milliseconds
+     * @param maxEntries
+     *            the maximum number of entries
+     */
+    RemoteFileMetadataCache(long ttl, final int maxEntries) {
+	this.ttl = ttl;
+	this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(
+		    Map.Entry<String, CacheEntry> eldest) {
+		return size() > maxEntries;
+	    }
+	};
+    }
+
+    /**
+     * Returns the cached attributes of a remote file.
+     * 
+     * @param pathname
+     *            the pathname of the remote file
+     * @return the cached attributes, or null if they are not cached or have
+     *         expired
+     */
+    RemoteFileAttributes get(String pathname) {
+	CacheEntry entry;
+
+	lock.lock();
+	try {
+	    entry = entries.get(pathname);
+
+	    if (entry != null && entry.expiry < System.currentTimeMillis()) {
+		entries.remove(pathname);
+		entry = null;
+	    }
+	} finally {
+	    lock.unlock();
+	}
+
+	if (entry == null) {
+	    misses.incrementAndGet();
+	    return null;
+	}
+
+	hits.incrementAndGet();
+	return entry.attributes;
+    }
+
+    /**
+     * Stores the attributes of a remote file.
+     * 
+     * @param attributes
+     *            the attributes read on the remote host
+     */
+    void put(RemoteFileAttributes attributes) {
+	CacheEntry entry = new CacheEntry(attributes,
+		System.currentTimeMillis() + ttl);
+
+	lock.lock();
+	try {
+	    entries.put(attributes.getPathname(), entry);
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Invalidates the entries of a remote file, of the files it contains if it
+     * is a directory, and of its parent directory.
+     * 
+     * @param pathname
+     *            the pathname of the modified remote file
+     */
+    public void invalidate(String pathname) {
+	if (pathname == null) {
+	    return;
+	}
+
+	String prefix = pathname.endsWith("/") ? pathname : pathname + "/";
+
+	lock.lock();
+	try {
+	    entries.remove(pathname);
+	    entries.remove(getParent(pathname));
+
+	    Iterator<String> iterator = entries.keySet().iterator();
+	    while (iterator.hasNext()) {
+		if (iterator.next().startsWith(prefix)) {
+		    iterator.remove();
+		}
+	    }
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Invalidates all the entries.
+     */
+    public void clear() {
+	lock.lock();
+	try {
+	    entries.clear();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * @return the number of entries in the cache, including expired ones not
+     *         yet removed
+     */
+    public int size() {
+	lock.lock();
+	try {
+	    return entries.size();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * @return the number of reads served by the cache
+     */
+    public long getHits() {
+	return hits.get();
+    }
+
+    /**
+     * @return the number of reads that required a remote call
+     */
+    public long getMisses() {
+	return misses.get();
+    }
+
+    /**
+     * Returns the parent pathname, "/" for a file in root.
+     * 
+     * @param pathname
+     *            a pathname with "/" as file separator
+     * @return the parent pathname, or null for root
+     */
+    static String getParent(String pathname) {
+	if (pathname.equals("/")) {
+	    return null;
+	}
+
+	int index = pathname.lastIndexOf('/');
+	return index <= 0 ? "/" : pathname.substring(0, index);
+    }
+
+    @Override
+    public String toString() {
+	return "RemoteFileMetadataCache [size=" + size() + ", hits="
+		+ hits.get() + ", misses=" + misses.get() + "]";
+    }
+
+    /**
+     * A cached entry.
+     */
+    private static class CacheEntry {
+	private final RemoteFileAttributes attributes;
+	private final long expiry;
+
+	CacheEntry(RemoteFileAttributes attributes, long expiry) {
+	    this.attributes = attributes;
+	    this.expiry = expiry;
+	}
+    }
+}
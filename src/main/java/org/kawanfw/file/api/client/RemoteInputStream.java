@@ -35,7 +35,9 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.net.ConnectException;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.logging.Level;
 
 import org.apache.commons.io.FileUtils;
@@ -48,6 +50,7 @@ import org.kawanfw.commons.util.TransferStatus;
 import org.kawanfw.file.api.client.exception.InvalidLoginException;
 import org.kawanfw.file.api.client.exception.RemoteException;
 import org.kawanfw.file.api.util.client.ApiInputStreamDownloader;
+import org.kawanfw.file.api.util.client.AsyncTeeInputStream;
 import org.kawanfw.file.api.util.client.ChunkUtil;
 import org.kawanfw.file.api.util.client.ExceptionThrower;
 import org.kawanfw.file.api.util.client.FileChunkStore;
@@ -65,6 +68,9 @@ import org.kawanfw.file.util.parms.ReturnCode;
  * default chunk length is 10Mb. You can change the default value with
  * {@link SessionParameters#setDownloadChunkLength(long)} before passing
  * {@code SessionParameters} to {@code RemoteSession} constructor. <br>
+ * Chunks may be downloaded in parallel on separate connections with
+ * {@link SessionParameters#setDownloadParallelism(int)}; they are still read
+ * in order. <br>
  * Note that streams chunking requires all chunks to be downloaded from to the
  * same web server. Thus, file chunking does not support true stateless
  * architecture with multiple identical web servers. If you want to set a full
@@ -74,6 +80,13 @@ import org.kawanfw.file.util.parms.ReturnCode;
  * <br>
  * A recovery mechanism allows - in case of failure - to start again in the same
  * JVM run the download from the last non-downloaded chunk. <br>
+ * Downloaded chunks are kept in local files for this recovery; see
+ * {@link SessionParameters#setDownloadChunkPersistence(ChunkPersistence)} to
+ * write them in background or to stream without local files. <br>
+ * <br>
+ * {@link #seek(long)} and {@link #skip(long)} move in the remote file without
+ * downloading the skipped bytes. See {@link RemoteSeekableByteChannel} for
+ * random access. <br>
  * See User Guide for more information. <br>
  * <br>
  * Note that {@code read} methods throw following subclasses of
@@ -139,6 +152,15 @@ public class RemoteInputStream extends InputStream {
     private static boolean DEBUG = FrameworkDebug
 	    .isSet(RemoteInputStream.class);
 
+    /** The status lines that may be sent in place of the file bytes */
+    private static final byte[] SEND_OK_BYTES = TransferStatus.SEND_OK
+	    .getBytes();
+    private static final byte[] SEND_FAILED_BYTES = TransferStatus.SEND_FAILED
+	    .getBytes();
+
+    /** The length of the stream beginning analysed for a status line */
+    private static final int PREFIX_LENGTH = SEND_FAILED_BYTES.length + 1;
+
     /** The file session in use */
     private RemoteSession remoteSession = null;
 
@@ -160,12 +182,27 @@ public class RemoteInputStream extends InputStream {
     /** Total length for a download */
     private long totalLength = 0;
 
-    /** The beginning String, used to analyse the response of the server. */
-    private String beginString = "";
+    /** The first bytes of the stream, used to analyse the response of the server. */
+    private byte[] prefix = new byte[PREFIX_LENGTH];
+
+    /** The number of bytes in the prefix */
+    private int prefixLength = 0;
 
     /** If true, continue input stream beginning content analysis */
     private boolean continueInputStreamStartAnalysis = true;
 
+    /** The range reader used after a seek, null if read in sequence */
+    private RemoteSeekableByteChannel channel = null;
+
+    /** The parallel chunk downloader, null if chunks are downloaded in sequence */
+    private ParallelChunkDownloader parallelChunkDownloader = null;
+
+    /** The persistence of the downloaded chunks */
+    private ChunkPersistence chunkPersistence = ChunkPersistence.SYNC;
+
+    /** The number of range requests done since the last successful read */
+    private int rangeRetries = 0;
+
     /**
      * Creates a <code>RemoteInputStream</code> by opening a connection to an
      * actual remote file, the file named by the path name <code>pathname</code>
@@ -290,9 +327,93 @@ public class RemoteInputStream extends InputStream {
 		+ ChunkUtil.getDownloadChunkLength(this.remoteSession));
 	debug("remoteFileLength: " + remoteFileLength);
 
+	long chunkLength = ChunkUtil.getDownloadChunkLength(this.remoteSession);
+	int parallelism = 1;
+
+	SessionParameters sessionParameters = this.remoteSession
+		.getSessionParameters();
+	if (sessionParameters != null) {
+	    parallelism = sessionParameters.getDownloadParallelism();
+	    chunkPersistence = sessionParameters.getDownloadChunkPersistence();
+	}
+
+	// Parallel download needs the chunk files
+	if (parallelism > 1 && chunkLength > 0
+		&& remoteFileLength > chunkLength
+		&& chunkPersistence != ChunkPersistence.NONE) {
+	    debug("parallelism     : " + parallelism);
+	    parallelChunkDownloader = new ParallelChunkDownloader(
+		    this.remoteSession, pathname, remoteFileLength, fileUnique,
+		    chunkLength, parallelism);
+	}
+
 	cpt++;
-	in = downloadAndCreateInputStream(this.remoteSession, pathname,
-		remoteFileLength, fileUnique, cpt);
+	in = nextChunkInputStream();
+    }
+
+    /**
+     * Returns the input stream on the current chunk, downloaded in sequence or
+     * by the parallel chunk downloader.
+     * 
+     * @return the input stream on the current chunk
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    private InputStream nextChunkInputStream() throws IOException {
+	if (parallelChunkDownloader != null) {
+	    return parallelChunkDownloader.nextChunk(cpt);
+	}
+
+	return downloadAndCreateInputStream(remoteSession, pathname,
+		remoteFileLength, fileUnique, cpt, chunkPersistence);
+    }
+
+    /**
+     * Reads from the current chunk input stream. Without chunk persistence, a
+     * network failure after the beginning of the data is recovered by
+     * requesting the remaining bytes of the remote file by range.
+     * 
+     * @param b
+     *            the buffer into which the data is read.
+     * @param off
+     *            the start offset in array <code>b</code>.
+     * @param len
+     *            the maximum number of bytes to read.
+     * @return the number of bytes read, or -1 at end of stream
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    private int readChunk(byte[] b, int off, int len) throws IOException {
+	while (true) {
+	    try {
+		int intRead = in.read(b, off, len);
+		rangeRetries = 0;
+		return intRead;
+	    } catch (SocketException | SocketTimeoutException e) {
+		if (chunkPersistence != ChunkPersistence.NONE
+			|| continueInputStreamStartAnalysis
+			|| rangeRetries >= DefaultParms.DEFAULT_DOWNLOAD_RANGE_RETRIES) {
+		    throw e;
+		}
+
+		rangeRetries++;
+		debug("read failure, range request from " + totalLength + ": "
+			+ e);
+		try {
+		    in.close();
+		} catch (Exception ignore) {
+		    // The failed stream is replaced by the range stream
+		}
+
+		// The range goes up to the end of the remote file
+		ApiInputStreamDownloader apiInputStreamDownloader = new ApiInputStreamDownloader(
+			remoteSession.getUsername(),
+			remoteSession.getAuthenticationToken(),
+			remoteSession.getHttpTransfer());
+		in = apiInputStreamDownloader.downloadRange(pathname,
+			totalLength, remoteFileLength - totalLength);
+	    }
+	}
     }
 
     /**
@@ -420,17 +541,22 @@ public class RemoteInputStream extends InputStream {
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
 
+	// After a seek, bytes are read by ranges
+	if (channel != null) {
+	    return channel.read(ByteBuffer.wrap(b, off, len));
+	}
+
 	// First read: we create the input stream
 	if (in == null) {
 	    init();
 	}
 
-	int intRead = in.read(b, off, len);
+	int intRead = readChunk(b, off, len);
 
 	if (intRead != -1) {
 
 	    if (continueInputStreamStartAnalysis) {
-		analyseInputStreamStart(b);
+		analyseInputStreamStart(b, off, intRead);
 	    }
 
 	    totalLength += intRead;
@@ -449,14 +575,13 @@ public class RemoteInputStream extends InputStream {
 	    in.close();
 	    cpt++;
 	    // debug("cpt " + cpt + " " + new Date());
-	    in = downloadAndCreateInputStream(remoteSession, pathname,
-		    remoteFileLength, fileUnique, cpt);
+	    in = nextChunkInputStream();
 
-	    intRead = in.read(b, off, len);
+	    intRead = readChunk(b, off, len);
 	    totalLength += intRead;
 
 	    if (continueInputStreamStartAnalysis) {
-		analyseInputStreamStart(b);
+		analyseInputStreamStart(b, off, intRead);
 	    }
 	}
 
@@ -469,68 +594,104 @@ public class RemoteInputStream extends InputStream {
 
     /**
      * Analyses the InputStream beginning content to check for Exceptions.
+     * <p>
+     * The first bytes are copied into a fixed size prefix and compared to the
+     * status lines without String creation: a String is built only if the
+     * server sent a status line in place of the file bytes.
      * 
      * @param b
      *            the buffer into which the data is read.
+     * @param off
+     *            the start offset of the data read in <code>b</code>.
+     * @param len
+     *            the number of bytes read.
      * @throws IOException
      *             If the first byte cannot be read for any reason other than
      *             end of file, or if the input stream has been closed, or if
      *             some other I/O error occurs.
      */
-    private void analyseInputStreamStart(byte[] b) throws IOException {
+    private void analyseInputStreamStart(byte[] b, int off, int len)
+	    throws IOException {
 
-	byte[] bytes = new byte[b.length];
-	for (int i = 0; i < b.length; i++) {
-	    bytes[i] = b[i];
+	if (len <= 0) {
+	    return;
 	}
 
-	String string = new String(bytes);
-	beginString += string;
+	int count = Math.min(len, PREFIX_LENGTH - prefixLength);
+	System.arraycopy(b, off, prefix, prefixLength, count);
+	prefixLength += count;
 
-	// debug("beginString: " + beginString);
+	if (prefixLength < PREFIX_LENGTH) {
+	    return;
+	}
 
-	if (totalLength > TransferStatus.SEND_FAILED.length()) {
+	continueInputStreamStartAnalysis = false;
 
-	    // SEND_OK may happen if: 1) Invalid Login 2) FileNotFound
-	    if (beginString.startsWith(TransferStatus.SEND_OK)) {
-		String content = getContentAsString(in, beginString);
+	boolean sendOk = startsWith(prefix, SEND_OK_BYTES);
+	boolean sendFailed = !sendOk && startsWith(prefix, SEND_FAILED_BYTES);
 
-		StringReader stringReader = new StringReader(content);
-		BufferedReader bufferedReader = new BufferedReader(
-			stringReader);
-		bufferedReader.readLine(); // Read The status line
+	if (!sendOk && !sendFailed) {
+	    return;
+	}
 
-		String receive = bufferedReader.readLine();
+	// The server sent a status line: get the full response
+	ByteArrayOutputStream begin = new ByteArrayOutputStream();
+	begin.write(prefix, 0, prefixLength);
+	begin.write(b, off + count, len - count);
+	String content = getContentAsString(in, begin.toByteArray());
 
-		if (receive.length() > 1) {
-		    if (receive
-			    .startsWith(ReturnCode.INVALID_LOGIN_OR_PASSWORD)) {
-			throw new InvalidLoginException(
-				Tag.PRODUCT + " File Session is closed.");
-		    }
+	// SEND_OK may happen if: 1) Invalid Login 2) FileNotFound
+	if (sendOk) {
+	    StringReader stringReader = new StringReader(content);
+	    BufferedReader bufferedReader = new BufferedReader(stringReader);
+	    bufferedReader.readLine(); // Read The status line
 
-		    if (receive.startsWith(Tag.FileNotFoundException)) {
-			throw new FileNotFoundException(
-				"Remote file does not exists: " + pathname);
-		    }
+	    String receive = bufferedReader.readLine();
 
-		    // Should never happen
-		    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
-			    + " Invalid received buffer: " + receive);
+	    if (receive != null && receive.length() > 1) {
+		if (receive.startsWith(ReturnCode.INVALID_LOGIN_OR_PASSWORD)) {
+		    throw new InvalidLoginException(
+			    Tag.PRODUCT + " File Session is closed.");
 		}
 
-	    } else if (beginString.startsWith(TransferStatus.SEND_FAILED)) {
-		String content = getContentAsString(in, beginString);
+		if (receive.startsWith(Tag.FileNotFoundException)) {
+		    throw new FileNotFoundException(
+			    "Remote file does not exists: " + pathname);
+		}
 
-		StringReader stringReader = new StringReader(content);
-		HttpTransferUtil.throwTheRemoteException(
-			new BufferedReader(stringReader));
-	    } else {
-		continueInputStreamStartAnalysis = false;
+		// Should never happen
+		throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+			+ " Invalid received buffer: " + receive);
 	    }
+	} else {
+	    StringReader stringReader = new StringReader(content);
+	    HttpTransferUtil
+		    .throwTheRemoteException(new BufferedReader(stringReader));
 	}
     }
 
+    /**
+     * Says if the bytes start with a prefix.
+     * 
+     * @param bytes
+     *            the bytes to test
+     * @param prefix
+     *            the prefix
+     * @return true if the bytes start with the prefix
+     */
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+	if (bytes.length < prefix.length) {
+	    return false;
+	}
+
+	for (int i = 0; i < prefix.length; i++) {
+	    if (bytes[i] != prefix[i]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
     //
     // All following private methods do *not* use global variables.
     // Keept it clean this way.
@@ -549,6 +710,8 @@ public class RemoteInputStream extends InputStream {
      *            the unique file identifier
      * @param cpt
      *            the counter for file chunks
+     * @param chunkPersistence
+     *            the persistence of the downloaded chunks
      * 
      * @return the input stream created from the download
      * 
@@ -561,7 +724,8 @@ public class RemoteInputStream extends InputStream {
      */
     private InputStream downloadAndCreateInputStream(
 	    RemoteSession remoteSession, String remoteFile,
-	    long remoteFileLength, File fileUnique, int cpt)
+	    long remoteFileLength, File fileUnique, int cpt,
+	    ChunkPersistence chunkPersistence)
 	    throws UnknownHostException, ConnectException, RemoteException,
 	    IOException, InvalidLoginException, FileNotFoundException {
 
@@ -580,26 +744,36 @@ public class RemoteInputStream extends InputStream {
 		    remoteFile, chunkLength);
 	} else {
 	    FileChunkStore fileChunkStore = new FileChunkStore(
+		    remoteSession.getChunkStateRegistry(),
 		    remoteSession.getUsername(), fileUnique, remoteFile);
 
 	    String remoteFileChunk = remoteFile + "." + cpt + ".kawanfw.chunk";
-	    String fileChunkStr = fileUnique.toString() + "." + cpt
-		    + ".kawanfw.chunk";
 
 	    ExceptionThrower.throwSocketExceptionIfFlagFileExists();
 
-	    fileChunk = new File(fileChunkStr);
+	    fileChunk = fileChunkStore.getChunkFile(cpt);
 
 	    // No re-download if file chunk exists and is complete
-	    if (fileChunkStore.alreadyDownloaded(fileChunk)) {
+	    if (fileChunkStore.alreadyDownloaded(cpt)) {
 		debug("fileChunk exists, no download: " + fileChunk);
 		in = new BufferedInputStream(new FileInputStream(fileChunk));
+	    } else if (chunkPersistence == ChunkPersistence.NONE) {
+		debug("downloadOneChunk " + remoteFileChunk);
+		in = apiInputStreamDownloader.downloadOneChunk(null,
+			remoteFileChunk, chunkLength);
+	    } else if (chunkPersistence == ChunkPersistence.ASYNC) {
+		debug("downloadOneChunk " + remoteFileChunk + " " + fileChunk);
+		// Stored by the stream once complete
+		in = new AsyncTeeInputStream(
+			apiInputStreamDownloader.downloadOneChunk(null,
+				remoteFileChunk, chunkLength),
+			fileChunkStore, cpt);
 	    } else {
 		debug("downloadOneChunk " + remoteFileChunk + " " + fileChunk);
 
 		in = apiInputStreamDownloader.downloadOneChunk(fileChunk,
 			remoteFileChunk, chunkLength);
-		fileChunkStore.add(fileChunk);
+		fileChunkStore.add(cpt);
 	    }
 
 	    // debug("fileChunk: " + fileChunk.toString());
@@ -614,13 +788,13 @@ public class RemoteInputStream extends InputStream {
      * 
      * @param in
      *            the Input Stream to read
-     * @param beginString
-     *            the beginning of input stream as string
+     * @param begin
+     *            the beginning of input stream, already read
      * 
      * @return the full content as String
      * @throws IOException
      */
-    private String getContentAsString(InputStream in, String beginString)
+    private String getContentAsString(InputStream in, byte[] begin)
 	    throws IOException {
 
 	int len;
@@ -631,11 +805,12 @@ public class RemoteInputStream extends InputStream {
 	byte[] buf = new byte[bufferSize];
 
 	ByteArrayOutputStream baos = new ByteArrayOutputStream();
-	while ((len = this.in.read(buf)) > 0) {
+	baos.write(begin);
+	while ((len = in.read(buf)) > 0) {
 	    baos.write(buf, 0, len);
 	}
 
-	String content = beginString + new String(baos.toByteArray());
+	String content = new String(baos.toByteArray());
 	baos.close();
 	return content;
     }
@@ -716,19 +891,77 @@ public class RemoteInputStream extends InputStream {
     }
 
     /**
-     * The method is not implemented in this KRemote Files version and will
-     * throw an {@code IOException}.
+     * Skips over and discards <code>n</code> bytes of data from this input
+     * stream. The skipped bytes are not downloaded: the stream moves to the
+     * new position as with {@link #seek(long)}. The stream does not skip past
+     * the end of the remote file.
      *
      * @param n
      *            the number of bytes to be skipped.
      * @return the actual number of bytes skipped.
      * @exception IOException
-     *                if the stream does not support seek, or if some other I/O
-     *                error occurs.
+     *                if an I/O error occurs.
      */
     @Override
     public long skip(long n) throws IOException {
-	throw new IOException(Tag.PRODUCT + " skip method is not supported.");
+	if (n <= 0) {
+	    return 0;
+	}
+
+	long position = getPosition();
+	long newPosition = Math.min(position + n, length());
+	seek(newPosition);
+	return newPosition - position;
+    }
+
+    /**
+     * Sets the position of the next byte to read from the remote file. <br>
+     * After a seek, the bytes are downloaded by ranges from the position, with
+     * a {@link RemoteSeekableByteChannel}: only the bytes that are read are
+     * downloaded and the download is not split in chunks anymore. <br>
+     * Setting the position at or after the end of the remote file is legal;
+     * subsequent reads return end of stream.
+     * 
+     * @param position
+     *            the position, counted from the beginning of the remote file
+     * @throws IllegalArgumentException
+     *             if position is negative
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void seek(long position) throws IOException {
+	if (position < 0) {
+	    throw new IllegalArgumentException("position can not be < 0!");
+	}
+
+	if (channel == null) {
+	    channel = new RemoteSeekableByteChannel(remoteSession, pathname);
+	    this.remoteFileLength = channel.size();
+
+	    // The sequential download is abandoned
+	    closeParallelChunkDownloader();
+	    if (in != null) {
+		in.close();
+		in = null;
+	    }
+	    deleteTempStorage();
+	}
+
+	channel.position(position);
+    }
+
+    /**
+     * Returns the position of the next byte to read from the remote file.
+     * 
+     * @return the position, counted from the beginning of the remote file
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public long getPosition() throws IOException {
+	if (channel != null) {
+	    return channel.position();
+	}
+	return totalLength;
     }
 
     /**
@@ -746,6 +979,9 @@ public class RemoteInputStream extends InputStream {
      */
     @Override
     public int available() throws IOException {
+	if (channel != null || in == null) {
+	    return 0;
+	}
 	return in.available();
     }
 
@@ -759,6 +995,13 @@ public class RemoteInputStream extends InputStream {
     @Override
     public void close() throws IOException {
 
+	if (channel != null) {
+	    channel.close();
+	    return;
+	}
+
+	closeParallelChunkDownloader();
+
 	// if (in == null) : it has been closed already so escape now
 	if (in == null) {
 	    return;
@@ -774,16 +1017,34 @@ public class RemoteInputStream extends InputStream {
 
 	// Delete temp storage only if all is done
 	if (totalLength >= remoteFileLength) {
+	    deleteTempStorage();
+	}
 
-	    // Delete the temporary files downloaded/created, if any
-	    FileChunkStore fileChunkStore = new FileChunkStore(
-		    remoteSession.getUsername(), fileUnique, pathname);
-	    fileChunkStore.remove();
+    }
 
-	    // Delete the file unique downloaded/created, if any
-	    FileUtils.deleteQuietly(fileUnique);
+    /**
+     * Stops the parallel chunk downloads, if any.
+     */
+    private void closeParallelChunkDownloader() {
+	if (parallelChunkDownloader != null) {
+	    parallelChunkDownloader.close();
+	    parallelChunkDownloader = null;
 	}
+    }
 
+    /**
+     * Deletes the file chunks downloaded in sequence and the unique file, if
+     * any.
+     */
+    private void deleteTempStorage() throws IOException {
+	// Delete the temporary files downloaded/created, if any
+	FileChunkStore fileChunkStore = new FileChunkStore(
+		remoteSession.getChunkStateRegistry(),
+		remoteSession.getUsername(), fileUnique, pathname);
+	fileChunkStore.remove();
+
+	// Delete the file unique downloaded/created, if any
+	FileUtils.deleteQuietly(fileUnique);
     }
 
     /**
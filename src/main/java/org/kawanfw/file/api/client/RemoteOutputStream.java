@@ -24,25 +24,26 @@
  */
 package org.kawanfw.file.api.client;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.ConnectException;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
-import org.apache.commons.io.FileUtils;
+import org.kawanfw.commons.client.http.HttpTransfer;
 import org.kawanfw.commons.util.ClientLogger;
 import org.kawanfw.commons.util.FrameworkDebug;
 import org.kawanfw.commons.util.Tag;
 import org.kawanfw.file.api.client.exception.InvalidLoginException;
 import org.kawanfw.file.api.client.exception.RemoteException;
 import org.kawanfw.file.api.util.client.ApiOutputStreamUploader;
+import org.kawanfw.file.api.util.client.ChunkSpool;
 import org.kawanfw.file.api.util.client.ChunkUtil;
 import org.kawanfw.file.api.util.client.ExceptionThrower;
 import org.kawanfw.file.api.util.client.RemoteFilePartStore;
@@ -61,6 +62,10 @@ import org.kawanfw.file.api.util.client.UniqueFileCreator;
  * {@link SessionParameters#setUploadChunkLength(long)} before passing
  * {@code SessionParameters} to this {@link RemoteSession} constructor.
  * <p>
+ * Chunks may be uploaded in background on separate connections while the next
+ * chunk is written, see {@link SessionParameters#setUploadParallelism(int)}.
+ * {@code close()} then waits for all chunk uploads to complete.
+ * <p>
  * Note that stream chunking requires all chunks to be sent to the same web
  * server that will aggregate the chunks on the same file. Thus, stream chunking
  * does not support true stateless architecture with multiple identical web
@@ -154,8 +159,8 @@ public class RemoteOutputStream extends OutputStream {
     /** The remote file's pathname */
     private String pathname = null;
 
-    /** The stream containing the datas to upload */
-    private OutputStream out = null;
+    /** The spool of the chunk being written */
+    private ChunkSpool out = null;
 
     /** The unique file used as container and reference for download */
     private File fileUnique = null;
@@ -173,11 +178,14 @@ public class RemoteOutputStream extends OutputStream {
     private long remoteFileLength = -1;
 
     /** Compute the total length of upload files, must match totalLength */
-    private long totalFileLength = 0;
+    private AtomicLong totalFileLength = new AtomicLong();
 
     /** Happens id the lase send id exactly the size of a chunk */
     private boolean noSendInclose = false;
 
+    /** The background chunk uploader, null if chunks are uploaded in sequence */
+    private ParallelChunkUploader parallelChunkUploader = null;
+
     /**
      * Creates an output stream to write to the remote file with the specified
      * pathname.
@@ -338,7 +346,26 @@ public class RemoteOutputStream extends OutputStream {
 	// Must be done in constructor because close() uses fileUnique
 	fileUnique = UniqueFileCreator.createUnique(remoteSession.getUsername(),
 		this.pathname);
-	out = new BufferedOutputStream(new FileOutputStream(fileUnique));
+	out = createChunkSpool(1);
+    }
+
+    /**
+     * Creates the spool of a chunk: in memory up to the session budget, then
+     * in a temporary file named after the unique file.
+     * 
+     * @param chunkNumber
+     *            the chunk number, starting at 1
+     * @return the spool of the chunk
+     */
+    private ChunkSpool createChunkSpool(int chunkNumber) {
+	long memoryLength = remoteSession.getSessionParameters() == null ? 0
+		: remoteSession.getSessionParameters()
+			.getUploadSpoolMemoryLength();
+
+	File spillFile = new File(fileUnique.toString() + "." + chunkNumber
+		+ ".kawanfw.chunk");
+	return new ChunkSpool(spillFile,
+		remoteSession.getUploadSpoolMemoryInUse(), memoryLength);
     }
 
     /**
@@ -397,14 +424,65 @@ public class RemoteOutputStream extends OutputStream {
 	if (tempLength >= ChunkUtil.getUploadChunkLength(remoteSession)) {
 	    out.close();
 	    cpt++;
-	    uploadPerChunks(remoteSession, fileUnique, pathname, cpt, false);
+
+	    int parallelism = remoteSession.getSessionParameters() == null ? 1
+		    : remoteSession.getSessionParameters()
+			    .getUploadParallelism();
+
+	    if (parallelism > 1) {
+		submitChunk(parallelism);
+	    } else {
+		try {
+		    uploadPerChunks(remoteSession, fileUnique, out, pathname,
+			    cpt, false, remoteSession.getHttpTransfer());
+		} finally {
+		    out.release();
+		}
+	    }
 
 	    tempLength = 0;
-	    fileUnique = UniqueFileCreator
-		    .createUnique(remoteSession.getUsername(), pathname);
-	    out = new BufferedOutputStream(new FileOutputStream(fileUnique));
+	    out = createChunkSpool(cpt + 1);
+	}
+    }
 
+    /**
+     * Submits the upload of the full chunk to the background chunk uploader,
+     * so that the next chunk can be written at once.
+     * 
+     * @param parallelism
+     *            the number of chunks uploaded in parallel
+     * @throws IOException
+     *             if a previous chunk upload failed
+     */
+    private void submitChunk(int parallelism) throws IOException {
+
+	if (parallelChunkUploader == null) {
+	    parallelChunkUploader = new ParallelChunkUploader(parallelism);
 	}
+
+	final ChunkSpool chunkSpool = out;
+	final File storeFile = fileUnique;
+	final int chunkCpt = cpt;
+
+	parallelChunkUploader.submit(cpt, new Callable<Void>() {
+	    @Override
+	    public Void call() throws Exception {
+		// Each chunk is uploaded on its own connection
+		HttpTransfer httpTransfer = remoteSession.createHttpTransfer();
+		boolean done = false;
+		try {
+		    uploadPerChunks(remoteSession, storeFile, chunkSpool,
+			    pathname, chunkCpt, false, httpTransfer);
+		    done = true;
+		} finally {
+		    if (!done) {
+			httpTransfer.close();
+		    }
+		    chunkSpool.release();
+		}
+		return null;
+	    }
+	});
     }
 
     /**
@@ -479,6 +557,7 @@ public class RemoteOutputStream extends OutputStream {
 	}
 
 	out.close();
+	ChunkSpool chunkSpool = out;
 
 	// We immediately set out to null to avoid recall of this method
 	out = null;
@@ -490,6 +569,11 @@ public class RemoteOutputStream extends OutputStream {
 		return;
 	    }
 
+	    // The last chunk is sent once all the others are uploaded
+	    if (parallelChunkUploader != null) {
+		parallelChunkUploader.awaitAll();
+	    }
+
 	    if (noSendInclose) {
 		// Last send is exactly chunk length. We have nothing to do:
 		return;
@@ -503,13 +587,25 @@ public class RemoteOutputStream extends OutputStream {
 			remoteSession.getAuthenticationToken(),
 			remoteSession.getHttpTransfer());
 
-		apiOutputStreamUploader.uploadOneChunk(fileUnique, pathname,
+		apiOutputStreamUploader.uploadOneChunk(chunkSpool, pathname,
 			ChunkUtil.getUploadChunkLength(remoteSession));
 	    } else {
-		sendLastChunk();
+		sendLastChunk(chunkSpool);
 	    }
 	} finally {
-	    FileUtils.deleteQuietly(fileUnique);
+	    if (parallelChunkUploader != null) {
+		parallelChunkUploader.close();
+		parallelChunkUploader = null;
+	    }
+
+	    chunkSpool.release();
+
+	    // The remote file has been modified
+	    RemoteFileMetadataCache metadataCache = remoteSession
+		    .getMetadataCache();
+	    if (metadataCache != null) {
+		metadataCache.invalidate(pathname);
+	    }
 	}
 
     }
@@ -517,6 +613,8 @@ public class RemoteOutputStream extends OutputStream {
     /**
      * As is says.
      * 
+     * @param chunkSpool
+     *            the spooled last chunk
      * @throws FileNotFoundException
      * @throws IOException
      * @throws IllegalArgumentException
@@ -526,12 +624,13 @@ public class RemoteOutputStream extends OutputStream {
      * @throws SocketException
      * @throws RemoteException
      */
-    private void sendLastChunk()
+    private void sendLastChunk(ChunkSpool chunkSpool)
 	    throws FileNotFoundException, IOException, IllegalArgumentException,
 	    InvalidLoginException, UnknownHostException, ConnectException,
 	    SocketException, RemoteException {
 	cpt++;
-	uploadPerChunks(remoteSession, fileUnique, pathname, cpt, true);
+	uploadPerChunks(remoteSession, fileUnique, chunkSpool, pathname, cpt,
+		true, remoteSession.getHttpTransfer());
 
 	// 1) Always remove if we don't know the remote file length
 	// 2) If remote file length is known, remove only at end of
@@ -539,6 +638,7 @@ public class RemoteOutputStream extends OutputStream {
 	if (remoteFileLength == -1 || (remoteFileLength != -1
 		&& totalLength >= remoteFileLength)) {
 	    RemoteFilePartStore remoteFilePartStore = new RemoteFilePartStore(
+		    remoteSession.getChunkStateRegistry(),
 		    remoteSession.getUsername(), fileUnique, pathname);
 	    remoteFilePartStore.remove();
 	}
@@ -547,14 +647,18 @@ public class RemoteOutputStream extends OutputStream {
     /**
      * Upload the file per chunk
      * 
-     * @param file
-     *            the file to upload
+     * @param storeFile
+     *            the unique file used as reference for recovery
+     * @param chunkSpool
+     *            the spooled chunk to upload
      * @param pathname
      *            the file name on the host
      * @param cpt
      *            the counter for file chunks
      * @param isLastChunk
      *            says if this is the lastchunk
+     * @param httpTransfer
+     *            the http transfer to use for the upload
      * 
      * @throws FileNotFoundException
      * @throws IOException
@@ -565,15 +669,17 @@ public class RemoteOutputStream extends OutputStream {
      * @throws SocketException
      * @throws RemoteException
      */
-    private void uploadPerChunks(RemoteSession remoteSession, File file,
-	    String remoteFile, int cpt, boolean isLastChunk)
+    private void uploadPerChunks(RemoteSession remoteSession, File storeFile,
+	    ChunkSpool chunkSpool, String remoteFile, int cpt, boolean isLastChunk,
+	    HttpTransfer httpTransfer)
 		    throws FileNotFoundException, IOException, IllegalArgumentException,
 		    InvalidLoginException, UnknownHostException, ConnectException,
 		    SocketException, RemoteException {
 
 	// Upload files in chunk, creating temporary file with default size 10Mb
 	RemoteFilePartStore remoteFilePartStore = new RemoteFilePartStore(
-		remoteSession.getUsername(), file, remoteFile);
+		remoteSession.getChunkStateRegistry(),
+		remoteSession.getUsername(), storeFile, remoteFile);
 
 	String remoteFilePart = remoteFile + "." + cpt + ".kawanfw.chunk";
 
@@ -584,27 +690,25 @@ public class RemoteOutputStream extends OutputStream {
 	ExceptionThrower.throwSocketExceptionIfFlagFileExists();
 
 	// Do the upload only if it has not been done
-	if (!remoteFilePartStore.alreadyUploaded(remoteFilePart)) {
+	if (!remoteFilePartStore.alreadyUploaded(cpt)) {
 	    debug(new Date() + " Uploading " + remoteFilePart + "...");
 
 	    ApiOutputStreamUploader apiOutputStreamUploader = new ApiOutputStreamUploader(
 		    remoteSession.getUsername(),
-		    remoteSession.getAuthenticationToken(),
-		    remoteSession.getHttpTransfer());
+		    remoteSession.getAuthenticationToken(), httpTransfer);
 
 	    ExceptionThrower.throwSocketExceptionIfFlagFileExists();
 
-	    apiOutputStreamUploader.uploadOneChunk(file, remoteFilePart,
+	    apiOutputStreamUploader.uploadOneChunk(chunkSpool, remoteFilePart,
 		    ChunkUtil.getUploadChunkLength(remoteSession));
 
-	    remoteFilePartStore.storeFilePart(remoteFilePart);
+	    remoteFilePartStore.storeFilePart(cpt);
 
-	    totalFileLength += file.length();
+	    totalFileLength.addAndGet(chunkSpool.length());
 
 	    debug("");
 	    debug("totalLength / totalFileLength : " + totalLength + " / "
 		    + totalFileLength + " UPLOADED!");
-	    FileUtils.deleteQuietly(file);
 
 	} else {
 	    debug(new Date() + " No Uploading of " + remoteFilePart
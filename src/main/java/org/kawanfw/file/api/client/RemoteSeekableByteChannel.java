@@ -0,0 +1,347 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.client;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Collections;
+import java.util.logging.Level;
+
+import org.kawanfw.commons.util.ClientLogger;
+import org.kawanfw.commons.util.DefaultParms;
+import org.kawanfw.commons.util.FrameworkDebug;
+import org.kawanfw.file.api.client.exception.InvalidLoginException;
+import org.kawanfw.file.api.util.client.ApiInputStreamDownloader;
+
+/**
+ * A read-only {@code SeekableByteChannel} on a remote file. <br>
+ * Bytes are read with range requests starting at the current position: only
+ * the bytes that are read are downloaded. This allows to read the tail of a
+ * huge log file or the footer of a ZIP file without downloading the whole
+ * file. <br>
+ * Sequential reads reuse the current range, that covers at least
+ * {@value org.kawanfw.commons.util.DefaultParms#DEFAULT_RANGE_READ_AHEAD}
+ * bytes.
+ * <p>
+ * The size of the channel is the length of the remote file when the channel
+ * is opened. <br>
+ * Example: <blockquote>
+ * 
+ * <pre>
+ * RemoteSeekableByteChannel channel = new RemoteSeekableByteChannel(
+ * 	remoteSession, &quot;/mydir/big.log&quot;);
+ * ByteBuffer buffer = ByteBuffer.allocate(4096);
+ * channel.position(Math.max(0, channel.size() - buffer.capacity()));
+ * channel.read(buffer);
+ * channel.close();
+ * </pre>
+ * 
+ * </blockquote>
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+
+public class RemoteSeekableByteChannel implements SeekableByteChannel {
+
+    /** For debug info */
+    private static boolean DEBUG = FrameworkDebug
+	    .isSet(RemoteSeekableByteChannel.class);
+
+    /** The remote session in use */
+    private RemoteSession remoteSession = null;
+
+    /** The remote file's pathname */
+    private String pathname = null;
+
+    /** The remote file length when opened */
+    private long size = 0;
+
+    /** The channel position */
+    private long position = 0;
+
+    /** The stream of the current range, null if none */
+    private InputStream in = null;
+
+    /** The position of the next byte of the current range */
+    private long inPosition = 0;
+
+    /** The position after the last byte of the current range */
+    private long inEnd = 0;
+
+    /** Says if the channel is open */
+    private boolean open = true;
+
+    /**
+     * Opens a channel on a remote file.
+     * 
+     * @param remoteSession
+     *            the current remote session
+     * @param pathname
+     *            the pathname on host with "/" as file separator. Must be
+     *            absolute.
+     * 
+     * @throws IllegalArgumentException
+     *             if remoteSession or pathname is null
+     * @throws InvalidLoginException
+     *             the session has been closed by a {@code logoff()}
+     * @throws FileNotFoundException
+     *             if the remote file does not exist or is a directory
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public RemoteSeekableByteChannel(RemoteSession remoteSession,
+	    String pathname) throws IOException {
+
+	if (remoteSession == null) {
+	    throw new IllegalArgumentException("remoteSession is null!");
+	}
+
+	if (remoteSession.getUsername() == null
+		|| remoteSession.getAuthenticationToken() == null) {
+	    throw new InvalidLoginException(
+		    RemoteSession.REMOTE_SESSION_IS_CLOSED);
+	}
+
+	if (pathname == null) {
+	    throw new IllegalArgumentException("pathname is null!");
+	}
+
+	if (!pathname.startsWith("/")) {
+	    throw new IllegalArgumentException(
+		    "pathname must be asbsolute and start with \"/\": "
+			    + pathname);
+	}
+
+	RemoteFileAttributes attributes = remoteSession.stat(
+		Collections.singletonList(pathname)).get(0);
+
+	if (!attributes.isFile()) {
+	    throw new FileNotFoundException("Remote file does not exists: "
+		    + pathname);
+	}
+
+	this.remoteSession = remoteSession;
+	this.pathname = pathname;
+	this.size = attributes.length();
+    }
+
+    /**
+     * Opens a channel on a remote file.
+     * 
+     * @param remoteFile
+     *            the remote file
+     * 
+     * @throws IllegalArgumentException
+     *             if remoteFile is null
+     * @throws InvalidLoginException
+     *             the session has been closed by a {@code logoff()}
+     * @throws FileNotFoundException
+     *             if the remote file does not exist or is a directory
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public RemoteSeekableByteChannel(RemoteFile remoteFile) throws IOException {
+	this(remoteFile == null ? null : remoteFile.getRemoteSession(),
+		remoteFile == null ? null : remoteFile.getPath());
+    }
+
+    /**
+     * Returns the remote file's pathname
+     * 
+     * @return the remote file's pathname
+     */
+    public String getPathname() {
+	return pathname;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+	checkOpen();
+
+	if (!dst.hasRemaining()) {
+	    return 0;
+	}
+
+	if (position >= size) {
+	    return -1;
+	}
+
+	if (in == null || inPosition != position || inPosition >= inEnd) {
+	    openRange(dst.remaining());
+	}
+
+	int len = (int) Math.min(dst.remaining(), inEnd - inPosition);
+	int n;
+
+	if (dst.hasArray()) {
+	    n = in.read(dst.array(), dst.arrayOffset() + dst.position(), len);
+	    if (n > 0) {
+		dst.position(dst.position() + n);
+	    }
+	} else {
+	    byte[] buffer = new byte[Math.min(len,
+		    DefaultParms.DEFAULT_TRANSFER_BUFFER_SIZE)];
+	    n = in.read(buffer);
+	    if (n > 0) {
+		dst.put(buffer, 0, n);
+	    }
+	}
+
+	if (n == -1) {
+	    // The remote file has been truncated since the channel was opened
+	    closeRange();
+	    return -1;
+	}
+
+	position += n;
+	inPosition += n;
+	return n;
+    }
+
+    /**
+     * Opens the range that starts at the current position.
+     * 
+     * @param length
+     *            the number of bytes to read
+     * @throws IOException
+     */
+    private void openRange(int length) throws IOException {
+	closeRange();
+
+	long rangeLength = Math.max(length,
+		DefaultParms.DEFAULT_RANGE_READ_AHEAD);
+	rangeLength = Math.min(rangeLength, size - position);
+
+	debug("openRange " + position + " " + rangeLength + ": " + pathname);
+
+	ApiInputStreamDownloader apiInputStreamDownloader = new ApiInputStreamDownloader(
+		remoteSession.getUsername(),
+		remoteSession.getAuthenticationToken(),
+		remoteSession.getHttpTransfer());
+
+	in = apiInputStreamDownloader.downloadRange(pathname, position,
+		rangeLength);
+	inPosition = position;
+	inEnd = position + rangeLength;
+    }
+
+    /**
+     * Closes the stream of the current range, if any.
+     * 
+     * @throws IOException
+     */
+    private void closeRange() throws IOException {
+	if (in != null) {
+	    InputStream toClose = in;
+	    in = null;
+	    toClose.close();
+	}
+    }
+
+    /**
+     * Throws a {@code NonWritableChannelException}: the channel is read-only.
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+	throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+	checkOpen();
+	return position;
+    }
+
+    /**
+     * Sets the position of the channel. Setting the position to a value that
+     * is greater than the size is legal; subsequent reads return end of file.
+     * No request is done until the next read.
+     */
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+	checkOpen();
+
+	if (newPosition < 0) {
+	    throw new IllegalArgumentException("newPosition can not be < 0!");
+	}
+
+	position = newPosition;
+	return this;
+    }
+
+    /**
+     * Returns the length of the remote file when the channel was opened.
+     */
+    @Override
+    public long size() throws IOException {
+	checkOpen();
+	return size;
+    }
+
+    /**
+     * Throws a {@code NonWritableChannelException}: the channel is read-only.
+     */
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+	throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+	return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+	if (!open) {
+	    return;
+	}
+
+	open = false;
+	closeRange();
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+	if (!open) {
+	    throw new ClosedChannelException();
+	}
+    }
+
+    /**
+     * debug tool
+     */
+    private void debug(String s) {
+	if (DEBUG) {
+	    ClientLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+
+}
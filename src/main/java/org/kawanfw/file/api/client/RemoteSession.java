@@ -24,7 +24,9 @@
  */
 package org.kawanfw.file.api.client;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.PasswordAuthentication;
@@ -34,6 +36,7 @@ import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.kawanfw.commons.client.http.HttpTransfer;
@@ -46,6 +49,7 @@ import org.kawanfw.commons.util.HtmlConverter;
 import org.kawanfw.commons.util.Tag;
 import org.kawanfw.file.api.client.exception.InvalidLoginException;
 import org.kawanfw.file.api.client.exception.RemoteException;
+import org.kawanfw.file.api.util.client.ChunkStateRegistry;
 import org.kawanfw.file.util.parms.Action;
 import org.kawanfw.file.util.parms.Parameter;
 import org.kawanfw.file.util.parms.ReturnCode;
@@ -66,6 +70,8 @@ import org.kawanfw.file.version.FileVersion;
  * <li>Call remote Java methods through the integrated RPC server.</li>
  * <li>Returns with one call the length of a list of files located on the remote
  * server.</li>
+ * <li>Returns with one call the attributes of a list of files located on the
+ * remote server.</li>
  * </ul>
  * <br>
  * Example: <blockquote>
@@ -197,6 +203,18 @@ public class RemoteSession implements Cloneable {
     /** The remote Java version */
     private String remoteJavaVersion = null;
 
+    /** The client side cache of file attributes, null if not activated */
+    private RemoteFileMetadataCache metadataCache = null;
+
+    /** The chunks already transferred, for recovery */
+    private ChunkStateRegistry chunkStateRegistry = null;
+
+    /**
+     * The memory used by the upload chunks spooled in memory, shared with the
+     * clones so that they all stay in the same budget
+     */
+    private AtomicLong uploadSpoolMemoryInUse = new AtomicLong();
+
     /**
      * Private constructor for clone().
      * 
@@ -233,6 +251,29 @@ public class RemoteSession implements Cloneable {
 		passwordAuthentication, sessionParameters);
     }
 
+    /**
+     * Creates the metadata cache if it is activated in the session parameters.
+     */
+    private void createMetadataCache() {
+	if (sessionParameters != null && sessionParameters.isMetadataCacheOn()) {
+	    metadataCache = new RemoteFileMetadataCache(
+		    sessionParameters.getMetadataCacheTtl(),
+		    sessionParameters.getMetadataCacheMaxEntries());
+	}
+    }
+
+    /**
+     * Creates the registry of the chunks transferred, bounded by the session
+     * parameters.
+     */
+    private void createChunkStateRegistry() {
+	SessionParameters parameters = sessionParameters != null ? sessionParameters
+		: new SessionParameters();
+	chunkStateRegistry = new ChunkStateRegistry(
+		parameters.getChunkStateTtl(),
+		parameters.getChunkStateMaxEntries());
+    }
+
     /**
      * Creates an KRemote Files session with a proxy and protocol parameters.
      * 
@@ -302,6 +343,9 @@ public class RemoteSession implements Cloneable {
 	httpTransfer = HttpTransferUtil.HttpTransferFactory(url, proxy,
 		passwordAuthentication, sessionParameters);
 
+	createMetadataCache();
+	createChunkStateRegistry();
+
 	// username & password may be null: for call()
 	if (username == null) {
 	    return;
@@ -659,6 +703,189 @@ public class RemoteSession implements Cloneable {
 
     }
 
+    /**
+     * Returns the client side cache of the remote file attributes.
+     * 
+     * @return the metadata cache, or {@code null} if it is not activated with
+     *         {@link SessionParameters#setMetadataCacheOn(boolean)}
+     */
+    public RemoteFileMetadataCache getMetadataCache() {
+	return metadataCache;
+    }
+
+    /**
+     * Returns the registry of the chunks already transferred by the
+     * {@code RemoteInputStream} and {@code RemoteOutputStream} instances of
+     * this session and its clones.
+     * 
+     * @return the registry of the chunks already transferred
+     */
+    ChunkStateRegistry getChunkStateRegistry() {
+	return chunkStateRegistry;
+    }
+
+    /**
+     * Returns the memory used by the upload chunks spooled in memory by the
+     * {@code RemoteOutputStream} instances of this session.
+     * 
+     * @return the memory used by the upload chunks spooled in memory
+     */
+    AtomicLong getUploadSpoolMemoryInUse() {
+	return uploadSpoolMemoryInUse;
+    }
+
+    /**
+     * Returns with one call the attributes of a list of files located on the
+     * remote host: existence, type, length, last modification time and access
+     * rights.
+     * <p>
+     * This convenient method is provided for fast scan of many remote files:
+     * one request replaces the many calls of {@link RemoteFile#exists()},
+     * {@link RemoteFile#length()}, {@link RemoteFile#lastModified()}, etc.
+     * 
+     * @param pathnames
+     *            the list of pathnames on host with "/" as file separator. Must
+     *            be absolute.
+     * 
+     * @return the attributes of the remote files, in the order of the
+     *         pathnames
+     * 
+     * @throws IllegalArgumentException
+     *             if pathnames is null
+     * @throws InvalidLoginException
+     *             the session has been closed by a {@code logoff()}
+     * 
+     * @throws UnknownHostException
+     *             if the host URL (http://www.acme.org) does not exists or no
+     *             Internet Connection.
+     * @throws ConnectException
+     *             if the Host is correct but the {@code ServerFileManager}
+     *             Servlet is not reachable
+     *             (http://www.acme.org/ServerFileManager) and access failed
+     *             with a status != OK (200). (If the host is incorrect, or is
+     *             impossible to connect to - Tomcat down - the
+     *             {@code ConnectException} will be the sub exception
+     *             {@code HttpHostConnectException}.)
+     * @throws SocketException
+     *             if network failure during transmission
+     * @throws RemoteException
+     *             an exception has been thrown on the server side
+     * @throws IOException
+     *             for all other IO / Network / System Error
+     */
+    public List<RemoteFileAttributes> stat(List<String> pathnames)
+	    throws IllegalArgumentException, InvalidLoginException,
+	    UnknownHostException, ConnectException, SocketException,
+	    RemoteException, IOException {
+
+	if (pathnames == null) {
+	    throw new IllegalArgumentException("pathnames can not be null!");
+	}
+
+	List<List<String>> results = fileMethodsBatch(pathnames,
+		RemoteFileAttributes.STAT_METHODS);
+
+	List<RemoteFileAttributes> attributes = new Vector<RemoteFileAttributes>();
+	for (int i = 0; i < pathnames.size(); i++) {
+	    attributes.add(
+		    new RemoteFileAttributes(pathnames.get(i), results.get(i)));
+	}
+	return attributes;
+    }
+
+    /**
+     * Calls in one request many File methods without parameters on many
+     * remote files.
+     * 
+     * @param pathnames
+     *            the list of pathnames on host
+     * @param methodNames
+     *            the File methods to call on each file
+     * @return for each pathname, the list of the method results as string
+     */
+    List<List<String>> fileMethodsBatch(List<String> pathnames,
+	    List<String> methodNames) throws InvalidLoginException,
+	    UnknownHostException, ConnectException, SocketException,
+	    RemoteException, IOException {
+
+	if (username == null || authenticationToken == null) {
+	    throw new InvalidLoginException(REMOTE_SESSION_IS_CLOSED);
+	}
+
+	List<List<String>> results = new Vector<List<String>>();
+	if (pathnames.isEmpty()) {
+	    return results;
+	}
+
+	String jsonPathnames = ListOfStringTransport
+		.toJson(HtmlConverter.toHtml(pathnames));
+	String jsonMethodNames = ListOfStringTransport.toJson(methodNames);
+
+	// Prepare the request parameters
+	List<SimpleNameValuePair> requestParams = new Vector<SimpleNameValuePair>();
+	requestParams.add(new SimpleNameValuePair(Parameter.ACTION,
+		Action.FILE_METHODS_BATCH_ACTION));
+	requestParams
+		.add(new SimpleNameValuePair(Parameter.USERNAME, username));
+	requestParams.add(
+		new SimpleNameValuePair(Parameter.TOKEN, authenticationToken));
+	requestParams
+		.add(new SimpleNameValuePair(Parameter.FILENAME, jsonPathnames));
+	requestParams.add(new SimpleNameValuePair(Parameter.METHOD_NAME,
+		jsonMethodNames));
+
+	httpTransfer.send(requestParams);
+
+	// Binary response: all the typed results, file after file
+	List<Object> values = httpTransfer.recvValues();
+	if (values != null) {
+	    if (values.size() == 1
+		    && ReturnCode.INVALID_LOGIN_OR_PASSWORD.equals(values.get(0))) {
+		throw new InvalidLoginException(REMOTE_SESSION_IS_CLOSED);
+	    }
+
+	    if (values.size() != pathnames.size() * methodNames.size()) {
+		throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+			+ " Invalid number of results: " + values.size()
+			+ " for " + pathnames.size() + " files.");
+	    }
+
+	    int i = 0;
+	    for (int j = 0; j < pathnames.size(); j++) {
+		List<String> fileResults = new Vector<String>();
+		for (int k = 0; k < methodNames.size(); k++) {
+		    fileResults.add(String.valueOf(values.get(i++)));
+		}
+		results.add(fileResults);
+	    }
+	    return results;
+	}
+
+	String response = httpTransfer.recv();
+
+	if (response.startsWith(ReturnCode.INVALID_LOGIN_OR_PASSWORD)) {
+	    throw new InvalidLoginException(REMOTE_SESSION_IS_CLOSED);
+	}
+
+	// One JSON list of results per line, in the order of the pathnames
+	BufferedReader reader = new BufferedReader(new StringReader(response));
+	String line = null;
+	while ((line = reader.readLine()) != null) {
+	    if (line.isEmpty()) {
+		continue;
+	    }
+	    results.add(ListOfStringTransport.fromJson(line));
+	}
+
+	if (results.size() != pathnames.size()) {
+	    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+		    + " Invalid number of results: " + results.size()
+		    + " for " + pathnames.size() + " files.");
+	}
+
+	return results;
+    }
+
     /**
      * Returns with one call the length of a list of files located on the remote
      * host.
@@ -728,6 +955,20 @@ public class RemoteSession implements Cloneable {
 
 	httpTransfer.send(requestParams);
 
+	// Binary response: the length is sent as a typed long
+	List<Object> values = httpTransfer.recvValues();
+	if (values != null) {
+	    Object value = values.isEmpty() ? null : values.get(0);
+	    if (value instanceof Long) {
+		return (Long) value;
+	    } else if (ReturnCode.INVALID_LOGIN_OR_PASSWORD.equals(value)) {
+		throw new InvalidLoginException(REMOTE_SESSION_IS_CLOSED);
+	    } else {
+		throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+			+ " Invalid file length response: " + value);
+	    }
+	}
+
 	// If everything is OK, we have in our protocol a response that
 	// 1) starts with "OK". 2) Is followed by the Authentication Token
 	// else: response starts with "INVALID_LOGIN_OR_PASSWORD".
@@ -826,6 +1067,9 @@ public class RemoteSession implements Cloneable {
 		this.authenticationToken, this.proxy,
 		this.passwordAuthentication, this.sessionParameters,
 		this.remoteJavaVersion);
+	remoteSession.metadataCache = this.metadataCache;
+	remoteSession.chunkStateRegistry = this.chunkStateRegistry;
+	remoteSession.uploadSpoolMemoryInUse = this.uploadSpoolMemoryInUse;
 	return remoteSession;
     }
 
@@ -853,6 +1097,11 @@ public class RemoteSession implements Cloneable {
 	sessionParameters = null;
 	remoteJavaVersion = null;
 
+	if (metadataCache != null) {
+	    metadataCache.clear();
+	    metadataCache = null;
+	}
+
 	if (httpTransfer != null) {
 	    httpTransfer.close();
 	    httpTransfer = null;
@@ -868,6 +1117,17 @@ public class RemoteSession implements Cloneable {
 	return httpTransfer;
     }
 
+    /**
+     * Creates a new http transfer instance with the parameters of this
+     * session, for a transfer done in another thread.
+     * 
+     * @return a new http transfer instance
+     */
+    HttpTransfer createHttpTransfer() {
+	return HttpTransferUtil.HttpTransferFactory(url, proxy,
+		passwordAuthentication, sessionParameters);
+    }
+
     /*
      * (non-Javadoc)
      * 
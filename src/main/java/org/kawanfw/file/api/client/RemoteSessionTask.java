@@ -0,0 +1,52 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.client;
+
+/**
+ * An operation run with a {@code RemoteSession} by an
+ * {@link AsyncRemoteSession}.
+ * <p>
+ * The session passed to {@link #call(RemoteSession)} is used by one operation
+ * at a time: it must not be kept after the call returns.
+ * 
+ * @param <T>
+ *            the type of the operation result
+ * 
+ * @author Nicolas de Pomereu
+ * @since 1.0
+ */
+public interface RemoteSessionTask<T> {
+
+    /**
+     * Runs the operation.
+     * 
+     * @param remoteSession
+     *            the remote session reserved for this operation
+     * @return the result of the operation
+     * @throws Exception
+     *             if the operation fails
+     */
+    T call(RemoteSession remoteSession) throws Exception;
+}
@@ -27,8 +27,13 @@ package org.kawanfw.file.api.client;
 import java.io.InputStream;
 import java.io.Serializable;
 
+import org.kawanfw.commons.client.http.CompressionCounters;
+import org.kawanfw.commons.client.http.CompressionStats;
+import org.kawanfw.commons.client.http.ConnectionPoolStats;
+import org.kawanfw.commons.client.http.HttpConnectionPool;
 import org.kawanfw.commons.json.SessionParametersGson;
 import org.kawanfw.commons.util.DefaultParms;
+import org.kawanfw.commons.util.codec.ContentCodecs;
 
 /**
  * 
@@ -42,12 +47,24 @@ import org.kawanfw.commons.util.DefaultParms;
  * <li>Boolean to say if Clob upload/download using character stream or ASCII
  * stream must be HTML encoded. Defaults to <code>true</code>.</li>
  * <li>Boolean to say if HTTP content must be compressed. Defaults to <code>true</code>.</li>
+ * <li>Preferred codec of the compressed transfers. Defaults to <code>"deflate"</code>.</li>
  * <li>Download chunk length to be used by
  * {@link RemoteInputStream}. Defaults to 10Mb. 0
  * means files are not chunked.</li>
  * <li>Upload chunk length to be used by
  * {@link RemoteOutputStream} Defaults to 10Mb. 0 means
  * files are not chunked.</li>
+ * <li>Maximum number of persistent (keep-alive) connections per host. Defaults to 5.</li>
+ * <li>Boolean to say if remote file attributes are cached on client side. Defaults to <code>false</code>.</li>
+ * <li>Time-to-live, in milliseconds, of the cached file attributes. Defaults to 5 seconds.</li>
+ * <li>Maximum number of files in the attributes cache. Defaults to 10000.</li>
+ * <li>Number of chunks downloaded in parallel by {@link RemoteInputStream}. Defaults to 1 (chunks downloaded in sequence).</li>
+ * <li>Number of chunks uploaded in parallel by {@link RemoteOutputStream}. Defaults to 1 (chunks uploaded in sequence).</li>
+ * <li>Memory used to spool the upload chunks of {@link RemoteOutputStream}. Defaults to 0 (chunks spooled in temporary files).</li>
+ * <li>Persistence of the download chunks of {@link RemoteInputStream}. Defaults to {@link ChunkPersistence#SYNC}.</li>
+ * <li>Buffer size, in bytes, used to write the uploads on the network. Defaults to 64 KB.</li>
+ * <li>Time-to-live, in milliseconds, of the recovery state of an interrupted transfer. Defaults to 24 hours.</li>
+ * <li>Maximum number of files in transfer whose recovery state is kept. Defaults to 10000.</li>
  * </ul>
  * <p>
  * Use this class to change the default values of the HTTP session and
@@ -139,6 +156,42 @@ public class SessionParameters implements Serializable {
     
     /** Says if we send an "Accept-Encoding" "gzip" to server */
     private boolean compressionOn = DefaultParms.DEFAULT_COMPRESSION_ON;
+
+    /** The preferred codec of the compressed transfers */
+    private String compressionCodec = DefaultParms.DEFAULT_COMPRESSION_CODEC;
+    
+    /** The maximum number of persistent connections per host */
+    private int maxConnectionsPerRoute = DefaultParms.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    
+    /** Says if remote file attributes are cached on client side */
+    private boolean metadataCacheOn = DefaultParms.DEFAULT_METADATA_CACHE_ON;
+    
+    /** The time-to-live in milliseconds of the cached file attributes */
+    private int metadataCacheTtl = DefaultParms.DEFAULT_METADATA_CACHE_TTL;
+    
+    /** The maximum number of files in the attributes cache */
+    private int metadataCacheMaxEntries = DefaultParms.DEFAULT_METADATA_CACHE_MAX_ENTRIES;
+    
+    /** The number of chunks downloaded in parallel by RemoteInputStream */
+    private int downloadParallelism = DefaultParms.DEFAULT_DOWNLOAD_PARALLELISM;
+
+    /** The number of chunks uploaded in parallel by RemoteOutputStream */
+    private int uploadParallelism = DefaultParms.DEFAULT_UPLOAD_PARALLELISM;
+
+    /** The memory used to spool the upload chunks */
+    private long uploadSpoolMemoryLength = DefaultParms.DEFAULT_UPLOAD_SPOOL_MEMORY_LENGTH;
+
+    /** The persistence of the download chunks */
+    private ChunkPersistence downloadChunkPersistence = ChunkPersistence.SYNC;
+
+    /** The buffer size used to write the uploads */
+    private int uploadBufferSize = DefaultParms.DEFAULT_UPLOAD_BUFFER_SIZE;
+    
+    /** The time-to-live in milliseconds of the recovery state of a transfer */
+    private int chunkStateTtl = DefaultParms.DEFAULT_CHUNK_STATE_TTL;
+    
+    /** The maximum number of files whose recovery state is kept */
+    private int chunkStateMaxEntries = DefaultParms.DEFAULT_CHUNK_STATE_MAX_ENTRIES;
     
     /**
      * Constructor.
@@ -355,7 +408,11 @@ public class SessionParameters implements Serializable {
     }
 
     /**
-     * Says if http content is compressed
+     * Says if http content is compressed. If activated, the responses are
+     * compressed with any codec of {@link ContentCodecs} supported by the
+     * server, and the uploads are compressed if the server supports the
+     * codec. Uploads of already compressed formats (by file extension) or of
+     * content that looks compressed (by sampled entropy) are sent as is.
      * @param compressionOn {@code true} if compression is activated, else {@code false}
      * @since 1.0
      */
@@ -363,6 +420,382 @@ public class SessionParameters implements Serializable {
         this.compressionOn = compressionOn;
     }
 
+    /**
+     * Returns the name of the preferred codec of the compressed transfers.
+     * 
+     * @return the name of the preferred codec
+     * @since 1.0
+     */
+    public String getCompressionCodec() {
+        return compressionCodec;
+    }
+
+    /**
+     * Sets the preferred codec of the compressed transfers, among the codecs
+     * registered in {@link ContentCodecs}. The codec is used if the other
+     * side supports it, otherwise another common codec is used. <br>
+     * Defaults to <code>"deflate"</code>, the fastest one; <code>"gzip"</code>
+     * gives a slightly better ratio for more CPU.
+     * 
+     * @param compressionCodec
+     *            the name of the preferred codec
+     * @since 1.0
+     */
+    public void setCompressionCodec(String compressionCodec) {
+	if (ContentCodecs.get(compressionCodec) == null) {
+	    throw new IllegalArgumentException(
+		    "compressionCodec is not a registered codec: "
+			    + compressionCodec);
+	}
+        this.compressionCodec = compressionCodec;
+    }
+
+    /**
+     * Returns the maximum number of persistent (keep-alive) connections kept
+     * per host. Defaults to 5.
+     * 
+     * @return the maximum number of persistent connections per host
+     * @since 1.0
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of persistent (keep-alive) connections kept per
+     * host. Requests above this limit are served by connections closed after
+     * the response.
+     * <p>
+     * The sockets themselves are kept by the JDK keep-alive cache, which holds
+     * at most <code>http.maxConnections</code> idle sockets per host (5 by
+     * default): the value is thus capped by <code>http.maxConnections</code>,
+     * and 0 means the <code>http.maxConnections</code> limit only.
+     * 
+     * @param maxConnectionsPerRoute
+     *            the maximum number of persistent connections per host
+     * @since 1.0
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * Says if the attributes of remote files are cached on client side.
+     * 
+     * @return {@code true} if the metadata cache is activated
+     * @see RemoteFileMetadataCache
+     * @since 1.0
+     */
+    public boolean isMetadataCacheOn() {
+        return metadataCacheOn;
+    }
+
+    /**
+     * Says if the attributes of remote files ({@code exists}, {@code length},
+     * {@code lastModified}, {@code isDirectory}, etc.) are cached on client
+     * side. Defaults to {@code false}.
+     * 
+     * @param metadataCacheOn
+     *            {@code true} to activate the metadata cache, else
+     *            {@code false}
+     * @see RemoteFileMetadataCache
+     * @since 1.0
+     */
+    public void setMetadataCacheOn(boolean metadataCacheOn) {
+        this.metadataCacheOn = metadataCacheOn;
+    }
+
+    /**
+     * Returns the time-to-live in milliseconds of the cached file attributes.
+     * 
+     * @return the time-to-live in milliseconds of the cached file attributes
+     * @since 1.0
+     */
+    public int getMetadataCacheTtl() {
+        return metadataCacheTtl;
+    }
+
+    /**
+     * Sets the time-to-live in milliseconds of the cached file attributes.
+     * Defaults to 5 seconds.
+     * 
+     * @param metadataCacheTtl
+     *            the time-to-live in milliseconds of the cached file
+     *            attributes
+     * @since 1.0
+     */
+    public void setMetadataCacheTtl(int metadataCacheTtl) {
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    /**
+     * Returns the maximum number of files in the attributes cache.
+     * 
+     * @return the maximum number of files in the attributes cache
+     * @since 1.0
+     */
+    public int getMetadataCacheMaxEntries() {
+        return metadataCacheMaxEntries;
+    }
+
+    /**
+     * Sets the maximum number of files in the attributes cache. The least
+     * recently used entries are evicted first. Defaults to 10000.
+     * 
+     * @param metadataCacheMaxEntries
+     *            the maximum number of files in the attributes cache
+     * @since 1.0
+     */
+    public void setMetadataCacheMaxEntries(int metadataCacheMaxEntries) {
+        this.metadataCacheMaxEntries = metadataCacheMaxEntries;
+    }
+
+    /**
+     * Returns the number of chunks downloaded in parallel by
+     * {@link RemoteInputStream}.
+     * 
+     * @return the number of chunks downloaded in parallel
+     * @since 1.0
+     */
+    public int getDownloadParallelism() {
+        return downloadParallelism;
+    }
+
+    /**
+     * Sets the number of chunks downloaded in parallel by
+     * {@link RemoteInputStream}, each on its own connection. Chunks are
+     * delivered in order and no more than this number of chunks are
+     * downloaded ahead of the reader. Defaults to 1: chunks are downloaded in
+     * sequence. <br>
+     * Values greater than 1 are useful on high bandwidth and high latency
+     * links. The maximum number of persistent connections per host should be
+     * at least this value, see {@link #setMaxConnectionsPerRoute(int)}.
+     * 
+     * @param downloadParallelism
+     *            the number of chunks downloaded in parallel, &ge; 1
+     * @since 1.0
+     */
+    public void setDownloadParallelism(int downloadParallelism) {
+	if (downloadParallelism < 1) {
+	    throw new IllegalArgumentException(
+		    "downloadParallelism must be >= 1!");
+	}
+        this.downloadParallelism = downloadParallelism;
+    }
+
+    /**
+     * Returns the number of chunks uploaded in parallel by
+     * {@link RemoteOutputStream}.
+     * 
+     * @return the number of chunks uploaded in parallel
+     * @since 1.0
+     */
+    public int getUploadParallelism() {
+        return uploadParallelism;
+    }
+
+    /**
+     * Sets the number of chunks uploaded in parallel by
+     * {@link RemoteOutputStream}, each on its own connection. With a value
+     * greater than 1, full chunks are uploaded in background while the next
+     * chunk is written, and {@code close()} waits for all uploads to
+     * complete. Defaults to 1: each chunk is uploaded by the {@code write}
+     * call that fills it. <br>
+     * The maximum number of persistent connections per host should be at
+     * least this value, see {@link #setMaxConnectionsPerRoute(int)}.
+     * 
+     * @param uploadParallelism
+     *            the number of chunks uploaded in parallel, &ge; 1
+     * @since 1.0
+     */
+    public void setUploadParallelism(int uploadParallelism) {
+	if (uploadParallelism < 1) {
+	    throw new IllegalArgumentException(
+		    "uploadParallelism must be >= 1!");
+	}
+        this.uploadParallelism = uploadParallelism;
+    }
+
+    /**
+     * Returns the maximum memory used to spool the upload chunks of
+     * {@link RemoteOutputStream}.
+     * 
+     * @return the maximum memory used to spool the upload chunks, in bytes
+     * @since 1.0
+     */
+    public long getUploadSpoolMemoryLength() {
+        return uploadSpoolMemoryLength;
+    }
+
+    /**
+     * Sets the maximum memory used to spool the upload chunks of
+     * {@link RemoteOutputStream}. The budget is shared by all the streams of
+     * the session and of its clones. Bytes are kept in pooled memory blocks
+     * up to the budget and streamed directly from memory into the upload
+     * request; the bytes beyond the budget are spooled in temporary files.
+     * <br>
+     * Defaults to 0: all chunks are spooled in temporary files. A value of at
+     * least the upload chunk length times the upload parallelism plus one
+     * keeps all uploads in memory.
+     * 
+     * @param uploadSpoolMemoryLength
+     *            the maximum memory used to spool the upload chunks, in bytes
+     * @since 1.0
+     */
+    public void setUploadSpoolMemoryLength(long uploadSpoolMemoryLength) {
+	if (uploadSpoolMemoryLength < 0) {
+	    throw new IllegalArgumentException(
+		    "uploadSpoolMemoryLength must be >= 0!");
+	}
+        this.uploadSpoolMemoryLength = uploadSpoolMemoryLength;
+    }
+
+    /**
+     * Returns how {@link RemoteInputStream} keeps the downloaded chunks for
+     * recovery.
+     * 
+     * @return the persistence of the download chunks
+     * @since 1.0
+     */
+    public ChunkPersistence getDownloadChunkPersistence() {
+        return downloadChunkPersistence;
+    }
+
+    /**
+     * Sets how {@link RemoteInputStream} keeps the downloaded chunks for
+     * recovery. Defaults to {@link ChunkPersistence#SYNC}. <br>
+     * With {@link ChunkPersistence#NONE}, the chunks are downloaded in
+     * sequence: parallel download needs the chunk files, see
+     * {@link #setDownloadParallelism(int)}.
+     * 
+     * @param downloadChunkPersistence
+     *            the persistence of the download chunks
+     * @since 1.0
+     */
+    public void setDownloadChunkPersistence(
+	    ChunkPersistence downloadChunkPersistence) {
+	if (downloadChunkPersistence == null) {
+	    throw new IllegalArgumentException(
+		    "downloadChunkPersistence is null!");
+	}
+        this.downloadChunkPersistence = downloadChunkPersistence;
+    }
+
+    /**
+     * Returns the buffer size used to write the uploads on the network.
+     * 
+     * @return the buffer size used to write the uploads, in bytes
+     * @since 1.0
+     */
+    public int getUploadBufferSize() {
+        return uploadBufferSize;
+    }
+
+    /**
+     * Sets the buffer size used to write the uploads on the network. Uploads
+     * of known length (files and upload chunks) are sent with a fixed length
+     * and copied with a buffer of at most this size; uploads of unknown
+     * length are sent in HTTP chunks of this size. Larger values mean fewer
+     * writes on fast links. <br>
+     * Defaults to 64 KB.
+     * 
+     * @param uploadBufferSize
+     *            the buffer size used to write the uploads, in bytes
+     * @since 1.0
+     */
+    public void setUploadBufferSize(int uploadBufferSize) {
+	if (uploadBufferSize < 1) {
+	    throw new IllegalArgumentException(
+		    "uploadBufferSize must be >= 1!");
+	}
+        this.uploadBufferSize = uploadBufferSize;
+    }
+
+    /**
+     * Returns the time-to-live in milliseconds of the recovery state of an
+     * interrupted transfer.
+     * 
+     * @return the time-to-live in milliseconds of the recovery state
+     * @since 1.0
+     */
+    public int getChunkStateTtl() {
+        return chunkStateTtl;
+    }
+
+    /**
+     * Sets the time-to-live in milliseconds of the recovery state of an
+     * interrupted transfer: the chunks already uploaded or downloaded by
+     * {@link RemoteOutputStream} and {@link RemoteInputStream}. The state of
+     * a transfer not resumed in time is forgotten and its downloaded chunk
+     * files are deleted. 0 means no expiration. <br>
+     * Defaults to 24 hours.
+     * 
+     * @param chunkStateTtl
+     *            the time-to-live in milliseconds of the recovery state
+     * @since 1.0
+     */
+    public void setChunkStateTtl(int chunkStateTtl) {
+	if (chunkStateTtl < 0) {
+	    throw new IllegalArgumentException("chunkStateTtl must be >= 0!");
+	}
+        this.chunkStateTtl = chunkStateTtl;
+    }
+
+    /**
+     * Returns the maximum number of files in transfer whose recovery state is
+     * kept.
+     * 
+     * @return the maximum number of files whose recovery state is kept
+     * @since 1.0
+     */
+    public int getChunkStateMaxEntries() {
+        return chunkStateMaxEntries;
+    }
+
+    /**
+     * Sets the maximum number of files in transfer whose recovery state is
+     * kept by a session and its clones. The least recently used states are
+     * forgotten first. <br>
+     * Defaults to 10000.
+     * 
+     * @param chunkStateMaxEntries
+     *            the maximum number of files whose recovery state is kept
+     * @since 1.0
+     */
+    public void setChunkStateMaxEntries(int chunkStateMaxEntries) {
+	if (chunkStateMaxEntries < 1) {
+	    throw new IllegalArgumentException(
+		    "chunkStateMaxEntries must be >= 1!");
+	}
+        this.chunkStateMaxEntries = chunkStateMaxEntries;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the persistent connection
+     * limiter shared by all sessions: routes, leased persistent connections,
+     * total leases and overflows (requests sent with a connection closed after
+     * the response).
+     * 
+     * @return a snapshot of the connection limiter statistics
+     * @since 1.0
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+	return HttpConnectionPool.getDefault().getStats();
+    }
+
+    /**
+     * Returns a snapshot of the compression statistics of the transfers of
+     * all sessions: bytes before and after compression of the compressed
+     * uploads and downloads, and number of uploads sent uncompressed. The
+     * ratio of each transfer is also written in the debug log.
+     * 
+     * @return a snapshot of the compression statistics
+     * @since 1.0
+     */
+    public CompressionStats getCompressionStats() {
+	return CompressionCounters.getStats();
+    }
+
     /**
      * Returns a JSon representation of the <code>SessionParameters</code>
      * instance. <br>
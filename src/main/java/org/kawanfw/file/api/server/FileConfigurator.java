@@ -92,6 +92,10 @@ public interface FileConfigurator {
      * On Linux, the returned file must start with "/". <br>
      * On Windows, the returned file must start with at least 3 characters:
      * windows unit and file separator. (Example: {@code "D:\"}).
+     * <p>
+     * The value is validated and cached per user by the server on the first
+     * request. If a home directory changes while the server runs, call
+     * {@code HttpConfigurationUtil.invalidateHomeDir(username)}.
      * 
      * @param username
      *            the client username
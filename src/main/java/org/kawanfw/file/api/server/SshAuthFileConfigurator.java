@@ -4,12 +4,19 @@
 package org.kawanfw.file.api.server;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.kawanfw.file.api.server.util.Ssh;
+import org.kawanfw.file.api.server.util.SshLoginCache;
 
 /**
  * A concrete {@code FileConfigurator} that extends {@code DefaultFileConfigurator} and allows zero-code client 
  * {@code (usernname, password)} authentication using SSH.
+ * <p>
+ * The successful authentications are cached for a short time and the number
+ * of concurrent SSH handshakes is bounded: see {@link SshLoginCache}. The
+ * settings may be changed by overriding {@link #getLoginCacheTtl()},
+ * {@link #getLoginCacheMaxEntries()} and {@link #getMaxConcurrentHandshakes()}.
  * 
  * @author Nicolas de Pomereu
  * @since 1.0
@@ -17,11 +24,16 @@ import org.kawanfw.file.api.server.util.Ssh;
 public class SshAuthFileConfigurator extends DefaultFileConfigurator
 	implements FileConfigurator {
 
+    /** The login cache, created at first login with the overridable settings */
+    private final AtomicReference<SshLoginCache> sshLoginCache = new AtomicReference<SshLoginCache>();
+
     /** 
      * Allows using SSH to authenticate the remote {@code (usernname, password)}  couple
      * sent by the client side
      * <p>
-     * Returns the result of {@link Ssh#login(String, char[])} method.
+     * Returns the result of {@link Ssh#login(String, char[])} method, or
+     * <code>true</code> if the same couple was successfully authenticated
+     * less than {@link #getLoginCacheTtl()} milliseconds ago.
      * 
      * @param username
      *            the client username
@@ -36,7 +48,53 @@ public class SshAuthFileConfigurator extends DefaultFileConfigurator
      */
     @Override
     public boolean login(String username, char[] password, String ipAddress) throws IOException {
-	return Ssh.login(username, password);
+	return getSshLoginCache().login(username, password);
+    }
+
+    /**
+     * Returns the time to live in milliseconds of a cached successful
+     * authentication. Defaults to 5 minutes. 0 disables the cache.
+     * 
+     * @return the time to live in milliseconds of a cached authentication
+     */
+    public long getLoginCacheTtl() {
+	return SshLoginCache.DEFAULT_TTL;
+    }
+
+    /**
+     * Returns the maximum number of cached authentications. Defaults to
+     * 10000.
+     * 
+     * @return the maximum number of cached authentications
+     */
+    public int getLoginCacheMaxEntries() {
+	return SshLoginCache.DEFAULT_MAX_ENTRIES;
+    }
+
+    /**
+     * Returns the maximum number of SSH handshakes done at the same time.
+     * Other logins wait for a free slot. Defaults to 8.
+     * 
+     * @return the maximum number of concurrent SSH handshakes
+     */
+    public int getMaxConcurrentHandshakes() {
+	return SshLoginCache.DEFAULT_MAX_HANDSHAKES;
+    }
+
+    /**
+     * Returns the login cache, created at first call.
+     * 
+     * @return the login cache
+     */
+    private SshLoginCache getSshLoginCache() {
+	SshLoginCache cache = sshLoginCache.get();
+	if (cache == null) {
+	    sshLoginCache.compareAndSet(null, new SshLoginCache(
+		    getLoginCacheTtl(), getLoginCacheMaxEntries(),
+		    getMaxConcurrentHandshakes()));
+	    cache = sshLoginCache.get();
+	}
+	return cache;
     }
 
 }
@@ -25,8 +25,17 @@
 package org.kawanfw.file.api.server.session;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.Map;
+import java.util.logging.Level;
+
+import org.kawanfw.commons.server.util.ServerLogger;
+import org.kawanfw.commons.util.FrameworkDebug;
+import org.kawanfw.commons.util.LruCache;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
@@ -58,11 +67,30 @@ import com.auth0.jwt.interfaces.DecodedJWT;
  * <li>The JWT lifetime value used is
  * {@link DefaultJwtSessionConfigurator#getSessionTimelife()} value.
  * </ul>
+ * <p>
+ * The HMAC algorithm and the verifier are built once and rebuilt only when
+ * {@code JwtSessionStore.JWT_SECRET_VALUE} changes. The SHA-256 digests of the
+ * tokens verified recently are kept, so that the tokens of the active
+ * sessions are not verified again on each request. When 10000 tokens are
+ * kept, the least recently used one is evicted.
  * 
  * @author Nicolas de Pomereu
  */
 public class DefaultJwtSessionConfigurator implements SessionConfigurator {
 
+    /** For debug info */
+    private static boolean DEBUG = FrameworkDebug
+	    .isSet(DefaultJwtSessionConfigurator.class);
+
+    /** The maximum number of verified tokens kept */
+    private static final int MAX_VERIFIED_TOKENS = 10000;
+
+    /** The time in milliseconds a verified token is not verified again */
+    private static final long VERIFIED_TOKEN_TTL = 5 * 60 * 1000;
+
+    /** The algorithm and verifier of the current secret value */
+    private volatile JwtKeys jwtKeys = null;
+
     /*
      * (non-Javadoc)
      * 
@@ -77,8 +105,7 @@ public class DefaultJwtSessionConfigurator implements SessionConfigurator {
     public String generateToken(String username) {
 
 	try {
-	    String secret = JwtSessionStore.getJwtSecretValue();
-	    Algorithm algorithm = Algorithm.HMAC256(secret);
+	    Algorithm algorithm = getJwtKeys().algorithm;
 
 	    String token = null;
 
@@ -94,8 +121,6 @@ public class DefaultJwtSessionConfigurator implements SessionConfigurator {
 
 	    return token;
 
-	} catch (UnsupportedEncodingException exception) {
-	    throw new IllegalArgumentException(exception);
 	} catch (JWTCreationException exception) {
 	    // Invalid Signing configuration / Couldn't convert Claims.
 	    throw new IllegalArgumentException(exception);
@@ -143,7 +168,7 @@ public class DefaultJwtSessionConfigurator implements SessionConfigurator {
 	    return issuedAt.getTime();
 
 	} catch (JWTDecodeException exception) {
-	    System.err.println(exception);
+	    debug(exception.toString());
 	    return 0;
 	}
     }
@@ -177,29 +202,87 @@ public class DefaultJwtSessionConfigurator implements SessionConfigurator {
     @Override
     public boolean verifyToken(String token) {
 
-	try {
-	    String secret = JwtSessionStore.getJwtSecretValue();
-	    Algorithm algorithm = Algorithm.HMAC256(secret);
-	    JWTVerifier verifier = JWT.require(algorithm).build(); // Reusable
-	    // verifier
-	    // instance
-
-	    @SuppressWarnings("unused")
-	    DecodedJWT jwt = verifier.verify(token);
+	if (token == null) {
+	    return false;
+	}
 
-	} catch (UnsupportedEncodingException exception) {
-	    System.err.println(exception);
+	JwtKeys keys = null;
+	try {
+	    keys = getJwtKeys();
+	} catch (IllegalArgumentException exception) {
 	    // UTF-8 encoding not supported
+	    ServerLogger.getLogger().log(Level.WARNING,
+		    "JWT algorithm can not be built: " + exception);
 	    return false;
+	}
+
+	// A token verified recently is not verified again
+	long now = System.currentTimeMillis();
+	ByteBuffer digest = digest(token);
+	if (keys.verifiedTokens.get(digest) != null) {
+	    return true;
+	}
+
+	DecodedJWT jwt = null;
+	try {
+	    jwt = keys.verifier.verify(token);
 	} catch (JWTVerificationException exception) {
-	    System.err.println(exception);
 	    // Invalid signature/claims
+	    debug(exception.toString());
 	    return false;
 	}
 
+	// Never keep a token after its own expiration
+	long verifiedExpiry = now + VERIFIED_TOKEN_TTL;
+	if (jwt.getExpiresAt() != null) {
+	    verifiedExpiry = Math.min(verifiedExpiry, jwt.getExpiresAt()
+		    .getTime());
+	}
+
+	keys.verifiedTokens.put(digest, Boolean.TRUE, verifiedExpiry);
+
 	return true;
     }
 
+    /**
+     * Returns the algorithm and verifier of the current secret value, built
+     * again only if the secret value has changed.
+     * 
+     * @return the algorithm and verifier of the current secret value
+     * @throws IllegalArgumentException
+     *             if the algorithm can not be built
+     */
+    private JwtKeys getJwtKeys() throws IllegalArgumentException {
+	String secret = JwtSessionStore.getJwtSecretValue();
+
+	JwtKeys keys = jwtKeys;
+	if (keys != null && keys.secret.equals(secret)) {
+	    return keys;
+	}
+
+	try {
+	    keys = new JwtKeys(secret, Algorithm.HMAC256(secret));
+	} catch (UnsupportedEncodingException exception) {
+	    throw new IllegalArgumentException(exception);
+	}
+
+	jwtKeys = keys;
+	return keys;
+    }
+
+    /**
+     * Returns the SHA-256 digest of a token.
+     */
+    private static ByteBuffer digest(String token) {
+	try {
+	    MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+	    return ByteBuffer.wrap(messageDigest.digest(token
+		    .getBytes(StandardCharsets.UTF_8)));
+	} catch (NoSuchAlgorithmException exception) {
+	    throw new IllegalStateException(exception);
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -215,4 +298,30 @@ public class DefaultJwtSessionConfigurator implements SessionConfigurator {
 	return 0;
     }
 
+    private static void debug(String s) {
+	if (DEBUG) {
+	    ServerLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+
+    /**
+     * The algorithm and verifier of a secret value, with the digests of the
+     * tokens verified with them.
+     */
+    private static class JwtKeys {
+	private final String secret;
+	private final Algorithm algorithm;
+	private final JWTVerifier verifier;
+
+	/** The digests of the verified tokens, until their expiry time */
+	private final LruCache<ByteBuffer, Boolean> verifiedTokens = new LruCache<ByteBuffer, Boolean>(
+		MAX_VERIFIED_TOKENS);
+
+	JwtKeys(String secret, Algorithm algorithm) {
+	    this.secret = secret;
+	    this.algorithm = algorithm;
+	    this.verifier = JWT.require(algorithm).build();
+	}
+    }
+
 }
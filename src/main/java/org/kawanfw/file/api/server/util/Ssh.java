@@ -8,6 +8,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.Properties;
 import java.util.logging.Level;
 
@@ -31,6 +32,9 @@ import com.jcraft.jsch.Session;
  */
 public class Ssh {
 
+    /** The last loaded SSH server address, with its properties file state */
+    private static volatile SshTarget target = null;
+
     /**
      * Tries to open a SSH session on a host for authentication.
      * <ul>
@@ -43,7 +47,8 @@ public class Ssh {
      * the host IP is used as hostname value and port is 22.</li>
      * </ul>
      * <br>
-     * {@code user.home} is the one of the running servlet container.
+     * {@code user.home} is the one of the running servlet container. The
+     * {@code sshAuth.properties} file is read again only if modified.
      * <p>
      * The internal SSH client Java library used is <a
      * href="http://www.jcraft.com/jsch/">JSch</a>. <br>
@@ -68,56 +73,102 @@ public class Ssh {
      */
     public static boolean login(String username, char[] password)
 	    throws IOException, NumberFormatException {
-	String host = null;
-	int port = -1;
+	InetSocketAddress address = getSshAddress();
+	return login(address.getHostString(), address.getPort(), username,
+		password);
+    }
 
+    /**
+     * Returns the address of the SSH server used by
+     * {@link #login(String, char[])}. The {@code sshAuth.properties} file is
+     * parsed again only if its modification date or its length changed.
+     * 
+     * @return the unresolved address of the SSH server
+     * 
+     * @throws IOException
+     *             if a {@code host} or {@code port} property can not be found
+     *             in the {@code sshAuth.properties} or error reading property
+     *             file or IP address of the host can not be accessed.
+     * @throws NumberFormatException
+     *             if the {@code port} property is no numeric
+     */
+    static InetSocketAddress getSshAddress() throws IOException,
+	    NumberFormatException {
 	String userHomeKawanSoft = FrameworkFileUtil
 		.getUserHomeDotKawansoftDir();
 	File file = new File(userHomeKawanSoft + File.separator
 		+ "sshAuth.properties");
 
-	if (file.exists()) {
-	    Properties prop = new Properties();
-	    //InputStream in = null;
-
-	    try (InputStream in = new FileInputStream(file);){
-		prop.load(in);
-	    } finally {
-		//IOUtils.closeQuietly(in);
-	    }
-
-	    host = prop.getProperty("host");
-	    String portStr = prop.getProperty("port");
-
-	    if (host == null) {
-		throw new IOException(
-			Tag.PRODUCT
-				+ " property host not found in sshAuth.properties file.");
-	    }
-
-	    if (portStr == null) {
-		throw new IOException(
-			Tag.PRODUCT
-				+ " property port not found in sshAuth.properties file.");
-	    }
-
-	    port = Integer.parseInt(portStr);
-
-	} else {
-	    
-	    try {
-		InetAddress ip = InetAddress.getLocalHost();
-		host = ip.getHostAddress();
-		port = 22;
-		    
-	    } catch (Exception e) {
-		throw new IOException(Tag.PRODUCT
-			+ " Can not retrieve IP address of the host.");
-	    }
-		
+	boolean exists = file.exists();
+	long lastModified = exists ? file.lastModified() : 0;
+	long length = exists ? file.length() : 0;
+
+	SshTarget current = target;
+	if (current != null && current.exists == exists
+		&& current.lastModified == lastModified
+		&& current.length == length) {
+	    return current.address;
 	}
 
-	return login(host, port, username, password);
+	// Concurrent reloads are harmless: they all parse the same file
+	current = new SshTarget(exists, lastModified, length, exists ? load(file)
+		: getLocalAddress());
+	target = current;
+	return current.address;
+    }
+
+    /**
+     * Loads the SSH server address from the {@code sshAuth.properties} file.
+     * 
+     * @param file
+     *            the {@code sshAuth.properties} file
+     * @return the unresolved address of the SSH server
+     * @throws IOException
+     * @throws NumberFormatException
+     */
+    private static InetSocketAddress load(File file) throws IOException,
+	    NumberFormatException {
+	Properties prop = new Properties();
+
+	try (InputStream in = new FileInputStream(file);){
+	    prop.load(in);
+	}
+
+	String host = prop.getProperty("host");
+	String portStr = prop.getProperty("port");
+
+	if (host == null) {
+	    throw new IOException(
+		    Tag.PRODUCT
+			    + " property host not found in sshAuth.properties file.");
+	}
+
+	if (portStr == null) {
+	    throw new IOException(
+		    Tag.PRODUCT
+			    + " property port not found in sshAuth.properties file.");
+	}
+
+	return InetSocketAddress.createUnresolved(host,
+		Integer.parseInt(portStr));
+    }
+
+    /**
+     * Returns the address of the SSH server of this host: the host IP and port
+     * 22.
+     * 
+     * @return the unresolved address of the SSH server of this host
+     * @throws IOException
+     *             if the IP address of the host can not be accessed
+     */
+    private static InetSocketAddress getLocalAddress() throws IOException {
+	try {
+	    InetAddress ip = InetAddress.getLocalHost();
+	    return InetSocketAddress.createUnresolved(ip.getHostAddress(), 22);
+	} catch (Exception e) {
+	    throw new IOException(Tag.PRODUCT
+		    + " Can not retrieve IP address of the host.");
+	}
     }
 
     /**
@@ -176,4 +227,23 @@ public class Ssh {
 	return connected;
     }
 
+    /**
+     * The SSH server address loaded from the {@code sshAuth.properties} file,
+     * with the state of the file when loaded.
+     */
+    private static class SshTarget {
+	private final boolean exists;
+	private final long lastModified;
+	private final long length;
+	private final InetSocketAddress address;
+
+	SshTarget(boolean exists, long lastModified, long length,
+		InetSocketAddress address) {
+	    this.exists = exists;
+	    this.lastModified = lastModified;
+	    this.length = length;
+	    this.address = address;
+	}
+    }
+
 }
@@ -0,0 +1,284 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.server.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.kawanfw.commons.server.util.ServerLogger;
+import org.kawanfw.commons.util.FrameworkDebug;
+import org.kawanfw.commons.util.LruCache;
+import org.kawanfw.commons.util.Tag;
+
+/**
+ * Caches the successful SSH authentications and bounds the number of
+ * concurrent SSH handshakes.
+ * <p>
+ * A {@code (username, password)} couple accepted by the SSH server is accepted
+ * again without handshake until the time to live expires. Failed
+ * authentications are never cached. <br>
+ * The credentials are not stored: the cache keys are SHA-256 hashes of the
+ * host, port, username and password, salted with random bytes generated for
+ * each cache instance. <br>
+ * When the cache is full, the least recently used authentication is evicted.
+ * <br>
+ * Note that a password changed or an account locked on the SSH server is
+ * still accepted until the cache entry expires: the time to live must stay
+ * short.
+ * 
+ * @see Ssh
+ * @author Nicolas de Pomereu
+ */
+public class SshLoginCache {
+
+    /** For debug info */
+    private static boolean DEBUG = FrameworkDebug.isSet(SshLoginCache.class);
+
+    /** The default time to live of a cached authentication: 5 minutes */
+    public static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+    /** The default maximum number of cached authentications */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** The default maximum number of concurrent SSH handshakes */
+    public static final int DEFAULT_MAX_HANDSHAKES = 8;
+
+    /** The maximum wait in milliseconds for a handshake slot */
+    private static final long HANDSHAKE_WAIT = 30 * 1000;
+
+    /** The length of the random salt of the keys */
+    private static final int SALT_LENGTH = 32;
+
+    /** The accepted salted hashes of the credentials */
+    private final LruCache<ByteBuffer, Boolean> logins;
+
+    private final long ttl;
+    private final Semaphore handshakes;
+    private final byte[] salt;
+
+    /**
+     * Constructor.
+     * 
+     * @param ttl
+     *            the time to live in milliseconds of a cached authentication,
+     *            0 to disable the cache
+     * @param maxEntries
+     *            the maximum number of cached authentications
+     * @param maxHandshakes
+     *            the maximum number of concurrent SSH handshakes
+     */
+    public SshLoginCache(long ttl, int maxEntries, int maxHandshakes) {
+
+	if (ttl < 0) {
+	    throw new IllegalArgumentException("ttl must be >= 0!");
+	}
+
+	if (maxEntries < 1) {
+	    throw new IllegalArgumentException("maxEntries must be >= 1!");
+	}
+
+	if (maxHandshakes < 1) {
+	    throw new IllegalArgumentException("maxHandshakes must be >= 1!");
+	}
+
+	this.ttl = ttl;
+	this.logins = new LruCache<ByteBuffer, Boolean>(maxEntries);
+	this.handshakes = new Semaphore(maxHandshakes, true);
+
+	this.salt = new byte[SALT_LENGTH];
+	new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * Authenticates a {@code (username, password)} couple on the SSH server
+     * defined by the {@code user.home/.kawansoft/sshAuth.properties} file, or
+     * on this host if the file does not exist.
+     * 
+     * @param username
+     *            the client username
+     * @param password
+     *            the password to connect to the server
+     * @return <code>true</code> if the user is able to open a SSH session
+     * @throws IOException
+     *             if the address of the SSH server can not be read, or if no
+     *             handshake slot is available in time
+     * @see Ssh#login(String, char[])
+     */
+    public boolean login(String username, char[] password) throws IOException {
+	InetSocketAddress address = Ssh.getSshAddress();
+	return login(address.getHostString(), address.getPort(), username,
+		password);
+    }
+
+    /**
+     * Authenticates a {@code (username, password)} couple on a SSH server.
+     * 
+     * @param host
+     *            the host name or IP address of the SSH server
+     * @param port
+     *            the port number of the SSH server
+     * @param username
+     *            the user name for authentication
+     * @param password
+     *            the password for authentication
+     * @return <code>true</code> if the user is able to open a SSH session
+     * @throws IOException
+     *             if <code>username</code> or <code>host</code> are invalid,
+     *             or if no handshake slot is available in time
+     * @see Ssh#login(String, int, String, char[])
+     */
+    public boolean login(String host, int port, String username,
+	    char[] password) throws IOException {
+
+	if (username == null || password == null) {
+	    return false;
+	}
+
+	ByteBuffer key = null;
+
+	if (ttl > 0) {
+	    key = buildKey(host, port, username, password);
+	    if (logins.get(key) != null) {
+		debug("cached login of " + username);
+		return true;
+	    }
+	}
+
+	boolean acquired = false;
+	try {
+	    acquired = handshakes.tryAcquire(HANDSHAKE_WAIT,
+		    TimeUnit.MILLISECONDS);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+
+	if (!acquired) {
+	    throw new IOException(Tag.PRODUCT
+		    + " Too many concurrent SSH logins. Please retry later.");
+	}
+
+	boolean connected = false;
+	try {
+	    connected = handshake(host, port, username, password);
+	} finally {
+	    handshakes.release();
+	}
+
+	if (connected && key != null) {
+	    logins.put(key, Boolean.TRUE, System.currentTimeMillis() + ttl);
+	}
+
+	return connected;
+    }
+
+    /**
+     * Opens a SSH session to check the credentials. Called only on a cache
+     * miss, while a handshake slot is held.
+     * 
+     * @param host
+     *            the host name or IP address of the SSH server
+     * @param port
+     *            the port number of the SSH server
+     * @param username
+     *            the user name for authentication
+     * @param password
+     *            the password for authentication
+     * @return <code>true</code> if the user is able to open a SSH session
+     * @throws IOException
+     *             if <code>username</code> or <code>host</code> are invalid
+     * @see Ssh#login(String, int, String, char[])
+     */
+    protected boolean handshake(String host, int port, String username,
+	    char[] password) throws IOException {
+	return Ssh.login(host, port, username, password);
+    }
+
+    /**
+     * Removes all the cached authentications. To be called if passwords are
+     * changed on the SSH server.
+     */
+    public void clear() {
+	logins.clear();
+    }
+
+    /**
+     * Returns the number of cached authentications, expired ones included.
+     * 
+     * @return the number of cached authentications
+     */
+    public int size() {
+	return logins.size();
+    }
+
+    /**
+     * Builds the salted hash of the credentials.
+     * 
+     * @return the salted SHA-256 hash of the credentials
+     */
+    private ByteBuffer buildKey(String host, int port, String username,
+	    char[] password) {
+	MessageDigest digest = null;
+	try {
+	    digest = MessageDigest.getInstance("SHA-256");
+	} catch (NoSuchAlgorithmException e) {
+	    throw new IllegalStateException(e);
+	}
+
+	digest.update(salt);
+	digest.update((host + "\u0000" + port + "\u0000" + username + "\u0000")
+		.getBytes(StandardCharsets.UTF_8));
+
+	// The password is encoded without creating an immutable String
+	ByteBuffer passwordBytes = StandardCharsets.UTF_8.encode(CharBuffer
+		.wrap(password));
+	byte[] bytes = new byte[passwordBytes.remaining()];
+	passwordBytes.get(bytes);
+	digest.update(bytes);
+
+	Arrays.fill(bytes, (byte) 0);
+	if (passwordBytes.hasArray()) {
+	    Arrays.fill(passwordBytes.array(), (byte) 0);
+	}
+
+	return ByteBuffer.wrap(digest.digest());
+    }
+
+    private static void debug(String s) {
+	if (DEBUG) {
+	    ServerLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+
+}
@@ -25,11 +25,14 @@
 package org.kawanfw.file.api.util.client;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.ConnectException;
 import java.net.UnknownHostException;
@@ -39,13 +42,17 @@ import java.util.logging.Level;
 
 import org.apache.commons.io.input.TeeInputStream;
 import org.kawanfw.commons.client.http.HttpTransfer;
+import org.kawanfw.commons.client.http.HttpTransferUtil;
 import org.kawanfw.commons.client.http.SimpleNameValuePair;
 import org.kawanfw.commons.util.ClientLogger;
 import org.kawanfw.commons.util.FrameworkDebug;
+import org.kawanfw.commons.util.Tag;
+import org.kawanfw.commons.util.TransferStatus;
 import org.kawanfw.file.api.client.exception.InvalidLoginException;
 import org.kawanfw.file.api.client.exception.RemoteException;
 import org.kawanfw.file.util.parms.Action;
 import org.kawanfw.file.util.parms.Parameter;
+import org.kawanfw.file.util.parms.ReturnCode;
 
 /**
  * 
@@ -133,7 +140,170 @@ public class ApiInputStreamDownloader {
     }
  
 
+    /**
+     * Creates an input stream that maps a range of bytes of the remote file.
+     * The range is truncated to the end of the remote file.
+     * 
+     * @param remoteFile
+     *            the remote file name with path
+     * @param offset
+     *            the position of the first byte of the range
+     * @param length
+     *            the maximum number of bytes of the range
+     * @return the input stream that maps the range, at end of stream after
+     *         the last byte of the range
+     * @throws UnknownHostException
+     * @throws ConnectException
+     * @throws RemoteException
+     * @throws IOException
+     * @throws InvalidLoginException
+     * @throws FileNotFoundException
+     *             if the remote file does not exist or is not a file
+     */
+    public InputStream downloadRange(String remoteFile, long offset,
+	    long length) throws UnknownHostException, ConnectException,
+	    RemoteException, IOException, InvalidLoginException,
+	    FileNotFoundException {
+
+	// Prepare the request parameters
+	List<SimpleNameValuePair> requestParams = new Vector<SimpleNameValuePair>();
+	requestParams.add(new SimpleNameValuePair(Parameter.ACTION,
+		Action.DOWNLOAD_RANGE_ACTION));
+	requestParams.add(new SimpleNameValuePair(Parameter.USERNAME,
+		username));
+	requestParams.add(new SimpleNameValuePair(Parameter.TOKEN, authenticationToken));
+	requestParams
+		.add(new SimpleNameValuePair(Parameter.FILENAME, remoteFile));
+	requestParams.add(new SimpleNameValuePair(Parameter.OFFSET, "" + offset));
+	requestParams.add(new SimpleNameValuePair(Parameter.LENGTH, "" + length));
+
+	InputStream in = httpTransfer.getInputStream(requestParams);
+
+	String status = readLine(in);
+
+	// "SEND_OK <count>" is followed by the bytes of the range
+	if (status.startsWith(TransferStatus.SEND_OK + " ")) {
+	    long count = Long.parseLong(status.substring(TransferStatus.SEND_OK
+		    .length() + 1));
+	    debug("range " + offset + " " + count + ": " + remoteFile);
+	    return new RangeInputStream(in, count);
+	}
+
+	try {
+	    BufferedReader reader = new BufferedReader(new InputStreamReader(
+		    in));
+
+	    if (status.equals(TransferStatus.SEND_FAILED)) {
+		HttpTransferUtil.throwTheRemoteException(reader);
+	    }
+
+	    // SEND_OK alone: invalid login or file not found
+	    String receive = reader.readLine();
+
+	    if (receive != null
+		    && receive.startsWith(ReturnCode.INVALID_LOGIN_OR_PASSWORD)) {
+		throw new InvalidLoginException(Tag.PRODUCT
+			+ " File Session is closed.");
+	    }
+
+	    if (receive != null && receive.startsWith(Tag.FileNotFoundException)) {
+		throw new FileNotFoundException(
+			"Remote file does not exists: " + remoteFile);
+	    }
+
+	    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+		    + " Invalid received buffer: " + status + " " + receive);
+	} finally {
+	    in.close();
+	}
+    }
+
+    /**
+     * Reads the status line of a response, byte per byte to leave the
+     * following bytes in the stream.
+     * 
+     * @param in
+     *            the response input stream
+     * @return the status line, without the end of line
+     * @throws IOException
+     */
+    private String readLine(InputStream in) throws IOException {
+	StringBuilder line = new StringBuilder();
+	int c;
+	while ((c = in.read()) != -1 && c != '\n') {
+	    if (c != '\r') {
+		line.append((char) c);
+	    }
+	}
+	return line.toString();
+    }
     
+    /**
+     * Input stream on the bytes of a range, that leaves the end of the
+     * response unread. Reads the end of the response when closed after the
+     * last byte, so that the connection may be reused.
+     */
+    private static class RangeInputStream extends FilterInputStream {
+
+	/** The number of bytes of the range not yet read */
+	private long remaining;
+
+	RangeInputStream(InputStream in, long count) {
+	    super(in);
+	    this.remaining = count;
+	}
+
+	@Override
+	public int read() throws IOException {
+	    if (remaining <= 0) {
+		return -1;
+	    }
+	    int b = super.read();
+	    if (b != -1) {
+		remaining--;
+	    }
+	    return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+	    if (remaining <= 0) {
+		return len == 0 ? 0 : -1;
+	    }
+	    int n = super.read(b, off, (int) Math.min(len, remaining));
+	    if (n > 0) {
+		remaining -= n;
+	    }
+	    return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+	    long skipped = super.skip(Math.min(n, remaining));
+	    remaining -= skipped;
+	    return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+	    return (int) Math.min(super.available(), remaining);
+	}
+
+	@Override
+	public boolean markSupported() {
+	    return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+	    if (remaining == 0) {
+		// Reach the end of the response
+		super.read();
+	    }
+	    super.close();
+	}
+    }
+
     /**
      * debug tool
      */
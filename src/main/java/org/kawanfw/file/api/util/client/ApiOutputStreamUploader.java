@@ -27,6 +27,7 @@ package org.kawanfw.file.api.util.client;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.ConnectException;
 import java.net.SocketException;
 import java.net.UnknownHostException;
@@ -139,6 +140,65 @@ public class ApiOutputStreamUploader {
 	    throw new InvalidLoginException();
 	}
 
+	httpTransfer.send(createRequestParams(remoteFile, chunkLength), file);
+
+	checkResponse();
+    }
+
+    /**
+     * Uploads a spooled chunk on the server. The bytes are streamed from the
+     * spool memory, or from the spool file beyond the memory budget.
+     * 
+     * @param chunkSpool
+     *            the spooled chunk to upload, closed
+     * @param remoteFile
+     *            the file name on the host
+     * @param chunkLength
+     *            the chunk length to use
+     * 
+     * @throws IllegalArgumentException
+     *             if chunkSpool or remoteFile is null
+     * @throws InvalidLoginException
+     *             the session has been closed by a logoff()
+     * @throws RemoteException
+     *             an exception has been thrown on the server side
+     * @throws IOException
+     *             For all other IO / Network / System Error
+     */
+    public void uploadOneChunk(ChunkSpool chunkSpool, String remoteFile,
+	    long chunkLength) throws IllegalArgumentException,
+	    InvalidLoginException, RemoteException, IOException {
+	if (remoteFile == null) {
+	    throw new IllegalArgumentException("remoteFile can not be null!");
+	}
+
+	if (chunkSpool == null) {
+	    throw new IllegalArgumentException("chunkSpool can not be null!");
+	}
+
+	if (username == null || authenticationToken == null) {
+	    throw new InvalidLoginException();
+	}
+
+	try (InputStream in = chunkSpool.openInputStream()) {
+	    httpTransfer.send(createRequestParams(remoteFile, chunkLength),
+		    chunkSpool.getName(), in, chunkSpool.length());
+	}
+
+	checkResponse();
+    }
+
+    /**
+     * Returns the request parameters of a chunk upload.
+     * 
+     * @param remoteFile
+     *            the file name on the host
+     * @param chunkLength
+     *            the chunk length to use
+     * @return the request parameters
+     */
+    private List<SimpleNameValuePair> createRequestParams(String remoteFile,
+	    long chunkLength) {
 	// Prepare the request parameters
 	List<SimpleNameValuePair> requestParams = new Vector<SimpleNameValuePair>();
 	requestParams.add(new SimpleNameValuePair(Parameter.ACTION,
@@ -151,11 +211,16 @@ public class ApiOutputStreamUploader {
 	requestParams.add(new SimpleNameValuePair(Parameter.CHUNKLENGTH, ""
 		+ chunkLength));
 
-	//debug("chunkLength  : " + chunkLength);
-	//debug("file.length(): " + file.length());
-
-	 httpTransfer.send(requestParams, file);
+	return requestParams;
+    }
 
+    /**
+     * Checks the response of a chunk upload.
+     * 
+     * @throws InvalidLoginException
+     *             the session has been closed by a logoff()
+     */
+    private void checkResponse() throws InvalidLoginException {
 	// If everything is OK, we have in our protocol a response that
 	// 1) starts with "OK". 2) Is followed by the authenticaiton token
 	// else: response starts with "INVALID_LOGIN_OR_PASSWORD".
@@ -0,0 +1,301 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.util.client;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * An input stream that copies the bytes read to a chunk file, with the file
+ * writes done by a background thread.
+ * <p>
+ * The bytes read are passed to the writer in blocks through a bounded queue,
+ * so that the reader is slowed down only when the disk is far behind. The
+ * chunk is added to the {@link FileChunkStore} on close, once the stream has
+ * been read to the end and all the blocks are written; otherwise the chunk
+ * file is deleted.
+ * 
+ * @author Nicolas de Pomereu
+ */
+public class AsyncTeeInputStream extends FilterInputStream {
+
+    /** The length of a block */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /** The maximum number of blocks of a stream */
+    private static final int MAX_BLOCKS = 32;
+
+    /** The block that ends the writes */
+    private static final Block END = new Block(new byte[0]);
+
+    /** The thread counter for names */
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /** The writer threads, shared by all streams */
+    private static final ExecutorService WRITERS = Executors
+	    .newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+		    Thread t = new Thread(r, "kawanfw-chunk-writer-"
+			    + THREAD_NUMBER.incrementAndGet());
+		    t.setDaemon(true);
+		    return t;
+		}
+	    });
+
+    /** The blocks to write, in order */
+    private BlockingQueue<Block> written = new ArrayBlockingQueue<Block>(
+	    MAX_BLOCKS + 1);
+
+    /** The blocks available for reuse */
+    private BlockingQueue<Block> free = new ArrayBlockingQueue<Block>(
+	    MAX_BLOCKS);
+
+    /** The number of blocks created */
+    private int blockCount = 0;
+
+    /** The chunk number */
+    private int cpt = 0;
+
+    /** The chunk file */
+    private File fileChunk = null;
+
+    /** The store of the complete chunks */
+    private FileChunkStore fileChunkStore = null;
+
+    /** The writer task */
+    private Future<?> writer = null;
+
+    /** The first write failure, if any */
+    private volatile IOException writeFailure = null;
+
+    /** Set when the end of stream is read */
+    private boolean eof = false;
+
+    /** Set once closed */
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     * 
+     * @param in
+     *            the stream to read
+     * @param fileChunkStore
+     *            the store to which the chunk is added once complete
+     * @param cpt
+     *            the chunk number, that defines the chunk file to write
+     * @throws IOException
+     *             if the chunk file can not be created
+     */
+    public AsyncTeeInputStream(InputStream in, FileChunkStore fileChunkStore,
+	    int cpt) throws IOException {
+	super(in);
+	this.cpt = cpt;
+	this.fileChunk = fileChunkStore.getChunkFile(cpt);
+	this.fileChunkStore = fileChunkStore;
+
+	final OutputStream out = new BufferedOutputStream(new FileOutputStream(
+		fileChunk));
+
+	writer = WRITERS.submit(new Runnable() {
+	    @Override
+	    public void run() {
+		write(out);
+	    }
+	});
+    }
+
+    /**
+     * Writes the blocks until the end block. After a failure, the blocks are
+     * still taken so that the reader is never blocked.
+     * 
+     * @param out
+     *            the chunk file stream
+     */
+    private void write(OutputStream out) {
+	try {
+	    while (true) {
+		Block block = written.take();
+		if (block == END) {
+		    break;
+		}
+
+		if (writeFailure == null) {
+		    try {
+			out.write(block.bytes, 0, block.length);
+		    } catch (IOException e) {
+			writeFailure = e;
+		    }
+		}
+		free.offer(block);
+	    }
+	} catch (InterruptedException e) {
+	    writeFailure = new InterruptedIOException(
+		    "chunk write interrupted: " + fileChunk);
+	} finally {
+	    try {
+		out.close();
+	    } catch (IOException e) {
+		if (writeFailure == null) {
+		    writeFailure = e;
+		}
+	    }
+	}
+    }
+
+    @Override
+    public int read() throws IOException {
+	int b = super.read();
+	if (b == -1) {
+	    eof = true;
+	} else {
+	    tee(new byte[] { (byte) b }, 0, 1);
+	}
+	return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+	int n = super.read(b, off, len);
+	if (n == -1) {
+	    eof = true;
+	} else {
+	    tee(b, off, n);
+	}
+	return n;
+    }
+
+    /**
+     * Passes the bytes read to the writer.
+     * 
+     * @param b
+     *            the bytes read
+     * @param off
+     *            the offset of the bytes read
+     * @param len
+     *            the number of bytes read
+     * @throws IOException
+     *             if interrupted while waiting for a free block
+     */
+    private void tee(byte[] b, int off, int len) throws IOException {
+	while (len > 0) {
+	    Block block = takeFreeBlock();
+	    int count = Math.min(len, BLOCK_SIZE);
+	    System.arraycopy(b, off, block.bytes, 0, count);
+	    block.length = count;
+	    written.add(block);
+	    off += count;
+	    len -= count;
+	}
+    }
+
+    /**
+     * Returns a free block, waiting for the writer if all blocks are in use.
+     * 
+     * @return a free block
+     * @throws IOException
+     *             if interrupted while waiting
+     */
+    private Block takeFreeBlock() throws IOException {
+	Block block = free.poll();
+	if (block != null) {
+	    return block;
+	}
+
+	if (blockCount < MAX_BLOCKS) {
+	    blockCount++;
+	    return new Block(new byte[BLOCK_SIZE]);
+	}
+
+	try {
+	    return free.take();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException("chunk write interrupted: "
+		    + fileChunk);
+	}
+    }
+
+    /**
+     * Closes the stream and waits for the end of the chunk file writes. The
+     * chunk is stored only if complete.
+     */
+    @Override
+    public void close() throws IOException {
+	if (closed) {
+	    return;
+	}
+	closed = true;
+
+	try {
+	    super.close();
+	} finally {
+	    written.add(END);
+	    boolean complete = false;
+	    try {
+		writer.get();
+		complete = eof && writeFailure == null;
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    } catch (Exception e) {
+		// Not complete
+	    }
+
+	    if (complete) {
+		fileChunkStore.add(cpt);
+	    } else {
+		FileUtils.deleteQuietly(fileChunk);
+	    }
+	}
+    }
+
+    /**
+     * A block of bytes to write.
+     */
+    private static class Block {
+	private byte[] bytes;
+	private int length;
+
+	public Block(byte[] bytes) {
+	    this.bytes = bytes;
+	}
+    }
+
+}
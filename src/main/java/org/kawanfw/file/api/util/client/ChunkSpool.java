@@ -0,0 +1,312 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.util.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Spools the bytes of one upload chunk.
+ * <p>
+ * Bytes are kept in memory in pooled blocks as long as the memory shared by
+ * the spools of a session stays under its budget. Beyond the budget, the
+ * remaining bytes of the chunk are written to the spill file. The chunk is
+ * then read back with {@link #openInputStream()}, memory part first, and
+ * {@link #release()} gives the blocks back to the pool and deletes the spill
+ * file.
+ * <p>
+ * With a 0 budget, all bytes go to the spill file.
+ * 
+ * @author Nicolas de Pomereu
+ */
+public class ChunkSpool extends OutputStream {
+
+    /** The length of a memory block */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /** The maximum number of free blocks kept for reuse */
+    private static final int MAX_POOLED_BLOCKS = 256;
+
+    /** The free blocks, shared by all spools */
+    private static final BlockingQueue<byte[]> BLOCK_POOL = new ArrayBlockingQueue<byte[]>(
+	    MAX_POOLED_BLOCKS);
+
+    /** The file used for the bytes beyond the memory budget */
+    private File spillFile = null;
+
+    /** The memory used by the spools of the session */
+    private AtomicLong memoryInUse = null;
+
+    /** The maximum memory used by the spools of the session */
+    private long memoryBudget = 0;
+
+    /** The memory blocks, all full except the last one */
+    private List<byte[]> blocks = new ArrayList<byte[]>();
+
+    /** The number of bytes in the last block */
+    private int lastBlockLength = BLOCK_SIZE;
+
+    /** The stream on the spill file, null if not spilled */
+    private OutputStream fileOut = null;
+
+    /** The number of bytes in memory */
+    private long memoryLength = 0;
+
+    /** The total number of bytes of the chunk */
+    private long length = 0;
+
+    /** Set once released */
+    private boolean released = false;
+
+    /**
+     * Constructor.
+     * 
+     * @param spillFile
+     *            the file used for the bytes beyond the memory budget
+     * @param memoryInUse
+     *            the memory used by the spools of the session
+     * @param memoryBudget
+     *            the maximum memory used by the spools of the session, 0 to
+     *            spool on disk only
+     */
+    public ChunkSpool(File spillFile, AtomicLong memoryInUse,
+	    long memoryBudget) {
+
+	if (spillFile == null) {
+	    throw new IllegalArgumentException("spillFile is null!");
+	}
+
+	if (memoryInUse == null) {
+	    throw new IllegalArgumentException("memoryInUse is null!");
+	}
+
+	this.spillFile = spillFile;
+	this.memoryInUse = memoryInUse;
+	this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+	write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+	if (released) {
+	    throw new IOException("spool is released!");
+	}
+
+	length += len;
+
+	while (len > 0 && fileOut == null) {
+	    if (lastBlockLength == BLOCK_SIZE && !addBlock()) {
+		fileOut = new BufferedOutputStream(
+			new FileOutputStream(spillFile));
+		break;
+	    }
+
+	    int count = Math.min(len, BLOCK_SIZE - lastBlockLength);
+	    System.arraycopy(b, off, blocks.get(blocks.size() - 1),
+		    lastBlockLength, count);
+	    lastBlockLength += count;
+	    memoryLength += count;
+	    off += count;
+	    len -= count;
+	}
+
+	if (len > 0) {
+	    fileOut.write(b, off, len);
+	}
+    }
+
+    /**
+     * Adds a memory block if the budget allows it.
+     * 
+     * @return true if a block has been added, false if the budget is reached
+     */
+    private boolean addBlock() {
+	if (memoryInUse.addAndGet(BLOCK_SIZE) > memoryBudget) {
+	    memoryInUse.addAndGet(-BLOCK_SIZE);
+	    return false;
+	}
+
+	byte[] block = BLOCK_POOL.poll();
+	blocks.add(block != null ? block : new byte[BLOCK_SIZE]);
+	lastBlockLength = 0;
+	return true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+	if (fileOut != null) {
+	    fileOut.flush();
+	}
+    }
+
+    /**
+     * Ends the writing of the chunk.
+     */
+    @Override
+    public void close() throws IOException {
+	if (fileOut != null) {
+	    fileOut.close();
+	}
+    }
+
+    /**
+     * Returns the number of bytes of the chunk.
+     * 
+     * @return the number of bytes of the chunk
+     */
+    public long length() {
+	return length;
+    }
+
+    /**
+     * Returns the name of the chunk, which is the spill file name.
+     * 
+     * @return the name of the chunk
+     */
+    public String getName() {
+	return spillFile.getName();
+    }
+
+    /**
+     * Says if the whole chunk is in memory.
+     * 
+     * @return true if the whole chunk is in memory
+     */
+    public boolean isInMemory() {
+	return fileOut == null;
+    }
+
+    /**
+     * Returns a new stream on the bytes of the chunk. The spool must be
+     * closed.
+     * 
+     * @return a new stream on the bytes of the chunk
+     * @throws IOException
+     *             if the spill file can not be read
+     */
+    public InputStream openInputStream() throws IOException {
+
+	if (released) {
+	    throw new IOException("spool is released!");
+	}
+
+	InputStream in = new BlocksInputStream();
+
+	if (fileOut != null) {
+	    in = new SequenceInputStream(in, new BufferedInputStream(
+		    new FileInputStream(spillFile)));
+	}
+
+	return in;
+    }
+
+    /**
+     * Gives the memory blocks back to the pool and deletes the spill file.
+     * May be called more than once.
+     */
+    public void release() {
+
+	if (released) {
+	    return;
+	}
+
+	released = true;
+
+	for (byte[] block : blocks) {
+	    BLOCK_POOL.offer(block);
+	}
+	memoryInUse.addAndGet(-(long) blocks.size() * BLOCK_SIZE);
+	blocks.clear();
+
+	if (fileOut != null) {
+	    try {
+		fileOut.close();
+	    } catch (IOException ignore) {
+		// Nothing to do, the file is deleted
+	    }
+	}
+	FileUtils.deleteQuietly(spillFile);
+    }
+
+    /**
+     * Reads the memory blocks, without copy of the blocks.
+     */
+    private class BlocksInputStream extends InputStream {
+
+	/** The read position in the memory part */
+	private long position = 0;
+
+	@Override
+	public int read() throws IOException {
+	    byte[] b = new byte[1];
+	    return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+	    if (len == 0) {
+		return 0;
+	    }
+
+	    if (position >= memoryLength) {
+		return -1;
+	    }
+
+	    byte[] block = blocks.get((int) (position / BLOCK_SIZE));
+	    int blockOffset = (int) (position % BLOCK_SIZE);
+	    int count = (int) Math.min(len, Math.min(BLOCK_SIZE - blockOffset,
+		    memoryLength - position));
+
+	    System.arraycopy(block, blockOffset, b, off, count);
+	    position += count;
+	    return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+	    return (int) Math.min(Integer.MAX_VALUE, memoryLength - position);
+	}
+    }
+
+}
@@ -0,0 +1,342 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.api.util.client;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+import org.apache.commons.lang3.StringUtils;
+import org.kawanfw.commons.util.ClientLogger;
+import org.kawanfw.commons.util.FrameworkDebug;
+
+/**
+ * Stores per remote session the chunks already uploaded or downloaded of the
+ * files in transfer, for the recovery of interrupted transfers.
+ * <p>
+ * The state of a file is the {@code BitSet} of its completed chunk numbers.
+ * The registry is bounded: the states not used since the time-to-live are
+ * evicted, then the least recently used ones if there are more than the
+ * maximum number of files. When the state of a download is evicted, its chunk
+ * files are deleted.
+ * <p>
+ * The states are kept in access order, so that the expired and least recently
+ * used ones are always the first ones: an eviction never scans the whole
+ * registry. The states are guarded by a {@code ReentrantLock}, held only for
+ * memory operations; the chunk files are deleted after it is released.
+ * 
+ * @author Nicolas de Pomereu
+ * 
+ */
+public class ChunkStateRegistry {
+
+    /** For debug info */
+    private static boolean DEBUG = FrameworkDebug
+	    .isSet(ChunkStateRegistry.class);
+
+    /** The separator of the username in the keys */
+    static final String KAWANFW_SEP = "**!kawanfw-sep**!";
+
+    /**
+     * The states per key (username + local file + remote file), in access
+     * order. Guarded by lock
+     */
+    private final LinkedHashMap<String, ChunkState> states = new LinkedHashMap<String, ChunkState>(
+	    16, 0.75f, true);
+
+    /** The lock of the states */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The time-to-live in milliseconds of an unused state. 0 means none */
+    private final long ttl;
+
+    /** The maximum number of states */
+    private final int maxEntries;
+
+    /**
+     * Constructor.
+     * 
+     * @param ttl
+     *            the time-to-live in milliseconds of a state not used, 0 for
+     *            no expiration
+     * @param maxEntries
+     *            the maximum number of files in transfer kept
+     */
+    public ChunkStateRegistry(long ttl, int maxEntries) {
+	this.ttl = ttl;
+	this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Builds the key of a file in transfer.
+     * 
+     * @param kind
+     *            the kind of transfer: "upload" or "download"
+     * @param username
+     *            owner of the file
+     * @param file
+     *            the local unique file of the transfer
+     * @param remoteFile
+     *            the remote file path
+     * @return the key of the file in transfer
+     */
+    static String buildKey(String kind, String username, File file,
+	    String remoteFile) {
+	return username + KAWANFW_SEP + kind + "-" + file.toString() + "-"
+		+ remoteFile;
+    }
+
+    /**
+     * Says if a chunk is completed.
+     * 
+     * @param key
+     *            the key of the file in transfer
+     * @param cpt
+     *            the chunk number, starting at 1
+     * @return true if the chunk is completed
+     */
+    boolean isCompleted(String key, int cpt) {
+	List<ChunkState> evicted = new ArrayList<ChunkState>();
+	boolean completed = false;
+
+	lock.lock();
+	try {
+	    long now = System.currentTimeMillis();
+	    ChunkState state = states.get(key);
+
+	    if (state != null && state.isExpired(now, ttl)) {
+		states.remove(key);
+		debug("evicted: " + key);
+		evicted.add(state);
+	    } else if (state != null) {
+		state.lastUsed = now;
+		completed = state.chunks.get(cpt);
+	    }
+	} finally {
+	    lock.unlock();
+	}
+
+	deleteChunkFiles(evicted);
+	return completed;
+    }
+
+    /**
+     * Marks a chunk as completed.
+     * 
+     * @param key
+     *            the key of the file in transfer
+     * @param cpt
+     *            the chunk number, starting at 1
+     * @param chunkFileBase
+     *            the file whose name prefixes the chunk files to delete on
+     *            eviction, null if there are no chunk files
+     */
+    void complete(String key, int cpt, File chunkFileBase) {
+	List<ChunkState> evicted = new ArrayList<ChunkState>();
+
+	lock.lock();
+	try {
+	    long now = System.currentTimeMillis();
+	    ChunkState state = states.get(key);
+
+	    if (state != null && state.isExpired(now, ttl)) {
+		states.remove(key);
+		debug("evicted: " + key);
+		// The chunk file just completed must not be deleted
+		state.chunks.clear(cpt);
+		evicted.add(state);
+		state = null;
+	    }
+
+	    if (state == null) {
+		state = new ChunkState(chunkFileBase);
+		states.put(key, state);
+	    }
+
+	    // The chunk is set under the lock: the state can not be evicted
+	    // in between and the chunk lost
+	    state.lastUsed = now;
+	    state.chunks.set(cpt);
+	    evicted.addAll(evict(now));
+	} finally {
+	    lock.unlock();
+	}
+
+	deleteChunkFiles(evicted);
+    }
+
+    /**
+     * Removes the state of a file in transfer.
+     * 
+     * @param key
+     *            the key of the file in transfer
+     * @return the completed chunk numbers, empty if there were none
+     */
+    BitSet remove(String key) {
+	ChunkState state;
+
+	lock.lock();
+	try {
+	    state = states.remove(key);
+	} finally {
+	    lock.unlock();
+	}
+
+	return state == null ? new BitSet() : state.chunks;
+    }
+
+    /**
+     * Removes the states of all the files in transfer of a user and deletes
+     * their downloaded chunk files.
+     * 
+     * @param username
+     *            the username to clean all references for
+     */
+    public void clean(String username) {
+
+	if (username == null) {
+	    throw new IllegalArgumentException("username is null!");
+	}
+
+	List<ChunkState> evicted = new ArrayList<ChunkState>();
+
+	lock.lock();
+	try {
+	    Iterator<Map.Entry<String, ChunkState>> iterator = states
+		    .entrySet().iterator();
+	    while (iterator.hasNext()) {
+		Map.Entry<String, ChunkState> entry = iterator.next();
+		String usernameKey = StringUtils.substringBefore(
+			entry.getKey(), KAWANFW_SEP);
+
+		if (username.equals(usernameKey)) {
+		    iterator.remove();
+		    debug("evicted: " + entry.getKey());
+		    evicted.add(entry.getValue());
+		}
+	    }
+	} finally {
+	    lock.unlock();
+	}
+
+	deleteChunkFiles(evicted);
+    }
+
+    /**
+     * @return the number of files in transfer kept
+     */
+    public int size() {
+	lock.lock();
+	try {
+	    return states.size();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Evicts the expired states, then the least recently used ones while
+     * there are more than the maximum number of files. Both are at the head
+     * of the access order, so that only the evicted states are visited. Must
+     * be called with the lock held.
+     * 
+     * @param now
+     *            the current time in milliseconds
+     * @return the evicted states, whose chunk files are to be deleted
+     */
+    private List<ChunkState> evict(long now) {
+	List<ChunkState> evicted = new ArrayList<ChunkState>();
+
+	Iterator<Map.Entry<String, ChunkState>> iterator = states.entrySet()
+		.iterator();
+	while (iterator.hasNext()) {
+	    Map.Entry<String, ChunkState> eldest = iterator.next();
+	    if (states.size() <= maxEntries
+		    && !eldest.getValue().isExpired(now, ttl)) {
+		break;
+	    }
+
+	    iterator.remove();
+	    debug("evicted: " + eldest.getKey());
+	    evicted.add(eldest.getValue());
+	}
+
+	return evicted;
+    }
+
+    /**
+     * Deletes the chunk files of evicted states.
+     * 
+     * @param evicted
+     *            the evicted states
+     */
+    private void deleteChunkFiles(List<ChunkState> evicted) {
+	for (ChunkState state : evicted) {
+	    if (state.chunkFileBase != null) {
+		FileChunkStore.deleteChunkFiles(state.chunkFileBase,
+			state.chunks);
+	    }
+	}
+    }
+
+    /**
+     * debug tool
+     */
+    private void debug(String s) {
+	if (DEBUG) {
+	    ClientLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+
+    /**
+     * The state of a file in transfer. Guarded by the registry lock while
+     * registered.
+     */
+    private static class ChunkState {
+
+	/** The completed chunks */
+	private final BitSet chunks = new BitSet();
+
+	/** The prefix of the chunk files, null if none */
+	private final File chunkFileBase;
+
+	/** The last use time in milliseconds */
+	private long lastUsed = System.currentTimeMillis();
+
+	ChunkState(File chunkFileBase) {
+	    this.chunkFileBase = chunkFileBase;
+	}
+
+	boolean isExpired(long now, long ttl) {
+	    return ttl > 0 && now - lastUsed > ttl;
+	}
+    }
+}
@@ -26,20 +26,16 @@ package org.kawanfw.file.api.util.client;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.HashSet;
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.BitSet;
 import java.util.logging.Level;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.kawanfw.commons.util.ClientLogger;
 import org.kawanfw.commons.util.FrameworkDebug;
 
 /**
- * Stores the remote file parts already sent/created
+ * Stores the file chunks already downloaded of a remote file, in the
+ * {@link ChunkStateRegistry} of the session.
  * 
  * @author Nicolas de Pomereu
  * 
@@ -50,17 +46,20 @@ public class FileChunkStore {
     private static boolean DEBUG = FrameworkDebug
 	    .isSet(FileChunkStore.class);
 
-    private static final String KAWANFW_SEP = "**!kawanfw-sep**!";
+    /** The registry of the session */
+    private ChunkStateRegistry registry = null;
 
-    /** The Map of (username, set(FileChunk) */
-    private static Map<String, Set<File>> mapFiles = new Hashtable<String, Set<File>>();
+    /** The file to create from download, prefix of the chunk files */
+    private File file = null;
 
-    /** The map key username + file.toString() */
+    /** The registry key username + file.toString() + remoteFile */
     private String key = null;
 
     /**
      * Constructor
      * 
+     * @param registry
+     *            the chunk state registry of the session
      * @param username
      *            owner of the file
      * @param file
@@ -70,8 +69,12 @@ public class FileChunkStore {
      * @throws FileNotFoundException
      *             if file does not exist
      */
-    public FileChunkStore(String username, File file, String remoteFile)
-	    throws FileNotFoundException {
+    public FileChunkStore(ChunkStateRegistry registry, String username,
+	    File file, String remoteFile) throws FileNotFoundException {
+
+	if (registry == null) {
+	    throw new IllegalArgumentException("registry is null!");
+	}
 
 	if (username == null) {
 	    throw new IllegalArgumentException("username is null!");
@@ -85,113 +88,82 @@ public class FileChunkStore {
 	    throw new IllegalArgumentException("remoteFile is null!");
 	}
 
+	this.registry = registry;
+	this.file = file;
+
 	// Assure unicity of download action
-	key = username + KAWANFW_SEP + file.toString() + "-" + remoteFile;
+	key = ChunkStateRegistry.buildKey("download", username, file,
+		remoteFile);
     }
 
     /**
-     * Store the file chunk
+     * Returns the file of a chunk: file.n.kawanfw.chunk
      * 
-     * @param fileChunk
-     *            the remote file chunk to store
+     * @param cpt
+     *            the chunk number, starting at 1
+     * @return the file of the chunk
      */
-    public void add(File fileChunk) {
-
-	if (!mapFiles.containsKey(key)) {
-	    Set<File> fileChunks = new HashSet<File>();
-	    fileChunks.add(fileChunk);
-	    mapFiles.put(key, fileChunks);
-	} else {
-	    Set<File> fileChunks = mapFiles.get(key);
-	    fileChunks.add(fileChunk);
-	    mapFiles.put(key, fileChunks);
-	}
+    public File getChunkFile(int cpt) {
+	return getChunkFile(file, cpt);
     }
 
     /**
-     * Remove the file chunk and delete the asscoiated file
+     * Store the file chunk as complete
      * 
-     * @param fileChunk
-     *            the file chunk to remove
+     * @param cpt
+     *            the number of the downloaded chunk
      */
-    public boolean alreadyDownloaded(File fileChunk) {
-
-	if (fileChunk == null) {
-	    throw new IllegalArgumentException("fileChunk is null");
-	}
-
-	if (!mapFiles.containsKey(key)) {
-	    return false;
-	}
-
-	Set<File> fileChunks = mapFiles.get(key);
-
-	if (fileChunks == null || fileChunks.isEmpty()) {
-	    return false;
-	}
-
-	return fileChunks.contains(fileChunk);
+    public void add(int cpt) {
+	// Chunks of a same file may be added by parallel downloads
+	registry.complete(key, cpt, file);
+    }
 
+    /**
+     * Says if a file chunk has already been downloaded
+     * 
+     * @param cpt
+     *            the chunk number
+     * @return true if the file chunk has already been downloaded
+     */
+    public boolean alreadyDownloaded(int cpt) {
+	return registry.isCompleted(key, cpt);
     }
 
     /**
-     * Remove the map key
+     * Remove the registry key and delete the chunk files
      */
     public void remove() {
+	deleteChunkFiles(file, registry.remove(key));
+    }
 
-	Set<File> fileChunks = mapFiles.get(key);
-
-	if (fileChunks != null && !fileChunks.isEmpty()) {
-	    for (Iterator<File> iterator = fileChunks.iterator(); iterator
-		    .hasNext();) {
-		File file = iterator.next();
-		boolean deleted = FileUtils.deleteQuietly(file);
-		debug(deleted + " " + file);
-	    }
-	}
-
-	mapFiles.remove(key);
+    /**
+     * Returns the file of a chunk.
+     */
+    private static File getChunkFile(File file, int cpt) {
+	return new File(file.toString() + "." + cpt + ".kawanfw.chunk");
     }
 
     /**
-     * Cleans all references of username
+     * Deletes the files of chunks.
      * 
-     * @param username
-     *            the username to clean all references for
+     * @param file
+     *            the file to create from download, prefix of the chunk files
+     * @param chunks
+     *            the numbers of the chunk files to delete
      */
-    public static void clean(String username) {
-
-	if (username == null) {
-	    throw new IllegalArgumentException("username is null!");
-	}
-
-	if (mapFiles == null || mapFiles.isEmpty()) {
-	    return;
-	}
-
-	Set<String> keys = mapFiles.keySet();
-
-	// Duplicate the Set otherwise we will have a
-	// java.util.ConcurrentModificationException...
-	Set<String> keysDuplicate = new HashSet<String>();
-	keysDuplicate.addAll(keys);
-
-	for (Iterator<String> iterator = keysDuplicate.iterator(); iterator
-		.hasNext();) {
-	    String key = iterator.next();
-	    String usernameKey = StringUtils.substringBefore(key, KAWANFW_SEP);
-
-	    if (username.equals(usernameKey)) {
-		mapFiles.remove(username);
-	    }
-
+    static void deleteChunkFiles(File file, BitSet chunks) {
+	for (int cpt = chunks.nextSetBit(0); cpt >= 0; cpt = chunks
+		.nextSetBit(cpt + 1)) {
+	    File fileChunk = getChunkFile(file, cpt);
+	    boolean deleted = FileUtils.deleteQuietly(fileChunk);
+	    debug(deleted + " " + fileChunk);
 	}
     }
 
     /**
      * debug tool
      */
-    private void debug(String s) {
+    private static void debug(String s) {
 	if (DEBUG) {
 	    ClientLogger.getLogger().log(Level.WARNING, s);
 	}
@@ -26,33 +26,27 @@ package org.kawanfw.file.api.util.client;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.HashSet;
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
-
-import org.apache.commons.lang3.StringUtils;
 
 /**
- * Stores the remote file parts already sent/created
+ * Stores the remote file parts already sent/created, in the
+ * {@link ChunkStateRegistry} of the session.
  * 
  * @author Nicolas de Pomereu
  * 
  */
 public class RemoteFilePartStore {
 
-    private static final String KAWANFW_SEP = "**!kawanfw-sep**!";
-
-    /** The Map of (username + file.toString, set(remoteFilePart) */
-    private static Map<String, Set<String>> mapFiles = new Hashtable<String, Set<String>>();
+    /** The registry of the session */
+    private ChunkStateRegistry registry = null;
 
-    /** The map key username + file.toString() */
+    /** The registry key username + file.toString() + remoteFile */
     private String key = null;
 
     /**
      * Constructor
      * 
+     * @param registry
+     *            the chunk state registry of the session
      * @param username
      *            owner of the file
      * @param file
@@ -62,7 +56,12 @@ public class RemoteFilePartStore {
      * 
      * @throws FileNotFoundException if file does not exist
      */
-    public RemoteFilePartStore(String username, File file, String remoteFile) throws FileNotFoundException {
+    public RemoteFilePartStore(ChunkStateRegistry registry, String username,
+	    File file, String remoteFile) throws FileNotFoundException {
+
+	if (registry == null) {
+	    throw new IllegalArgumentException("registry is null!");
+	}
 
 	if (username == null) {
 	    throw new IllegalArgumentException("username is null!");
@@ -72,96 +71,41 @@ public class RemoteFilePartStore {
 	    throw new IllegalArgumentException("file is null!");
 	}	
 	
-//	if (! file.exists()) {
-//	    throw new FileNotFoundException("file does not exist: " + file);
-//	}
+	this.registry = registry;
 	
 	// Assure unicity of upload action
-	key = username + KAWANFW_SEP + file.toString() + "-" + remoteFile;
-	
+	key = ChunkStateRegistry.buildKey("upload", username, file, remoteFile);
     }
 
     /**
      * Says if a chunk file part has already been sent to remote file (aka
      * file.n.kawanfw.chunk)
      * 
-     * @param remoteFilePartthe
-     *            remote file part in file.n.kawanfw.chunk format
+     * @param cpt
+     *            the number of the chunk file part
      * @return true if chunk file part has already been sent to remote file (aka
      *         file.n.kawanfw.chunk)
      */
-    public boolean alreadyUploaded(String remoteFilePart) {
-
-	if (!mapFiles.containsKey(key)) {
-	    return false;
-	}
-
-	Set<String> remoteFileParts = mapFiles.get(key);
-
-	if (remoteFileParts == null) {
-	    return false;
-	}
-
-	return remoteFileParts.contains(remoteFilePart);
+    public boolean alreadyUploaded(int cpt) {
+	return registry.isCompleted(key, cpt);
     }
 
     /**
-     * Store the file part
+     * Store the file part as sent
      * 
-     * @param remoteFilePart
-     *            the remote file part to store
+     * @param cpt
+     *            the number of the chunk file part sent
      */
-    public void storeFilePart(String remoteFilePart) {
-
-	if (!mapFiles.containsKey(key)) {
-	    Set<String> remoteFileParts = new HashSet<String>();
-	    remoteFileParts.add(remoteFilePart);
-	    mapFiles.put(key, remoteFileParts);
-	} else {
-	    Set<String> remoteFileParts = mapFiles.get(key);
-	    remoteFileParts.add(remoteFilePart);
-	    mapFiles.put(key, remoteFileParts);
-	}
+    public void storeFilePart(int cpt) {
+	// Parts of a same file may be stored by parallel uploads
+	registry.complete(key, cpt, null);
     }
 
     /**
-     * Remove the map key
+     * Remove the registry key
      */
     public void remove() {
-	mapFiles.remove(key);
+	registry.remove(key);
     }
-    
-    /**
-     * Cleans all references of username
-     * @param username the username to clean all references for
-     */
-    public static void clean(String username) {
-	
-	if (username == null) {
-	    throw new IllegalArgumentException("username is null!");
-	}
-	 
-	if (mapFiles == null || mapFiles.isEmpty()) {
-	    return;
-	}
-	
-	Set<String> keys = mapFiles.keySet();
-	
-	// Duplicate the Set otherwise we will have a java.util.ConcurrentModificationException...
-	Set<String> keysDuplicate = new HashSet<String>();
-	keysDuplicate.addAll(keys);	
-	
-	for (Iterator<String> iterator = keysDuplicate.iterator(); iterator.hasNext();) {
-	    String key = iterator.next();
-	    String usernameKey = StringUtils.substringBefore(key, KAWANFW_SEP);
-	    
-	    if (username.equals(usernameKey)) {
-		mapFiles.remove(username);
-	    }
-	    
-	}
-    }
-
-   
 
 }
@@ -57,7 +57,7 @@ public class UniqueFileCreator {
      * 
      * @return the tempfile to create
      */
-    public static synchronized File createUnique(String username, String remoteFile) throws IOException {
+    public static File createUnique(String username, String remoteFile) throws IOException {
         
         Sha1Util sha1Util = new Sha1Util();
         String hexId = null;
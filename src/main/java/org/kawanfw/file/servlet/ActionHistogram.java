@@ -0,0 +1,155 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.servlet;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of the execution times of an action.
+ * <p>
+ * The times are counted in buckets of powers of two microseconds: bucket
+ * {@code i} counts the times between {@code 2^i} and {@code 2^(i+1)}
+ * microseconds. Recording a time is lock free and does not allocate.
+ * 
+ * @author Nicolas de Pomereu
+ */
+public class ActionHistogram {
+
+    /** The number of buckets: up to 2^40 microseconds, about 12 days */
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records an execution time.
+     * 
+     * @param nanos
+     *            the execution time in nanoseconds
+     */
+    public void record(long nanos) {
+	long micros = Math.max(nanos / 1000, 0);
+
+	int bucket = 63 - Long.numberOfLeadingZeros(Math.max(micros, 1));
+	buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+
+	count.incrementAndGet();
+	totalMicros.addAndGet(micros);
+
+	long max = maxMicros.get();
+	while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+	    max = maxMicros.get();
+	}
+    }
+
+    /**
+     * Returns the number of recorded executions.
+     * 
+     * @return the number of recorded executions
+     */
+    public long getCount() {
+	return count.get();
+    }
+
+    /**
+     * Returns the mean execution time in microseconds.
+     * 
+     * @return the mean execution time in microseconds, 0 if none recorded
+     */
+    public long getMeanMicros() {
+	long n = count.get();
+	return n == 0 ? 0 : totalMicros.get() / n;
+    }
+
+    /**
+     * Returns the longest execution time in microseconds.
+     * 
+     * @return the longest execution time in microseconds
+     */
+    public long getMaxMicros() {
+	return maxMicros.get();
+    }
+
+    /**
+     * Returns an upper bound of a percentile of the execution times: the end
+     * of the bucket that contains the percentile.
+     * 
+     * @param percentile
+     *            the percentile, between 0 and 100
+     * @return the upper bound in microseconds of the percentile, 0 if none
+     *         recorded
+     */
+    public long getPercentileMicros(double percentile) {
+
+	if (percentile < 0 || percentile > 100) {
+	    throw new IllegalArgumentException(
+		    "percentile must be between 0 and 100!");
+	}
+
+	long[] values = getBuckets();
+	long total = 0;
+	for (long value : values) {
+	    total += value;
+	}
+
+	if (total == 0) {
+	    return 0;
+	}
+
+	long rank = (long) Math.ceil(total * percentile / 100);
+	long seen = 0;
+	for (int i = 0; i < values.length; i++) {
+	    seen += values[i];
+	    if (seen >= rank && seen > 0) {
+		return Math.min(1L << (i + 1), Math.max(getMaxMicros(), 1));
+	    }
+	}
+	return getMaxMicros();
+    }
+
+    /**
+     * Returns a copy of the bucket counters.
+     * 
+     * @return the bucket counters: index {@code i} counts the times between
+     *         {@code 2^i} and {@code 2^(i+1)} microseconds
+     */
+    public long[] getBuckets() {
+	long[] values = new long[BUCKETS];
+	for (int i = 0; i < BUCKETS; i++) {
+	    values[i] = buckets.get(i);
+	}
+	return values;
+    }
+
+    @Override
+    public String toString() {
+	return "count=" + getCount() + ", mean=" + getMeanMicros()
+		+ "us, p50<=" + getPercentileMicros(50) + "us, p99<="
+		+ getPercentileMicros(99) + "us, max=" + getMaxMicros() + "us";
+    }
+}
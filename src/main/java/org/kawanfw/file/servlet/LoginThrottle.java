@@ -0,0 +1,386 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.servlet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+
+import org.kawanfw.commons.server.util.ServerLogger;
+import org.kawanfw.commons.util.FrameworkDebug;
+
+/**
+ * Throttles the failed login attempts per username and IP address couple and
+ * per IP address, without blocking the servlet threads.
+ * <p>
+ * Each (username, IP address) couple and each IP address has a token bucket
+ * of failed attempts: a failed login takes a token and the tokens are given
+ * back at a fixed rate. When the bucket of the couple or of the IP address is
+ * empty, the login is refused at once, before the password check, until a
+ * token is given back. A successful login fills the bucket of the couple
+ * again. <br>
+ * The username is never throttled alone: the failures sent from one address
+ * can not lock the account out for the other addresses. <br>
+ * Each entry also counts the failures on a sliding window of one minute, for
+ * the statistics and the warning logs of attacks.
+ * <p>
+ * The number of entries is bounded: idle entries (full bucket, no recent
+ * failure) expire. If the maximum is reached during a burst of attempts from
+ * many addresses, the entries that are not throttled are dropped first, and
+ * the throttled ones are never dropped before they expire: new keys are then
+ * not tracked until room is made.
+ * 
+ * @author Nicolas de Pomereu
+ */
+public class LoginThrottle {
+
+    /** For debug info */
+    private static boolean DEBUG = FrameworkDebug.isSet(LoginThrottle.class);
+
+    /** The sliding window of the failure counters in milliseconds */
+    static final long WINDOW = 60 * 1000;
+
+    /** The failures per window of a key that raise a warning log */
+    private static final int WARNING_FAILURES = 100;
+
+    /** The maximum number of entries per map */
+    private static final int MAX_ENTRIES = 100000;
+
+    /** The throttle shared by the login actions */
+    private static final LoginThrottle DEFAULT = new LoginThrottle(3, 3000,
+	    20, 500);
+
+    /** The minimum delay in milliseconds between two scans of a full map */
+    private static final long FULL_SCAN_DELAY = 1000;
+
+    /** The buckets per username and IP address couple */
+    private final ConcurrentMap<String, Bucket> accounts = new ConcurrentHashMap<String, Bucket>();
+
+    /** The buckets per IP address */
+    private final ConcurrentMap<String, Bucket> ipAddresses = new ConcurrentHashMap<String, Bucket>();
+
+    private final int usernameCapacity;
+    private final long usernameRefill;
+    private final int ipCapacity;
+    private final long ipRefill;
+
+    /** The time of the last scan of a map still full after eviction */
+    private volatile long lastFullScan = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param usernameCapacity
+     *            the failed attempts allowed in a burst per username and IP
+     *            address couple
+     * @param usernameRefill
+     *            the delay in milliseconds to give back one attempt per
+     *            username and IP address couple
+     * @param ipCapacity
+     *            the failed attempts allowed in a burst per IP address
+     * @param ipRefill
+     *            the delay in milliseconds to give back one attempt per IP
+     *            address
+     */
+    public LoginThrottle(int usernameCapacity, long usernameRefill,
+	    int ipCapacity, long ipRefill) {
+	this.usernameCapacity = usernameCapacity;
+	this.usernameRefill = usernameRefill;
+	this.ipCapacity = ipCapacity;
+	this.ipRefill = ipRefill;
+    }
+
+    /**
+     * Returns the throttle shared by the login actions: 3 failed attempts per
+     * username and IP address couple then one every 3 seconds, 20 failed
+     * attempts per IP address then two per second.
+     * 
+     * @return the throttle shared by the login actions
+     */
+    public static LoginThrottle getDefault() {
+	return DEFAULT;
+    }
+
+    /**
+     * Says if a login attempt may be checked.
+     * 
+     * @param username
+     *            the username of the attempt
+     * @param ipAddress
+     *            the IP address of the attempt, may be null
+     * @return 0 if the attempt may be checked, otherwise the delay in
+     *         milliseconds before the next allowed attempt
+     */
+    public long tryAcquire(String username, String ipAddress) {
+	long now = System.currentTimeMillis();
+
+	long wait = getWait(accounts, accountKey(username, ipAddress), now);
+	if (ipAddress != null) {
+	    wait = Math.max(wait, getWait(ipAddresses, ipAddress, now));
+	}
+
+	if (wait > 0) {
+	    debug("login throttled for " + wait + " ms: " + username + " "
+		    + ipAddress);
+	}
+	return wait;
+    }
+
+    /**
+     * Records a failed login attempt.
+     * 
+     * @param username
+     *            the username of the attempt
+     * @param ipAddress
+     *            the IP address of the attempt, may be null
+     */
+    public void failed(String username, String ipAddress) {
+	long now = System.currentTimeMillis();
+
+	take(accounts, accountKey(username, ipAddress), usernameCapacity,
+		usernameRefill, now);
+	if (ipAddress != null) {
+	    take(ipAddresses, ipAddress, ipCapacity, ipRefill, now);
+	}
+    }
+
+    /**
+     * Records a successful login: the bucket of the username and IP address
+     * couple is filled again.
+     * 
+     * @param username
+     *            the username of the attempt
+     * @param ipAddress
+     *            the IP address of the attempt, may be null
+     */
+    public void succeeded(String username, String ipAddress) {
+	accounts.remove(accountKey(username, ipAddress));
+    }
+
+    /**
+     * Returns the number of failed attempts in the last minute for a
+     * username from an IP address.
+     * 
+     * @param username
+     *            the username
+     * @param ipAddress
+     *            the IP address, may be null
+     * @return the number of failed attempts in the last minute
+     */
+    public int getAccountFailures(String username, String ipAddress) {
+	Bucket bucket = accounts.get(accountKey(username, ipAddress));
+	return bucket == null ? 0 : bucket.getFailures(System
+		.currentTimeMillis());
+    }
+
+    /**
+     * Returns the number of failed attempts in the last minute for an IP
+     * address.
+     * 
+     * @param ipAddress
+     *            the IP address
+     * @return the number of failed attempts in the last minute
+     */
+    public int getIpAddressFailures(String ipAddress) {
+	Bucket bucket = ipAddresses.get(ipAddress);
+	return bucket == null ? 0 : bucket.getFailures(System
+		.currentTimeMillis());
+    }
+
+    /**
+     * @return the number of username and IP address couples and IP addresses
+     *         tracked
+     */
+    public int size() {
+	return accounts.size() + ipAddresses.size();
+    }
+
+    /**
+     * Returns the key of a username and IP address couple.
+     */
+    private static String accountKey(String username, String ipAddress) {
+	String key = username == null ? "" : username.toLowerCase();
+	return ipAddress == null ? key : key + " " + ipAddress;
+    }
+
+    /**
+     * Returns the wait of a key, 0 if it has a token.
+     */
+    private static long getWait(ConcurrentMap<String, Bucket> buckets,
+	    String key, long now) {
+	Bucket bucket = buckets.get(key);
+	if (bucket == null) {
+	    return 0;
+	}
+
+	if (bucket.isExpired(now)) {
+	    buckets.remove(key, bucket);
+	    return 0;
+	}
+
+	return bucket.getWait(now);
+    }
+
+    /**
+     * Takes a token from the bucket of a key, created if needed.
+     */
+    private void take(ConcurrentMap<String, Bucket> buckets, String key,
+	    int capacity, long refill, long now) {
+	Bucket bucket = buckets.get(key);
+	if (bucket == null) {
+	    if (buckets.size() >= MAX_ENTRIES && !evict(buckets, now)) {
+		debug("login throttle full, not tracked: " + key);
+		return;
+	    }
+
+	    Bucket newBucket = new Bucket(capacity, refill, now);
+	    bucket = buckets.putIfAbsent(key, newBucket);
+	    if (bucket == null) {
+		bucket = newBucket;
+	    }
+	}
+
+	int failures = bucket.take(now);
+	if (failures == WARNING_FAILURES) {
+	    // Logged once per window
+	    ServerLogger.getLogger().log(
+		    Level.WARNING,
+		    "Possible login attack: " + failures
+			    + " failed attempts in one minute for " + key);
+	}
+    }
+
+    /**
+     * Removes the expired entries, then the entries that are not throttled if
+     * the map is still full. The throttled entries are kept, so that an
+     * attacker can not clear a bucket by filling the map. A map still full is
+     * not scanned again before {@link #FULL_SCAN_DELAY} milliseconds.
+     * 
+     * @return true if there is room for a new entry
+     */
+    private boolean evict(ConcurrentMap<String, Bucket> buckets, long now) {
+	if (now - lastFullScan < FULL_SCAN_DELAY) {
+	    return false;
+	}
+
+	for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+	    if (entry.getValue().isExpired(now)) {
+		buckets.remove(entry.getKey(), entry.getValue());
+	    }
+	}
+
+	if (buckets.size() >= MAX_ENTRIES) {
+	    for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+		if (entry.getValue().getWait(now) == 0) {
+		    buckets.remove(entry.getKey(), entry.getValue());
+		}
+	    }
+	}
+
+	if (buckets.size() >= MAX_ENTRIES) {
+	    lastFullScan = now;
+	    ServerLogger.getLogger().log(
+		    Level.WARNING,
+		    "Possible login attack: " + buckets.size()
+			    + " throttled login keys.");
+	    return false;
+	}
+	return true;
+    }
+
+    private static void debug(String s) {
+	if (DEBUG) {
+	    ServerLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+
+    /**
+     * A token bucket of failed attempts with a sliding window failure counter.
+     * The critical sections are a few arithmetic operations.
+     */
+    static class Bucket {
+	private final int capacity;
+	private final long refill;
+
+	/** The available tokens, at time of update */
+	private double tokens;
+	private long updated;
+
+	/** The failures of the current and previous windows */
+	private long windowStart;
+	private int currentFailures = 0;
+	private int previousFailures = 0;
+
+	Bucket(int capacity, long refill, long now) {
+	    this.capacity = capacity;
+	    this.refill = refill;
+	    this.tokens = capacity;
+	    this.updated = now;
+	    this.windowStart = now;
+	}
+
+	private void update(long now) {
+	    if (now > updated) {
+		tokens = Math.min(capacity, tokens + (double) (now - updated)
+			/ refill);
+		updated = now;
+	    }
+
+	    if (now - windowStart >= WINDOW) {
+		previousFailures = now - windowStart >= 2 * WINDOW ? 0
+			: currentFailures;
+		currentFailures = 0;
+		windowStart = now - (now - windowStart) % WINDOW;
+	    }
+	}
+
+	synchronized long getWait(long now) {
+	    update(now);
+	    return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * refill);
+	}
+
+	/** Takes a token and returns the failures of the current window */
+	synchronized int take(long now) {
+	    update(now);
+	    tokens = Math.max(0, tokens - 1);
+	    return ++currentFailures;
+	}
+
+	/** Returns the failures in the sliding window ending now */
+	synchronized int getFailures(long now) {
+	    update(now);
+	    double previousWeight = 1 - (double) (now - windowStart) / WINDOW;
+	    return currentFailures
+		    + (int) Math.round(previousFailures * previousWeight);
+	}
+
+	synchronized boolean isExpired(long now) {
+	    update(now);
+	    return tokens >= capacity && currentFailures == 0
+		    && previousFailures == 0;
+	}
+    }
+}
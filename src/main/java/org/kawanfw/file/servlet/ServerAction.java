@@ -0,0 +1,70 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.servlet;
+
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.kawanfw.file.api.server.FileConfigurator;
+
+/**
+ * An action executed by the server for an authenticated client request.
+ * <p>
+ * Actions are registered once in a {@link ServerActionRegistry} and shared
+ * by all the requests: implementations must be stateless and thread safe.
+ * 
+ * @author Nicolas de Pomereu
+ */
+public interface ServerAction {
+
+    /**
+     * Executes the action and writes its result on the output stream.
+     * 
+     * @param request
+     *            the http request
+     * @param response
+     *            the http response
+     * @param out
+     *            the servlet output stream, compressed if the client accepts
+     *            it
+     * @param fileConfigurator
+     *            the file configurator defined by the user
+     * @param username
+     *            the client username
+     * @param filename
+     *            the file name parameter of the request, may be null
+     * @param binaryResponse
+     *            if true, the result must be written in the binary framed
+     *            format
+     * @throws Exception
+     *             if any Exception occurs: it is sent back to the client
+     */
+    public void execute(HttpServletRequest request,
+	    HttpServletResponse response, OutputStream out,
+	    FileConfigurator fileConfigurator, String username,
+	    String filename, boolean binaryResponse) throws Exception;
+}
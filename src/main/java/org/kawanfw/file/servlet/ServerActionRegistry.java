@@ -0,0 +1,460 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.kawanfw.commons.json.ListOfStringTransport;
+import org.kawanfw.commons.server.util.ServerLogger;
+import org.kawanfw.commons.util.BinaryResponse;
+import org.kawanfw.commons.util.FrameworkDebug;
+import org.kawanfw.commons.util.HtmlConverter;
+import org.kawanfw.commons.util.StringUtil;
+import org.kawanfw.commons.util.Tag;
+import org.kawanfw.commons.util.TransferStatus;
+import org.kawanfw.file.api.server.FileConfigurator;
+import org.kawanfw.file.servlet.nio.FileListAction;
+import org.kawanfw.file.servlet.nio.FileListFilesAction;
+import org.kawanfw.file.servlet.nio.FileMethodOneReturnAction;
+import org.kawanfw.file.servlet.nio.FileMethodsBatchAction;
+import org.kawanfw.file.servlet.util.FileTransferManager;
+import org.kawanfw.file.servlet.util.HttpConfigurationUtil;
+import org.kawanfw.file.util.parms.Action;
+import org.kawanfw.file.util.parms.Parameter;
+
+/**
+ * The registry of the actions executed by {@link ServerFileDispatch} for the
+ * authenticated requests.
+ * <p>
+ * Each action name is mapped to a single {@link ServerAction} instance,
+ * shared by all the requests: the routing is one hash lookup and no action
+ * object is created per request. New actions may be plugged in with
+ * {@link #register(String, ServerAction)}. <br>
+ * The execution times are recorded per action in an
+ * {@link ActionHistogram}.
+ * <p>
+ * The login, upload and unauthenticated call requests are handled by
+ * {@code ServerFileDispatch} before the token check and are not in the
+ * registry.
+ * 
+ * @author Nicolas de Pomereu
+ */
+public class ServerActionRegistry {
+
+    /** For debug info */
+    private static boolean DEBUG = FrameworkDebug
+	    .isSet(ServerActionRegistry.class);
+
+    private static String CR_LF = System.getProperty("line.separator");
+
+    /** The registry used by the dispatcher, with the built-in actions */
+    private static final ServerActionRegistry DEFAULT = createDefault();
+
+    /** The actions with their histograms, per action name */
+    private final ConcurrentMap<String, RegisteredAction> actions = new ConcurrentHashMap<String, RegisteredAction>();
+
+    /**
+     * Returns the registry used by the dispatcher, that contains the
+     * built-in actions.
+     * 
+     * @return the registry used by the dispatcher
+     */
+    public static ServerActionRegistry getDefault() {
+	return DEFAULT;
+    }
+
+    /**
+     * Registers an action. An action already registered with the same name
+     * is replaced, and its histogram is reset.
+     * 
+     * @param action
+     *            the action name sent by the client
+     * @param serverAction
+     *            the stateless action to execute
+     */
+    public void register(String action, ServerAction serverAction) {
+
+	if (action == null) {
+	    throw new IllegalArgumentException("action is null!");
+	}
+
+	if (serverAction == null) {
+	    throw new IllegalArgumentException("serverAction is null!");
+	}
+
+	actions.put(action, new RegisteredAction(serverAction));
+    }
+
+    /**
+     * Returns the action registered with a name.
+     * 
+     * @param action
+     *            the action name sent by the client
+     * @return the registered action, or null if none
+     */
+    public ServerAction get(String action) {
+	RegisteredAction registeredAction = action == null ? null : actions
+		.get(action);
+	return registeredAction == null ? null : registeredAction.serverAction;
+    }
+
+    /**
+     * Executes the action registered with a name and records its execution
+     * time, failed executions included.
+     * 
+     * @param action
+     *            the action name sent by the client
+     * @param request
+     *            the http request
+     * @param response
+     *            the http response
+     * @param out
+     *            the servlet output stream
+     * @param fileConfigurator
+     *            the file configurator defined by the user
+     * @param username
+     *            the client username
+     * @param filename
+     *            the file name parameter of the request, may be null
+     * @param binaryResponse
+     *            if true, the result must be written in the binary framed
+     *            format
+     * @throws IllegalArgumentException
+     *             if no action is registered with the name
+     * @throws Exception
+     *             if the action throws an Exception
+     */
+    public void execute(String action, HttpServletRequest request,
+	    HttpServletResponse response, OutputStream out,
+	    FileConfigurator fileConfigurator, String username,
+	    String filename, boolean binaryResponse) throws Exception {
+
+	RegisteredAction registeredAction = action == null ? null : actions
+		.get(action);
+
+	if (registeredAction == null) {
+	    throw new IllegalArgumentException("Invalid Client Action: "
+		    + action);
+	}
+
+	long begin = System.nanoTime();
+	try {
+	    registeredAction.serverAction.execute(request, response, out,
+		    fileConfigurator, username, filename, binaryResponse);
+	} finally {
+	    registeredAction.histogram.record(System.nanoTime() - begin);
+	}
+
+	if (DEBUG) {
+	    debug(action + ": " + registeredAction.histogram);
+	}
+    }
+
+    /**
+     * Returns the histogram of the execution times of an action.
+     * 
+     * @param action
+     *            the action name
+     * @return the histogram of the action, or null if the action is not
+     *         registered
+     */
+    public ActionHistogram getHistogram(String action) {
+	RegisteredAction registeredAction = action == null ? null : actions
+		.get(action);
+	return registeredAction == null ? null : registeredAction.histogram;
+    }
+
+    /**
+     * Returns the histograms of all the registered actions.
+     * 
+     * @return the histograms per action name, sorted by name
+     */
+    public Map<String, ActionHistogram> getHistograms() {
+	Map<String, ActionHistogram> histograms = new TreeMap<String, ActionHistogram>();
+	for (Map.Entry<String, RegisteredAction> entry : actions.entrySet()) {
+	    histograms.put(entry.getKey(), entry.getValue().histogram);
+	}
+	return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Creates the registry of the built-in actions.
+     * 
+     * @return the registry of the built-in actions
+     */
+    private static ServerActionRegistry createDefault() {
+	ServerActionRegistry registry = new ServerActionRegistry();
+
+	final FileMethodOneReturnAction fileMethodOneReturnAction = new FileMethodOneReturnAction();
+	final FileMethodsBatchAction fileMethodsBatchAction = new FileMethodsBatchAction();
+	final FileListAction fileListAction = new FileListAction();
+	final FileListFilesAction fileListFilesAction = new FileListFilesAction();
+	final ServerCallAction serverCallAction = new ServerCallAction();
+	final FileTransferManager fileTransferManager = new FileTransferManager();
+
+	// Call to a File method that returns one result (no list return)
+	registry.register(Action.FILE_METHOD_ONE_RETURN_ACTION,
+		new ServerAction() {
+		    @Override
+		    public void execute(HttpServletRequest request,
+			    HttpServletResponse response, OutputStream out,
+			    FileConfigurator fileConfigurator,
+			    String username, String filename,
+			    boolean binaryResponse) throws Exception {
+			fileMethodOneReturnAction.call(request,
+				fileConfigurator, out, username, filename,
+				binaryResponse);
+		    }
+		});
+
+	// Call to many File methods on many files
+	registry.register(Action.FILE_METHODS_BATCH_ACTION, new ServerAction() {
+	    @Override
+	    public void execute(HttpServletRequest request,
+		    HttpServletResponse response, OutputStream out,
+		    FileConfigurator fileConfigurator, String username,
+		    String filename, boolean binaryResponse) throws Exception {
+		fileMethodsBatchAction.call(request, fileConfigurator, out,
+			username, filename, binaryResponse);
+	    }
+	});
+
+	// Call to a File.list() or File.list(FilenameFilter)
+	registry.register(Action.FILE_LIST_ACTION, new ServerAction() {
+	    @Override
+	    public void execute(HttpServletRequest request,
+		    HttpServletResponse response, OutputStream out,
+		    FileConfigurator fileConfigurator, String username,
+		    String filename, boolean binaryResponse) throws Exception {
+		fileListAction.list(request, fileConfigurator, out, username,
+			filename);
+	    }
+	});
+
+	// Call to a File.listFiles() or File.listFiles(FileFilter)
+	// or File.listFiles(FilenameFilter)
+	registry.register(Action.FILE_LIST_FILES_ACTION, new ServerAction() {
+	    @Override
+	    public void execute(HttpServletRequest request,
+		    HttpServletResponse response, OutputStream out,
+		    FileConfigurator fileConfigurator, String username,
+		    String filename, boolean binaryResponse) throws Exception {
+		fileListFilesAction.listFiles(request, fileConfigurator, out,
+			username, filename);
+	    }
+	});
+
+	// Call to a File.listFiles() that returns the file attributes
+	registry.register(Action.FILE_LIST_FILES_ATTRIBUTES_ACTION,
+		new ServerAction() {
+		    @Override
+		    public void execute(HttpServletRequest request,
+			    HttpServletResponse response, OutputStream out,
+			    FileConfigurator fileConfigurator,
+			    String username, String filename,
+			    boolean binaryResponse) throws Exception {
+			fileListFilesAction.listFilesWithAttributes(
+				fileConfigurator, out, username, filename);
+		    }
+		});
+
+	// Call to a File.listFiles() that returns one page of files
+	registry.register(Action.FILE_LIST_FILES_PAGE_ACTION,
+		new ServerAction() {
+		    @Override
+		    public void execute(HttpServletRequest request,
+			    HttpServletResponse response, OutputStream out,
+			    FileConfigurator fileConfigurator,
+			    String username, String filename,
+			    boolean binaryResponse) throws Exception {
+			fileListFilesAction.listFilesPage(request,
+				fileConfigurator, out, username, filename);
+		    }
+		});
+
+	ServerAction callAction = new ServerAction() {
+	    @Override
+	    public void execute(HttpServletRequest request,
+		    HttpServletResponse response, OutputStream out,
+		    FileConfigurator fileConfigurator, String username,
+		    String filename, boolean binaryResponse) throws Exception {
+		serverCallAction.call(request, fileConfigurator, out, username);
+	    }
+	};
+	registry.register(Action.CALL_ACTION, callAction);
+	registry.register(Action.CALL_ACTION_HTML_ENCODED, callAction);
+
+	registry.register(Action.GET_FILE_LENGTH_ACTION, new ServerAction() {
+	    @Override
+	    public void execute(HttpServletRequest request,
+		    HttpServletResponse response, OutputStream out,
+		    FileConfigurator fileConfigurator, String username,
+		    String filename, boolean binaryResponse) throws Exception {
+		long result = getListFileLength(fileConfigurator, username,
+			filename);
+
+		if (binaryResponse) {
+		    BinaryResponse.writeOk(out, result);
+		} else {
+		    writeLine(out, TransferStatus.SEND_OK);
+		    writeLine(out, Long.toString(result));
+		}
+	    }
+	});
+
+	registry.register(Action.GET_JAVA_VERSION, new ServerAction() {
+	    @Override
+	    public void execute(HttpServletRequest request,
+		    HttpServletResponse response, OutputStream out,
+		    FileConfigurator fileConfigurator, String username,
+		    String filename, boolean binaryResponse) throws Exception {
+		String javaVersion = System.getProperty("java.version");
+		writeLine(out, TransferStatus.SEND_OK);
+		writeLine(out, javaVersion);
+	    }
+	});
+
+	registry.register(Action.DOWNLOAD_FILE_ACTION, new ServerAction() {
+	    @Override
+	    public void execute(HttpServletRequest request,
+		    HttpServletResponse response, OutputStream out,
+		    FileConfigurator fileConfigurator, String username,
+		    String filename, boolean binaryResponse) throws Exception {
+		String chunkLengtgStr = request
+			.getParameter(Parameter.CHUNKLENGTH);
+		long chunkLength = Long.parseLong(chunkLengtgStr);
+
+		boolean result = fileTransferManager.download(request,
+			response, out, fileConfigurator, username, filename,
+			chunkLength);
+
+		if (!result) {
+		    // Impossible to find the file on server
+		    writeLine(out, TransferStatus.SEND_OK);
+		    writeLine(out, Tag.FileNotFoundException);
+		}
+	    }
+	});
+
+	registry.register(Action.DOWNLOAD_RANGE_ACTION, new ServerAction() {
+	    @Override
+	    public void execute(HttpServletRequest request,
+		    HttpServletResponse response, OutputStream out,
+		    FileConfigurator fileConfigurator, String username,
+		    String filename, boolean binaryResponse) throws Exception {
+		long offset = Long.parseLong(StringUtil.getTrimValue(request
+			.getParameter(Parameter.OFFSET)));
+		long length = Long.parseLong(StringUtil.getTrimValue(request
+			.getParameter(Parameter.LENGTH)));
+
+		boolean result = fileTransferManager.downloadRange(out,
+			fileConfigurator, username, filename, offset, length);
+
+		if (!result) {
+		    // Impossible to find the file on server
+		    writeLine(out, TransferStatus.SEND_OK);
+		    writeLine(out, Tag.FileNotFoundException);
+		}
+	    }
+	});
+
+	return registry;
+    }
+
+    /**
+     * Action: get a file list length
+     * 
+     * @param fileConfigurator
+     * @param filename
+     *            the filelist
+     * @return the length of file list
+     */
+    private static long getListFileLength(FileConfigurator fileConfigurator,
+	    String username, String filename) throws IOException {
+	debug("Action.GET_FILE_LENGTH_ACTION");
+	long result = 0;
+
+	// We have in fact a list of files
+	List<String> files = ListOfStringTransport.fromJson(filename);
+
+	// We must convert each element of List<String> files from Html
+	files = HtmlConverter.fromHtml(files);
+
+	for (String theFilename : files) {
+	    theFilename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
+		    username, theFilename, false);
+
+	    File file = new File(theFilename);
+	    result += file.length();
+	}
+
+	return result;
+    }
+
+    /**
+     * Write a line of string on the servlet output stream. Will add the
+     * necessary CR_LF
+     * 
+     * @param out
+     *            the servlet output stream
+     * @param s
+     *            the string to write
+     * @throws IOException
+     */
+    private static void writeLine(OutputStream out, String s)
+	    throws IOException {
+	out.write((s + CR_LF).getBytes());
+    }
+
+    private static void debug(String s) {
+	if (DEBUG) {
+	    ServerLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+
+    /**
+     * A registered action with the histogram of its execution times.
+     */
+    private static class RegisteredAction {
+	private final ServerAction serverAction;
+	private final ActionHistogram histogram = new ActionHistogram();
+
+	RegisteredAction(ServerAction serverAction) {
+	    this.serverAction = serverAction;
+	}
+    }
+}
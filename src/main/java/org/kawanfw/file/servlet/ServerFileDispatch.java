@@ -25,9 +25,11 @@
 package org.kawanfw.file.servlet;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 import javax.servlet.http.HttpServletRequest;
@@ -36,22 +38,19 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.kawanfw.commons.json.ListOfStringTransport;
 import org.kawanfw.commons.server.util.ServerLogger;
+import org.kawanfw.commons.util.BinaryResponse;
 import org.kawanfw.commons.util.FrameworkDebug;
-import org.kawanfw.commons.util.HtmlConverter;
 import org.kawanfw.commons.util.StringUtil;
 import org.kawanfw.commons.util.Tag;
 import org.kawanfw.commons.util.TransferStatus;
+import org.kawanfw.commons.util.codec.ContentCodec;
+import org.kawanfw.commons.util.codec.ContentCodecs;
 import org.kawanfw.file.api.server.FileConfigurator;
 import org.kawanfw.file.api.server.session.SessionConfigurator;
 import org.kawanfw.file.reflection.ClassPathUtil;
-import org.kawanfw.file.servlet.nio.FileListAction;
-import org.kawanfw.file.servlet.nio.FileListFilesAction;
-import org.kawanfw.file.servlet.nio.FileMethodOneReturnAction;
 import org.kawanfw.file.servlet.nio.KawanfwSecurityManager;
 import org.kawanfw.file.servlet.util.CallUtil;
-import org.kawanfw.file.servlet.util.FileTransferManager;
 import org.kawanfw.file.servlet.util.HttpConfigurationUtil;
 import org.kawanfw.file.util.parms.Action;
 import org.kawanfw.file.util.parms.Parameter;
@@ -78,6 +77,9 @@ public class ServerFileDispatch {
 
     public static KawanfwSecurityManager securityManager = null;
 
+    /** Says if the class path has been displayed in debug mode */
+    private static final AtomicBoolean classpathDisplayed = new AtomicBoolean(false);
+
     /**
      * Constructor
      */
@@ -106,6 +108,11 @@ public class ServerFileDispatch {
 	    SessionConfigurator sessionConfigurator,
 	    FileConfigurator fileConfigurator) throws IOException {
 	OutputStream out = null;
+	OutputStream compressedOut = null;
+	boolean binaryResponse = false;
+
+	// Says to the client which codecs may compress its uploads
+	response.setHeader(ContentCodecs.CODECS_HEADER, ContentCodecs.getNames());
 
 	try {
 
@@ -140,6 +147,8 @@ public class ServerFileDispatch {
 
 	    debug("ACTION : " + action);
 
+	    binaryResponse = isBinaryResponse(request, action);
+
 	    // Special action for Login, because Token does not exists and must
 	    // be built
 	    if (action.equals(Action.LOGIN_ACTION)
@@ -198,8 +207,13 @@ public class ServerFileDispatch {
 		debug("username: " + username);
 		debug("token   : " + token);
 
-		writeLine(out, TransferStatus.SEND_OK);
-		writeLine(out, ReturnCode.INVALID_LOGIN_OR_PASSWORD);
+		if (binaryResponse) {
+		    BinaryResponse.writeOk(out,
+			    ReturnCode.INVALID_LOGIN_OR_PASSWORD);
+		} else {
+		    writeLine(out, TransferStatus.SEND_OK);
+		    writeLine(out, ReturnCode.INVALID_LOGIN_OR_PASSWORD);
+		}
 
 		return;
 	    }
@@ -207,73 +221,28 @@ public class ServerFileDispatch {
 	    // Ok, install our security manager
 	    // installSecurityManager(fileConfigurator);
 
-	    // Displays class path
-	    if (DEBUG)
+	    // Displays class path, once
+	    if (DEBUG && classpathDisplayed.compareAndSet(false, true))
 		ClassPathUtil.displayClasspath();
 
 	    // The filename
 	    String filename = request.getParameter(Parameter.FILENAME);
 	    filename = StringUtil.getTrimValue(filename);
 
-	    // Call to a File method that returns one result (no list return)
-	    if (action.equals(Action.FILE_METHOD_ONE_RETURN_ACTION)) {
-		FileMethodOneReturnAction fileMethodOneReturnAction = new FileMethodOneReturnAction();
-		fileMethodOneReturnAction.call(request, fileConfigurator, out,
-			username, filename);
-
-		return;
+	    // Compress the downloads and listings if the client accepts it
+	    ContentCodec codec = getResponseCodec(request, fileConfigurator,
+		    username, action, filename);
+	    if (codec != null) {
+		debug("Content-Encoding: " + codec.getName());
+		response.setHeader("Content-Encoding", codec.getName());
+		compressedOut = codec.compress(out);
+		out = compressedOut;
 	    }
-	    // Call to a File.list() or File.list(FilenameFilter)
-	    else if (action.equals(Action.FILE_LIST_ACTION)) {
 
-		FileListAction fileListAction = new FileListAction();
-		fileListAction.list(request, fileConfigurator, out, username,
-			filename);
-		return;
-	    }
-	    // Call to a File.listFiles() or File.listFiles(FileFilter)
-	    // or File.listFiles(FilenameFilter)
-	    else if (action.equals(Action.FILE_LIST_FILES_ACTION)) {
-
-		FileListFilesAction fileListFilesAction = new FileListFilesAction();
-		fileListFilesAction.listFiles(request, fileConfigurator, out,
-			username, filename);
-		return;
-	    } else if (action.equals(Action.CALL_ACTION)
-		    || action.equals(Action.CALL_ACTION_HTML_ENCODED)) {
-		ServerCallAction serverCallAction = new ServerCallAction();
-		serverCallAction.call(request, fileConfigurator, out, username);
-		return;
-	    } else if (action.equals(Action.GET_FILE_LENGTH_ACTION)) {
-		long result = actionGetListFileLength(fileConfigurator,
-			username, filename);
-
-		writeLine(out, TransferStatus.SEND_OK);
-		writeLine(out, Long.toString(result));
-	    } else if (action.equals(Action.GET_JAVA_VERSION)) {
-		String javaVersion = System.getProperty("java.version");
-		writeLine(out, TransferStatus.SEND_OK);
-		writeLine(out, javaVersion);
-	    } else if (action.equals(Action.DOWNLOAD_FILE_ACTION)) {
-
-		String chunkLengtgStr = request
-			.getParameter(Parameter.CHUNKLENGTH);
-		long chunkLength = Long.parseLong(chunkLengtgStr);
-
-		boolean result = new FileTransferManager().download(out,
-			fileConfigurator, username, filename, chunkLength);
-
-		if (!result) {
-		    // Impossible to find the file on server
-		    writeLine(out, TransferStatus.SEND_OK);
-		    writeLine(out, Tag.FileNotFoundException);
-		    // throw new FileNotFoundException(
-		    // "File not found on remote server: " + filename);
-		}
-	    } else {
-		throw new IllegalArgumentException(
-			"Invalid Client Action: " + action);
-	    }
+	    // All the other actions are routed by the registry
+	    ServerActionRegistry.getDefault().execute(action, request,
+		    response, out, fileConfigurator, username, filename,
+		    binaryResponse);
 
 	    return;
 	} catch (Throwable throwable) {
@@ -283,13 +252,20 @@ public class ServerFileDispatch {
 
 	    Throwable finalThrowable = getFinalThrowable(throwable);
 
-	    writeLine(out, TransferStatus.SEND_FAILED);
-	    writeLine(out, finalThrowable.getClass().getName()); // Exception
-								 // class name
-	    writeLine(out, ServerUserThrowable.getMessage(finalThrowable)); // Exception
-	    // message
-	    writeLine(out, ExceptionUtils.getStackTrace(finalThrowable)); // stack
-									  // trace
+	    if (binaryResponse) {
+		BinaryResponse.writeFailed(out, finalThrowable.getClass()
+			.getName(), ServerUserThrowable
+			.getMessage(finalThrowable), ExceptionUtils
+			.getStackTrace(finalThrowable));
+	    } else {
+		writeLine(out, TransferStatus.SEND_FAILED);
+		writeLine(out, finalThrowable.getClass().getName()); // Exception
+								     // class name
+		writeLine(out, ServerUserThrowable.getMessage(finalThrowable)); // Exception
+		// message
+		writeLine(out, ExceptionUtils.getStackTrace(finalThrowable)); // stack
+									      // trace
+	    }
 
 	    try {
 		ServerLogger.getLogger().log(Level.WARNING,
@@ -303,10 +279,109 @@ public class ServerFileDispatch {
 		e1.printStackTrace(System.out);
 	    }
 
+	} finally {
+	    // Finishes the compressed content
+	    if (compressedOut != null) {
+		compressedOut.close();
+	    }
 	}
     }
 
 
+    /**
+     * Says if the response must be written in the binary framed format: the
+     * client must have asked for it and the action must be one of the actions
+     * that return a few typed values. Downloads and listings keep their
+     * formats.
+     * 
+     * @param request
+     *            the http request
+     * @param action
+     *            the action asked by the client
+     * @return true if the response must be written in binary format
+     */
+    private boolean isBinaryResponse(HttpServletRequest request,
+	    String action) {
+	if (!BinaryResponse.isRequested(request.getParameter(Parameter.VERSION))) {
+	    return false;
+	}
+
+	return action.equals(Action.FILE_METHOD_ONE_RETURN_ACTION)
+		|| action.equals(Action.FILE_METHODS_BATCH_ACTION)
+		|| action.equals(Action.GET_FILE_LENGTH_ACTION);
+    }
+
+    /**
+     * Returns the codec that compresses the response: only for the actions
+     * that may return large contents, if the client accepts a registered
+     * codec and if the file to download is not already compressed.
+     * 
+     * @param request
+     *            the http request
+     * @param fileConfigurator
+     *            the file configurator defined by the user
+     * @param username
+     *            the client username
+     * @param action
+     *            the action asked by the client
+     * @param filename
+     *            the file name parameter of the request
+     * @return the codec of the response, or null if not compressed
+     * @throws IOException
+     */
+    private ContentCodec getResponseCodec(HttpServletRequest request,
+	    FileConfigurator fileConfigurator, String username,
+	    String action, String filename) throws IOException {
+
+	boolean isDownload = action.equals(Action.DOWNLOAD_FILE_ACTION)
+		|| action.equals(Action.DOWNLOAD_RANGE_ACTION);
+	boolean isListing = action.equals(Action.FILE_LIST_ACTION)
+		|| action.equals(Action.FILE_LIST_FILES_ACTION)
+		|| action.equals(Action.FILE_LIST_FILES_ATTRIBUTES_ACTION)
+		|| action.equals(Action.FILE_LIST_FILES_PAGE_ACTION);
+
+	if (!isDownload && !isListing) {
+	    return null;
+	}
+
+	ContentCodec codec = ContentCodecs.negotiate(
+		request.getHeader("Accept-Encoding"), null);
+	if (codec == null || isListing) {
+	    return codec;
+	}
+
+	if (ContentCodecs.hasIncompressibleExtension(filename)) {
+	    return null;
+	}
+
+	// Sample the start of the file, without the chunk suffix
+	String pathname = filename;
+	if (pathname.endsWith(".kawanfw.chunk")) {
+	    pathname = StringUtils.substringBeforeLast(
+		    StringUtils.substringBeforeLast(pathname, ".kawanfw.chunk"),
+		    ".");
+	}
+	File file = new File(HttpConfigurationUtil.addUserHomePath(
+		fileConfigurator, username, pathname, false));
+
+	if (!file.isFile()) {
+	    return null;
+	}
+
+	byte[] sample = new byte[ContentCodecs.SAMPLE_LENGTH];
+	int length = 0;
+	try (InputStream in = new FileInputStream(file)) {
+	    int n;
+	    while (length < sample.length
+		    && (n = in.read(sample, length, sample.length - length)) != -1) {
+		length += n;
+	    }
+	}
+
+	return ContentCodecs.isCompressibleSample(sample, length) ? codec
+		: null;
+    }
+
     /**
      * Analyze the throwable and build the final Exception/Throwable
      * 
@@ -367,41 +442,6 @@ public class ServerFileDispatch {
 	out.write((s + CR_LF).getBytes());
     }
 
-    /**
-     * Action: get a file list length
-     * 
-     * @param fileConfigurator
-     * @param filename
-     *            the filelist
-     * @return the length of file list
-     */
-    private long actionGetListFileLength(FileConfigurator fileConfigurator,
-	    String username, String filename) throws IOException {
-	debug("Action.GET_FILE_LENGTH_ACTION");
-	long result = 0;
-
-	// We have in fact a list of files
-	List<String> files = ListOfStringTransport.fromJson(filename);
-
-	// actionGetListFileLength: We must convert each element of List<String>
-	// files from Html
-	files = HtmlConverter.fromHtml(files);
-
-	for (String theFilename : files) {
-
-	    // result += fileActionManager.length(fileConfigurator,
-	    // username, theFilename);
-
-	    theFilename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
-		    username, theFilename);
-
-	    File file = new File(theFilename);
-	    result += file.length();
-	}
-
-	return result;
-    }
-
     private static void debug(String s) {
 	if (DEBUG) {
 	    ServerLogger.getLogger().log(Level.WARNING, s);
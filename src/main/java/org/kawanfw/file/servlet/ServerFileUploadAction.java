@@ -45,6 +45,8 @@ import org.kawanfw.commons.util.HtmlConverter;
 import org.kawanfw.commons.util.StringUtil;
 import org.kawanfw.commons.util.Tag;
 import org.kawanfw.commons.util.TransferStatus;
+import org.kawanfw.commons.util.codec.ContentCodec;
+import org.kawanfw.commons.util.codec.ContentCodecs;
 import org.kawanfw.file.api.server.FileConfigurator;
 import org.kawanfw.file.api.server.session.SessionConfigurator;
 import org.kawanfw.file.servlet.util.FileTransferManager;
@@ -95,6 +97,7 @@ public class ServerFileUploadAction {
 	    String token = null;
 	    String filename = null;
 	    long chunkLength = 0;
+	    String compression = null;
 
 	    response.setContentType("text/html");
 	    // Prepare the response
@@ -151,6 +154,9 @@ public class ServerFileUploadAction {
 			String chunklengthStr = Streams.asString(stream);
 			chunkLength = Long.parseLong(chunklengthStr);
 			debug("chunklengthStr: " + chunklengthStr);
+		    } else if (name.equals(Parameter.COMPRESSION)) {
+			compression = Streams.asString(stream);
+			debug("compression: " + compression);
 		    }
 		} else {
 
@@ -177,6 +183,17 @@ public class ServerFileUploadAction {
 			    + item.getName() + " detected.");
 		    debug("filename: " + filename);
 
+		    // The client compressed the file content
+		    if (compression != null) {
+			ContentCodec codec = ContentCodecs.get(compression);
+			if (codec == null) {
+			    throw new IOException(Tag.PRODUCT_PRODUCT_FAIL
+				    + " Unsupported upload compression: "
+				    + compression);
+			}
+			stream = codec.decompress(stream);
+		    }
+
 		    new FileTransferManager().upload(fileConfigurator, stream,
 			    username, filename, chunkLength);
 
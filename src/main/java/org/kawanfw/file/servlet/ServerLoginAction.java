@@ -116,6 +116,18 @@ public class ServerLoginAction extends HttpServlet {
 	    // Check the IP. Refuse access if IP is banned/blacklisted
 	    String ipAddress = request.getRemoteAddr();
 
+	    // Refuse at once, without password check, if too many failures
+	    LoginThrottle loginThrottle = LoginThrottle.getDefault();
+	    long wait = loginThrottle.tryAcquire(username, ipAddress);
+	    if (wait > 0) {
+		debug("login: throttled for " + wait + " ms");
+		response.setHeader("Retry-After",
+			Long.toString((wait + 999) / 1000));
+		out.println(TransferStatus.SEND_OK);
+		out.println(ReturnCode.INVALID_LOGIN_OR_PASSWORD);
+		return;
+	    }
+
 	    debug("calling checkLoginAndPassword");
 
 	    boolean isOk = fileConfigurator.login(username,
@@ -127,9 +139,7 @@ public class ServerLoginAction extends HttpServlet {
 		debug("login: invalid login or password");
 
 		// Reduce the login speed
-		LoginSpeedReducer loginSpeedReducer = new LoginSpeedReducer(
-			username);
-		loginSpeedReducer.checkAttempts();
+		loginThrottle.failed(username, ipAddress);
 
 		out.println(TransferStatus.SEND_OK);
 		out.println(ReturnCode.INVALID_LOGIN_OR_PASSWORD);
@@ -137,6 +147,7 @@ public class ServerLoginAction extends HttpServlet {
 	    }
 
 	    debug("Login done!");
+	    loginThrottle.succeeded(username, ipAddress);
 
 	    String token = sessionConfigurator.generateToken(username);
 
@@ -0,0 +1,295 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.servlet.nio;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.kawanfw.commons.util.Tag;
+
+/**
+ * The open directory streams of the paged listings, so that each page
+ * resumes where the previous one stopped without reading the directory again.
+ * <p>
+ * A cursor is claimed by the request that uses it and stored again under a
+ * new random id if the listing is not finished: a continuation token can be
+ * used only once. The number of open cursors is bounded.
+ * <p>
+ * The cursors are kept in storage order, which is also the order of their
+ * last use: the idle ones are always the first ones. Each listing request
+ * closes the cursors not used for the time-to-live, so that the directory
+ * streams of the listings abandoned by their clients do not stay open.
+ * 
+ * @author Nicolas de Pomereu
+ */
+public class DirectoryCursors {
+
+    /** The default idle time in milliseconds after which a cursor is closed */
+    public static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+    /** The default maximum number of open cursors */
+    public static final int DEFAULT_MAX_CURSORS = 1000;
+
+    /** The cursors shared by the listing actions */
+    private static final DirectoryCursors DEFAULT = new DirectoryCursors(
+	    DEFAULT_TTL, DEFAULT_MAX_CURSORS);
+
+    /** The cursors per token, in storage order. Guarded by lock */
+    private final LinkedHashMap<String, Cursor> cursors = new LinkedHashMap<String, Cursor>();
+
+    /** The lock of the cursors */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final SecureRandom random = new SecureRandom();
+
+    /** The idle time in milliseconds after which a cursor is closed */
+    private final long ttl;
+
+    /** The maximum number of open cursors */
+    private final int maxCursors;
+
+    /**
+     * Constructor.
+     * 
+     * @param ttl
+     *            the idle time in milliseconds after which a cursor is closed
+     * @param maxCursors
+     *            the maximum number of open cursors
+     */
+    public DirectoryCursors(long ttl, int maxCursors) {
+	if (maxCursors < 1) {
+	    throw new IllegalArgumentException("maxCursors must be >= 1!");
+	}
+	this.ttl = ttl;
+	this.maxCursors = maxCursors;
+    }
+
+    /**
+     * Returns the cursors shared by the listing actions.
+     * 
+     * @return the cursors shared by the listing actions
+     */
+    public static DirectoryCursors getDefault() {
+	return DEFAULT;
+    }
+
+    /**
+     * Claims the cursor of a continuation token. The caller must either
+     * {@link #store(Cursor)} or {@link Cursor#close()} it.
+     * 
+     * @param token
+     *            the continuation token
+     * @param username
+     *            the client username, that must be the owner of the cursor
+     * @param dir
+     *            the listed directory, that must be the one of the cursor
+     * @return the cursor of the token
+     * @throws IllegalArgumentException
+     *             if the token is unknown, expired or already used
+     */
+    public Cursor claim(String token, String username, Path dir) {
+	List<Cursor> closed;
+	Cursor cursor;
+
+	lock.lock();
+	try {
+	    // An expired cursor is closed here and its token is unknown
+	    closed = purge(System.currentTimeMillis(), 0);
+	    cursor = cursors.remove(token);
+	} finally {
+	    lock.unlock();
+	}
+
+	close(closed);
+
+	if (cursor == null) {
+	    throw new IllegalArgumentException(Tag.PRODUCT
+		    + " Invalid or expired continuation token: " + token);
+	}
+
+	if (!Objects.equals(cursor.username, username) || !cursor.dir.equals(dir)) {
+	    cursor.close();
+	    throw new IllegalArgumentException(Tag.PRODUCT
+		    + " Continuation token does not match the listed directory.");
+	}
+
+	return cursor;
+    }
+
+    /**
+     * Stores a cursor whose listing is not finished.
+     * 
+     * @param cursor
+     *            the cursor to store
+     * @return the new continuation token of the cursor
+     */
+    public String store(Cursor cursor) {
+	byte[] bytes = new byte[16];
+	random.nextBytes(bytes);
+	StringBuilder token = new StringBuilder(32);
+	for (byte b : bytes) {
+	    token.append(Character.forDigit((b >> 4) & 0xF, 16));
+	    token.append(Character.forDigit(b & 0xF, 16));
+	}
+
+	List<Cursor> closed;
+
+	lock.lock();
+	try {
+	    long now = System.currentTimeMillis();
+	    closed = purge(now, 1);
+	    cursor.lastAccess = now;
+	    cursors.put(token.toString(), cursor);
+	} finally {
+	    lock.unlock();
+	}
+
+	close(closed);
+	return token.toString();
+    }
+
+    /**
+     * Closes the cursors not used for the time-to-live.
+     */
+    public void closeExpired() {
+	List<Cursor> closed;
+
+	lock.lock();
+	try {
+	    closed = purge(System.currentTimeMillis(), 0);
+	} finally {
+	    lock.unlock();
+	}
+
+	close(closed);
+    }
+
+    /**
+     * Returns the number of open cursors.
+     * 
+     * @return the number of open cursors
+     */
+    public int size() {
+	lock.lock();
+	try {
+	    return cursors.size();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Removes the expired cursors, then the least recently used ones until
+     * there is room for the new ones. Both are at the head of the storage
+     * order. Must be called with the lock held.
+     * 
+     * @param now
+     *            the current time
+     * @param room
+     *            the number of cursors about to be stored
+     * @return the removed cursors, to close once the lock is released
+     */
+    private List<Cursor> purge(long now, int room) {
+	List<Cursor> removed = new ArrayList<Cursor>();
+
+	Iterator<Cursor> iterator = cursors.values().iterator();
+	while (iterator.hasNext()) {
+	    Cursor cursor = iterator.next();
+	    if (cursors.size() + room <= maxCursors
+		    && now - cursor.lastAccess <= ttl) {
+		break;
+	    }
+
+	    iterator.remove();
+	    removed.add(cursor);
+	}
+
+	return removed;
+    }
+
+    /**
+     * Closes removed cursors.
+     */
+    private static void close(List<Cursor> cursors) {
+	for (Cursor cursor : cursors) {
+	    cursor.close();
+	}
+    }
+
+    /**
+     * An open directory stream, positioned after the entries already
+     * returned.
+     */
+    public static class Cursor {
+	private final String username;
+	private final Path dir;
+	private final DirectoryStream<Path> stream;
+	private final Iterator<Path> iterator;
+	private long lastAccess;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param username
+	 *            the client username, owner of the cursor
+	 * @param dir
+	 *            the listed directory
+	 * @param stream
+	 *            the open directory stream
+	 */
+	public Cursor(String username, Path dir, DirectoryStream<Path> stream) {
+	    this.username = username;
+	    this.dir = dir;
+	    this.stream = stream;
+	    this.iterator = stream.iterator();
+	}
+
+	/**
+	 * @return the iterator of the directory stream
+	 */
+	public Iterator<Path> iterator() {
+	    return iterator;
+	}
+
+	/**
+	 * Closes the directory stream.
+	 */
+	public void close() {
+	    try {
+		stream.close();
+	    } catch (IOException e) {
+		// Ignore
+	    }
+	}
+    }
+}
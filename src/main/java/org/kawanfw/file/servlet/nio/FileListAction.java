@@ -84,7 +84,7 @@ public class FileListAction {
 	FilenameFilter filenameFilter = ServerFilterUtil.buildFilenameFilter(request, fileConfigurator,
 		username);
 	filename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
-		username, filename);
+		username, filename, false);
 
 	File file = new File(filename);
 	String[] files = null;
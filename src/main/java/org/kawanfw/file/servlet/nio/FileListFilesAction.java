@@ -26,13 +26,26 @@ package org.kawanfw.file.servlet.nio;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
 import java.util.logging.Level;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.kawanfw.commons.json.ListOfStringTransport;
 import org.kawanfw.commons.server.util.ServerLogger;
 import org.kawanfw.commons.util.FrameworkDebug;
 import org.kawanfw.commons.util.HtmlConverter;
@@ -41,9 +54,12 @@ import org.kawanfw.commons.util.Tag;
 import org.kawanfw.commons.util.TransferStatus;
 import org.kawanfw.file.api.server.FileConfigurator;
 import org.kawanfw.file.servlet.util.HttpConfigurationUtil;
+import org.kawanfw.file.util.parms.Parameter;
+import org.kawanfw.file.util.parms.ReturnCode;
 
 /**
- * Calls File.listFiles() or File.listFiles(FileFilter)
+ * Calls File.listFiles() or File.listFiles(FileFilter), or lists the files of
+ * a directory with their attributes or by pages.
  * 
  * @author Nicolas de Pomereu
  * @since 1.0
@@ -53,6 +69,9 @@ public class FileListFilesAction {
     private static boolean DEBUG = FrameworkDebug
 	    .isSet(FileListFilesAction.class);
 
+    /** The maximum number of files of a listing page */
+    private static final int MAX_PAGE_SIZE = 100000;
+
     /**
      * Constructor.
      */
@@ -95,7 +114,7 @@ public class FileListFilesAction {
 	debug("After ServerFilterUtil.buidFileFilter");
 	
 	filename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
-		username, filename);
+		username, filename, false);
 
 	File file = new File(filename);
 	File[] files = null;
@@ -146,6 +165,275 @@ public class FileListFilesAction {
 
     }
 
+    /**
+     * Lists the files of a directory with their attributes. The attributes of
+     * each entry are read with one {@code Files.readAttributes} call while the
+     * directory is streamed. <br>
+     * Each entry is written as one JSON list line: pathname, exists,
+     * isDirectory, isFile, isHidden, length, lastModified, canRead, canWrite,
+     * canExecute and POSIX permissions (empty if not supported).
+     * 
+     * @param fileConfigurator
+     *            the file configurator defined by the user
+     * @param out
+     *            the servlet output stream
+     * @param username
+     *            the client login (for security check)
+     * @param filename
+     *            the directory to list
+     * @throws IOException
+     */
+    public void listFilesWithAttributes(FileConfigurator fileConfigurator,
+	    OutputStream out, String username, String filename)
+	    throws IOException {
+
+	debug("in listFilesWithAttributes()");
+
+	filename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
+		username, filename, false);
+
+	Path dir = new File(filename).toPath();
+
+	if (!Files.isDirectory(dir)) {
+	    writeLine(out, TransferStatus.SEND_OK);
+	    writeLine(out, null);
+	    return;
+	}
+
+	boolean posix = dir.getFileSystem().supportedFileAttributeViews()
+		.contains("posix");
+	boolean dos = dir.getFileSystem().supportedFileAttributeViews()
+		.contains("dos");
+
+	DirectoryStream<Path> stream = null;
+	try {
+	    stream = Files.newDirectoryStream(dir);
+	} catch (IOException e) {
+	    // Same as File.listFiles(): null on I/O error
+	    writeLine(out, TransferStatus.SEND_OK);
+	    writeLine(out, null);
+	    return;
+	}
+
+	try {
+	    writeLine(out, TransferStatus.SEND_OK);
+
+	    boolean empty = true;
+	    for (Path path : stream) {
+		List<String> entry = readEntry(fileConfigurator, username,
+			path, posix, dos);
+		if (entry == null) {
+		    continue; // Deleted while listing
+		}
+		writeLine(out, ListOfStringTransport.toJson(entry));
+		empty = false;
+	    }
+
+	    if (empty) {
+		writeLine(out, "[]");
+	    }
+	} finally {
+	    stream.close();
+	}
+    }
+
+    /**
+     * Lists one page of the files of a directory. The directory is streamed
+     * and only the entries of the page are held in memory. <br>
+     * The first line written is the continuation token of the next page, or
+     * {@link ReturnCode#LAST_PAGE}, followed by one pathname per line. <br>
+     * The directory stream stays open on server side between two pages: a
+     * continuation token is the random id of the open stream, valid for one
+     * page only, and each entry is read once for the whole listing. Streams
+     * not used for 5 minutes are closed by the next listing request. See
+     * {@link DirectoryCursors}.
+     * 
+     * @param request
+     *            the http request
+     * @param fileConfigurator
+     *            the file configurator defined by the user
+     * @param out
+     *            the servlet output stream
+     * @param username
+     *            the client login (for security check)
+     * @param filename
+     *            the directory to list
+     * @throws IOException
+     */
+    public void listFilesPage(HttpServletRequest request,
+	    FileConfigurator fileConfigurator, OutputStream out,
+	    String username, String filename) throws IOException {
+
+	debug("in listFilesPage()");
+
+	String pageSizeStr = request.getParameter(Parameter.PAGE_SIZE);
+	String continuationToken = request
+		.getParameter(Parameter.CONTINUATION_TOKEN);
+	continuationToken = StringUtil.getTrimValue(continuationToken);
+
+	int pageSize = 0;
+	try {
+	    pageSize = Integer.parseInt(StringUtil.getTrimValue(pageSizeStr));
+	} catch (NumberFormatException e) {
+	    // Rejected below
+	}
+
+	if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+	    throw new IllegalArgumentException(Tag.PRODUCT
+		    + " Invalid page size: " + pageSizeStr);
+	}
+
+	filename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
+		username, filename, false);
+
+	Path dir = new File(filename).toPath();
+
+	DirectoryCursors directoryCursors = DirectoryCursors.getDefault();
+	DirectoryCursors.Cursor cursor = null;
+
+	if (continuationToken != null && !continuationToken.isEmpty()) {
+	    cursor = directoryCursors.claim(continuationToken, username, dir);
+	} else {
+	    // The other requests close the expired cursors when they use them
+	    directoryCursors.closeExpired();
+
+	    if (!Files.isDirectory(dir)) {
+		writeLine(out, TransferStatus.SEND_OK);
+		writeLine(out, null);
+		return;
+	    }
+	    cursor = new DirectoryCursors.Cursor(username, dir,
+		    Files.newDirectoryStream(dir));
+	}
+
+	List<Path> page = new Vector<Path>();
+	String nextToken = ReturnCode.LAST_PAGE;
+
+	try {
+	    Iterator<Path> iterator = cursor.iterator();
+	    while (iterator.hasNext() && page.size() < pageSize) {
+		page.add(iterator.next());
+	    }
+
+	    if (iterator.hasNext()) {
+		nextToken = directoryCursors.store(cursor);
+		cursor = null;
+	    }
+	} finally {
+	    if (cursor != null) {
+		cursor.close();
+	    }
+	}
+
+	writeLine(out, TransferStatus.SEND_OK);
+	writeLine(out, HtmlConverter.toHtml(nextToken));
+
+	for (Path path : page) {
+	    String fileStr = ReturnFileFormatter.format(fileConfigurator,
+		    username, path.toString());
+	    writeLine(out, HtmlConverter.toHtml(fileStr));
+	}
+    }
+
+    /**
+     * Reads the attributes of a directory entry.
+     * 
+     * @param fileConfigurator
+     *            the file configurator defined by the user
+     * @param username
+     *            the client login
+     * @param path
+     *            the directory entry
+     * @param posix
+     *            if true, the file system supports POSIX attributes
+     * @param dos
+     *            if true, the file system supports DOS attributes
+     * @return the values of the entry, or null if the entry does not exist
+     *         anymore
+     * @throws FileNotFoundException
+     *             if the home directory of the user is invalid
+     */
+    private List<String> readEntry(FileConfigurator fileConfigurator,
+	    String username, Path path, boolean posix, boolean dos)
+	    throws FileNotFoundException {
+
+	BasicFileAttributes attributes = null;
+	try {
+	    if (posix) {
+		attributes = Files.readAttributes(path,
+			PosixFileAttributes.class);
+	    } else if (dos) {
+		attributes = Files.readAttributes(path, DosFileAttributes.class);
+	    } else {
+		attributes = Files.readAttributes(path,
+			BasicFileAttributes.class);
+	    }
+	} catch (IOException e) {
+	    if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+		return null;
+	    }
+	    // Dangling symbolic link: same values as File for a missing file
+	}
+
+	String fileStr = ReturnFileFormatter.format(fileConfigurator, username,
+		path.toString());
+
+	List<String> entry = new Vector<String>();
+	entry.add(HtmlConverter.toHtml(fileStr));
+
+	if (attributes == null) {
+	    entry.add("false"); // exists
+	    entry.add("false"); // isDirectory
+	    entry.add("false"); // isFile
+	    entry.add(Boolean.toString(isHiddenName(path))); // isHidden
+	    entry.add("0"); // length
+	    entry.add("0"); // lastModified
+	    entry.add("false"); // canRead
+	    entry.add("false"); // canWrite
+	    entry.add("false"); // canExecute
+	    entry.add(""); // permissions
+	    return entry;
+	}
+
+	boolean hidden = isHiddenName(path);
+	if (attributes instanceof DosFileAttributes) {
+	    hidden = ((DosFileAttributes) attributes).isHidden();
+	}
+
+	entry.add("true");
+	entry.add(Boolean.toString(attributes.isDirectory()));
+	entry.add(Boolean.toString(attributes.isRegularFile()));
+	entry.add(Boolean.toString(hidden));
+	entry.add(Long.toString(attributes.size()));
+	entry.add(Long.toString(attributes.lastModifiedTime().toMillis()));
+
+	// Access rights of the server process can not be deduced from the mode
+	entry.add(Boolean.toString(Files.isReadable(path)));
+	entry.add(Boolean.toString(Files.isWritable(path)));
+	entry.add(Boolean.toString(Files.isExecutable(path)));
+
+	if (attributes instanceof PosixFileAttributes) {
+	    entry.add(PosixFilePermissions
+		    .toString(((PosixFileAttributes) attributes).permissions()));
+	} else {
+	    entry.add("");
+	}
+
+	return entry;
+    }
+
+    /**
+     * Says if a file is hidden by its name, as File.isHidden() on Unix.
+     * 
+     * @param path
+     *            the file path
+     * @return true if the file name starts with a dot
+     */
+    private boolean isHiddenName(Path path) {
+	Path fileName = path.getFileName();
+	return fileName != null && fileName.toString().startsWith(".");
+    }
+
     /**
      * Write a line of string on the servlet output stream. Will add the
      * necessary CR_LF
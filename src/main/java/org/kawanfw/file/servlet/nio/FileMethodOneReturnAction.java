@@ -36,6 +36,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.kawanfw.commons.json.ListOfStringTransport;
 import org.kawanfw.commons.server.util.ServerLogger;
+import org.kawanfw.commons.util.BinaryResponse;
 import org.kawanfw.commons.util.FrameworkDebug;
 import org.kawanfw.commons.util.HtmlConverter;
 import org.kawanfw.commons.util.JavaValueBuilder;
@@ -78,6 +79,8 @@ public class FileMethodOneReturnAction {
      *            the client login (for security check)
      * @param filename
      *            the filename to call
+     * @param binaryResponse
+     *            if true, the result is written in the binary framed format
      * @throws IOException
      *             all framework, network, etc. errors
      * @throws ClassNotFoundException
@@ -90,7 +93,7 @@ public class FileMethodOneReturnAction {
     public void call(HttpServletRequest request,
 	    FileConfigurator fileConfigurator,
 	    OutputStream out, String username,
-	    String filename) throws SQLException, IOException,
+	    String filename, boolean binaryResponse) throws SQLException, IOException,
 	    ClassNotFoundException, InstantiationException,
 	    IllegalAccessException, NoSuchMethodException,
 	    IllegalArgumentException, InvocationTargetException {
@@ -115,6 +118,9 @@ public class FileMethodOneReturnAction {
 	debug("paramsTypes     : " + paramsTypes);
 	debug("paramsValues    : " + paramsValues);
 
+	// Parent directories are created only for methods that create files
+	boolean createParentDirs = isCreateMethod(methodName);
+
 	List<String> listParamsTypes = ListOfStringTransport
 		.fromJson(paramsTypes);
 	List<String> listParamsValues = ListOfStringTransport
@@ -138,7 +144,8 @@ public class FileMethodOneReturnAction {
 	    // Special treatment to Files
 	    if (values[i] instanceof File) {
 		String valueFile = HttpConfigurationUtil.addUserHomePath(
-			fileConfigurator, username, values[i].toString());
+			fileConfigurator, username, values[i].toString(),
+			createParentDirs);
 		values[i] = new File(valueFile);
 	    }
 	}
@@ -153,7 +160,7 @@ public class FileMethodOneReturnAction {
 
 	// Add the root path, if necessary, to the filenames
 	filename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
-		username, filename);
+		username, filename, createParentDirs);
 
 	debug("filename: " + filename);
 	debug("values: " + values);
@@ -196,18 +203,28 @@ public class FileMethodOneReturnAction {
 
 	debug("result before HTML conversion: " + result);
 
-	if (result != null) {
+	if (result != null && isFileResult(methodName)) {
+	    result = ReturnFileFormatter.format(fileConfigurator, username,
+		    result);
+	}
+	
+	// Special cases for root access
+	result = treatRootCase(methodName, result, clientFilename);
 
-	    if (isFileResult(methodName)) {
-		result = ReturnFileFormatter.format(fileConfigurator, username,
-			result);
+	if (binaryResponse) {
+	    // Booleans and numbers are sent typed, without any conversion
+	    if (resultObj instanceof Boolean || resultObj instanceof Long
+		    || resultObj instanceof Integer) {
+		BinaryResponse.writeOk(out, resultObj);
+	    } else {
+		BinaryResponse.writeOk(out, result);
 	    }
+	    return;
+	}
 
+	if (result != null) {
 	    result = HtmlConverter.toHtml(result);
 	}
-	
-	// Special cases for root access
-	result = treatRootCase(methodName, result, clientFilename);
 
 	writeLine(out, TransferStatus.SEND_OK);
 	writeLine(out, result);
@@ -276,6 +293,25 @@ public class FileMethodOneReturnAction {
 	    return false;
     }
 
+    /**
+     * Says if a method creates a file or a directory and thus needs the
+     * parent directories.
+     * 
+     * @param method
+     * @return true if the method creates a file or a directory
+     */
+    private boolean isCreateMethod(String method) {
+	switch (method) {
+	case "createNewFile":
+	case "mkdir":
+	case "mkdirs":
+	case "renameTo":
+	    return true;
+	default:
+	    return false;
+	}
+    }
+
     private void debug(String s) {
 	if (DEBUG) {
 	    ServerLogger.getLogger().log(Level.WARNING, s);
@@ -0,0 +1,235 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.servlet.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Vector;
+import java.util.logging.Level;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.kawanfw.commons.json.ListOfStringTransport;
+import org.kawanfw.commons.server.util.ServerLogger;
+import org.kawanfw.commons.util.BinaryResponse;
+import org.kawanfw.commons.util.FrameworkDebug;
+import org.kawanfw.commons.util.HtmlConverter;
+import org.kawanfw.commons.util.StringUtil;
+import org.kawanfw.commons.util.Tag;
+import org.kawanfw.commons.util.TransferStatus;
+import org.kawanfw.file.api.server.FileConfigurator;
+import org.kawanfw.file.servlet.util.HttpConfigurationUtil;
+import org.kawanfw.file.util.parms.Parameter;
+
+/**
+ * @author Nicolas de Pomereu
+ * 
+ *         Executes the client fileMethodsBatch() action: calls many File
+ *         methods without parameters on many files in one request.
+ */
+public class FileMethodsBatchAction {
+
+    private static boolean DEBUG = FrameworkDebug
+	    .isSet(FileMethodsBatchAction.class);
+
+    /**
+     * Constructor
+     */
+    public FileMethodsBatchAction() {
+    }
+
+    /**
+     * Calls the File methods on each file. Writes one line per file: the JSON
+     * list of the method results, in the order of the method names. In binary
+     * format, writes all the typed results file after file.
+     * 
+     * @param request
+     *            the http request
+     * @param fileConfigurator
+     *            the file configurator defined by the user
+     * @param out
+     *            the servlet output stream
+     * @param username
+     *            the client login (for security check)
+     * @param filename
+     *            the JSON list of the filenames
+     * @param binaryResponse
+     *            if true, the results are written in the binary framed format
+     * @throws IOException
+     *             all framework, network, etc. errors
+     */
+    public void call(HttpServletRequest request,
+	    FileConfigurator fileConfigurator, OutputStream out,
+	    String username, String filename, boolean binaryResponse)
+	    throws IOException {
+
+	debug("in call");
+
+	String methodNames = request.getParameter(Parameter.METHOD_NAME);
+	methodNames = StringUtil.getTrimValue(methodNames);
+
+	List<String> listMethodNames = ListOfStringTransport
+		.fromJson(methodNames);
+	List<String> files = ListOfStringTransport.fromJson(filename);
+
+	// We must convert each element of List<String> files from Html
+	files = HtmlConverter.fromHtml(files);
+
+	debug("listMethodNames: " + listMethodNames);
+	debug("files          : " + files);
+
+	// Check all methods before any call
+	for (String methodName : listMethodNames) {
+	    if (!isBatchMethod(methodName)) {
+		throw new IllegalArgumentException(Tag.PRODUCT
+			+ " File method can not be called in batch: "
+			+ methodName);
+	    }
+	}
+
+	if (binaryResponse) {
+	    Object[] values = new Object[files.size() * listMethodNames.size()];
+	    int i = 0;
+	    for (String theFilename : files) {
+		File file = new File(HttpConfigurationUtil.addUserHomePath(
+			fileConfigurator, username, theFilename, false));
+		for (String methodName : listMethodNames) {
+		    values[i++] = callMethod(file, methodName);
+		}
+	    }
+
+	    BinaryResponse.writeOk(out, values);
+	    return;
+	}
+
+	writeLine(out, TransferStatus.SEND_OK);
+
+	for (String theFilename : files) {
+	    theFilename = HttpConfigurationUtil.addUserHomePath(
+		    fileConfigurator, username, theFilename, false);
+	    File file = new File(theFilename);
+
+	    List<String> results = new Vector<String>();
+	    for (String methodName : listMethodNames) {
+		results.add(callMethod(file, methodName).toString());
+	    }
+
+	    writeLine(out, ListOfStringTransport.toJson(results));
+	}
+    }
+
+    /**
+     * Says if a File method may be called in batch: methods without
+     * parameters that do not modify the file system.
+     * 
+     * @param methodName
+     *            the File method name
+     * @return true if the method may be called in batch
+     */
+    public static boolean isBatchMethod(String methodName) {
+	switch (methodName) {
+	case "exists":
+	case "isDirectory":
+	case "isFile":
+	case "isHidden":
+	case "length":
+	case "lastModified":
+	case "canRead":
+	case "canWrite":
+	case "canExecute":
+	case "getTotalSpace":
+	case "getFreeSpace":
+	case "getUsableSpace":
+	    return true;
+	default:
+	    return false;
+	}
+    }
+
+    /**
+     * Calls a File method without reflection.
+     * 
+     * @param file
+     *            the file
+     * @param methodName
+     *            a File method name accepted by
+     *            {@link #isBatchMethod(String)}
+     * @return the result of the call, a Boolean or a Long
+     */
+    private Object callMethod(File file, String methodName) {
+	switch (methodName) {
+	case "exists":
+	    return file.exists();
+	case "isDirectory":
+	    return file.isDirectory();
+	case "isFile":
+	    return file.isFile();
+	case "isHidden":
+	    return file.isHidden();
+	case "length":
+	    return file.length();
+	case "lastModified":
+	    return file.lastModified();
+	case "canRead":
+	    return file.canRead();
+	case "canWrite":
+	    return file.canWrite();
+	case "canExecute":
+	    return file.canExecute();
+	case "getTotalSpace":
+	    return file.getTotalSpace();
+	case "getFreeSpace":
+	    return file.getFreeSpace();
+	case "getUsableSpace":
+	    return file.getUsableSpace();
+	default:
+	    throw new IllegalArgumentException(Tag.PRODUCT
+		    + " File method can not be called in batch: " + methodName);
+	}
+    }
+
+    /**
+     * Write a line of string on the servlet output stream. Will add the
+     * necessary CR_LF
+     * 
+     * @param out
+     *            the servlet output stream
+     * @param s
+     *            the string to write
+     * @throws IOException
+     */
+    private void writeLine(OutputStream out, String s) throws IOException {
+	out.write((s + StringUtil.CR_LF).getBytes());
+    }
+
+    private void debug(String s) {
+	if (DEBUG) {
+	    ServerLogger.getLogger().log(Level.WARNING, s);
+	}
+    }
+
+}
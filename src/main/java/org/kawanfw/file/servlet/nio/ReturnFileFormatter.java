@@ -25,6 +25,7 @@
 package org.kawanfw.file.servlet.nio;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.util.logging.Level;
 
 import org.apache.commons.lang3.StringUtils;
@@ -62,13 +63,14 @@ public class ReturnFileFormatter {
      * @return
      */
     public static String format(FileConfigurator fileConfigurator,
-	    String username, String result) {
+	    String username, String result) throws FileNotFoundException {
 	
 	if (result == null) {
 	    return null;
 	}
 	    
-	File homeDirFile = fileConfigurator.getHomeDir(username);
+	File homeDirFile = HttpConfigurationUtil.getHomeDir(fileConfigurator,
+		username);
 	
 	// Direct access to file system
 	if (HttpConfigurationUtil.isFileDirSystemRootDir(homeDirFile)) {
@@ -83,7 +85,7 @@ public class ReturnFileFormatter {
 	
 
 	// We have a server root
-	String homeDirStr = fileConfigurator.getHomeDir(username).toString();
+	String homeDirStr = homeDirFile.toString();
 
 //      NO! can happen if parent asked!
 	
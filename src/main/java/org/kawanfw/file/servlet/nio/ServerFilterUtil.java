@@ -93,7 +93,8 @@ public class ServerFilterUtil {
 		    && !filenameFilterFilename.isEmpty()) {
 
 		filenameFilterFilename = HttpConfigurationUtil.addUserHomePath(
-			fileConfigurator, username, filenameFilterFilename);		
+			fileConfigurator, username, filenameFilterFilename,
+			false);		
 		File file = null;
 
 		try {
@@ -145,7 +146,7 @@ public class ServerFilterUtil {
 
 	    if (fileFilterClassname != null && !fileFilterClassname.isEmpty()) {
 		fileFilterFilename = HttpConfigurationUtil.addUserHomePath(
-			fileConfigurator, username, fileFilterFilename);
+			fileConfigurator, username, fileFilterFilename, false);
 
 		File file = null;
 
@@ -86,7 +86,8 @@ public class CallUtil {
 
 	debug("Before String serverRoot = fileConfigurator.getHomeDir(username).toString()");
 	
-	File homeDirFile = fileConfigurator.getHomeDir(username);
+	File homeDirFile = HttpConfigurationUtil.getHomeDir(fileConfigurator,
+		username);
 	
 	// Case home dir is not root dir / or c:\:
 	// Prevent user attack by loading is own classes.  
@@ -24,24 +24,33 @@
  */
 package org.kawanfw.file.servlet.util;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.kawanfw.commons.server.util.ServerLogger;
 import org.kawanfw.commons.util.DefaultParms;
 import org.kawanfw.commons.util.FrameworkDebug;
+import org.kawanfw.commons.util.StringUtil;
+import org.kawanfw.commons.util.Tag;
+import org.kawanfw.commons.util.TransferStatus;
 import org.kawanfw.file.api.server.FileConfigurator;
 
 
@@ -61,6 +70,19 @@ public class FileTransferManager {
     private static final int EOF = -1;
     private static final int DEFAULT_BUFFER_SIZE = 1024 * 4;
 
+    /** Tomcat sendfile request attributes */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /** The maximum number of pooled transfer buffers */
+    private static final int MAX_POOLED_BUFFERS = 32;
+
+    /** The transfer buffers shared by the downloads */
+    private static final BlockingQueue<byte[]> BUFFER_POOL = new ArrayBlockingQueue<byte[]>(
+	    MAX_POOLED_BUFFERS);
+
     /**
      * Constructor.
      */
@@ -81,115 +103,183 @@ public class FileTransferManager {
 	    FileConfigurator fileConfigurator, String username,
 	    String filename, long chunkLength) throws FileNotFoundException,
 	    IOException {
-	InputStream in = null;
+	return download(null, null, out, fileConfigurator, username,
+		filename, chunkLength);
+    }
+
+    /**
+     * Downloads a file or a chunk of a file. The file is opened read-only with
+     * a {@code FileChannel}. The bytes are sent:
+     * <ul>
+     * <li>by the container with sendfile, if it supports it (Tomcat NIO/APR
+     * connectors),</li>
+     * <li>else through large pooled buffers.</li>
+     * </ul>
+     * 
+     * @param request
+     *            the http request, may be null
+     * @param response
+     *            the http response, may be null
+     * @param out
+     *            the servlet output stream
+     * @param fileConfigurator
+     *            the file configurator defined by the user
+     * @param username
+     *            the client username
+     * @param filename
+     *            the file name, ending with ".kawanfw.chunk" for a chunk
+     * @param chunkLength
+     *            the chunk length
+     * @return false if the file does not exist
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public boolean download(HttpServletRequest request,
+	    HttpServletResponse response, OutputStream out,
+	    FileConfigurator fileConfigurator, String username,
+	    String filename, long chunkLength) throws FileNotFoundException,
+	    IOException {
 
 	debug(new Date() + " DOWNLOAD SESSION BEGIN ");
 
-	try {
-	    filename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
-		    username, filename);
+	filename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
+		username, filename, false);
 
-	    debug(new Date() + " DOWNLOAD CHUNK");
+	long position = 0;
+	long count = -1; // Whole file
 
-	    // Do we must download a chunk only ? We will then seek the
-	    // Random access file and read only one chunk length and send it
-	    // back to client
-	    if (filename.endsWith(".kawanfw.chunk")) {
+	// Do we must download a chunk only ? We will then send only one chunk
+	// length starting at the chunk position
+	if (filename.endsWith(".kawanfw.chunk")) {
 
-		// We are now in chunk case
-		String rawFilename = StringUtils.substringBeforeLast(filename,
-			".kawanfw.chunk");
-		String indexStr = StringUtils.substringAfterLast(rawFilename,
-			".");
-		int index = Integer.parseInt(indexStr);
+	    // We are now in chunk case
+	    String rawFilename = StringUtils.substringBeforeLast(filename,
+		    ".kawanfw.chunk");
+	    String indexStr = StringUtils.substringAfterLast(rawFilename, ".");
+	    int index = Integer.parseInt(indexStr);
 
-		// Remove the number
-		rawFilename = StringUtils.substringBeforeLast(rawFilename, ".");
+	    // Remove the number
+	    filename = StringUtils.substringBeforeLast(rawFilename, ".");
 
-		// We seek the total length of previous files, because client
-		// method
-		// is idempotent and may be replayed
-		long lengthToSeek = (index - 1) * chunkLength;
+	    // We seek the total length of previous files, because client
+	    // method is idempotent and may be replayed
+	    position = (index - 1) * chunkLength;
+	    count = chunkLength;
 
-		// debug("index       : " + index);
-		// debug("chunkLength : " + chunkLength);
-		// debug("lengthToSeek: " + lengthToSeek);
+	    debug(new Date() + " DOWNLOAD CHUNK " + index);
+	} else {
+	    debug(new Date() + " DOWNLOAD FULL FILE");
+	}
 
-		debug("");
-		debug(new Date() + " SESSION " + " " + index);
+	File file = new File(filename);
 
-		RandomAccessFile raf = null;
+	if (!file.exists()) {
+	    debug("File does not exists: " + file);
+	    return false;
+	}
 
-		try {
+	FileChannel channel = null;
 
-		    File file = new File(rawFilename);
+	try {
+	    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
 
-		    if (!file.exists()) {
-			debug("File does not exists: " + file);
-			return false;
-		    }
+	    long size = channel.size();
+	    position = Math.min(position, size);
+	    if (count < 0 || position + count > size) {
+		count = size - position;
+	    }
 
-		    debug(new Date() + " BEFORE SEEK ");
+	    if (count > 0 && isSendfileSupported(request, response)) {
+		// The container sends the file after the servlet returns
+		request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+		request.setAttribute(SENDFILE_START, position);
+		request.setAttribute(SENDFILE_END, position + count);
+		response.setHeader("Content-Length", Long.toString(count));
+		debug(new Date() + " SENDFILE " + count);
+		return true;
+	    }
 
-		    debug(new Date() + " BEFORE CREATE RAF");
-		    raf = new RandomAccessFile(file, "rw");
-		    debug(new Date() + " AFTER  CREATE RAF");
+	    debug(new Date() + " BEFORE COPY ");
+	    long total = transfer(channel, position, count, out);
+	    debug(new Date() + " AFTER COPY " + total);
 
-		    raf.seek(lengthToSeek);
+	} finally {
+	    if (channel != null) {
+		try {
+		    channel.close();
+		} catch (Exception e) {
+		} // Ignore
+	    }
+	}
 
-		    debug(new Date() + " BEFORE COPY ");
-		    long totalRead = copy(raf, out, chunkLength);
-		    debug(new Date() + " AFTER COPY " + totalRead);
+	return true;
+    }
 
-		    //IOUtils.closeQuietly(raf);
+    /**
+     * Downloads a range of bytes of a file. The first line written is
+     * "SEND_OK" followed by the number of bytes of the range, then the bytes
+     * are sent. The range is truncated to the end of the file.
+     * 
+     * @param out
+     *            the servlet output stream
+     * @param fileConfigurator
+     *            the file configurator defined by the user
+     * @param username
+     *            the client username
+     * @param filename
+     *            the file name
+     * @param offset
+     *            the position of the first byte of the range
+     * @param length
+     *            the maximum number of bytes of the range
+     * @return false if the file does not exist
+     * @throws IOException
+     */
+    public boolean downloadRange(OutputStream out,
+	    FileConfigurator fileConfigurator, String username,
+	    String filename, long offset, long length) throws IOException {
 
-		    if (lengthToSeek + totalRead >= file.length()) {
-			// End of operations
-			// Nothing yo do with Random Access File
-		    }
+	if (offset < 0 || length < 0) {
+	    throw new IllegalArgumentException(Tag.PRODUCT
+		    + " Invalid range. offset: " + offset + ", length: "
+		    + length);
+	}
 
-		} finally {
-		    //IOUtils.closeQuietly(raf);
-		    if (raf != null) {
-			try {
-			    raf.close();
-			} catch (Exception e) {
-			    // TODO Auto-generated catch block
-			    e.printStackTrace();
-			}
-		    }
-		}
+	filename = HttpConfigurationUtil.addUserHomePath(fileConfigurator,
+		username, filename, false);
 
-		return true;
+	File file = new File(filename);
 
-	    } else {
+	if (!file.isFile()) {
+	    debug("File does not exists: " + file);
+	    return false;
+	}
 
-		debug(new Date() + " DOWNLOAD FULL FILE");
+	FileChannel channel = null;
 
-		File file = new File(filename);
+	try {
+	    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
 
-		if (!file.exists()) {
-		    debug("File does not exists: " + file);
-		    return false;
-		}
+	    long size = channel.size();
+	    long position = Math.min(offset, size);
+	    long count = Math.min(length, size - position);
 
-		in = new BufferedInputStream(new FileInputStream(file));
-		IOUtils.copy(in, out);
-	    }
+	    debug(new Date() + " DOWNLOAD RANGE " + position + " " + count);
 
-	    return true;
+	    out.write((TransferStatus.SEND_OK + " " + count + StringUtil.CR_LF)
+		    .getBytes());
+	    transfer(channel, position, count, out);
 
 	} finally {
-	    //IOUtils.closeQuietly(in);
-	    if (in != null) {
+	    if (channel != null) {
 		try {
-		    in.close();
-		}
-		catch (Exception e) { 
+		    channel.close();
+		} catch (Exception e) {
 		} // Ignore
 	    }
 	}
 
+	return true;
     }
 
     /*
@@ -250,7 +340,9 @@ public class FileTransferManager {
 
 		// We seek the total length of previous files, because client
 		// method
-		// is idempotent and may be replayed
+		// is idempotent and may be replayed. Chunks after the first one
+		// may also arrive in any order when uploaded in parallel: each
+		// one is written at its own offset
 		long lengthToSeek = (index - 1) * chunkLength;
 
 		// debug("index       : " + index);
@@ -313,39 +405,86 @@ public class FileTransferManager {
     }
 
     /**
-     * Copy the content of the random access file to the output stream up to a
-     * chubk length
+     * Says if the container can send the file itself with sendfile, as
+     * declared by Tomcat NIO and APR connectors.
      * 
-     * @param raf
-     * @param out
-     * @param chunkLength
-     * @return the total amount read
+     * @param request
+     *            the http request, may be null
+     * @param response
+     *            the http response, may be null
+     * @return true if the file may be sent by the container
+     */
+    private boolean isSendfileSupported(HttpServletRequest request,
+	    HttpServletResponse response) {
+	return request != null && response != null && !response.isCommitted()
+		&& !response.containsHeader("Content-Encoding")
+		&& Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT));
+    }
+
+    /**
+     * Sends a region of a file on the output stream through a pooled buffer.
      * 
+     * @param channel
+     *            the read-only file channel
+     * @param position
+     *            the position of the first byte to send
+     * @param count
+     *            the number of bytes to send
+     * @param out
+     *            the output stream
+     * @return the number of bytes sent
      * @throws IOException
      */
-    private long copy(RandomAccessFile raf, OutputStream out, long chunkLength)
-	    throws IOException {
-	int writeBufferSize = DefaultParms.DEFAULT_WRITE_BUFFER_SIZE;
-
-	// For Chunk Length comparison. If buffer read > chunk
-	// length ==> exit
-	long totalRead = 0;
+    private long transfer(FileChannel channel, long position, long count,
+	    OutputStream out) throws IOException {
 
-	byte[] tmp = new byte[writeBufferSize];
-	int len;
+	long total = 0;
 
-	while ((len = raf.read(tmp)) >= 0) {
-	    totalRead += len;
-	    out.write(tmp, 0, len);
+	byte[] buffer = acquireBuffer();
+	try {
+	    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+	    while (total < count) {
+		byteBuffer.clear();
+		if (count - total < buffer.length) {
+		    byteBuffer.limit((int) (count - total));
+		}
 
-	    // Exit if chunk length is reached. We will just send
-	    // the chunck,InputStream will be reused
-	    if (chunkLength > 0 && totalRead > chunkLength - writeBufferSize) {
-		return totalRead;
+		int n = channel.read(byteBuffer, position + total);
+		if (n == EOF) {
+		    break;
+		}
+		out.write(buffer, 0, n);
+		total += n;
 	    }
+	} finally {
+	    releaseBuffer(buffer);
 	}
 
-	return totalRead;
+	return total;
+    }
+
+    /**
+     * Takes a transfer buffer from the pool, or allocates a new one.
+     * 
+     * @return a transfer buffer
+     */
+    private static byte[] acquireBuffer() {
+	byte[] buffer = BUFFER_POOL.poll();
+	if (buffer == null) {
+	    buffer = new byte[DefaultParms.DEFAULT_TRANSFER_BUFFER_SIZE];
+	}
+	return buffer;
+    }
+
+    /**
+     * Gives back a transfer buffer to the pool. The buffer is dropped if the
+     * pool is full.
+     * 
+     * @param buffer
+     *            the transfer buffer
+     */
+    private static void releaseBuffer(byte[] buffer) {
+	BUFFER_POOL.offer(buffer);
     }
 
     /**
@@ -29,6 +29,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import org.apache.commons.lang3.SystemUtils;
+import org.kawanfw.commons.util.LruCache;
 import org.kawanfw.commons.util.Tag;
 import org.kawanfw.file.api.server.FileConfigurator;
 
@@ -42,6 +43,13 @@ import org.kawanfw.file.api.server.FileConfigurator;
  */
 public class HttpConfigurationUtil {
 
+    /** The maximum number of cached home directories */
+    private static final int MAX_HOME_DIRS = 10000;
+
+    /** The validated home directories per username, in access order */
+    private static final LruCache<String, HomeDir> homeDirs = new LruCache<String, HomeDir>(
+	    MAX_HOME_DIRS);
+
     /**
      * Protected constructor
      */
@@ -66,15 +74,38 @@ public class HttpConfigurationUtil {
      */
     public static String addUserHomePath(FileConfigurator fileConfigurator,
 	    String username, String filename) throws IOException {
+	return addUserHomePath(fileConfigurator, username, filename, true);
+    }
+
+    /**
+     * Adds the root path to the beginning of path for a remote file, and
+     * creates the parent directories of the file if asked.&nbsp;
+     * <p>
+     * The home directory of the user is validated once, then cached: see
+     * {@link #getHomeDir(FileConfigurator, String)}. Read actions should not
+     * ask for the creation of the parent directories.
+     * 
+     * @param fileConfigurator
+     *            the user http configuration
+     * @param username
+     *            the client username
+     * @param filename
+     *            the filename path
+     * @param createParentDirs
+     *            if true, the parent directories of the file are created if
+     *            they do not exist
+     * 
+     * @return the new filename path, prefixed with the root path
+     */
+    public static String addUserHomePath(FileConfigurator fileConfigurator,
+	    String username, String filename, boolean createParentDirs)
+	    throws IOException {
 	if (filename == null) {
 	    throw new IllegalArgumentException(
 		    Tag.PRODUCT_PRODUCT_FAIL + " filename can not be null!");
 	}
 
-	File homeDirFile = fileConfigurator.getHomeDir(username);
-
-	// TestReload the server root file is well defined and that it can be created
-	testHomeDirValidity(homeDirFile);
+	File homeDirFile = getHomeDir(fileConfigurator, username);
 
 	if (isFileDirSystemRootDir(homeDirFile)) {
 
@@ -118,14 +149,78 @@ public class HttpConfigurationUtil {
 	filename = homeDirFile.toString() + File.separator + filename;
 
 	// Force path creation for filename if it not exists
-	File file = new File(filename);
-	if (file.getParent() != null) {
-	    file.getParentFile().mkdirs();
+	if (createParentDirs) {
+	    File file = new File(filename);
+	    if (file.getParent() != null) {
+		file.getParentFile().mkdirs();
+	    }
 	}
 
 	return filename;
     }
 
+    /**
+     * Returns the home directory of a user, validated with
+     * {@link #testHomeDirValidity(File)}.
+     * <p>
+     * The value returned by {@code fileConfigurator.getHomeDir(username)} is
+     * validated once per user and then cached, so that no file system call is
+     * done on the following requests. The least recently used home directory
+     * is evicted when 10000 users are cached. Use {@link #invalidateHomeDir(String)}
+     * or {@link #invalidateHomeDirs()} if a home directory is moved or
+     * deleted while the server runs.
+     * 
+     * @param fileConfigurator
+     *            the user http configuration
+     * @param username
+     *            the client username
+     * @return the validated home directory of the user
+     * @throws FileNotFoundException
+     *             if the home directory is invalid or can not be created
+     */
+    public static File getHomeDir(FileConfigurator fileConfigurator,
+	    String username) throws FileNotFoundException {
+
+	if (username != null) {
+	    HomeDir homeDir = homeDirs.get(username);
+	    if (homeDir != null
+		    && homeDir.fileConfigurator == fileConfigurator) {
+		return homeDir.file;
+	    }
+	}
+
+	File homeDirFile = fileConfigurator.getHomeDir(username);
+
+	// TestReload the server root file is well defined and that it can be created
+	testHomeDirValidity(homeDirFile);
+
+	if (username != null) {
+	    homeDirs.put(username, new HomeDir(fileConfigurator, homeDirFile));
+	}
+
+	return homeDirFile;
+    }
+
+    /**
+     * Removes the cached home directory of a user: it will be asked again to
+     * the {@code FileConfigurator} and validated on next request.
+     * 
+     * @param username
+     *            the client username
+     */
+    public static void invalidateHomeDir(String username) {
+	if (username != null) {
+	    homeDirs.remove(username);
+	}
+    }
+
+    /**
+     * Removes all the cached home directories.
+     */
+    public static void invalidateHomeDirs() {
+	homeDirs.clear();
+    }
+
     /**
      * Tests that the fileConfigurator.getHomeDir() is valid.
      * 
@@ -202,4 +297,17 @@ public class HttpConfigurationUtil {
 	}
     }
 
+    /**
+     * A validated home directory, with the configurator that defined it.
+     */
+    private static class HomeDir {
+	private final FileConfigurator fileConfigurator;
+	private final File file;
+
+	HomeDir(FileConfigurator fileConfigurator, File file) {
+	    this.fileConfigurator = fileConfigurator;
+	    this.file = file;
+	}
+    }
+
 }
@@ -39,6 +39,7 @@ public class Action {
     public static final String MKDIR_ACTION = "MKDIR_ACTION";    
     public static final String MKDIRS_ACTION = "MKDIRS_ACTION";
     public static final String DOWNLOAD_FILE_ACTION = "DOWNLOAD_FILE_ACTION";
+    public static final String DOWNLOAD_RANGE_ACTION = "DOWNLOAD_RANGE_ACTION";
     public static final String UPLOAD_FILE_ACTION = "UPLOAD_FILE_ACTION";
     public static final String LIST_DIRS_IN_DIR_ACTION = "LIST_DIRS_IN_DIR_ACTION";
     public static final String LIST_FILES_IN_DIR_ACTION = "LIST_FILES_IN_DIR_ACTION";
@@ -46,8 +47,11 @@ public class Action {
     
     // For NIO
     public static final String FILE_METHOD_ONE_RETURN_ACTION = "FILE_METHOD_ONE_RETURN_ACTION";
+    public static final String FILE_METHODS_BATCH_ACTION = "FILE_METHODS_BATCH_ACTION";
     public static final String FILE_LIST_ACTION = "FILE_LIST_ACTION";
     public static final String FILE_LIST_FILES_ACTION = "FILE_LIST_FILES_ACTION";
+    public static final String FILE_LIST_FILES_ATTRIBUTES_ACTION = "FILE_LIST_FILES_ATTRIBUTES_ACTION";
+    public static final String FILE_LIST_FILES_PAGE_ACTION = "FILE_LIST_FILES_PAGE_ACTION";
     public static final String CLEAN_HOST_TEMP_FILES = "CLEAN_HOST_TEMP_FILES";
     public static final String GET_JAVA_VERSION = "GET_JAVA_VERSION";
     
@@ -38,6 +38,8 @@ public class Parameter {
     public static final String PARAMS_VALUES = "params_values";
     public static final String FILENAME = "filename";
     public static final String CHUNKLENGTH = "chunkLength";
+    public static final String OFFSET = "offset";
+    public static final String LENGTH = "length";
     public static final String FILENAME_DEST = "filename_dest";
     public static final String DELETE_IF_EXISTS = "delete_if_exists";
     
@@ -53,6 +55,12 @@ public class Parameter {
     public static final String BASE64_SERIAL_FILENAME_FILTER = "base64_serial_filename_filter";
     public static final String BASE64_SERIAL_FILE_FILTER = "base64_serial_file_filter";
     
+    public static final String PAGE_SIZE = "page_size";
+    public static final String CONTINUATION_TOKEN = "continuation_token";
+    
+    /** The codec of a compressed upload */
+    public static final String COMPRESSION = "compression";
+    
     // Obsolete
     
     /** To test if crypto is correctly set */
@@ -48,6 +48,7 @@ public class ReturnCode {
     public static final String ERR_HTTP_PROTOCOL_EXCEPTION = "ERR_HTTP_PROTOCOL_EXCEPTION";
     public static final String ERR_HTTP_IO_EXCEPTION = "ERR_HTTP_IO_EXCEPTION";
     public static final String ERR_HTTP_OPERATION_NOT_ALLOWED = "ERR_HTTP_OPERATION_NOT_ALLOWED";
+    public static final String LAST_PAGE = "LAST_PAGE";
     /**
      * Class not to be instancied
      */
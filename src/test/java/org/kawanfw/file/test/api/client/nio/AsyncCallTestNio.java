@@ -0,0 +1,117 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.api.client.nio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kawanfw.file.api.client.AsyncRemoteSession;
+import org.kawanfw.file.api.client.RemoteSession;
+import org.kawanfw.file.api.client.exception.RemoteException;
+import org.kawanfw.file.test.parms.TestParms;
+import org.kawanfw.file.test.util.MessageDisplayer;
+
+/**
+ * 
+ * Test that many remote methods are callable at the same time with one
+ * AsyncRemoteSession.
+ * 
+ * @author Nicolas de Pomereu
+ * 
+ */
+public class AsyncCallTestNio {
+
+    /** The number of concurrent calls */
+    private static final int CALLS = 200;
+
+    public static void main(String[] args) throws Exception {
+	new AsyncCallTestNio().test();
+    }
+
+    @Test
+    public void test() throws Exception {
+
+	RemoteSession remoteSession = new RemoteSession(TestParms.KREMOTE_FILES_URL_LOCAL,
+		TestParms.REMOTE_USER, TestParms.REMOTE_PASSWORD.toCharArray());
+
+	test(remoteSession);
+
+    }
+
+    /**
+     * @param remoteSession
+     *            the KRemote Files Session
+     * @throws Exception
+     */
+    public void test(RemoteSession remoteSession) throws Exception {
+
+	AsyncRemoteSession asyncSession = new AsyncRemoteSession(remoteSession);
+
+	MessageDisplayer.display("");
+	MessageDisplayer.display("Testing " + CALLS + " async call()...");
+
+	long begin = System.currentTimeMillis();
+
+	List<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+	for (int i = 0; i < CALLS; i++) {
+	    results.add(asyncSession.call(
+		    "org.kawanfw.file.test.api.server.Calculator.add", i, i));
+	}
+
+	for (int i = 0; i < CALLS; i++) {
+	    int result = Integer.parseInt(results.get(i).get());
+	    Assert.assertEquals("i + i must be result", i + i, result);
+	}
+
+	MessageDisplayer.display("Async calls done in "
+		+ (System.currentTimeMillis() - begin) + " ms.");
+
+	// The failures are reported by the future
+	CompletableFuture<String> notAllowed = asyncSession.call(
+		"org.kawanfw.file.test.api.server.CalculatorNotAllowed.add",
+		1, 2);
+
+	try {
+	    notAllowed.get();
+
+	    // This line must not be reached!
+	    Assert.assertEquals("line not to be reached.", true, false);
+
+	} catch (ExecutionException e) {
+	    MessageDisplayer.display("CalculatorNotAllowed.add exception: "
+		    + e.getCause());
+	    Assert.assertTrue("cause must be a RemoteException",
+		    e.getCause() instanceof RemoteException);
+	}
+
+	Long length = asyncSession.length("/").get();
+	MessageDisplayer.display("Async length of /: " + length);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.api.client.nio.streams;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.kawanfw.file.api.client.RemoteOutputStream;
+import org.kawanfw.file.api.client.RemoteSession;
+import org.kawanfw.file.api.client.SessionParameters;
+import org.kawanfw.file.test.parms.TestParms;
+import org.kawanfw.file.test.util.MessageDisplayer;
+
+/**
+ * 
+ * Measures the upload throughput of a big file on a local servlet container
+ * for several upload buffer sizes.
+ * 
+ * @author Nicolas de Pomereu
+ */
+
+public class UploadThroughputBenchmark {
+
+    /** The length of the uploaded file */
+    private static final long FILE_LENGTH = 200 * RemoteSession.MB;
+
+    /** The upload buffer sizes to compare */
+    private static final int[] UPLOAD_BUFFER_SIZES = { 1024, 4 * 1024,
+	    64 * 1024, 1024 * 1024 };
+
+    /** The number of uploads per buffer size, the first one being a warm-up */
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+	new UploadThroughputBenchmark().benchmark();
+    }
+
+    /**
+     * Uploads the same file with each buffer size and displays the best
+     * throughput.
+     * 
+     * @throws Exception
+     */
+    public void benchmark() throws Exception {
+
+	File file = createRandomFile();
+
+	try {
+	    for (int uploadBufferSize : UPLOAD_BUFFER_SIZES) {
+		SessionParameters sessionParameters = new SessionParameters();
+		sessionParameters.setUploadBufferSize(uploadBufferSize);
+
+		RemoteSession remoteSession = new RemoteSession(
+			TestParms.KREMOTE_FILES_URL_LOCAL,
+			TestParms.REMOTE_USER,
+			TestParms.REMOTE_PASSWORD.toCharArray(), null, null,
+			sessionParameters);
+
+		long bestMillis = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+		    long millis = upload(remoteSession, file);
+		    if (i > 0) {
+			bestMillis = Math.min(bestMillis, millis);
+		    }
+		}
+
+		remoteSession.logoff();
+
+		double mbPerSecond = (FILE_LENGTH / (double) RemoteSession.MB)
+			/ (bestMillis / 1000.0);
+		MessageDisplayer.display("uploadBufferSize " + uploadBufferSize
+			+ ": " + bestMillis + " ms, "
+			+ String.format("%.1f", mbPerSecond) + " MB/s");
+	    }
+	} finally {
+	    file.delete();
+	}
+
+	MessageDisplayer.display("Done.");
+    }
+
+    /**
+     * Uploads the file with a RemoteOutputStream.
+     * 
+     * @return the upload time in milliseconds
+     */
+    private long upload(RemoteSession remoteSession, File file)
+	    throws Exception {
+	long begin = System.currentTimeMillis();
+
+	try (InputStream in = new BufferedInputStream(new FileInputStream(
+		file));
+		OutputStream out = new RemoteOutputStream(remoteSession, "/"
+			+ file.getName(), file.length());) {
+	    byte[] buffer = new byte[64 * 1024];
+	    int n = 0;
+	    while ((n = in.read(buffer)) != -1) {
+		out.write(buffer, 0, n);
+	    }
+	}
+
+	return System.currentTimeMillis() - begin;
+    }
+
+    /**
+     * Creates a temporary file of random content: not compressible.
+     */
+    private File createRandomFile() throws Exception {
+	File file = File.createTempFile("upload-benchmark-", ".bin");
+
+	Random random = new Random(0);
+	byte[] buffer = new byte[1024 * 1024];
+	try (OutputStream out = new FileOutputStream(file)) {
+	    for (long written = 0; written < FILE_LENGTH; written += buffer.length) {
+		random.nextBytes(buffer);
+		out.write(buffer);
+	    }
+	}
+
+	return file;
+    }
+
+}
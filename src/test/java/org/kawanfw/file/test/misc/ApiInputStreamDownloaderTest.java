@@ -0,0 +1,213 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kawanfw.commons.client.http.HttpTransfer;
+import org.kawanfw.commons.client.http.SimpleNameValuePair;
+import org.kawanfw.commons.util.Tag;
+import org.kawanfw.commons.util.TransferStatus;
+import org.kawanfw.file.api.client.exception.InvalidLoginException;
+import org.kawanfw.file.api.util.client.ApiInputStreamDownloader;
+import org.kawanfw.file.util.parms.Parameter;
+import org.kawanfw.file.util.parms.ReturnCode;
+
+public class ApiInputStreamDownloaderTest {
+
+    @Test
+    public void testRead() throws Exception {
+	Response response = new Response(TransferStatus.SEND_OK
+		+ " 5\r\nhello!");
+	InputStream in = downloadRange(response, 2, 5);
+
+	Assert.assertEquals("offset sent", "2",
+		response.getParameter(Parameter.OFFSET));
+	Assert.assertEquals("length sent", "5",
+		response.getParameter(Parameter.LENGTH));
+
+	Assert.assertEquals('h', in.read());
+	byte[] b = new byte[10];
+	Assert.assertEquals("bounded read", 4, in.read(b, 0, b.length));
+	Assert.assertEquals("ello", new String(b, 0, 4, "US-ASCII"));
+	Assert.assertEquals("end of range", -1, in.read());
+	Assert.assertEquals("end of range", -1, in.read(b, 0, b.length));
+	Assert.assertEquals("empty read", 0, in.read(b, 0, 0));
+	Assert.assertEquals("available", 0, in.available());
+
+	// The end of the response is read on close after the full range
+	in.close();
+	Assert.assertEquals("response read", 0, response.available());
+	Assert.assertTrue("response closed", response.closed);
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+	Response response = new Response(TransferStatus.SEND_OK
+		+ " 5\r\nhello!");
+	InputStream in = downloadRange(response, 0, 5);
+
+	Assert.assertEquals("available", 5, in.available());
+	Assert.assertEquals("skip", 3, in.skip(3));
+	Assert.assertEquals("available", 2, in.available());
+	Assert.assertEquals("skip bounded", 2, in.skip(10));
+	Assert.assertEquals("end of range", -1, in.read());
+	Assert.assertFalse(in.markSupported());
+	in.close();
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws Exception {
+	Response response = new Response(TransferStatus.SEND_OK
+		+ " 5\r\nhello!");
+	InputStream in = downloadRange(response, 0, 5);
+
+	Assert.assertEquals('h', in.read());
+	in.close();
+	Assert.assertEquals("response not read", 5, response.available());
+	Assert.assertTrue("response closed", response.closed);
+    }
+
+    @Test
+    public void testTruncatedFile() throws Exception {
+	// The range is truncated to the end of the remote file
+	Response response = new Response(TransferStatus.SEND_OK
+		+ " 3\r\nabc");
+	InputStream in = downloadRange(response, 7, 100);
+
+	byte[] b = new byte[100];
+	Assert.assertEquals("truncated range", 3, in.read(b, 0, b.length));
+	Assert.assertEquals("end of range", -1, in.read(b, 0, b.length));
+	in.close();
+    }
+
+    @Test
+    public void testTruncatedResponse() throws Exception {
+	// The response ends before the announced count of bytes
+	Response response = new Response(TransferStatus.SEND_OK
+		+ " 10\r\nabc");
+	InputStream in = downloadRange(response, 0, 10);
+
+	byte[] b = new byte[100];
+	Assert.assertEquals(3, in.read(b, 0, b.length));
+	Assert.assertEquals("end of response", -1, in.read(b, 0, b.length));
+	Assert.assertEquals("end of response", -1, in.read());
+	in.close();
+    }
+
+    @Test
+    public void testEmptyRange() throws Exception {
+	Response response = new Response(TransferStatus.SEND_OK + " 0\r\n");
+	InputStream in = downloadRange(response, 10, 5);
+	Assert.assertEquals("empty range", -1, in.read());
+	in.close();
+    }
+
+    @Test
+    public void testFileNotFound() throws Exception {
+	Response response = new Response(TransferStatus.SEND_OK + "\r\n"
+		+ Tag.FileNotFoundException + "\r\n");
+	try {
+	    downloadRange(response, 0, 5);
+	    Assert.fail("FileNotFoundException expected");
+	} catch (FileNotFoundException expected) {
+	    // Expected
+	}
+	Assert.assertTrue("response closed", response.closed);
+    }
+
+    @Test
+    public void testInvalidLogin() throws Exception {
+	Response response = new Response(TransferStatus.SEND_OK + "\r\n"
+		+ ReturnCode.INVALID_LOGIN_OR_PASSWORD + "\r\n");
+	try {
+	    downloadRange(response, 0, 5);
+	    Assert.fail("InvalidLoginException expected");
+	} catch (InvalidLoginException expected) {
+	    // Expected
+	}
+    }
+
+    /**
+     * Downloads a range with an HttpTransfer that returns the response.
+     */
+    private static InputStream downloadRange(final Response response,
+	    long offset, long length) throws Exception {
+	HttpTransfer httpTransfer = (HttpTransfer) Proxy.newProxyInstance(
+		HttpTransfer.class.getClassLoader(),
+		new Class<?>[] { HttpTransfer.class }, new InvocationHandler() {
+		    @SuppressWarnings("unchecked")
+		    @Override
+		    public Object invoke(Object proxy, Method method,
+			    Object[] args) throws Throwable {
+			if (!method.getName().equals("getInputStream")) {
+			    throw new UnsupportedOperationException(method
+				    .getName());
+			}
+			response.requestParams = (List<SimpleNameValuePair>) args[0];
+			return response;
+		    }
+		});
+
+	return new ApiInputStreamDownloader("user", "token", httpTransfer)
+		.downloadRange("/file.bin", offset, length);
+    }
+
+    /**
+     * The response of the server, that records if it is closed.
+     */
+    private static class Response extends ByteArrayInputStream {
+
+	private List<SimpleNameValuePair> requestParams = null;
+	private boolean closed = false;
+
+	Response(String content) throws Exception {
+	    super(content.getBytes("US-ASCII"));
+	}
+
+	String getParameter(String name) {
+	    for (SimpleNameValuePair pair : requestParams) {
+		if (pair.getName().equals(name)) {
+		    return pair.getValue();
+		}
+	    }
+	    return null;
+	}
+
+	@Override
+	public void close() {
+	    closed = true;
+	}
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kawanfw.commons.util.BinaryResponse;
+
+public class BinaryResponseTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	BinaryResponse.writeOk(out, "r\u00e9p1/\u4e2d", 42L, 7, true, null, "");
+
+	InputStream in = new ByteArrayInputStream(out.toByteArray());
+	Assert.assertEquals("magic", BinaryResponse.MAGIC, in.read());
+	Assert.assertEquals("status", BinaryResponse.STATUS_OK, in.read());
+
+	List<Object> values = BinaryResponse.readValues(in);
+	Assert.assertEquals("values", Arrays.<Object> asList("r\u00e9p1/\u4e2d",
+		42L, 7L, true, null, ""), values);
+    }
+
+    @Test
+    public void testFailed() throws Exception {
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	BinaryResponse.writeFailed(out, "java.io.FileNotFoundException",
+		"/tmp/missing.txt", null);
+
+	InputStream in = new ByteArrayInputStream(out.toByteArray());
+	Assert.assertEquals("magic", BinaryResponse.MAGIC, in.read());
+	Assert.assertEquals("status", BinaryResponse.STATUS_FAILED, in.read());
+
+	List<Object> values = BinaryResponse.readValues(in);
+	Assert.assertEquals("values", Arrays.<Object> asList(
+		"java.io.FileNotFoundException", "/tmp/missing.txt", null),
+		values);
+    }
+
+    @Test
+    public void testIsRequested() {
+	Assert.assertTrue(BinaryResponse.isRequested("1.0"
+		+ BinaryResponse.VERSION_SUFFIX));
+	Assert.assertFalse(BinaryResponse.isRequested("1.0"));
+	Assert.assertFalse(BinaryResponse.isRequested(null));
+    }
+
+    @Test
+    public void testMalformed() {
+	// Unknown field type
+	assertInvalid(new byte[] { 9 });
+	// Negative string length
+	assertInvalid(new byte[] { 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+		(byte) 0xFF });
+	// String shorter than its length
+	assertInvalid(new byte[] { 1, 0, 0, 0, 5, 'a', 'b' });
+	// Truncated long
+	assertInvalid(new byte[] { 2, 0, 0, 0 });
+	// Missing boolean
+	assertInvalid(new byte[] { 3 });
+    }
+
+    private static void assertInvalid(byte[] fields) {
+	try {
+	    BinaryResponse.readValues(new ByteArrayInputStream(fields));
+	    Assert.fail("IOException expected for " + Arrays.toString(fields));
+	} catch (IOException e) {
+	    // Expected
+	}
+    }
+
+    public static void main(String[] args) throws Exception {
+	new BinaryResponseTest().testRoundTrip();
+	new BinaryResponseTest().testMalformed();
+	System.out.println("Done!");
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kawanfw.file.api.util.client.ChunkSpool;
+
+public class ChunkSpoolTest {
+
+    private static final int KB = 1024;
+
+    @Test
+    public void testInMemory() throws Exception {
+	AtomicLong memoryInUse = new AtomicLong();
+	byte[] data = data(200 * KB);
+	ChunkSpool spool = write(memoryInUse, 1024 * KB, data);
+
+	Assert.assertTrue("in memory", spool.isInMemory());
+	Assert.assertFalse("no spill file", spillFile(spool).exists());
+	Assert.assertEquals("length", data.length, spool.length());
+	Assert.assertTrue("memory in use", memoryInUse.get() >= data.length);
+	assertContent(spool, data);
+
+	spool.release();
+	Assert.assertEquals("memory released", 0, memoryInUse.get());
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+	AtomicLong memoryInUse = new AtomicLong();
+	byte[] data = data(300 * KB);
+	ChunkSpool spool = write(memoryInUse, 128 * KB, data);
+
+	Assert.assertFalse("spilled", spool.isInMemory());
+	File spillFile = spillFile(spool);
+	Assert.assertTrue("spill file", spillFile.exists());
+	Assert.assertTrue("budget respected", memoryInUse.get() <= 128 * KB);
+	Assert.assertEquals("spill file length", data.length
+		- memoryInUse.get(), spillFile.length());
+	assertContent(spool, data);
+	assertContent(spool, data); // Read twice, for upload retries
+
+	spool.release();
+	spool.release(); // No effect
+	Assert.assertEquals("memory released", 0, memoryInUse.get());
+	Assert.assertFalse("spill file deleted", spillFile.exists());
+    }
+
+    @Test
+    public void testDiskOnly() throws Exception {
+	AtomicLong memoryInUse = new AtomicLong();
+	byte[] data = data(10 * KB);
+	ChunkSpool spool = write(memoryInUse, 0, data);
+
+	Assert.assertFalse("on disk", spool.isInMemory());
+	Assert.assertEquals("no memory", 0, memoryInUse.get());
+	Assert.assertEquals("spill file length", data.length,
+		spillFile(spool).length());
+	assertContent(spool, data);
+	spool.release();
+    }
+
+    @Test
+    public void testSharedBudget() throws Exception {
+	AtomicLong memoryInUse = new AtomicLong();
+	byte[] data = data(128 * KB);
+
+	ChunkSpool first = write(memoryInUse, 128 * KB, data);
+	ChunkSpool second = write(memoryInUse, 128 * KB, data);
+	Assert.assertTrue("first in memory", first.isInMemory());
+	Assert.assertFalse("second spilled", second.isInMemory());
+	assertContent(second, data);
+
+	first.release();
+	second.release();
+	Assert.assertEquals("memory released", 0, memoryInUse.get());
+    }
+
+    private static ChunkSpool write(AtomicLong memoryInUse, long budget,
+	    byte[] data) throws Exception {
+	File spillFile = File.createTempFile("chunk-spool-test", ".kawanfw.chunk");
+	spillFile.delete();
+
+	ChunkSpool spool = new ChunkSpool(spillFile, memoryInUse, budget);
+	// Writes of various lengths, across the block boundaries
+	int off = 0;
+	int len = 1;
+	while (off < data.length) {
+	    int count = Math.min(len, data.length - off);
+	    spool.write(data, off, count);
+	    off += count;
+	    len = len * 3 + 1;
+	}
+	spool.close();
+	return spool;
+    }
+
+    private static void assertContent(ChunkSpool spool, byte[] data)
+	    throws Exception {
+	InputStream in = spool.openInputStream();
+	try {
+	    Assert.assertArrayEquals("content", data, IOUtils.toByteArray(in));
+	} finally {
+	    in.close();
+	}
+    }
+
+    private static File spillFile(ChunkSpool spool) {
+	return new File(System.getProperty("java.io.tmpdir"), spool.getName());
+    }
+
+    private static byte[] data(int length) {
+	byte[] data = new byte[length];
+	new Random(length).nextBytes(data);
+	return data;
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kawanfw.file.api.util.client.ChunkStateRegistry;
+import org.kawanfw.file.api.util.client.FileChunkStore;
+import org.kawanfw.file.api.util.client.RemoteFilePartStore;
+
+public class ChunkStateRegistryTest {
+
+    private File dir = null;
+
+    @Before
+    public void createDir() throws Exception {
+	dir = File.createTempFile("chunk-state-registry-test", ".dir");
+	dir.delete();
+	dir.mkdirs();
+    }
+
+    @After
+    public void deleteDir() {
+	FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+	ChunkStateRegistry registry = new ChunkStateRegistry(50, 10);
+	FileChunkStore store = download(registry, "user", "a.bin");
+
+	Assert.assertTrue("chunk stored", store.alreadyDownloaded(1));
+	Thread.sleep(100);
+	Assert.assertFalse("chunk expired", store.alreadyDownloaded(1));
+	Assert.assertFalse("expired chunk file deleted", store.getChunkFile(1)
+		.exists());
+	Assert.assertEquals("size", 0, registry.size());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+	ChunkStateRegistry registry = new ChunkStateRegistry(0, 2);
+	FileChunkStore a = download(registry, "user", "a.bin");
+	FileChunkStore b = download(registry, "user", "b.bin");
+
+	// a is used after b: b is the least recently used
+	Assert.assertTrue(a.alreadyDownloaded(1));
+	FileChunkStore c = download(registry, "user", "c.bin");
+
+	Assert.assertEquals("size", 2, registry.size());
+	Assert.assertTrue("a kept", a.alreadyDownloaded(1));
+	Assert.assertTrue("c kept", c.alreadyDownloaded(1));
+	Assert.assertFalse("b evicted", b.alreadyDownloaded(1));
+	Assert.assertFalse("b chunk file deleted", b.getChunkFile(1).exists());
+	Assert.assertTrue("a chunk file kept", a.getChunkFile(1).exists());
+    }
+
+    @Test
+    public void testClean() throws Exception {
+	ChunkStateRegistry registry = new ChunkStateRegistry(0, 10);
+	FileChunkStore user = download(registry, "user", "a.bin");
+	FileChunkStore user2 = download(registry, "user2", "b.bin");
+
+	RemoteFilePartStore upload = new RemoteFilePartStore(registry, "user",
+		new File(dir, "c.bin"), "/c.bin");
+	upload.storeFilePart(1);
+
+	registry.clean("user");
+
+	Assert.assertFalse("download cleaned", user.alreadyDownloaded(1));
+	Assert.assertFalse("chunk file deleted", user.getChunkFile(1).exists());
+	Assert.assertFalse("upload cleaned", upload.alreadyUploaded(1));
+	Assert.assertTrue("other user kept", user2.alreadyDownloaded(1));
+	Assert.assertTrue("other user chunk file kept", user2.getChunkFile(1)
+		.exists());
+	Assert.assertEquals("size", 1, registry.size());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+	ChunkStateRegistry registry = new ChunkStateRegistry(0, 10);
+	FileChunkStore store = download(registry, "user", "a.bin");
+	store.remove();
+
+	Assert.assertFalse("removed", store.alreadyDownloaded(1));
+	Assert.assertFalse("chunk file deleted", store.getChunkFile(1).exists());
+    }
+
+    @Test
+    public void testCompleteAfterExpiry() throws Exception {
+	ChunkStateRegistry registry = new ChunkStateRegistry(50, 10);
+	FileChunkStore store = download(registry, "user", "a.bin");
+	Thread.sleep(100);
+
+	// The chunk 1 is downloaded again over an expired state
+	store.add(1);
+
+	Assert.assertTrue("chunk stored", store.alreadyDownloaded(1));
+	Assert.assertTrue("completed chunk file kept", store.getChunkFile(1)
+		.exists());
+    }
+
+    @Test
+    public void testConcurrentComplete() throws Exception {
+	ChunkStateRegistry registry = new ChunkStateRegistry(0, 10);
+	final RemoteFilePartStore store = new RemoteFilePartStore(registry,
+		"user", new File(dir, "a.bin"), "/a.bin");
+
+	Thread[] threads = new Thread[8];
+	for (int i = 0; i < threads.length; i++) {
+	    final int first = i * 1000;
+	    threads[i] = new Thread() {
+		@Override
+		public void run() {
+		    for (int cpt = first; cpt < first + 1000; cpt++) {
+			store.storeFilePart(cpt);
+		    }
+		}
+	    };
+	    threads[i].start();
+	}
+
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+
+	Assert.assertEquals("size", 1, registry.size());
+	for (int cpt = 0; cpt < 8000; cpt++) {
+	    Assert.assertTrue("chunk " + cpt, store.alreadyUploaded(cpt));
+	}
+    }
+
+    private FileChunkStore download(ChunkStateRegistry registry,
+	    String username, String name) throws Exception {
+	FileChunkStore store = new FileChunkStore(registry, username, new File(
+		dir, name), "/" + name);
+	FileUtils.writeStringToFile(store.getChunkFile(1), "chunk", "UTF-8");
+	store.add(1);
+	return store;
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kawanfw.commons.util.codec.ContentCodec;
+import org.kawanfw.commons.util.codec.ContentCodecs;
+
+public class ContentCodecsTest {
+
+    @Test
+    public void testExtensions() {
+	Assert.assertTrue(ContentCodecs.hasIncompressibleExtension("a.zip"));
+	Assert.assertTrue(ContentCodecs.hasIncompressibleExtension("/dir/Photo.JPG"));
+	Assert.assertTrue(ContentCodecs
+		.hasIncompressibleExtension("movie.mp4.3.kawanfw.chunk"));
+	Assert.assertFalse(ContentCodecs.hasIncompressibleExtension("a.txt"));
+	Assert.assertFalse(ContentCodecs
+		.hasIncompressibleExtension("data.csv.1.kawanfw.chunk"));
+	Assert.assertFalse(ContentCodecs
+		.hasIncompressibleExtension("/dir.zip/README"));
+	Assert.assertFalse(ContentCodecs.hasIncompressibleExtension("zip"));
+	Assert.assertFalse(ContentCodecs.hasIncompressibleExtension(null));
+    }
+
+    @Test
+    public void testEntropy() throws Exception {
+	byte[] random = new byte[ContentCodecs.SAMPLE_LENGTH];
+	new Random(1).nextBytes(random);
+	Assert.assertFalse("random bytes",
+		ContentCodecs.isCompressibleSample(random, random.length));
+
+	byte[] text = text().getBytes(StandardCharsets.UTF_8);
+	Assert.assertTrue("text",
+		ContentCodecs.isCompressibleSample(text, text.length));
+	Assert.assertFalse("empty sample",
+		ContentCodecs.isCompressibleSample(text, 0));
+    }
+
+    @Test
+    public void testIsCompressible() throws Exception {
+	byte[] text = text().getBytes(StandardCharsets.UTF_8);
+
+	InputStream in = new BufferedInputStream(new ByteArrayInputStream(
+		text));
+	Assert.assertTrue(ContentCodecs.isCompressible("a.txt", in));
+	Assert.assertArrayEquals("stream is reset after the sample", text,
+		IOUtils.toByteArray(in));
+
+	Assert.assertFalse("extension checked first", ContentCodecs
+		.isCompressible("a.gz", new ByteArrayInputStream(text)));
+    }
+
+    @Test
+    public void testCodecs() throws Exception {
+	byte[] text = text().getBytes(StandardCharsets.UTF_8);
+
+	for (String name : new String[] { "gzip", "deflate" }) {
+	    ContentCodec codec = ContentCodecs.get(name);
+	    Assert.assertNotNull(name, codec);
+
+	    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+	    OutputStream out = codec.compress(compressed);
+	    out.write(text);
+	    out.close();
+	    Assert.assertTrue(name + " compresses",
+		    compressed.size() < text.length);
+
+	    InputStream in = codec.decompress(new ByteArrayInputStream(
+		    compressed.toByteArray()));
+	    Assert.assertArrayEquals(name + " round trip", text,
+		    IOUtils.toByteArray(in));
+	}
+
+	Assert.assertEquals("deflate", ContentCodecs.negotiate(
+		"gzip, deflate", "deflate").getName());
+	Assert.assertEquals("gzip", ContentCodecs.negotiate(
+		"gzip, deflate;q=0", "deflate").getName());
+	Assert.assertNull(ContentCodecs.negotiate("br", "deflate"));
+    }
+
+    private static String text() {
+	StringBuilder text = new StringBuilder();
+	for (int i = 0; i < 200; i++) {
+	    text.append("line ").append(i)
+		    .append(": KRemote Files transfers text files.\n");
+	}
+	return text.toString();
+    }
+
+}
@@ -3,9 +3,17 @@
  */
 package org.kawanfw.file.test.misc;
 
+import java.lang.reflect.Field;
 import java.util.Date;
 
+import org.junit.Assert;
+import org.junit.Test;
+import org.kawanfw.commons.util.LruCache;
 import org.kawanfw.file.api.server.session.DefaultJwtSessionConfigurator;
+import org.kawanfw.file.api.server.session.JwtSessionStore;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
 
 /**
  * @author Nicolas de Pomereu
@@ -19,6 +27,76 @@ public class DefaultJwtSessionConfiguratorTest {
     public DefaultJwtSessionConfiguratorTest() {
     }
 
+    @Test
+    public void testCachedToken() throws Exception {
+	DefaultJwtSessionConfigurator configurator = new DefaultJwtSessionConfigurator();
+	String token = configurator.generateToken("username");
+
+	Assert.assertTrue("first verification", configurator.verifyToken(token));
+	Assert.assertEquals("token cached", 1, getVerifiedTokens(configurator)
+		.size());
+	Assert.assertTrue("cached hit", configurator.verifyToken(token));
+	Assert.assertEquals("token cached once", 1,
+		getVerifiedTokens(configurator).size());
+
+	String tampered = token.substring(0, token.length() - 2)
+		+ (token.endsWith("AA") ? "BB" : "AA");
+	Assert.assertFalse("tampered token", configurator.verifyToken(tampered));
+	Assert.assertFalse("null token", configurator.verifyToken(null));
+    }
+
+    @Test
+    public void testSecretChange() throws Exception {
+	String secret = JwtSessionStore.JWT_SECRET_VALUE;
+	try {
+	    DefaultJwtSessionConfigurator configurator = new DefaultJwtSessionConfigurator();
+	    String token = configurator.generateToken("username");
+	    Assert.assertTrue("cached", configurator.verifyToken(token));
+
+	    JwtSessionStore.JWT_SECRET_VALUE = secret + "-changed";
+	    Assert.assertFalse("rejected after secret change",
+		    configurator.verifyToken(token));
+	    Assert.assertTrue("new token", configurator
+		    .verifyToken(configurator.generateToken("username")));
+	} finally {
+	    JwtSessionStore.JWT_SECRET_VALUE = secret;
+	}
+    }
+
+    @Test
+    public void testExpiredToken() throws Exception {
+	DefaultJwtSessionConfigurator configurator = new DefaultJwtSessionConfigurator();
+
+	// The exp claim is in seconds
+	String token = JWT.create().withClaim("usr", "username")
+		.withIssuedAt(new Date())
+		.withExpiresAt(new Date(System.currentTimeMillis() + 2000))
+		.sign(Algorithm.HMAC256(JwtSessionStore.getJwtSecretValue()));
+	Assert.assertTrue("valid before exp", configurator.verifyToken(token));
+
+	// The verifier compares exp with the current time truncated to seconds
+	long expiresAt = JWT.decode(token).getExpiresAt().getTime();
+	Thread.sleep(Math.max(0, expiresAt - System.currentTimeMillis()) + 1100);
+	Assert.assertFalse("not served from the cache after exp",
+		configurator.verifyToken(token));
+    }
+
+    /**
+     * Returns the verified tokens of the current secret value.
+     */
+    private static LruCache<?, ?> getVerifiedTokens(
+	    DefaultJwtSessionConfigurator configurator) throws Exception {
+	Field jwtKeysField = DefaultJwtSessionConfigurator.class
+		.getDeclaredField("jwtKeys");
+	jwtKeysField.setAccessible(true);
+	Object jwtKeys = jwtKeysField.get(configurator);
+
+	Field verifiedTokensField = jwtKeys.getClass().getDeclaredField(
+		"verifiedTokens");
+	verifiedTokensField.setAccessible(true);
+	return (LruCache<?, ?>) verifiedTokensField.get(jwtKeys);
+    }
+
     /**
      * @param args
      * @throws InterruptedException 
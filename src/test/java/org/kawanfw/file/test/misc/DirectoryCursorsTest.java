@@ -0,0 +1,156 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kawanfw.file.servlet.nio.DirectoryCursors;
+
+public class DirectoryCursorsTest {
+
+    private static final Path DIR = Paths.get("/home/user/dir");
+
+    @Test
+    public void testExpiredClosedOnStore() throws Exception {
+	DirectoryCursors cursors = new DirectoryCursors(50, 10);
+	FakeStream abandoned = new FakeStream();
+	String token = cursors.store(new DirectoryCursors.Cursor("user", DIR,
+		abandoned));
+
+	Thread.sleep(100);
+	cursors.store(new DirectoryCursors.Cursor("other", DIR,
+		new FakeStream()));
+
+	Assert.assertTrue("abandoned cursor closed", abandoned.closed);
+	Assert.assertEquals("size", 1, cursors.size());
+	assertInvalid(cursors, token, "user");
+    }
+
+    @Test
+    public void testExpiredClosedOnClaim() throws Exception {
+	DirectoryCursors cursors = new DirectoryCursors(50, 10);
+	FakeStream abandoned = new FakeStream();
+	cursors.store(new DirectoryCursors.Cursor("user", DIR, abandoned));
+	Thread.sleep(100);
+
+	FakeStream active = new FakeStream();
+	String token = cursors.store(new DirectoryCursors.Cursor("other", DIR,
+		active));
+	Assert.assertTrue("abandoned cursor closed", abandoned.closed);
+
+	DirectoryCursors.Cursor cursor = cursors.claim(token, "other", DIR);
+	Assert.assertFalse("claimed cursor open", active.closed);
+	Assert.assertEquals("size", 0, cursors.size());
+	cursor.close();
+    }
+
+    @Test
+    public void testExpiredClosedOnNewListing() throws Exception {
+	DirectoryCursors cursors = new DirectoryCursors(50, 10);
+	FakeStream abandoned = new FakeStream();
+	cursors.store(new DirectoryCursors.Cursor("user", DIR, abandoned));
+
+	cursors.closeExpired();
+	Assert.assertFalse("not yet expired", abandoned.closed);
+
+	Thread.sleep(100);
+	cursors.closeExpired();
+	Assert.assertTrue("expired cursor closed", abandoned.closed);
+	Assert.assertEquals("size", 0, cursors.size());
+    }
+
+    @Test
+    public void testMaxCursors() throws Exception {
+	DirectoryCursors cursors = new DirectoryCursors(60 * 1000, 2);
+	FakeStream first = new FakeStream();
+	FakeStream second = new FakeStream();
+	FakeStream third = new FakeStream();
+
+	cursors.store(new DirectoryCursors.Cursor("user", DIR, first));
+	String secondToken = cursors.store(new DirectoryCursors.Cursor("user",
+		DIR, second));
+	cursors.store(new DirectoryCursors.Cursor("user", DIR, third));
+
+	Assert.assertTrue("least recently used closed", first.closed);
+	Assert.assertFalse("second open", second.closed);
+	Assert.assertFalse("third open", third.closed);
+	Assert.assertEquals("size", 2, cursors.size());
+
+	cursors.claim(secondToken, "user", DIR).close();
+    }
+
+    @Test
+    public void testClaim() throws Exception {
+	DirectoryCursors cursors = new DirectoryCursors(60 * 1000, 10);
+	FakeStream stream = new FakeStream();
+	String token = cursors.store(new DirectoryCursors.Cursor("user", DIR,
+		stream));
+
+	assertInvalid(cursors, token, "intruder");
+	Assert.assertTrue("cursor closed on owner mismatch", stream.closed);
+	assertInvalid(cursors, token, "user"); // Used once only
+
+	FakeStream other = new FakeStream();
+	token = cursors.store(new DirectoryCursors.Cursor("user", DIR, other));
+	DirectoryCursors.Cursor cursor = cursors.claim(token, "user", DIR);
+	Assert.assertEquals("a", cursor.iterator().next().toString());
+	cursor.close();
+    }
+
+    private static void assertInvalid(DirectoryCursors cursors, String token,
+	    String username) {
+	try {
+	    cursors.claim(token, username, DIR);
+	    Assert.fail("token must be rejected");
+	} catch (IllegalArgumentException e) {
+	    // Expected
+	}
+    }
+
+    /**
+     * A directory stream that records its closing.
+     */
+    private static class FakeStream implements DirectoryStream<Path> {
+	private volatile boolean closed = false;
+
+	@Override
+	public Iterator<Path> iterator() {
+	    return Arrays.asList(Paths.get("a"), Paths.get("b")).iterator();
+	}
+
+	@Override
+	public void close() throws IOException {
+	    closed = true;
+	}
+    }
+
+}
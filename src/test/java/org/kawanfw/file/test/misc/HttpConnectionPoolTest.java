@@ -0,0 +1,138 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kawanfw.commons.client.http.ConnectionPoolStats;
+import org.kawanfw.commons.client.http.HttpConnectionPool;
+
+public class HttpConnectionPoolTest {
+
+    @Test
+    public void test() throws Exception {
+	HttpConnectionPool pool = HttpConnectionPool.getDefault();
+	URL url = new URL("http://localhost:9/ServerFileManager");
+
+	ConnectionPoolStats before = pool.getStats();
+
+	HttpConnectionPool.Lease lease1 = pool.lease(
+		(HttpURLConnection) url.openConnection(), null, 1);
+	HttpURLConnection conn2 = (HttpURLConnection) url.openConnection();
+	HttpConnectionPool.Lease lease2 = pool.lease(conn2, null, 1);
+
+	Assert.assertTrue("first lease is persistent", lease1.isPersistent());
+	Assert.assertFalse("second lease overflows", lease2.isPersistent());
+	Assert.assertEquals("Connection: close on overflow", "close",
+		conn2.getRequestProperty("Connection"));
+
+	pool.release(lease1);
+	pool.release(lease1); // No effect
+	pool.release(lease2);
+
+	HttpConnectionPool.Lease lease3 = pool.lease(
+		(HttpURLConnection) url.openConnection(), null, 1);
+	Assert.assertTrue("released slot is leased again",
+		lease3.isPersistent());
+	pool.release(lease3);
+
+	ConnectionPoolStats after = pool.getStats();
+	Assert.assertEquals("leases", 3, after.getLeases() - before.getLeases());
+	Assert.assertEquals("overflows", 1,
+		after.getOverflows() - before.getOverflows());
+	Assert.assertEquals("leased", before.getLeased(), after.getLeased());
+    }
+
+    @Test
+    public void testJdkLimit() throws Exception {
+	HttpConnectionPool pool = HttpConnectionPool.getDefault();
+	URL url = new URL("http://localhost:10/ServerFileManager");
+	int jdkMax = Integer.getInteger("http.maxConnections", 5);
+
+	List<HttpConnectionPool.Lease> leases = new ArrayList<HttpConnectionPool.Lease>();
+	for (int i = 0; i < jdkMax; i++) {
+	    HttpConnectionPool.Lease lease = pool.lease(
+		    (HttpURLConnection) url.openConnection(), null, jdkMax + 10);
+	    Assert.assertTrue("lease " + i + " is persistent",
+		    lease.isPersistent());
+	    leases.add(lease);
+	}
+
+	// Above http.maxConnections the JDK would not keep the socket
+	HttpConnectionPool.Lease extra = pool.lease(
+		(HttpURLConnection) url.openConnection(), null, 0);
+	Assert.assertFalse("lease above http.maxConnections overflows",
+		extra.isPersistent());
+	leases.add(extra);
+
+	for (HttpConnectionPool.Lease lease : leases) {
+	    pool.release(lease);
+	}
+    }
+
+    @Test
+    public void testConcurrentRelease() throws Exception {
+	final HttpConnectionPool pool = HttpConnectionPool.getDefault();
+	URL url = new URL("http://localhost:11/ServerFileManager");
+	ConnectionPoolStats before = pool.getStats();
+
+	for (int i = 0; i < 100; i++) {
+	    final HttpConnectionPool.Lease lease = pool.lease(
+		    (HttpURLConnection) url.openConnection(), null, 1);
+	    Assert.assertTrue("lease " + i + " is persistent",
+		    lease.isPersistent());
+
+	    // The same lease released twice at once frees one slot only
+	    Thread[] threads = new Thread[2];
+	    for (int j = 0; j < threads.length; j++) {
+		threads[j] = new Thread() {
+		    @Override
+		    public void run() {
+			pool.release(lease);
+		    }
+		};
+		threads[j].start();
+	    }
+
+	    for (Thread thread : threads) {
+		thread.join();
+	    }
+	}
+
+	Assert.assertEquals("leased", before.getLeased(), pool.getStats()
+		.getLeased());
+    }
+
+    public static void main(String[] args) throws Exception {
+	new HttpConnectionPoolTest().test();
+	System.out.println(HttpConnectionPool.getDefault().getStats());
+    }
+
+}
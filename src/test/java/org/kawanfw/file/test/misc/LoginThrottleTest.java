@@ -0,0 +1,115 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kawanfw.commons.server.util.ServerLogger;
+import org.kawanfw.file.servlet.LoginThrottle;
+
+public class LoginThrottleTest {
+
+    @BeforeClass
+    public static void createLogger() throws Exception {
+	// Created by the servlet init on the server
+	ServerLogger.createLogger(Logger.getLogger(LoginThrottleTest.class
+		.getName()));
+    }
+
+    @Test
+    public void testAccountBucket() throws Exception {
+	LoginThrottle throttle = new LoginThrottle(3, 100, 1000, 100);
+
+	for (int i = 0; i < 3; i++) {
+	    Assert.assertEquals("attempt " + i, 0,
+		    throttle.tryAcquire("user", "10.0.0.1"));
+	    throttle.failed("user", "10.0.0.1");
+	}
+
+	Assert.assertTrue("throttled after the burst",
+		throttle.tryAcquire("user", "10.0.0.1") > 0);
+	Assert.assertTrue("username case is ignored",
+		throttle.tryAcquire("USER", "10.0.0.1") > 0);
+	Assert.assertEquals("no lockout from another address", 0,
+		throttle.tryAcquire("user", "10.0.0.2"));
+	Assert.assertEquals("failures", 3,
+		throttle.getAccountFailures("user", "10.0.0.1"));
+
+	Thread.sleep(150);
+	Assert.assertEquals("token given back", 0,
+		throttle.tryAcquire("user", "10.0.0.1"));
+
+	throttle.failed("user", "10.0.0.1");
+	throttle.succeeded("user", "10.0.0.1");
+	Assert.assertEquals("bucket filled on success", 0,
+		throttle.getAccountFailures("user", "10.0.0.1"));
+    }
+
+    @Test
+    public void testIpAddressBucket() {
+	LoginThrottle throttle = new LoginThrottle(1000, 100, 5, 60 * 1000);
+
+	for (int i = 0; i < 5; i++) {
+	    throttle.failed("user" + i, "10.0.0.1");
+	}
+
+	Assert.assertTrue("address throttled for all usernames",
+		throttle.tryAcquire("other", "10.0.0.1") > 0);
+	Assert.assertEquals("other address", 0,
+		throttle.tryAcquire("other", "10.0.0.2"));
+	Assert.assertEquals("failures", 5,
+		throttle.getIpAddressFailures("10.0.0.1"));
+    }
+
+    @Test
+    public void testThrottledKeptWhenFull() {
+	LoginThrottle throttle = new LoginThrottle(1, 60 * 1000, 1, 60 * 1000);
+
+	// Fill the maps with throttled entries
+	for (int i = 0; i < 100000; i++) {
+	    throttle.failed("user", ipAddress(i));
+	}
+
+	// New keys can not evict the throttled ones
+	for (int i = 100000; i < 101000; i++) {
+	    throttle.failed("user", ipAddress(i));
+	}
+
+	Assert.assertTrue("first entry still throttled",
+		throttle.tryAcquire("user", ipAddress(0)) > 0);
+	Assert.assertTrue("last tracked entry still throttled",
+		throttle.tryAcquire("user", ipAddress(99999)) > 0);
+	Assert.assertEquals("size", 200000, throttle.size());
+    }
+
+    private static String ipAddress(int i) {
+	return "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "."
+		+ (i & 0xFF);
+    }
+
+}
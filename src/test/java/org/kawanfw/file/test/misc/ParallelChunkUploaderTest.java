@@ -0,0 +1,150 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kawanfw.file.api.client.ParallelChunkUploader;
+
+public class ParallelChunkUploaderTest {
+
+    @Test
+    public void testRuntimeFailure() throws Exception {
+	ParallelChunkUploader uploader = new ParallelChunkUploader(2);
+	try {
+	    uploader.submit(1, upload(null));
+	    uploader.submit(2, new Callable<Void>() {
+		@Override
+		public Void call() throws Exception {
+		    throw new IllegalStateException("chunk 2 failed");
+		}
+	    });
+
+	    try {
+		uploader.awaitAll();
+		Assert.fail("RuntimeException expected");
+	    } catch (IllegalStateException e) {
+		// Expected
+	    }
+
+	    // The failure is kept: the last chunk must never be sent
+	    assertAwaitAllFails(uploader);
+	    try {
+		uploader.submit(3, upload(null));
+		Assert.fail("IOException expected on submit");
+	    } catch (IOException e) {
+		Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+	    }
+	} finally {
+	    uploader.close();
+	}
+    }
+
+    @Test
+    public void testIoFailure() throws Exception {
+	ParallelChunkUploader uploader = new ParallelChunkUploader(2);
+	try {
+	    uploader.submit(1, new Callable<Void>() {
+		@Override
+		public Void call() throws Exception {
+		    throw new IOException("chunk 1 failed");
+		}
+	    });
+	    assertAwaitAllFails(uploader);
+	    assertAwaitAllFails(uploader);
+	} finally {
+	    uploader.close();
+	}
+    }
+
+    @Test
+    public void testOrderAndParallelism() throws Exception {
+	final AtomicBoolean firstDone = new AtomicBoolean();
+	final AtomicBoolean firstBeforeOthers = new AtomicBoolean(true);
+	final AtomicInteger running = new AtomicInteger();
+	final AtomicInteger maxRunning = new AtomicInteger();
+
+	ParallelChunkUploader uploader = new ParallelChunkUploader(2);
+	try {
+	    uploader.submit(1, new Callable<Void>() {
+		@Override
+		public Void call() throws Exception {
+		    Thread.sleep(50);
+		    firstDone.set(true);
+		    return null;
+		}
+	    });
+
+	    for (int cpt = 2; cpt <= 10; cpt++) {
+		uploader.submit(cpt, new Callable<Void>() {
+		    @Override
+		    public Void call() throws Exception {
+			if (!firstDone.get()) {
+			    firstBeforeOthers.set(false);
+			}
+			int n = running.incrementAndGet();
+			synchronized (maxRunning) {
+			    maxRunning.set(Math.max(maxRunning.get(), n));
+			}
+			Thread.sleep(10);
+			running.decrementAndGet();
+			return null;
+		    }
+		});
+	    }
+	    uploader.awaitAll();
+	} finally {
+	    uploader.close();
+	}
+
+	Assert.assertTrue("first chunk uploaded first", firstBeforeOthers.get());
+	Assert.assertTrue("parallelism respected", maxRunning.get() <= 2);
+	Assert.assertEquals("all done", 0, running.get());
+    }
+
+    private static void assertAwaitAllFails(ParallelChunkUploader uploader) {
+	try {
+	    uploader.awaitAll();
+	    Assert.fail("IOException expected on awaitAll");
+	} catch (IOException e) {
+	    // Expected
+	}
+    }
+
+    private static Callable<Void> upload(final Void result) {
+	return new Callable<Void>() {
+	    @Override
+	    public Void call() throws Exception {
+		return result;
+	    }
+	};
+    }
+
+}
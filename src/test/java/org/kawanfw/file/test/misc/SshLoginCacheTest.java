@@ -0,0 +1,225 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.misc;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kawanfw.commons.server.util.ServerLogger;
+import org.kawanfw.file.api.server.util.SshLoginCache;
+
+public class SshLoginCacheTest {
+
+    @BeforeClass
+    public static void createLogger() throws Exception {
+	ServerLogger.createLogger(Logger.getLogger(SshLoginCacheTest.class
+		.getName()));
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+	FakeSshLoginCache cache = new FakeSshLoginCache(60 * 1000, 10, 8);
+
+	Assert.assertTrue(cache.login("host", 22, "user", "pwd".toCharArray()));
+	Assert.assertTrue(cache.login("host", 22, "user", "pwd".toCharArray()));
+	Assert.assertEquals("one handshake", 1, cache.handshakes.get());
+	Assert.assertEquals("size", 1, cache.size());
+
+	// Any other credential or server is a miss
+	Assert.assertFalse(cache.login("host", 22, "user", "bad".toCharArray()));
+	Assert.assertTrue(cache.login("host", 2222, "user", "pwd".toCharArray()));
+	Assert.assertEquals("handshakes", 3, cache.handshakes.get());
+
+	cache.clear();
+	Assert.assertTrue(cache.login("host", 22, "user", "pwd".toCharArray()));
+	Assert.assertEquals("handshake after clear", 4, cache.handshakes.get());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+	FakeSshLoginCache cache = new FakeSshLoginCache(50, 10, 8);
+
+	Assert.assertTrue(cache.login("host", 22, "user", "pwd".toCharArray()));
+	Thread.sleep(100);
+	Assert.assertTrue(cache.login("host", 22, "user", "pwd".toCharArray()));
+	Assert.assertEquals("handshake after expiry", 2, cache.handshakes.get());
+    }
+
+    @Test
+    public void testFailureNotCached() throws Exception {
+	FakeSshLoginCache cache = new FakeSshLoginCache(60 * 1000, 10, 8);
+
+	Assert.assertFalse(cache.login("host", 22, "user", "bad".toCharArray()));
+	Assert.assertFalse(cache.login("host", 22, "user", "bad".toCharArray()));
+	Assert.assertEquals("two handshakes", 2, cache.handshakes.get());
+	Assert.assertEquals("size", 0, cache.size());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+	FakeSshLoginCache cache = new FakeSshLoginCache(60 * 1000, 2, 8);
+
+	Assert.assertTrue(cache.login("host", 22, "a", "pwd".toCharArray()));
+	Assert.assertTrue(cache.login("host", 22, "b", "pwd".toCharArray()));
+	// a is used after b: b is the least recently used
+	Assert.assertTrue(cache.login("host", 22, "a", "pwd".toCharArray()));
+	Assert.assertTrue(cache.login("host", 22, "c", "pwd".toCharArray()));
+	Assert.assertEquals("size", 2, cache.size());
+	Assert.assertEquals("handshakes", 3, cache.handshakes.get());
+
+	Assert.assertTrue(cache.login("host", 22, "a", "pwd".toCharArray()));
+	Assert.assertTrue(cache.login("host", 22, "c", "pwd".toCharArray()));
+	Assert.assertEquals("a and c cached", 3, cache.handshakes.get());
+	Assert.assertTrue(cache.login("host", 22, "b", "pwd".toCharArray()));
+	Assert.assertEquals("b evicted", 4, cache.handshakes.get());
+    }
+
+    @Test
+    public void testHandshakeBound() throws Exception {
+	final FakeSshLoginCache cache = new FakeSshLoginCache(0, 10, 2);
+	cache.duration = 50;
+
+	Thread[] threads = new Thread[6];
+	final AtomicInteger accepted = new AtomicInteger();
+	for (int i = 0; i < threads.length; i++) {
+	    threads[i] = new Thread() {
+		@Override
+		public void run() {
+		    try {
+			if (cache.login("host", 22, "user", "pwd".toCharArray())) {
+			    accepted.incrementAndGet();
+			}
+		    } catch (IOException e) {
+			e.printStackTrace();
+		    }
+		}
+	    };
+	    threads[i].start();
+	}
+
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+
+	Assert.assertEquals("all accepted", threads.length, accepted.get());
+	Assert.assertEquals("no cache", threads.length, cache.handshakes.get());
+	Assert.assertEquals("bounded handshakes", 2, cache.maxRunning.get());
+    }
+
+    @Test
+    public void testNoHandshakeSlot() throws Exception {
+	final FakeSshLoginCache cache = new FakeSshLoginCache(0, 10, 1);
+	cache.blocked = new CountDownLatch(1);
+
+	Thread holder = new Thread() {
+	    @Override
+	    public void run() {
+		try {
+		    cache.login("host", 22, "user", "pwd".toCharArray());
+		} catch (IOException e) {
+		    e.printStackTrace();
+		}
+	    }
+	};
+	holder.start();
+	while (cache.running.get() == 0) {
+	    Thread.sleep(10);
+	}
+
+	// The wait for the slot is cut short by an interrupt
+	final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+	Thread waiter = new Thread() {
+	    @Override
+	    public void run() {
+		try {
+		    cache.login("host", 22, "other", "pwd".toCharArray());
+		} catch (IOException e) {
+		    failure.set(e);
+		}
+	    }
+	};
+	waiter.start();
+	Thread.sleep(100);
+	waiter.interrupt();
+	waiter.join();
+
+	cache.blocked.countDown();
+	holder.join();
+
+	Assert.assertNotNull("no slot", failure.get());
+	Assert.assertTrue(failure.get().getMessage(), failure.get()
+		.getMessage().contains("Too many concurrent SSH logins"));
+	Assert.assertEquals("one handshake", 1, cache.handshakes.get());
+    }
+
+    /**
+     * A cache that accepts the password "pwd" without SSH server.
+     */
+    private static class FakeSshLoginCache extends SshLoginCache {
+
+	private final AtomicInteger handshakes = new AtomicInteger();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+	private volatile long duration = 0;
+	private volatile CountDownLatch blocked = null;
+
+	FakeSshLoginCache(long ttl, int maxEntries, int maxHandshakes) {
+	    super(ttl, maxEntries, maxHandshakes);
+	}
+
+	@Override
+	protected boolean handshake(String host, int port, String username,
+		char[] password) throws IOException {
+	    handshakes.incrementAndGet();
+	    int current = running.incrementAndGet();
+	    while (true) {
+		int max = maxRunning.get();
+		if (current <= max || maxRunning.compareAndSet(max, current)) {
+		    break;
+		}
+	    }
+
+	    try {
+		if (blocked != null) {
+		    blocked.await();
+		}
+		Thread.sleep(duration);
+	    } catch (InterruptedException e) {
+		throw new IOException(e);
+	    } finally {
+		running.decrementAndGet();
+	    }
+
+	    return new String(password).equals("pwd");
+	}
+    }
+
+}
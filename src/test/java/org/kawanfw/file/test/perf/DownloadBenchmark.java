@@ -0,0 +1,187 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+
+import org.kawanfw.commons.util.DefaultParms;
+import org.kawanfw.file.api.server.SysRootHomeFileConfigurator;
+import org.kawanfw.file.servlet.util.FileTransferManager;
+
+/**
+ * Benchmark of the server chunk download: the legacy 4 KB copy from a
+ * RandomAccessFile versus {@link FileTransferManager} (pooled buffers). The
+ * file is sent on a loopback socket drained by another thread. Prints the throughput
+ * and the CPU time of the sending thread per GB.
+ * <p>
+ * Usage: DownloadBenchmark [file length in MB] [chunk length in MB]
+ */
+public class DownloadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+	long fileLength = (args.length > 0 ? Long.parseLong(args[0]) : 1024)
+		* DefaultParms.MB;
+	long chunkLength = (args.length > 1 ? Long.parseLong(args[1]) : 10)
+		* DefaultParms.MB;
+
+	File file = File.createTempFile("download-benchmark", ".bin");
+	file.deleteOnExit();
+	createFile(file, fileLength);
+
+	ServerSocket serverSocket = new ServerSocket(0);
+	startDrain(serverSocket);
+
+	SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(
+		"localhost", serverSocket.getLocalPort()));
+	Socket socket = socketChannel.socket();
+
+	OutputStream streamOut = Channels.newOutputStream(socketChannel);
+
+	// Warm up
+	for (int i = 0; i < 2; i++) {
+	    run(0, file, fileLength, chunkLength, streamOut);
+	    run(1, file, fileLength, chunkLength, streamOut);
+	}
+
+	System.out.println("File: " + fileLength / DefaultParms.MB
+		+ " MB, chunk: " + chunkLength / DefaultParms.MB + " MB");
+	report("legacy 4 KB copy",
+		run(0, file, fileLength, chunkLength, streamOut), fileLength);
+	report("pooled buffers  ",
+		run(1, file, fileLength, chunkLength, streamOut), fileLength);
+
+	socket.close();
+	serverSocket.close();
+	System.exit(0);
+    }
+
+    private static long[] run(int mode, File file, long fileLength,
+	    long chunkLength, OutputStream out) throws IOException {
+
+	ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	long cpuBefore = threadMXBean.getCurrentThreadCpuTime();
+	long begin = System.nanoTime();
+
+	int chunks = (int) ((fileLength + chunkLength - 1) / chunkLength);
+	for (int index = 1; index <= chunks; index++) {
+	    if (mode == 0) {
+		legacyDownload(file, index, chunkLength, out);
+	    } else {
+		String chunkName = file.getPath() + "." + index
+			+ ".kawanfw.chunk";
+		new FileTransferManager().download(out,
+			new SysRootHomeFileConfigurator(), "user", chunkName,
+			chunkLength);
+	    }
+	}
+	out.flush();
+
+	return new long[] { System.nanoTime() - begin,
+		threadMXBean.getCurrentThreadCpuTime() - cpuBefore };
+    }
+
+    private static void report(String label, long[] result, long fileLength) {
+	double seconds = result[0] / 1e9;
+	double gigabytes = (double) fileLength / (1024 * DefaultParms.MB);
+	System.out.printf("%s: %8.1f MB/s, CPU %7.1f ms/GB%n", label,
+		fileLength / DefaultParms.MB / seconds, result[1] / 1e6
+			/ gigabytes);
+    }
+
+    /**
+     * The download of a chunk before the FileChannel engine.
+     */
+    private static void legacyDownload(File file, int index, long chunkLength,
+	    OutputStream out) throws IOException {
+	RandomAccessFile raf = new RandomAccessFile(file, "rw");
+	try {
+	    raf.seek((index - 1) * chunkLength);
+
+	    int writeBufferSize = DefaultParms.DEFAULT_WRITE_BUFFER_SIZE;
+	    long totalRead = 0;
+	    byte[] tmp = new byte[writeBufferSize];
+	    int len;
+
+	    while ((len = raf.read(tmp)) >= 0) {
+		totalRead += len;
+		out.write(tmp, 0, len);
+		if (chunkLength > 0
+			&& totalRead > chunkLength - writeBufferSize) {
+		    return;
+		}
+	    }
+	} finally {
+	    raf.close();
+	}
+    }
+
+    private static void createFile(File file, long length) throws IOException {
+	byte[] block = new byte[DefaultParms.MB];
+	new Random(1).nextBytes(block);
+
+	RandomAccessFile raf = new RandomAccessFile(file, "rw");
+	try {
+	    for (long written = 0; written < length; written += block.length) {
+		raf.write(block, 0, (int) Math.min(block.length, length
+			- written));
+	    }
+	} finally {
+	    raf.close();
+	}
+    }
+
+    private static void startDrain(final ServerSocket serverSocket) {
+	Thread thread = new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		try {
+		    Socket socket = serverSocket.accept();
+		    InputStream in = socket.getInputStream();
+		    byte[] buffer = new byte[256 * DefaultParms.KB];
+		    while (in.read(buffer) != -1) {
+		    }
+		} catch (IOException e) {
+		    // Benchmark end
+		}
+	    }
+	});
+	thread.setDaemon(true);
+	thread.start();
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.perf;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kawanfw.file.servlet.LoginThrottle;
+
+/**
+ * Load test of the login throttling: a pool of "servlet" threads serves the
+ * file requests of legitimate clients and the failed logins of a credential
+ * stuffing attack. Compares the legacy throttling (3 second sleep on the
+ * servlet thread after 3 failures) with {@link LoginThrottle}, and prints the
+ * throughput of the legitimate requests before and during the attack.
+ * <p>
+ * Usage: LoginThrottleBenchmark [servlet threads] [attacker threads]
+ */
+public class LoginThrottleBenchmark {
+
+    /** The simulated duration of a file request */
+    private static final long FILE_REQUEST_MILLIS = 2;
+
+    /** The simulated duration of a password check */
+    private static final long PASSWORD_CHECK_MILLIS = 1;
+
+    /** The number of legitimate clients */
+    private static final int CLIENTS = 32;
+
+    /** The phase duration */
+    private static final long PHASE_MILLIS = 5000;
+
+    public static void main(String[] args) throws Exception {
+
+	int servletThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+	int attackers = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+	System.out.println("Servlet threads: " + servletThreads + ", clients: "
+		+ CLIENTS + ", attackers: " + attackers);
+
+	run("legacy sleep ", new LegacyLogin(), servletThreads, attackers);
+	run("LoginThrottle", new ThrottledLogin(), servletThreads, attackers);
+    }
+
+    private static void run(String name, final Login login,
+	    int servletThreads, int attackers) throws Exception {
+
+	final ExecutorService servlet = Executors
+		.newFixedThreadPool(servletThreads);
+	final AtomicBoolean stop = new AtomicBoolean();
+	final AtomicLong served = new AtomicLong();
+	final AtomicBoolean attack = new AtomicBoolean();
+
+	ExecutorService clients = Executors.newFixedThreadPool(CLIENTS
+		+ attackers);
+
+	for (int i = 0; i < CLIENTS; i++) {
+	    clients.execute(new Runnable() {
+		@Override
+		public void run() {
+		    while (!stop.get()) {
+			call(servlet, new Runnable() {
+			    @Override
+			    public void run() {
+				sleep(FILE_REQUEST_MILLIS);
+			    }
+			});
+			served.incrementAndGet();
+		    }
+		}
+	    });
+	}
+
+	for (int i = 0; i < attackers; i++) {
+	    final int attacker = i;
+	    clients.execute(new Runnable() {
+		@Override
+		public void run() {
+		    int attempt = 0;
+		    while (!stop.get()) {
+			if (!attack.get()) {
+			    sleep(10);
+			    continue;
+			}
+
+			final String username = "user" + (attempt++ % 10);
+			final String ipAddress = "10.0.0." + attacker % 4;
+			call(servlet, new Runnable() {
+			    @Override
+			    public void run() {
+				login.login(username, ipAddress);
+			    }
+			});
+		    }
+		}
+	    });
+	}
+
+	long before = measure(served);
+	attack.set(true);
+	long during = measure(served);
+
+	stop.set(true);
+	clients.shutdownNow();
+	servlet.shutdownNow();
+	clients.awaitTermination(10, TimeUnit.SECONDS);
+
+	System.out.println(name + ": legitimate requests/s before attack: "
+		+ before + ", during attack: " + during);
+    }
+
+    private static long measure(AtomicLong served) {
+	long begin = served.get();
+	sleep(PHASE_MILLIS);
+	return (served.get() - begin) * 1000 / PHASE_MILLIS;
+    }
+
+    private static void call(ExecutorService servlet, Runnable request) {
+	try {
+	    Future<?> future = servlet.submit(request);
+	    future.get();
+	} catch (Exception e) {
+	    // Stopped
+	}
+    }
+
+    private static void sleep(long millis) {
+	try {
+	    Thread.sleep(millis);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /**
+     * A failed login handled by a servlet thread.
+     */
+    private interface Login {
+	void login(String username, String ipAddress);
+    }
+
+    /**
+     * The legacy LoginSpeedReducer: sleeps 3 seconds on the servlet thread
+     * after 3 failures of a username.
+     */
+    private static class LegacyLogin implements Login {
+	private final Map<String, Integer> attempts = new HashMap<String, Integer>();
+
+	@Override
+	public void login(String username, String ipAddress) {
+	    sleep(PASSWORD_CHECK_MILLIS);
+
+	    int attempt;
+	    synchronized (attempts) {
+		Integer value = attempts.get(username);
+		attempt = (value == null ? 0 : value) + 1;
+		if (attempt >= 3) {
+		    attempts.remove(username);
+		} else {
+		    attempts.put(username, attempt);
+		}
+	    }
+
+	    if (attempt >= 3) {
+		sleep(3000);
+	    }
+	}
+    }
+
+    /**
+     * The failed login with LoginThrottle: refused at once if throttled.
+     */
+    private static class ThrottledLogin implements Login {
+	private final LoginThrottle loginThrottle = new LoginThrottle(3, 3000,
+		20, 500);
+
+	@Override
+	public void login(String username, String ipAddress) {
+	    if (loginThrottle.tryAcquire(username, ipAddress) > 0) {
+		return;
+	    }
+
+	    sleep(PASSWORD_CHECK_MILLIS);
+	    loginThrottle.failed(username, ipAddress);
+	}
+    }
+}
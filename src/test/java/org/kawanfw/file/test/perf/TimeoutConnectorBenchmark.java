@@ -0,0 +1,212 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.perf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.kawanfw.commons.client.http.TimeoutConnector;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Microbenchmark of the connect timeout: the legacy thread per request with
+ * busy wait versus the current {@link TimeoutConnector}. Prints the number of
+ * threads started and the process CPU time per request.
+ * <p>
+ * Usage: TimeoutConnectorBenchmark [requests] [concurrency]
+ */
+public class TimeoutConnectorBenchmark {
+
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private static String url = null;
+
+    public static void main(String[] args) throws Exception {
+
+	int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+	int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+	HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+	server.createContext("/", new HttpHandler() {
+	    @Override
+	    public void handle(HttpExchange exchange) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		while (in.read() != -1) {
+		}
+		byte[] response = "SEND_OK".getBytes();
+		exchange.sendResponseHeaders(200, response.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(response);
+		out.close();
+	    }
+	});
+	server.setExecutor(Executors.newFixedThreadPool(concurrency));
+	server.start();
+	url = "http://localhost:" + server.getAddress().getPort() + "/";
+
+	// Warm up
+	run(false, requests / 5, concurrency);
+	run(true, requests / 5, concurrency);
+
+	System.out.println("Requests: " + requests + ", concurrency: " + concurrency);
+	report("legacy  ", run(true, requests, concurrency), requests);
+	report("current ", run(false, requests, concurrency), requests);
+
+	server.stop(0);
+	System.exit(0);
+    }
+
+    private static long[] run(final boolean legacy, int requests, int concurrency)
+	    throws Exception {
+	ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	threadMXBean.resetPeakThreadCount();
+	long startedBefore = threadMXBean.getTotalStartedThreadCount();
+	long cpuBefore = getProcessCpuTime();
+	long begin = System.nanoTime();
+
+	ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+	List<Future<?>> futures = new ArrayList<Future<?>>();
+	for (int i = 0; i < requests; i++) {
+	    futures.add(executor.submit(new Runnable() {
+		@Override
+		public void run() {
+		    try {
+			request(legacy);
+		    } catch (IOException e) {
+			throw new IllegalStateException(e);
+		    }
+		}
+	    }));
+	}
+	for (Future<?> future : futures) {
+	    future.get();
+	}
+	executor.shutdown();
+
+	long elapsed = System.nanoTime() - begin;
+	return new long[] {
+		threadMXBean.getTotalStartedThreadCount() - startedBefore
+			- concurrency,
+		threadMXBean.getPeakThreadCount(),
+		getProcessCpuTime() - cpuBefore, elapsed };
+    }
+
+    private static void request(boolean legacy) throws IOException {
+	HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+	conn.setRequestMethod("POST");
+	conn.setDoOutput(true);
+
+	OutputStream os = legacy ? new LegacyTimeoutConnector(conn,
+		CONNECT_TIMEOUT).getOutputStream() : new TimeoutConnector(conn,
+		CONNECT_TIMEOUT).getOutputStream();
+	os.write("action=test".getBytes());
+	os.close();
+
+	InputStream in = conn.getInputStream();
+	while (in.read() != -1) {
+	}
+	in.close();
+    }
+
+    private static void report(String name, long[] result, int requests) {
+	System.out.println(name + " threads started: " + result[0]
+		+ ", peak threads: " + result[1] + ", CPU/request: "
+		+ (result[2] / requests / 1000) + " us, elapsed: "
+		+ (result[3] / 1000000) + " ms");
+    }
+
+    private static long getProcessCpuTime() {
+	OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+	if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+	    return ((com.sun.management.OperatingSystemMXBean) bean)
+		    .getProcessCpuTime();
+	}
+	return -1;
+    }
+
+    /**
+     * Former implementation: one thread per request and 1 ms sleep loop.
+     */
+    private static class LegacyTimeoutConnector {
+	private final HttpURLConnection conn;
+	private final int connectTimeout;
+	private volatile OutputStream os = null;
+	private volatile boolean connected = false;
+	private volatile IOException exception = null;
+
+	LegacyTimeoutConnector(HttpURLConnection conn, int connectTimeout) {
+	    this.conn = conn;
+	    this.connectTimeout = connectTimeout;
+	}
+
+	OutputStream getOutputStream() throws IOException {
+	    Thread t = new Thread() {
+		public void run() {
+		    try {
+			os = conn.getOutputStream();
+			connected = true;
+		    } catch (IOException e) {
+			exception = e;
+		    }
+		}
+	    };
+	    t.start();
+
+	    long begin = System.currentTimeMillis();
+	    while (true) {
+		if (connected) {
+		    return os;
+		}
+		if (exception != null) {
+		    throw exception;
+		}
+		if (System.currentTimeMillis() - begin > connectTimeout) {
+		    throw new SocketTimeoutException("timeout");
+		}
+		try {
+		    Thread.sleep(1);
+		} catch (InterruptedException ie) {
+		    ie.printStackTrace();
+		}
+	    }
+	}
+    }
+}
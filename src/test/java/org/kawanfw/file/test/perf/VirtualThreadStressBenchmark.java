@@ -0,0 +1,215 @@
+/*
+ * This file is part of KRemote Files. 
+ * KRemote Files: Easy file upload & download over HTTP with Java.                                    
+ * Copyright (C) 2015,  KawanSoft SAS
+ * (http://www.kawansoft.com). All rights reserved.                                
+ *                                                                               
+ * KRemote Files is free software; you can redistribute it and/or                 
+ * modify it under the terms of the GNU Lesser General Public                    
+ * License as published by the Free Software Foundation; either                  
+ * version 2.1 of the License, or (at your option) any later version.            
+ *                                                                               
+ * KRemote Files is distributed in the hope that it will be useful,               
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU             
+ * Lesser General Public License for more details.                               
+ *                                                                               
+ * You should have received a copy of the GNU Lesser General Public              
+ * License along with this library; if not, write to the Free Software           
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  
+ * 02110-1301  USA
+ *
+ * Any modifications to this file must keep this entire header
+ * intact.
+ */
+package org.kawanfw.file.test.perf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.kawanfw.file.api.client.AsyncRemoteSession;
+import org.kawanfw.file.api.client.RemoteFile;
+import org.kawanfw.file.api.client.RemoteInputStream;
+import org.kawanfw.file.api.client.RemoteOutputStream;
+import org.kawanfw.file.api.client.RemoteSession;
+import org.kawanfw.file.api.client.RemoteSessionTask;
+import org.kawanfw.file.test.parms.TestParms;
+
+/**
+ * Stress test of the blocking client on virtual threads: uploads and then
+ * downloads concurrently small files with one {@link AsyncRemoteSession},
+ * each operation in its own virtual thread, against the local KRemote Files
+ * server. Checks the downloaded contents and prints the duration of each
+ * phase.
+ * <p>
+ * Virtual threads are created by reflection so that the test compiles with
+ * Java 8. On older JVMs, a fixed pool of platform threads is used instead.
+ * Run with <code>-Djdk.tracePinnedThreads=full</code> on Java 21 to report
+ * the carrier threads pinned by the client.
+ * <p>
+ * Usage: VirtualThreadStressBenchmark [number of files] [file length in bytes]
+ */
+public class VirtualThreadStressBenchmark {
+
+    /** The remote directory of the files */
+    private static final String REMOTE_DIR = "/kawanfw-stress";
+
+    public static void main(String[] args) throws Exception {
+
+	int files = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+	int fileLength = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+	RemoteSession remoteSession = new RemoteSession(
+		TestParms.KREMOTE_FILES_URL_LOCAL, TestParms.REMOTE_USER,
+		TestParms.REMOTE_PASSWORD.toCharArray());
+
+	new RemoteFile(remoteSession, REMOTE_DIR).mkdirs();
+
+	ExecutorService executor = newVirtualThreadExecutor();
+	AsyncRemoteSession asyncSession = new AsyncRemoteSession(
+		remoteSession, executor);
+
+	System.out.println("Files: " + files + ", length: " + fileLength
+		+ " bytes, executor: " + executor.getClass().getSimpleName());
+
+	long begin = System.currentTimeMillis();
+	await(upload(asyncSession, files, fileLength));
+	report("uploads  ", files, begin);
+
+	final AtomicInteger errors = new AtomicInteger();
+	begin = System.currentTimeMillis();
+	await(download(asyncSession, files, fileLength, errors));
+	report("downloads", files, begin);
+
+	System.out.println("Content errors: " + errors.get());
+	System.out.println(remoteSession.getSessionParameters()
+		.getConnectionPoolStats());
+
+	for (int i = 0; i < files; i++) {
+	    asyncSession.delete(getPathname(i));
+	}
+
+	executor.shutdown();
+    }
+
+    /**
+     * Uploads the files, one task per file.
+     */
+    private static List<CompletableFuture<Void>> upload(
+	    AsyncRemoteSession asyncSession, int files, final int fileLength) {
+	List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+
+	for (int i = 0; i < files; i++) {
+	    final int number = i;
+	    futures.add(asyncSession.submit(new RemoteSessionTask<Void>() {
+		@Override
+		public Void call(RemoteSession session) throws Exception {
+		    try (OutputStream out = new RemoteOutputStream(session,
+			    getPathname(number), fileLength)) {
+			out.write(getContent(number, fileLength));
+		    }
+		    return null;
+		}
+	    }));
+	}
+
+	return futures;
+    }
+
+    /**
+     * Downloads the files, one task per file, and counts the bad contents.
+     */
+    private static List<CompletableFuture<Void>> download(
+	    AsyncRemoteSession asyncSession, int files, final int fileLength,
+	    final AtomicInteger errors) {
+	List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+
+	for (int i = 0; i < files; i++) {
+	    final int number = i;
+	    futures.add(asyncSession.submit(new RemoteSessionTask<Void>() {
+		@Override
+		public Void call(RemoteSession session) throws Exception {
+		    ByteArrayOutputStream content = new ByteArrayOutputStream();
+		    try (InputStream in = new RemoteInputStream(session,
+			    getPathname(number))) {
+			byte[] buffer = new byte[8192];
+			int len;
+			while ((len = in.read(buffer)) != -1) {
+			    content.write(buffer, 0, len);
+			}
+		    }
+
+		    if (!Arrays.equals(getContent(number, fileLength),
+			    content.toByteArray())) {
+			errors.incrementAndGet();
+		    }
+		    return null;
+		}
+	    }));
+	}
+
+	return futures;
+    }
+
+    /**
+     * Waits for all the tasks and prints the first failure.
+     */
+    private static void await(List<CompletableFuture<Void>> futures) {
+	int failures = 0;
+	for (CompletableFuture<Void> future : futures) {
+	    try {
+		future.join();
+	    } catch (Exception e) {
+		if (failures++ == 0) {
+		    e.printStackTrace();
+		}
+	    }
+	}
+
+	if (failures > 0) {
+	    System.out.println("Failed tasks: " + failures);
+	}
+    }
+
+    private static String getPathname(int number) {
+	return REMOTE_DIR + "/file-" + number + ".bin";
+    }
+
+    /**
+     * Returns the content of a file, different for each file.
+     */
+    private static byte[] getContent(int number, int fileLength) {
+	byte[] content = new byte[fileLength];
+	for (int i = 0; i < fileLength; i++) {
+	    content[i] = (byte) (number + i);
+	}
+	return content;
+    }
+
+    /**
+     * Returns Executors.newVirtualThreadPerTaskExecutor() if the JVM has
+     * virtual threads, otherwise a fixed pool of 200 threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+	try {
+	    return (ExecutorService) Executors.class.getMethod(
+		    "newVirtualThreadPerTaskExecutor").invoke(null);
+	} catch (Exception e) {
+	    return Executors.newFixedThreadPool(200);
+	}
+    }
+
+    private static void report(String name, int files, long begin) {
+	long millis = Math.max(1, System.currentTimeMillis() - begin);
+	System.out.println(name + ": " + millis + " ms, " + files * 1000L
+		/ millis + " files/s");
+    }
+}
@@ -28,10 +28,14 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.FileFileFilter;
 import org.kawanfw.file.api.client.RemoteFile;
+import org.kawanfw.file.api.client.RemoteFileAttributes;
 import org.kawanfw.file.api.client.RemoteSession;
 import org.kawanfw.file.api.client.exception.InvalidLoginException;
 import org.kawanfw.file.test.parms.TestParms;
@@ -118,6 +122,11 @@ public class RemoteFileTest {
 	    testFile.testFileMethods();   
 	}
 	
+	List<RemoteFileAttributes> attributes = remoteSession.stat(Arrays.asList(filesToTest));
+	for (RemoteFileAttributes attribute : attributes) {
+	    MessageDisplayer.display("stat(): " + attribute);
+	}
+	
 	String [] dirsToTest = new String [] {root, "/my_rp1", "/notexists"};
 	for (int i = 0; i < dirsToTest.length; i++) {
 	    file = new RemoteFile(remoteSession, dirsToTest[i]);
@@ -263,6 +272,31 @@ public class RemoteFileTest {
 	    }
 	}
 	
+	files = file.listFilesWithAttributes();
+	MessageDisplayer.display();
+	MessageDisplayer.display("file.listFilesWithAttributes() " + file);
+	if (files == null) {
+	    MessageDisplayer.display("remote directory is empty: " + file);
+	}
+	else {
+	    MessageDisplayer.display("RemoteFile [] files.length: " + files.length);
+	    for (int i = 0; i < files.length; i++) {
+		MessageDisplayer.display("" + files[i].getAttributes());
+	    }
+	}
+	
+	Iterator<RemoteFile> iterator = file.listFilesIterator(2);
+	MessageDisplayer.display();
+	MessageDisplayer.display("file.listFilesIterator(2) " + file);
+	if (iterator == null) {
+	    MessageDisplayer.display("remote directory is empty: " + file);
+	}
+	else {
+	    while (iterator.hasNext()) {
+		MessageDisplayer.display(iterator.next());
+	    }
+	}
+	
 	FilenameFilter filenameFilter = DirectoryFileFilter.DIRECTORY;
 	
 	filenames = file.list(filenameFilter);